@@ -0,0 +1,75 @@
+package games.office.assassins;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.office.assassins.assignment.AssignmentGraph;
+import games.office.assassins.assignment.TargetAssignmentEngine;
+
+/**
+ * Measures each of the target assignment algorithms in WeeklySummaryAssignment on the active players of a generated
+ * game
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AssignBenchmark {
+	/** The number of targets assigned to each player */
+	@Param({"3"})
+	public int targetCount;
+
+	private WeeklySummaryAssignment summary;
+
+	private TargetAssignmentEngine engine;
+
+	@Setup(Level.Trial)
+	public void setUp(GameDataState state) {
+		summary = new WeeklySummaryAssignment(state.playerData, targetCount);
+		engine = new TargetAssignmentEngine(targetCount);
+	}
+
+	@Benchmark
+	public AssignmentGraph assignRandomTargets() {
+		summary.assignRandomTargets();
+		return summary.getTargetAssignments();
+	}
+
+	@Benchmark
+	public AssignmentGraph assignTieredRandomTargets() {
+		summary.assignTieredRandomTargets();
+		return summary.getTargetAssignments();
+	}
+
+	@Benchmark
+	public AssignmentGraph assignEightTierRandomTargets() {
+		summary.assignTieredRandomTargets(8);
+		return summary.getTargetAssignments();
+	}
+
+	@Benchmark
+	public AssignmentGraph assignNearbyRankTargets() {
+		summary.assignNearbyRankTargets(16);
+		return summary.getTargetAssignments();
+	}
+
+	@Benchmark
+	public AssignmentGraph assignConstrainedTargets() {
+		summary.assignConstrainedTargets(engine);
+		return summary.getTargetAssignments();
+	}
+}
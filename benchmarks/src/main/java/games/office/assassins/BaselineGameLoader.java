@@ -0,0 +1,128 @@
+package games.office.assassins;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import games.office.assassins.model.Bonus;
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * The way GameMaster.loadGameData() loaded the game before it built each player's scores as it read the kills, kept so
+ * LoadBenchmark can compare the two. It asks the database for the distinct week numbers of the kills, allocates one
+ * Score for every player in every one of those weeks in a flat list, fills them in from the kills and bonuses and only
+ * then hands them to the players. Like the original it presumes player IDs range from 1 to the number of players and
+ * week numbers from 1 to the last week, which holds for the generated databases.
+ */
+class BaselineGameLoader {
+	/**
+	 * Loads every player, kill and bonus from the database
+	 *
+	 * @param dbConnection An open connection to the database
+	 * @return The players keyed by ID, or null if a table could not be read
+	 */
+	static HashMap<Integer, Player> loadGameData(Connection dbConnection) {
+		HashMap<Integer, Player> playerData = new HashMap();
+
+		// Load data from table: players
+		try (Statement dbStatement = dbConnection.createStatement();
+			 ResultSet results = dbStatement.executeQuery("SELECT ID, FirstName, LastName, Email, WeekEliminated FROM players")) {
+			while (results.next()) {
+				Player nextPlayer = new Player();
+				nextPlayer.setId(results.getInt("id"));
+				nextPlayer.setFirstName(results.getString("FirstName"));
+				nextPlayer.setLastName(results.getString("LastName"));
+				nextPlayer.setEmail(results.getString("Email"));
+				nextPlayer.setWeekEliminated(results.getInt("WeekEliminated"));
+				playerData.put(nextPlayer.getId(), nextPlayer);
+			}
+		}
+		catch (SQLException e) {
+			System.out.println("Error reading 'players' table: " + e.getMessage());
+			return null;
+		}
+
+		// Lists the unique week numbers where we have kill data, sorted from oldest to newest
+		ArrayList<Integer> weekNumbers = new ArrayList();
+
+		// Holds score data for all players for all weeks of play
+		ArrayList<Score> playerScoreData = new ArrayList();
+
+		// Load data from table: kills
+		try (Statement dbStatement = dbConnection.createStatement()) {
+			// First figure out how many distinct weeks of kill data exist so we can prepare enough objects to hold
+			// player scores
+			try (ResultSet results = dbStatement.executeQuery("SELECT distinct WeekNumber FROM kills ORDER BY WeekNumber")) {
+				while (results.next()) {
+					weekNumbers.add(results.getInt("WeekNumber"));
+				}
+			}
+
+			// Create a score record for each week for each player
+			for (int i = 0; i < playerData.size() * weekNumbers.size(); ++i) {
+				playerScoreData.add(new Score());
+			}
+
+			// Now grab all the kill data and put it into the appropriate score container
+			try (ResultSet results = dbStatement.executeQuery("SELECT AssassinId, TargetId, WeekNumber FROM kills")) {
+				while (results.next()) {
+					int assassinId = results.getInt("AssassinId");
+					int targetId = results.getInt("TargetId");
+					int weekNumber = results.getInt("WeekNumber");
+
+					// Eliminated players can still make kills in the game, but those kills do not get added to their
+					// scores. Deaths will always be added to a player's score.
+					int index;
+					Player assassin = playerData.get(assassinId);
+					if (assassin.isPlayerEliminated() == false || assassin.getWeekEliminated() >= weekNumber) {
+						index = (assassinId - 1) + (playerData.size() * (weekNumber - 1));
+						playerScoreData.get(index).addTargetKilled(targetId);
+					}
+					index = (targetId - 1) + (playerData.size() * (weekNumber - 1));
+					playerScoreData.get(index).addAssassinKiller(assassinId);
+				}
+			}
+		}
+		catch (SQLException e) {
+			System.out.println("Error reading 'kills' table: " + e.getMessage());
+			return null;
+		}
+
+		// Load data from table: bonuses
+		try (Statement dbStatement = dbConnection.createStatement();
+			 ResultSet results = dbStatement.executeQuery("SELECT AssassinId, TargetId, WeekNumber, BonusPoints, BonusName, BonusDescription FROM bonuses")) {
+			while (results.next()) {
+				int assassinId = results.getInt("AssassinId");
+				int weekNumber = results.getInt("WeekNumber");
+
+				Bonus bonus = new Bonus();
+				bonus.setTargetId(results.getInt("TargetId"));
+				bonus.setBonusPoints(results.getInt("BonusPoints"));
+				bonus.setBonusName(results.getString("BonusName"));
+				bonus.setBonusDescription(results.getString("BonusDescription"));
+
+				// Determine which Score object the bonus applies to using the player ID and week number
+				int index = (assassinId - 1) + (playerData.size() * (weekNumber - 1));
+				playerScoreData.get(index).addBonus(bonus);
+			}
+		}
+		catch (SQLException e) {
+			System.out.println("Error reading 'bonuses' table: " + e.getMessage());
+			return null;
+		}
+
+		// With the score data complete, add it to the existing player data
+		for (Integer i : playerData.keySet()) {
+			for (int j : weekNumbers) {
+				int index = (i - 1) + (playerData.size() * (j - 1));
+				playerData.get(i).addScoreData(j, playerScoreData.get(index));
+			}
+		}
+		return playerData;
+	}
+}
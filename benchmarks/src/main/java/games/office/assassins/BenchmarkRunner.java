@@ -0,0 +1,51 @@
+package games.office.assassins;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line options. Unless another result format or file is given, the
+ * results are also written as JSON to benchmark-results.json, so that runs against different versions of the
+ * application can be compared by a script or a JMH result viewer.
+ */
+public class BenchmarkRunner {
+	/** The file results are written to when none is given on the command line */
+	private static final String DEFAULT_RESULT_FILE = "benchmark-results.json";
+
+	public static void main(String args[]) throws RunnerException {
+		CommandLineOptions commandLine;
+		try {
+			commandLine = new CommandLineOptions(args);
+		}
+		catch (CommandLineOptionException e) {
+			System.out.println("Error parsing command line: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+
+		if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams() || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+			// Leave anything other than a benchmark run to JMH itself
+			try {
+				org.openjdk.jmh.Main.main(args);
+			}
+			catch (Exception e) {
+				throw new RunnerException(e);
+			}
+			return;
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if (commandLine.getResultFormat().hasValue() == false) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (commandLine.getResult().hasValue() == false) {
+			options.result(DEFAULT_RESULT_FILE);
+		}
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,77 @@
+package games.office.assassins;
+
+import java.io.File;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import java.util.HashMap;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import games.office.assassins.model.Player;
+
+/**
+ * A generated game database and the player data loaded from it, shared by every benchmark. Databases are kept in the
+ * temporary directory between runs, one per combination of settings, since generating the larger ones takes far
+ * longer than benchmarking them. Delete the office-assassins-benchmarks directory there to generate them again. Each
+ * database only appears there once it has been completely generated, so a run that was stopped part way through
+ * generating one leaves no file behind to be reused.
+ */
+@State(Scope.Benchmark)
+public class GameDataState {
+	/** The seed used for every generated database, so all runs measure the same data */
+	private static final long GENERATOR_SEED = 1;
+
+	/** The number of players in the game */
+	@Param({"1000", "10000", "100000"})
+	public int playerCount;
+
+	/** The number of weeks of play */
+	@Param({"8"})
+	public int weekCount;
+
+	/**
+	 * The average number of kills each active player makes per week. Several densities are run so that the cost of
+	 * loading and ranking can be seen to grow with the size of the kill log for the same number of players
+	 */
+	@Param({"0.5", "1.0", "2.0", "8.0"})
+	public double killsPerPlayerWeek;
+
+	/** An open connection to the generated database */
+	Connection dbConnection;
+
+	/** The player data loaded from the database, ranked with PlayerRank */
+	HashMap<Integer, Player> playerData;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		File databaseDirectory = new File(System.getProperty("java.io.tmpdir"), "office-assassins-benchmarks");
+		File databaseFile = new File(databaseDirectory, "game_" + playerCount + "_" + weekCount + "_" + killsPerPlayerWeek + ".db");
+		if (databaseFile.exists() == false) {
+			databaseDirectory.mkdirs();
+			SyntheticGameGenerator generator = new SyntheticGameGenerator(playerCount, weekCount, killsPerPlayerWeek, 0.1, 0.2, GENERATOR_SEED);
+			if (generator.generate(databaseFile.getPath()) == false) {
+				throw new RuntimeException("Unable to generate benchmark database " + databaseFile);
+			}
+		}
+
+		dbConnection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getPath());
+		playerData = GameMaster.loadGameData(dbConnection);
+		if (playerData == null) {
+			throw new RuntimeException("Unable to load benchmark database " + databaseFile);
+		}
+		PlayerRank.assignPlayerRanks(playerData);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		dbConnection.close();
+	}
+}
@@ -0,0 +1,130 @@
+package games.office.assassins;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import games.office.assassins.model.IntList;
+import games.office.assassins.model.KillLog;
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * Compares the KillLog with the Player and Score object graph, both for the heap each keeps alive and for looking up
+ * every player's kills and deaths in every week.
+ *
+ * The retained heap benchmarks load the data once and report the growth of the used heap, measured after a full
+ * garbage collection on either side of the load, as the retainedBytes counter. JMH adds the counter up over the
+ * measurement iterations, so they only measure one. Their times include the collections and should be ignored. The
+ * Score graph also holds the players and their bonuses, which the log does not, so the difference is an upper bound
+ * on what moving the kills into the log saves.
+ */
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class KillLogBenchmark {
+	/** The heap kept alive by the data loaded in an iteration */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class RetainedHeap {
+		public long retainedBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			retainedBytes = 0;
+		}
+	}
+
+	/** The kill log of the benchmark database */
+	@State(Scope.Benchmark)
+	public static class KillLogState {
+		KillLog killLog;
+
+		@Setup(Level.Trial)
+		public void setUp(GameDataState state) {
+			killLog = GameMaster.loadKillLog(state.dbConnection, state.playerData);
+			if (killLog == null) {
+				throw new RuntimeException("Unable to load the kill log of the benchmark database");
+			}
+		}
+	}
+
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+	/** Returns the used heap after collecting as much garbage as the JVM will let go of */
+	private static long usedHeapAfterGc() {
+		long used = Long.MAX_VALUE;
+		for (int i = 0; i < 5; ++i) {
+			System.gc();
+			used = Math.min(used, MEMORY.getHeapMemoryUsage().getUsed());
+		}
+		return used;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Measurement(iterations = 1)
+	public HashMap<Integer, Player> retainedByScoreGraph(GameDataState state, RetainedHeap heap) {
+		long before = usedHeapAfterGc();
+		HashMap<Integer, Player> playerData = GameMaster.loadGameData(state.dbConnection);
+		heap.retainedBytes = usedHeapAfterGc() - before;
+		return playerData;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Measurement(iterations = 1)
+	public KillLog retainedByKillLog(GameDataState state, RetainedHeap heap) {
+		long before = usedHeapAfterGc();
+		KillLog killLog = GameMaster.loadKillLog(state.dbConnection, state.playerData);
+		heap.retainedBytes = usedHeapAfterGc() - before;
+		return killLog;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void lookupInScores(GameDataState state, Blackhole blackhole) {
+		for (Player player : state.playerData.values()) {
+			for (int weekNumber = 1; weekNumber <= state.weekCount; ++weekNumber) {
+				Score score = player.getScore(weekNumber);
+				if (score != null) {
+					blackhole.consume(score.getTargetPlayerIds());
+					blackhole.consume(score.getAssassinPlayerIds());
+				}
+			}
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void lookupInKillLog(GameDataState state, KillLogState kills, Blackhole blackhole) {
+		for (Player player : state.playerData.values()) {
+			for (int weekNumber = 1; weekNumber <= state.weekCount; ++weekNumber) {
+				IntList targets = kills.killLog.getTargetsKilled(player.getId(), weekNumber);
+				IntList assassins = kills.killLog.getKilledBy(player.getId(), weekNumber);
+				blackhole.consume(targets);
+				blackhole.consume(assassins);
+			}
+		}
+	}
+}
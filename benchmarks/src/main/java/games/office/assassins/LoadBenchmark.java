@@ -0,0 +1,122 @@
+package games.office.assassins;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.office.assassins.model.Player;
+
+/**
+ * Measures loading every player, kill and bonus from the database with GameMaster.loadGameData(), against the
+ * BaselineGameLoader it replaced.
+ *
+ * The peak heap benchmarks load the data once after a full garbage collection and report how far the heap rose above
+ * what was in use before the load as the peakHeapBytes counter. JMH adds the counter up over the measurement
+ * iterations, so they only measure one, and their times include the collections and should be ignored. The peak
+ * counts garbage that has not been collected yet, so it depends on the collector and the size of the young
+ * generation. They run with the serial collector and a fixed 2 GB heap so both loaders see the same generations, and
+ * without thread-local allocation buffers, which would otherwise round the young generation's usage up to the next
+ * buffer of several megabytes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+	/** The highest heap use reached while loading the data in an iteration */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PeakHeap {
+		public long peakHeapBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			peakHeapBytes = 0;
+		}
+	}
+
+	/** Loads the game data for the peak heap benchmarks */
+	private interface GameLoader {
+		HashMap<Integer, Player> load();
+	}
+
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+	/**
+	 * Runs the loader and records how far the heap rose above its level after a full garbage collection. The peak is the
+	 * sum of each heap pool's own peak, which may overstate it slightly since they need not peak together.
+	 */
+	private static HashMap<Integer, Player> measurePeakHeap(GameLoader loader, PeakHeap heap) {
+		long before = Long.MAX_VALUE;
+		for (int i = 0; i < 5; ++i) {
+			System.gc();
+			before = Math.min(before, MEMORY.getHeapMemoryUsage().getUsed());
+		}
+
+		List<MemoryPoolMXBean> heapPools = new ArrayList();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+
+		HashMap<Integer, Player> playerData = loader.load();
+
+		// A pool only updates its peak when its usage is read or a collection runs, so read the usage as well
+		long peak = 0;
+		for (MemoryPoolMXBean pool : heapPools) {
+			peak += Math.max(pool.getPeakUsage().getUsed(), pool.getUsage().getUsed());
+		}
+		heap.peakHeapBytes = peak - before;
+		return playerData;
+	}
+
+	@Benchmark
+	public HashMap<Integer, Player> loadGameData(GameDataState state) {
+		return GameMaster.loadGameData(state.dbConnection);
+	}
+
+	@Benchmark
+	public HashMap<Integer, Player> loadGameDataBaseline(GameDataState state) {
+		return BaselineGameLoader.loadGameData(state.dbConnection);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 1)
+	@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-XX:+UseSerialGC", "-XX:-UseTLAB"})
+	public HashMap<Integer, Player> peakHeapOfLoad(GameDataState state, PeakHeap heap) {
+		return measurePeakHeap(() -> GameMaster.loadGameData(state.dbConnection), heap);
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 1)
+	@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-XX:+UseSerialGC", "-XX:-UseTLAB"})
+	public HashMap<Integer, Player> peakHeapOfBaselineLoad(GameDataState state, PeakHeap heap) {
+		return measurePeakHeap(() -> BaselineGameLoader.loadGameData(state.dbConnection), heap);
+	}
+}
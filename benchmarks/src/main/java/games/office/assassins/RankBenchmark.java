@@ -0,0 +1,123 @@
+package games.office.assassins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.office.assassins.model.Player;
+
+/**
+ * Measures the ways players are ranked: a full sort that assigns every player's rank, partitioning out the top half
+ * of the players without a full sort, and building a Leaderboard that keeps ranks up to date as scores change.
+ *
+ * The top-K, bottom-K and rank-of-player queries of PlayerRank are each paired with a benchmark that answers the same
+ * question over the same active players the way it was answered before, by copying them into a list and running
+ * Collections.sort.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RankBenchmark {
+	/** The number of players returned by the top-K and bottom-K queries, such as a week's eliminations */
+	private static final int SELECT_COUNT = 100;
+
+	/** A ranking of the active players of the benchmark database, and a player in the middle of it to look up */
+	@State(Scope.Benchmark)
+	public static class RankingState {
+		PlayerRank ranking;
+
+		ArrayList<Player> activePlayers;
+
+		int playerId;
+
+		@Setup(Level.Trial)
+		public void setUp(GameDataState state) {
+			ranking = new PlayerRank(state.playerData, true);
+			activePlayers = new ArrayList();
+			for (Player p : state.playerData.values()) {
+				if (p.isPlayerEliminated() == false) {
+					activePlayers.add(p);
+				}
+			}
+			ArrayList<Player> sorted = sortedPlayers(activePlayers);
+			playerId = sorted.get(sorted.size() / 2).getId();
+		}
+	}
+
+	/** The sort that the queries replace */
+	private static ArrayList<Player> sortedPlayers(ArrayList<Player> players) {
+		ArrayList<Player> rankingList = new ArrayList(players);
+		Collections.sort(rankingList);
+		return rankingList;
+	}
+
+	@Benchmark
+	public int assignPlayerRanks(GameDataState state) {
+		PlayerRank.assignPlayerRanks(state.playerData);
+		return state.playerData.size();
+	}
+
+	@Benchmark
+	public Player[] partitionTopPlayers(GameDataState state) {
+		Player[] players = state.playerData.values().toArray(new Player[0]);
+		PlayerRank.partitionTopPlayers(players, players.length / 2);
+		return players;
+	}
+
+	@Benchmark
+	public Leaderboard buildLeaderboard(GameDataState state) {
+		return new Leaderboard(state.playerData.values());
+	}
+
+	@Benchmark
+	public ArrayList<Player> topPlayers(RankingState rank) {
+		return rank.ranking.getTopPlayers(SELECT_COUNT);
+	}
+
+	@Benchmark
+	public ArrayList<Player> topPlayersBySort(RankingState rank) {
+		ArrayList<Player> sorted = sortedPlayers(rank.activePlayers);
+		return new ArrayList(sorted.subList(0, Math.min(SELECT_COUNT, sorted.size())));
+	}
+
+	@Benchmark
+	public ArrayList<Player> bottomPlayers(RankingState rank) {
+		return rank.ranking.getBottomPlayers(SELECT_COUNT);
+	}
+
+	@Benchmark
+	public ArrayList<Player> bottomPlayersBySort(RankingState rank) {
+		ArrayList<Player> sorted = sortedPlayers(rank.activePlayers);
+		return new ArrayList(sorted.subList(Math.max(0, sorted.size() - SELECT_COUNT), sorted.size()));
+	}
+
+	@Benchmark
+	public int playerRank(RankingState rank) {
+		return rank.ranking.getPlayerRank(rank.playerId);
+	}
+
+	@Benchmark
+	public int playerRankBySort(RankingState rank) {
+		ArrayList<Player> sorted = sortedPlayers(rank.activePlayers);
+		for (int i = 0; i < sorted.size(); ++i) {
+			if (sorted.get(i).getId() == rank.playerId) {
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,39 @@
+package games.office.assassins;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import games.office.assassins.model.Player;
+
+/**
+ * Compares the two ways of ranking every player from the database: loading the game data into Player and Score
+ * objects and sorting them, against totalling and sorting the players in SQLite and reading back one row per player.
+ * Run with "-prof gc" to compare the memory each allocates as well as the time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RankPathBenchmark {
+	@Benchmark
+	public HashMap<Integer, Player> loadAndRank(GameDataState state) {
+		HashMap<Integer, Player> playerData = GameMaster.loadGameData(state.dbConnection);
+		PlayerRank.assignPlayerRanks(playerData);
+		return playerData;
+	}
+
+	@Benchmark
+	public boolean rankInDatabase(GameDataState state, Blackhole blackhole) {
+		return PlayerRank.streamPlayerRanks(state.dbConnection, false, p -> blackhole.consume(p.getRank()));
+	}
+}
@@ -0,0 +1,142 @@
+package games.office.assassins;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.office.assassins.model.Player;
+
+/**
+ * Measures the throughput of ConcurrentKillRecorder in kills per second, with the kills reported from threadCount
+ * threads at once and then applied to the player data in one batch. applySequentially applies the same kills straight
+ * to the player data on one thread, the way loading them from the database does, for comparison.
+ *
+ * Every call starts from a fresh copy of the generated game's players without any score data, so the player data does
+ * not grow from one call to the next.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecorderBenchmark {
+	/** The number of kills reported in each benchmark call */
+	private static final int KILL_COUNT = 100000;
+
+	/** The threads that report kills to the recorder */
+	@State(Scope.Benchmark)
+	public static class RecorderThreads {
+		/** The number of threads reporting kills at once */
+		@Param({"1", "2", "4", "8"})
+		public int threadCount;
+
+		ExecutorService executor;
+
+		@Setup(Level.Trial)
+		public void setUp() {
+			executor = Executors.newFixedThreadPool(threadCount);
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			executor.shutdownNow();
+		}
+	}
+
+	/** The assassin, target and week of each kill */
+	private int[] assassinIds;
+	private int[] targetIds;
+	private int[] weekNumbers;
+
+	/** The generated game's players, copied for each call */
+	private Player[] players;
+
+	/** The players for the next call, without any score data */
+	private HashMap<Integer, Player> playerData;
+
+	@Setup(Level.Trial)
+	public void setUp(GameDataState state) {
+		players = state.playerData.values().toArray(new Player[0]);
+		SplittableRandom random = new SplittableRandom(1);
+		assassinIds = new int[KILL_COUNT];
+		targetIds = new int[KILL_COUNT];
+		weekNumbers = new int[KILL_COUNT];
+		for (int i = 0; i < KILL_COUNT; ++i) {
+			int assassin = random.nextInt(players.length);
+			assassinIds[i] = players[assassin].getId();
+			targetIds[i] = players[(assassin + 1 + random.nextInt(players.length - 1)) % players.length].getId();
+			weekNumbers[i] = 1 + random.nextInt(state.weekCount);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void copyPlayers() {
+		playerData = new HashMap(players.length * 2);
+		for (Player p : players) {
+			Player copy = new Player();
+			copy.setId(p.getId());
+			copy.setWeekEliminated(p.getWeekEliminated());
+			playerData.put(copy.getId(), copy);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KILL_COUNT)
+	public int recordAndApply(RecorderThreads threads) throws InterruptedException, ExecutionException {
+		ConcurrentKillRecorder recorder = new ConcurrentKillRecorder(playerData);
+		List<Callable<Integer>> slices = new ArrayList();
+		for (int t = 0; t < threads.threadCount; ++t) {
+			int start = (int) ((long) KILL_COUNT * t / threads.threadCount);
+			int end = (int) ((long) KILL_COUNT * (t + 1) / threads.threadCount);
+			slices.add(() -> {
+				int recorded = 0;
+				for (int i = start; i < end; ++i) {
+					if (recorder.recordKill(assassinIds[i], targetIds[i], weekNumbers[i])) {
+						recorded++;
+					}
+				}
+				return recorded;
+			});
+		}
+		for (Future<Integer> slice : threads.executor.invokeAll(slices)) {
+			slice.get();
+		}
+		return recorder.applyPendingEvents();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KILL_COUNT)
+	public HashMap<Integer, Player> applySequentially() {
+		for (int i = 0; i < KILL_COUNT; ++i) {
+			Player assassin = playerData.get(assassinIds[i]);
+			if (GameMaster.isKillCredited(assassin, weekNumbers[i])) {
+				GameMaster.getWeekScore(assassin, weekNumbers[i]).addTargetKilled(targetIds[i]);
+			}
+			GameMaster.getWeekScore(playerData.get(targetIds[i]), weekNumbers[i]).addAssassinKiller(assassinIds[i]);
+		}
+		return playerData;
+	}
+}
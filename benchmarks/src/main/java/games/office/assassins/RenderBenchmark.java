@@ -0,0 +1,145 @@
+package games.office.assassins;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.office.assassins.metrics.Metrics;
+import games.office.assassins.metrics.Stage;
+import games.office.assassins.metrics.StageMetrics;
+
+/**
+ * Measures rendering and writing every player's e-mail for the last week of a generated game with
+ * WeeklySummaryAssignment.writePlayerEmails(). With a WARM cache the weekly breakdowns rendered by earlier calls are
+ * reused, which is the steady state of writing e-mails again after a change to the assignments. With a COLD cache it
+ * is emptied before every call, so each breakdown is rendered as it is on the first run of a week. Running with
+ * emailThreadCount 1 and 4 shows how rendering scales with threads; the output is the same either way.
+ *
+ * emailThroughput makes the same call in throughput mode with Metrics enabled, and reports per second the e-mails
+ * written (emails), the bytes written (bytesWritten) and the bytes allocated (allocatedBytes), taken from the
+ * RENDER_EMAIL and WRITE_EMAILS stages. Dividing allocatedBytes by emails gives the allocation per e-mail, which is
+ * also printed after each iteration. Use these counters rather than -prof gc, which misses the allocation of the
+ * render threads because they end with each call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+	/** What the calls of an iteration wrote and allocated, reported per second */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class EmailCounters {
+		public long emails;
+		public long bytesWritten;
+		public long allocatedBytes;
+
+		@Setup(Level.Trial)
+		public void enableMetrics() {
+			Metrics.enable();
+		}
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			emails = 0;
+			bytesWritten = 0;
+			allocatedBytes = 0;
+		}
+
+		@TearDown(Level.Iteration)
+		public void printAllocationPerEmail() {
+			if (emails > 0) {
+				System.out.println("Allocated " + (allocatedBytes / emails) + " bytes per e-mail");
+			}
+		}
+	}
+
+	/** The format e-mails are written in */
+	@Param({"SINGLE_FILE", "MBOX"})
+	public EmailOutputMode outputMode;
+
+	/** Whether the renderer's cache of weekly breakdowns is kept between calls (WARM) or emptied before each (COLD) */
+	@Param({"WARM", "COLD"})
+	public String cache;
+
+	/** The number of threads e-mails are rendered on, which must not change the bytes written */
+	@Param({"1", "4"})
+	public int emailThreadCount;
+
+	private WeeklySummaryAssignment summary;
+
+	private File outputFile;
+
+	private int gameWeek;
+
+	@Setup(Level.Trial)
+	public void setUp(GameDataState state) throws IOException {
+		outputFile = File.createTempFile("office-assassins-emails", ".txt");
+		summary = new WeeklySummaryAssignment(state.playerData, 3);
+		summary.assignRandomTargets();
+		summary.setOutputMode(outputMode);
+		summary.setEmailThreadCount(emailThreadCount);
+		summary.setOutputFilename(outputFile.getPath());
+		summary.setEmailDate(ZonedDateTime.of(2017, 1, 1, 9, 0, 0, 0, ZoneOffset.UTC));
+		gameWeek = state.weekCount;
+	}
+
+	@Setup(Level.Invocation)
+	public void clearCache() {
+		if (cache.equals("COLD")) {
+			summary.clearEmailCache();
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		outputFile.delete();
+	}
+
+	@Benchmark
+	public boolean writePlayerEmails() {
+		if (summary.writePlayerEmails(gameWeek) == false) {
+			throw new RuntimeException("Failed to write player e-mails to " + outputFile);
+		}
+		return true;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public boolean emailThroughput(EmailCounters counters) {
+		StageMetrics render = Metrics.getStageMetrics(Stage.RENDER_EMAIL);
+		StageMetrics write = Metrics.getStageMetrics(Stage.WRITE_EMAILS);
+		long emails = render.getRowCount();
+		long bytes = write.getByteCount();
+		long allocated = render.getAllocatedBytes() + write.getAllocatedBytes();
+
+		writePlayerEmails();
+
+		counters.emails += render.getRowCount() - emails;
+		counters.bytesWritten += write.getByteCount() - bytes;
+		counters.allocatedBytes += render.getAllocatedBytes() + write.getAllocatedBytes() - allocated;
+		return true;
+	}
+}
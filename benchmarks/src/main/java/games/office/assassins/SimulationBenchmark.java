@@ -0,0 +1,64 @@
+package games.office.assassins;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of SeasonSimulator in simulated weeks per second, playing out WEEK_COUNT weeks of each
+ * pairing algorithm on the active players of a generated game with every available processor
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SimulationBenchmark {
+	/** The number of weeks played out in each simulated season */
+	private static final int WEEK_COUNT = 4;
+
+	/** The number of seasons simulated in each benchmark call */
+	private static final int SEASON_COUNT = 256;
+
+	/** The pairing algorithm used every week */
+	@Param({"RANDOM", "TIERED", "NEARBY"})
+	public WeekFormat.Pairing pairing;
+
+	private SeasonSimulator simulator;
+
+	private ArrayList<WeekFormat> weeks;
+
+	private long seed;
+
+	@Setup(Level.Trial)
+	public void setUp(GameDataState state) {
+		simulator = new SeasonSimulator(state.playerData, 3);
+
+		// Eliminate a tenth of the starting players each week, with tiers and windows sized as a game master might
+		int eliminations = simulator.getPlayerCount() / 10;
+		weeks = new ArrayList();
+		for (int i = 0; i < WEEK_COUNT; ++i) {
+			weeks.add(new WeekFormat(3, pairing, (pairing == WeekFormat.Pairing.TIERED) ? 4 : 16, eliminations));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SEASON_COUNT * WEEK_COUNT)
+	public SeasonSimulation simulateSeasons() {
+		return simulator.simulate(weeks, SEASON_COUNT, seed++);
+	}
+}
@@ -0,0 +1,223 @@
+package games.office.assassins;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import games.office.assassins.config.DatabaseWriter;
+import games.office.assassins.model.Bonus;
+
+/**
+ * Generates SQLite databases of made up game data in the same players/kills/bonuses schema as db/sample_test.db, for
+ * measuring how each stage of the application scales. The same settings and seed always produce the same database.
+ *
+ * Every week, each active player makes killsPerPlayerWeek kills on average against random active players, and a
+ * fraction of those kills also earn a bonus. After every week but the last, eliminationRate of the remaining active
+ * players are eliminated, so later weeks have fewer players in them as in a real game.
+ */
+public class SyntheticGameGenerator {
+	private static final String CREATE_PLAYERS_SQL = "CREATE TABLE \"players\"(ID INTEGER PRIMARY KEY, FirstName varchar(255), LastName varchar(255), Email varchar(255), WeekEliminated INT)";
+
+	private static final String CREATE_KILLS_SQL = "CREATE TABLE kills(id int primary key, AssassinID int, TargetId int, WeekNumber int)";
+
+	private static final String CREATE_BONUSES_SQL = "CREATE TABLE bonuses(id int primary key, AssassinID int, TargetId int, WeekNumber int, BonusPoints int, BonusName varchar(255), BonusDescription varchar(255))";
+
+	private static final String INSERT_PLAYER_SQL = "INSERT INTO players (ID, FirstName, LastName, Email, WeekEliminated) VALUES (?, ?, ?, ?, ?)";
+
+	/** The number of kill and bonus rows written in each transaction */
+	private static final int WRITE_BATCH_SIZE = 10000;
+
+	/** The number of players in the game */
+	private final int playerCount;
+
+	/** The number of weeks of play */
+	private final int weekCount;
+
+	/** The average number of kills each active player makes per week */
+	private final double killsPerPlayerWeek;
+
+	/** The fraction of kills that also earn a bonus */
+	private final double bonusFraction;
+
+	/** The fraction of active players eliminated at the end of each week but the last */
+	private final double eliminationRate;
+
+	/** The seed that determines all generated data */
+	private final long seed;
+
+	/**
+	 * @param players The number of players in the game
+	 * @param weeks The number of weeks of play
+	 * @param killDensity The average number of kills each active player makes per week
+	 * @param bonuses The fraction of kills that also earn a bonus, from 0 to 1
+	 * @param eliminations The fraction of active players eliminated at the end of each week but the last, from 0 to 1
+	 * @param randomSeed The seed that determines all generated data
+	 */
+	public SyntheticGameGenerator(int players, int weeks, double killDensity, double bonuses, double eliminations, long randomSeed) {
+		if (players < 2 || weeks < 1 || killDensity < 0 || bonuses < 0 || bonuses > 1 || eliminations < 0 || eliminations >= 1) {
+			throw new RuntimeException("Invalid settings passed to SyntheticGameGenerator constructor");
+		}
+		playerCount = players;
+		weekCount = weeks;
+		killsPerPlayerWeek = killDensity;
+		bonusFraction = bonuses;
+		eliminationRate = eliminations;
+		seed = randomSeed;
+	}
+
+	/**
+	 * Writes a new database, replacing any existing file. The database is written to a temporary file in the same
+	 * directory and moved into place once it is complete, so the file never exists half written, even if generation
+	 * fails or the process is killed part way through
+	 * @param filename The database file to create
+	 * @return True for success
+	 */
+	public boolean generate(String filename) {
+		File databaseFile = new File(filename).getAbsoluteFile();
+		File partialFile;
+		try {
+			partialFile = File.createTempFile(databaseFile.getName() + ".", ".partial", databaseFile.getParentFile());
+		}
+		catch (IOException e) {
+			System.out.println("Unable to create a temporary file for database " + filename + ": " + e.getMessage());
+			return false;
+		}
+
+		boolean success = writeDatabase(partialFile.getPath());
+		if (success == true) {
+			try {
+				Files.move(partialFile.toPath(), databaseFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch (IOException e) {
+				System.out.println("Unable to move generated database into place at " + filename + ": " + e.getMessage());
+				success = false;
+			}
+		}
+		if (success == false) {
+			partialFile.delete();
+		}
+		return success;
+	}
+
+	/**
+	 * Writes the generated game data to a database
+	 * @param filename The database file to write, which must be empty or not exist
+	 * @return True for success
+	 */
+	private boolean writeDatabase(String filename) {
+		Random random = new Random(seed);
+
+		// Decide when each player is eliminated before writing anything, so kills are only made by and against
+		// players that are still in the game. Player IDs run from 1 to playerCount
+		int[] weekEliminated = new int[playerCount + 1];
+		int[] activeIds = new int[playerCount];
+		for (int i = 0; i < playerCount; ++i) {
+			activeIds[i] = i + 1;
+		}
+		int activeCount = playerCount;
+		int[][] weeklyActiveIds = new int[weekCount + 1][];
+		for (int week = 1; week <= weekCount; ++week) {
+			weeklyActiveIds[week] = Arrays.copyOf(activeIds, activeCount);
+			if (week == weekCount) {
+				break;
+			}
+
+			int eliminatedCount = Math.min(activeCount - 2, (int) (activeCount * eliminationRate));
+			for (int i = 0; i < eliminatedCount; ++i) {
+				int index = random.nextInt(activeCount);
+				weekEliminated[activeIds[index]] = week;
+				activeIds[index] = activeIds[--activeCount];
+			}
+		}
+
+		try (Connection dbConnection = DriverManager.getConnection("jdbc:sqlite:" + filename)) {
+			try (Statement dbStatement = dbConnection.createStatement()) {
+				dbStatement.execute(CREATE_PLAYERS_SQL);
+				dbStatement.execute(CREATE_KILLS_SQL);
+				dbStatement.execute(CREATE_BONUSES_SQL);
+			}
+
+			dbConnection.setAutoCommit(false);
+			try (PreparedStatement insert = dbConnection.prepareStatement(INSERT_PLAYER_SQL)) {
+				for (int id = 1; id <= playerCount; ++id) {
+					insert.setInt(1, id);
+					insert.setString(2, "First" + id);
+					insert.setString(3, "Last" + id);
+					insert.setString(4, "player" + id + "@example.com");
+					insert.setInt(5, weekEliminated[id]);
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+			dbConnection.commit();
+			dbConnection.setAutoCommit(true);
+
+			DatabaseWriter writer = new DatabaseWriter(dbConnection, WRITE_BATCH_SIZE);
+			for (int week = 1; week <= weekCount; ++week) {
+				int[] players = weeklyActiveIds[week];
+				long killCount = Math.round(players.length * killsPerPlayerWeek);
+				for (long i = 0; i < killCount; ++i) {
+					int assassinId = players[random.nextInt(players.length)];
+					int targetId = players[random.nextInt(players.length - 1)];
+					if (targetId == assassinId) {
+						targetId = players[players.length - 1];
+					}
+					if (writer.queueKill(assassinId, targetId, week) == false) {
+						return false;
+					}
+
+					if (random.nextDouble() < bonusFraction) {
+						Bonus bonus = new Bonus();
+						bonus.setTargetId(targetId);
+						bonus.setBonusPoints(random.nextInt(6) - 2);
+						bonus.setBonusName("Bonus " + random.nextInt(10));
+						bonus.setBonusDescription("A generated bonus");
+						if (writer.queueBonus(assassinId, week, bonus) == false) {
+							return false;
+						}
+					}
+				}
+			}
+			if (writer.flush() == false) {
+				return false;
+			}
+		}
+		catch (SQLException e) {
+			System.out.println("Error generating database " + filename + ": " + e.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Generates a database from the command line
+	 * @param args The database filename, player count, week count and kills per player per week, optionally followed
+	 *             by the bonus fraction, elimination rate and seed
+	 */
+	public static void main(String args[]) {
+		if (args.length < 4) {
+			System.out.println("Usage: SyntheticGameGenerator <database file> <players> <weeks> <kills per player per week> [bonus fraction] [elimination rate] [seed]");
+			System.exit(1);
+		}
+
+		SyntheticGameGenerator generator = new SyntheticGameGenerator(Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+			Double.parseDouble(args[3]), (args.length > 4) ? Double.parseDouble(args[4]) : 0.1,
+			(args.length > 5) ? Double.parseDouble(args[5]) : 0.2, (args.length > 6) ? Long.parseLong(args[6]) : 1);
+		long startTime = System.nanoTime();
+		if (generator.generate(args[0]) == false) {
+			System.exit(1);
+		}
+		System.out.println("Generated " + args[0] + " in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+	}
+}
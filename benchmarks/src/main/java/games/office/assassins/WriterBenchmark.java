@@ -0,0 +1,112 @@
+package games.office.assassins;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import games.office.assassins.config.DatabaseWriter;
+
+/**
+ * Measures how many kills per second can be written to a new database: batched into transactions by DatabaseWriter,
+ * against inserting one row at a time with autocommit, where every row is its own transaction. The DELETE journal mode
+ * is SQLite's default, and WAL is the write-ahead log set up by DatabaseWriter.enableWriteAheadLog() with full sync.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriterBenchmark {
+	/** The number of kills DatabaseWriter writes in each benchmark call */
+	private static final int BATCHED_KILL_COUNT = 10000;
+
+	/** The number of kills in each DatabaseWriter transaction */
+	private static final int BATCH_SIZE = 1000;
+
+	/** The number of kills inserted with autocommit in each benchmark call, kept low since each one syncs the file */
+	private static final int AUTOCOMMIT_KILL_COUNT = 100;
+
+	/** The journal mode of the database */
+	@Param({"DELETE", "WAL"})
+	public String journalMode;
+
+	private File databaseFile;
+
+	private Connection dbConnection;
+
+	private int nextPlayerId;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, SQLException {
+		databaseFile = File.createTempFile("office-assassins-writer", ".db");
+		dbConnection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getPath());
+		try (Statement dbStatement = dbConnection.createStatement()) {
+			dbStatement.execute("CREATE TABLE kills(id int primary key, AssassinID int, TargetId int, WeekNumber int)");
+			dbStatement.execute("CREATE TABLE bonuses(id int primary key, AssassinID int, TargetId int, WeekNumber int, BonusPoints int, BonusName varchar(255), BonusDescription varchar(255))");
+		}
+		if (journalMode.equals("WAL") && DatabaseWriter.enableWriteAheadLog(dbConnection, true) == false) {
+			throw new RuntimeException("Unable to enable write-ahead logging for " + databaseFile);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		dbConnection.close();
+		databaseFile.delete();
+		new File(databaseFile.getPath() + "-wal").delete();
+		new File(databaseFile.getPath() + "-shm").delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCHED_KILL_COUNT)
+	public long batchedWriter() {
+		DatabaseWriter writer = new DatabaseWriter(dbConnection, BATCH_SIZE);
+		for (int i = 0; i < BATCHED_KILL_COUNT; ++i) {
+			if (writer.queueKill(nextPlayerId++, nextPlayerId, 1) == false) {
+				throw new RuntimeException("Failed to write a batch of kills");
+			}
+		}
+		if (writer.flush() == false) {
+			throw new RuntimeException("Failed to write the last batch of kills");
+		}
+		return writer.getCommittedEventCount();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(AUTOCOMMIT_KILL_COUNT)
+	public int autocommitInserts() throws SQLException {
+		int inserted = 0;
+		try (PreparedStatement insert = dbConnection.prepareStatement("INSERT INTO kills (AssassinId, TargetId, WeekNumber) VALUES (?, ?, ?)")) {
+			for (int i = 0; i < AUTOCOMMIT_KILL_COUNT; ++i) {
+				insert.setInt(1, nextPlayerId++);
+				insert.setInt(2, nextPlayerId);
+				insert.setInt(3, 1);
+				inserted += insert.executeUpdate();
+			}
+		}
+		return inserted;
+	}
+}
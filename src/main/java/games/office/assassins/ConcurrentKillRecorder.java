@@ -0,0 +1,182 @@
+package games.office.assassins;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import games.office.assassins.model.Bonus;
+import games.office.assassins.model.Player;
+
+/**
+ * Accepts kill and bonus reports from many threads at once. Player and Score are plain mutable objects that are not
+ * safe to share, so reports are not applied to them directly. Instead each report updates lock-free per-player counters,
+ * which can be read at any time for live totals, and is added to a lock-free queue. The queued reports are applied to
+ * the Player and Score model in a batch by applyPendingEvents().
+ *
+ * The set of players is fixed when the recorder is created. Reports that reference an unknown player are rejected.
+ * As with loading from the database, kills made by an eliminated player after their elimination week are recorded as
+ * a death for the target but are not credited to the assassin.
+ */
+public class ConcurrentKillRecorder {
+	/** A single kill or bonus report waiting to be applied to the player data */
+	private static class Event {
+		final int assassinId;
+		final int targetId;
+		final int weekNumber;
+		final boolean creditAssassin;
+		final Bonus bonus;
+
+		Event(int assassin, int target, int week, boolean credit, Bonus earnedBonus) {
+			assassinId = assassin;
+			targetId = target;
+			weekNumber = week;
+			creditAssassin = credit;
+			bonus = earnedBonus;
+		}
+	}
+
+	/** A map containing all player and game data. The player ID is the key */
+	private final HashMap<Integer, Player> playerData;
+
+	/** Maps each player ID to its slot in the counter arrays. Never modified after construction */
+	private final HashMap<Integer, Integer> playerSlots;
+
+	/** The elimination week of the player in each slot, copied at construction so it can be read without locking */
+	private final int[] weekEliminated;
+
+	/** Live total score of the player in each slot, including reports that have not been applied yet */
+	private final AtomicIntegerArray totalScores;
+
+	/** Live total kills of the player in each slot, including reports that have not been applied yet */
+	private final AtomicIntegerArray totalKills;
+
+	/** Live total deaths of the player in each slot, including reports that have not been applied yet */
+	private final AtomicIntegerArray totalDeaths;
+
+	/** Reports that have been recorded but not yet applied to the player data */
+	private final ConcurrentLinkedQueue<Event> pendingEvents = new ConcurrentLinkedQueue();
+
+	/**
+	 * Creates a recorder for a set of players. The live totals start at each player's current totals. The player data
+	 * must not be modified by anything other than applyPendingEvents() while the recorder is in use.
+	 * @param data The player data that recorded events will be applied to
+	 */
+	public ConcurrentKillRecorder(HashMap<Integer, Player> data) {
+		if (data == null || data.isEmpty()) {
+			throw new RuntimeException("Null or empty player data passed to ConcurrentKillRecorder constructor");
+		}
+		playerData = data;
+
+		playerSlots = new HashMap();
+		weekEliminated = new int[playerData.size()];
+		totalScores = new AtomicIntegerArray(playerData.size());
+		totalKills = new AtomicIntegerArray(playerData.size());
+		totalDeaths = new AtomicIntegerArray(playerData.size());
+
+		int slot = 0;
+		for (Player p : playerData.values()) {
+			playerSlots.put(p.getId(), slot);
+			weekEliminated[slot] = p.getWeekEliminated();
+			totalScores.set(slot, p.getTotalScore());
+			totalKills.set(slot, p.getTotalKills());
+			totalDeaths.set(slot, p.getTotalDeaths());
+			slot++;
+		}
+	}
+
+	/**
+	 * Records a kill. Safe to call from any number of threads at once.
+	 * @param assassinId The ID of the player that made the kill
+	 * @param targetId The ID of the player that was killed
+	 * @param weekNumber The week of play that the kill took place in
+	 * @return False if either player is unknown, in which case nothing is recorded
+	 */
+	public boolean recordKill(int assassinId, int targetId, int weekNumber) {
+		Integer assassinSlot = playerSlots.get(assassinId);
+		Integer targetSlot = playerSlots.get(targetId);
+		if (assassinSlot == null || targetSlot == null) {
+			return false;
+		}
+
+		// Eliminated players can still make kills in the game, but those kills do not get
+		// added to their scores. Deaths will always be added to a player's score.
+		int eliminated = weekEliminated[assassinSlot];
+		boolean creditAssassin = (eliminated == 0 || eliminated >= weekNumber);
+		if (creditAssassin) {
+			totalKills.incrementAndGet(assassinSlot);
+			totalScores.incrementAndGet(assassinSlot);
+		}
+		totalDeaths.incrementAndGet(targetSlot);
+		totalScores.decrementAndGet(targetSlot);
+
+		pendingEvents.add(new Event(assassinId, targetId, weekNumber, creditAssassin, null));
+		return true;
+	}
+
+	/**
+	 * Records a bonus earned by a player. Safe to call from any number of threads at once. The bonus must not be
+	 * modified after it has been recorded.
+	 * @param playerId The ID of the player that earned the bonus
+	 * @param weekNumber The week of play that the bonus was earned in
+	 * @param bonus The bonus earned
+	 * @return False if the player is unknown or the bonus is null, in which case nothing is recorded
+	 */
+	public boolean recordBonus(int playerId, int weekNumber, Bonus bonus) {
+		Integer slot = playerSlots.get(playerId);
+		if (slot == null || bonus == null) {
+			return false;
+		}
+
+		totalScores.addAndGet(slot, bonus.getBonusPoints());
+		pendingEvents.add(new Event(playerId, 0, weekNumber, false, bonus));
+		return true;
+	}
+
+	/** Returns the live total score of a player, or 0 if the player is unknown */
+	public int getTotalScore(int playerId) {
+		Integer slot = playerSlots.get(playerId);
+		return (slot == null) ? 0 : totalScores.get(slot);
+	}
+
+	/** Returns the live total kills of a player, or 0 if the player is unknown */
+	public int getTotalKills(int playerId) {
+		Integer slot = playerSlots.get(playerId);
+		return (slot == null) ? 0 : totalKills.get(slot);
+	}
+
+	/** Returns the live total deaths of a player, or 0 if the player is unknown */
+	public int getTotalDeaths(int playerId) {
+		Integer slot = playerSlots.get(playerId);
+		return (slot == null) ? 0 : totalDeaths.get(slot);
+	}
+
+	/** Returns the number of reports that have been recorded but not yet applied. Walks the queue, so avoid hot loops */
+	public int getPendingEventCount() {
+		return pendingEvents.size();
+	}
+
+	/**
+	 * Applies all recorded reports to the Player and Score model through the same Score methods used when loading
+	 * from the database. Recording may continue on other threads while this runs; reports recorded after the queue
+	 * has been drained are left for the next call. Only one thread applies events at a time, and nothing else may
+	 * read the player data while this runs.
+	 * @return The number of reports applied
+	 */
+	public synchronized int applyPendingEvents() {
+		int applied = 0;
+		Event event;
+		while ((event = pendingEvents.poll()) != null) {
+			if (event.bonus != null) {
+				GameMaster.getWeekScore(playerData.get(event.assassinId), event.weekNumber).addBonus(event.bonus);
+			}
+			else {
+				if (event.creditAssassin) {
+					GameMaster.getWeekScore(playerData.get(event.assassinId), event.weekNumber).addTargetKilled(event.targetId);
+				}
+				GameMaster.getWeekScore(playerData.get(event.targetId), event.weekNumber).addAssassinKiller(event.assassinId);
+			}
+			applied++;
+		}
+		return applied;
+	}
+}
@@ -0,0 +1,481 @@
+package games.office.assassins;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Delivers the message files written by WeeklySummaryAssignment in the EML_PER_PLAYER output mode to an SMTP server.
+ *
+ * Messages are read from disk into a bounded queue, so reading stops whenever the senders fall behind, and are sent
+ * by connectionCount threads that each hold their own SMTP connection. A message that fails with a temporary error,
+ * or because the connection failed, is retried on a new connection after an exponentially growing delay. Messages the
+ * server rejects outright are not retried.
+ *
+ * The name of every delivered message file is appended to a delivery log as soon as the server accepts it. Running
+ * the delivery again with the same log skips those messages, so an interrupted run can be resumed. A message that was
+ * accepted just before the run was interrupted may be sent twice, but a message is never skipped without having been
+ * delivered.
+ */
+public class EmailDelivery {
+	/** A message file read from disk, along with its envelope addresses */
+	private static class OutgoingMessage {
+		final String name;
+		final String sender;
+		final String recipient;
+		final byte[] data;
+
+		OutgoingMessage(String fileName, String senderAddress, String recipientAddress, byte[] messageData) {
+			name = fileName;
+			sender = senderAddress;
+			recipient = recipientAddress;
+			data = messageData;
+		}
+	}
+
+	/** The host name or address of the SMTP server */
+	@Getter
+	private final String smtpHost;
+
+	/** The port of the SMTP server */
+	@Getter
+	private final int smtpPort;
+
+	/** The name this client gives the server when it connects */
+	@Getter @Setter
+	private String heloName = "localhost";
+
+	/** The number of connections used to send messages at the same time */
+	@Getter @Setter
+	private int connectionCount = 4;
+
+	/** The number of messages read from disk that may be waiting to be sent */
+	@Getter @Setter
+	private int queueCapacity = 64;
+
+	/** The number of times a message is tried before giving up on it */
+	@Getter @Setter
+	private int maxAttempts = 5;
+
+	/** The delay before the first retry of a message. Each further retry waits twice as long as the one before */
+	@Getter @Setter
+	private long initialBackoffMillis = 500;
+
+	/** The longest delay between retries of a message */
+	@Getter @Setter
+	private long maxBackoffMillis = 30000;
+
+	/** How long to wait for the server to connect or reply before treating the connection as failed */
+	@Getter @Setter
+	private int socketTimeoutMillis = 30000;
+
+	/** The number of messages sent over a connection before it is replaced, as many servers limit this */
+	@Getter @Setter
+	private int messagesPerConnection = 100;
+
+	/** Set once every message has been queued, so that the sending threads know to stop when the queue is empty */
+	private volatile boolean queueingFinished;
+
+	/** The number of messages delivered in the last run */
+	private final AtomicInteger deliveredCount = new AtomicInteger();
+
+	/** The number of messages in the last run that were skipped because the log showed they were already delivered */
+	private final AtomicInteger skippedCount = new AtomicInteger();
+
+	/** The number of messages in the last run that could not be read or delivered */
+	private final AtomicInteger failedCount = new AtomicInteger();
+
+	/** The number of retries made in the last run */
+	private final AtomicInteger retryCount = new AtomicInteger();
+
+	/** The time from the first send attempt to acceptance of each message delivered in the last run, including any retries */
+	private long[] latencyNanos = new long[0];
+
+	/** The number of entries used in latencyNanos */
+	private int latencyCount = 0;
+
+	/** How long the last run took */
+	private long runNanos = 0;
+
+	/**
+	 * @param host The host name or address of the SMTP server
+	 * @param port The port of the SMTP server
+	 */
+	public EmailDelivery(String host, int port) {
+		if (host == null || port <= 0) {
+			throw new RuntimeException("Invalid SMTP server passed to EmailDelivery constructor: " + host + ":" + port);
+		}
+		smtpHost = host;
+		smtpPort = port;
+	}
+
+	/**
+	 * Delivers every .eml message file in a directory that is not already listed in the delivery log. Files are
+	 * queued in name order, though with several connections they may be delivered in a slightly different order.
+	 * @param messageDirectory The directory holding the message files
+	 * @param logFilename The delivery log to skip delivered messages from and append newly delivered messages to.
+	 *                    Created if it does not exist
+	 * @return True if every message in the directory has now been delivered
+	 */
+	public boolean deliverDirectory(String messageDirectory, String logFilename) {
+		resetStatistics();
+		long runStart = System.nanoTime();
+
+		Path logPath = Paths.get(logFilename);
+		HashSet<String> alreadyDelivered = readDeliveryLog(logPath);
+		if (alreadyDelivered == null) {
+			return false;
+		}
+
+		List<Path> messageFiles;
+		try (Stream<Path> files = Files.list(Paths.get(messageDirectory))) {
+			messageFiles = files.filter(f -> f.getFileName().toString().endsWith(".eml")).sorted().collect(Collectors.toList());
+		}
+		catch (IOException e) {
+			System.out.println("Unable to list message directory " + messageDirectory + ": " + e.getMessage());
+			return false;
+		}
+
+		BlockingQueue<OutgoingMessage> queue = new ArrayBlockingQueue(Math.max(1, queueCapacity));
+		try (BufferedWriter log = Files.newBufferedWriter(logPath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			queueingFinished = false;
+			ArrayList<Thread> senders = new ArrayList();
+			for (int i = 0; i < Math.max(1, connectionCount); ++i) {
+				Thread sender = new Thread(() -> sendQueuedMessages(queue, log), "smtp-sender-" + i);
+				senders.add(sender);
+				sender.start();
+			}
+
+			try {
+				for (Path file : messageFiles) {
+					if (alreadyDelivered.contains(file.getFileName().toString())) {
+						skippedCount.incrementAndGet();
+						continue;
+					}
+
+					OutgoingMessage message = readMessage(file);
+					if (message == null) {
+						failedCount.incrementAndGet();
+						continue;
+					}
+					if (queueMessage(queue, message, senders) == false) {
+						System.out.println("Every sending thread has stopped. Messages not yet delivered will be sent on the next run");
+						break;
+					}
+				}
+			}
+			catch (InterruptedException e) {
+				System.out.println("Interrupted while queueing messages. Messages not yet delivered will be sent on the next run");
+				for (Thread sender : senders) {
+					sender.interrupt();
+				}
+				Thread.currentThread().interrupt();
+			}
+			finally {
+				queueingFinished = true;
+			}
+
+			for (Thread sender : senders) {
+				joinUninterruptibly(sender);
+			}
+		}
+		catch (IOException e) {
+			System.out.println("Unable to write delivery log " + logFilename + ": " + e.getMessage());
+			return false;
+		}
+		finally {
+			runNanos = System.nanoTime() - runStart;
+		}
+
+		return deliveredCount.get() + skippedCount.get() == messageFiles.size();
+	}
+
+	/** Returns the number of messages delivered in the last run */
+	public int getDeliveredCount() {
+		return deliveredCount.get();
+	}
+
+	/** Returns the number of messages in the last run that had already been delivered by an earlier run */
+	public int getSkippedCount() {
+		return skippedCount.get();
+	}
+
+	/** Returns the number of messages in the last run that could not be read or delivered */
+	public int getFailedCount() {
+		return failedCount.get();
+	}
+
+	/** Returns the number of retries made in the last run */
+	public int getRetryCount() {
+		return retryCount.get();
+	}
+
+	/**
+	 * Returns a percentile of the delivery latencies of the last run
+	 * @param percentile The percentile to return, from 0 to 100
+	 * @return The latency in microseconds, or 0 if nothing was delivered
+	 */
+	public synchronized long getLatencyPercentileMicros(double percentile) {
+		if (latencyCount == 0) {
+			return 0;
+		}
+
+		long[] sorted = Arrays.copyOf(latencyNanos, latencyCount);
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100.0 * latencyCount) - 1;
+		return sorted[Math.max(0, Math.min(latencyCount - 1, index))] / 1000;
+	}
+
+	/** Prints the throughput and latency of the last run to the screen */
+	public void printStatistics() {
+		long runMillis = runNanos / 1000000;
+		System.out.println("Delivered " + getDeliveredCount() + " messages in " + runMillis + " ms (" +
+			(runMillis == 0 ? 0 : getDeliveredCount() * 1000L / runMillis) + " messages/s), " + getSkippedCount() +
+			" already delivered, " + getFailedCount() + " failed, " + getRetryCount() + " retries");
+		System.out.println("Delivery latency: p50 " + getLatencyPercentileMicros(50) / 1000.0 + " ms, p90 " +
+			getLatencyPercentileMicros(90) / 1000.0 + " ms, p99 " + getLatencyPercentileMicros(99) / 1000.0 + " ms, max " +
+			getLatencyPercentileMicros(100) / 1000.0 + " ms");
+	}
+
+	/**
+	 * Adds a message to the queue, waiting for room for as long as any sending thread is still running to make some
+	 * @return False if every sending thread has stopped, in which case the message is not queued
+	 */
+	private static boolean queueMessage(BlockingQueue<OutgoingMessage> queue, OutgoingMessage message, List<Thread> senders) throws InterruptedException {
+		while (queue.offer(message, 100, TimeUnit.MILLISECONDS) == false) {
+			boolean sending = false;
+			for (Thread sender : senders) {
+				sending |= sender.isAlive();
+			}
+			if (sending == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Sends messages from the queue until it is empty and no more will be added. Run by each sending thread */
+	private void sendQueuedMessages(BlockingQueue<OutgoingMessage> queue, Writer log) {
+		SmtpConnection connection = null;
+		try {
+			while (true) {
+				OutgoingMessage message = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (message == null) {
+					if (queueingFinished && queue.isEmpty()) {
+						return;
+					}
+					continue;
+				}
+				connection = sendMessage(connection, message, log);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			if (connection != null) {
+				connection.close();
+			}
+		}
+	}
+
+	/**
+	 * Sends one message, retrying with backoff on temporary failures
+	 * @param connection The sending thread's open connection, or null if it has none
+	 * @param message The message to send
+	 * @param log The delivery log to record the message in once it is accepted
+	 * @return The connection to use for the next message, or null if there is none
+	 */
+	private SmtpConnection sendMessage(SmtpConnection connection, OutgoingMessage message, Writer log) throws InterruptedException {
+		long start = System.nanoTime();
+		for (int attempt = 1; ; ++attempt) {
+			String error;
+			try {
+				if (connection != null && connection.getMessageCount() >= messagesPerConnection) {
+					connection.close();
+					connection = null;
+				}
+				if (connection == null) {
+					connection = new SmtpConnection(smtpHost, smtpPort, heloName, socketTimeoutMillis);
+				}
+
+				connection.sendMessage(message.sender, message.recipient, message.data);
+				recordDelivery(message, log, System.nanoTime() - start);
+				return connection;
+			}
+			catch (SmtpConnection.SmtpException e) {
+				if (e.isPermanent()) {
+					System.out.println("Message " + message.name + " to " + message.recipient + " was rejected: " + e.getMessage());
+					failedCount.incrementAndGet();
+					return connection;
+				}
+				error = e.getMessage();
+			}
+			catch (IOException e) {
+				error = e.getMessage();
+			}
+
+			// The failure may have left the connection in an unknown state, so the retry starts on a new one
+			if (connection != null) {
+				connection.close();
+				connection = null;
+			}
+
+			if (attempt >= maxAttempts) {
+				System.out.println("Giving up on message " + message.name + " after " + attempt + " attempts: " + error);
+				failedCount.incrementAndGet();
+				return null;
+			}
+
+			retryCount.incrementAndGet();
+			long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+			Thread.sleep(backoff);
+		}
+	}
+
+	/** Records an accepted message in the delivery log and the run statistics */
+	private void recordDelivery(OutgoingMessage message, Writer log, long latency) {
+		synchronized (log) {
+			try {
+				log.write(message.name);
+				log.write('\n');
+				log.flush();
+			}
+			catch (IOException e) {
+				// The message was delivered, so it still counts. It will be sent again if the run is resumed
+				System.out.println("Unable to record delivery of " + message.name + ": " + e.getMessage());
+			}
+		}
+
+		deliveredCount.incrementAndGet();
+		synchronized (this) {
+			if (latencyCount == latencyNanos.length) {
+				latencyNanos = Arrays.copyOf(latencyNanos, Math.max(64, latencyCount * 2));
+			}
+			latencyNanos[latencyCount++] = latency;
+		}
+	}
+
+	/** Clears the statistics of the previous run */
+	private synchronized void resetStatistics() {
+		deliveredCount.set(0);
+		skippedCount.set(0);
+		failedCount.set(0);
+		retryCount.set(0);
+		latencyCount = 0;
+		runNanos = 0;
+	}
+
+	/**
+	 * Reads the names of the messages recorded in a delivery log
+	 * @return The message file names, which is empty if the log does not exist, or null if it could not be read
+	 */
+	private static HashSet<String> readDeliveryLog(Path logPath) {
+		HashSet<String> delivered = new HashSet();
+		if (Files.exists(logPath) == false) {
+			return delivered;
+		}
+
+		try {
+			for (String line : Files.readAllLines(logPath, StandardCharsets.UTF_8)) {
+				if (line.isEmpty() == false) {
+					delivered.add(line);
+				}
+			}
+		}
+		catch (IOException e) {
+			System.out.println("Unable to read delivery log " + logPath + ": " + e.getMessage());
+			return null;
+		}
+		return delivered;
+	}
+
+	/**
+	 * Reads a message file and takes its envelope addresses from the From and To headers
+	 * @return The message, or null if it could not be read or is missing either header
+	 */
+	private static OutgoingMessage readMessage(Path file) {
+		byte[] data;
+		try {
+			data = Files.readAllBytes(file);
+		}
+		catch (IOException e) {
+			System.out.println("Unable to read message file " + file + ": " + e.getMessage());
+			return null;
+		}
+
+		String sender = null;
+		String recipient = null;
+		int lineStart = 0;
+		while (lineStart < data.length) {
+			int lineEnd = lineStart;
+			while (lineEnd < data.length && data[lineEnd] != '\n') {
+				lineEnd++;
+			}
+			String line = new String(data, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8).trim();
+
+			// The headers end at the first empty line
+			if (line.isEmpty()) {
+				break;
+			}
+			if (line.regionMatches(true, 0, "From:", 0, 5)) {
+				sender = extractAddress(line.substring(5));
+			}
+			else if (line.regionMatches(true, 0, "To:", 0, 3)) {
+				recipient = extractAddress(line.substring(3));
+			}
+			lineStart = lineEnd + 1;
+		}
+
+		if (sender == null || recipient == null) {
+			System.out.println("Message file " + file + " is missing a From or To header");
+			return null;
+		}
+		return new OutgoingMessage(file.getFileName().toString(), sender, recipient, data);
+	}
+
+	/** Returns the address from a header value, which is either a bare address or a name followed by <address> */
+	private static String extractAddress(String headerValue) {
+		int open = headerValue.indexOf('<');
+		int close = headerValue.lastIndexOf('>');
+		if (open >= 0 && close > open) {
+			return headerValue.substring(open + 1, close).trim();
+		}
+		return headerValue.trim();
+	}
+
+	/** Waits for a thread to finish, even if this thread is interrupted while waiting */
+	private static void joinUninterruptibly(Thread thread) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				thread.join();
+				break;
+			}
+			catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,321 @@
+package games.office.assassins;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+
+import lombok.Getter;
+
+import games.office.assassins.model.Player;
+
+/**
+ * Writes rendered player e-mails to disk in one of the formats described by EmailOutputMode. All text is encoded as
+ * UTF-8.
+ *
+ * Output is never written in place. The single file and mbox modes write to a temporary file next to the output file
+ * and only replace the output file when commit() is called, so a failed run leaves any previous output untouched. In
+ * the per-player mode each message file is written to a temporary file and renamed once it is complete.
+ *
+ * formatEmail() may be called from several threads at once so that encoding can be done alongside rendering. Each
+ * thread formats into its own buffers, which are kept for as long as the writer, so the returned array is the only
+ * allocation per e-mail once the buffers have grown to fit. The write methods must only be called from one thread.
+ */
+public class EmailFileWriter implements AutoCloseable {
+	/** One thread's buffers for formatting and encoding e-mails, reused for every e-mail that thread formats */
+	private static class FormatBuffers {
+		/** The formatted text of the current e-mail */
+		final StringBuilder text = new StringBuilder(8192);
+
+		/** Replaces unpaired surrogates with '?', as String.getBytes() does */
+		final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		/** A copy of text, so that the encoder can work on an array instead of one char at a time */
+		char[] chars = new char[8192];
+
+		ByteBuffer bytes = ByteBuffer.allocate(8192 * 3);
+
+		/** Encodes text as UTF-8 and returns an array of exactly the encoded length */
+		byte[] encodeText() {
+			int length = text.length();
+			if (chars.length < length) {
+				chars = new char[Math.max(length, chars.length * 2)];
+			}
+			text.getChars(0, length, chars, 0);
+
+			int maxBytes = (int) Math.ceil(length * (double) encoder.maxBytesPerChar());
+			if (bytes.capacity() < maxBytes) {
+				bytes = ByteBuffer.allocate(Math.max(maxBytes, bytes.capacity() * 2));
+			}
+			bytes.clear();
+			encoder.reset();
+			encoder.encode(CharBuffer.wrap(chars, 0, length), bytes, true);
+			encoder.flush(bytes);
+			return Arrays.copyOf(bytes.array(), bytes.position());
+		}
+	}
+
+	/** Formats the Date header of each message */
+	private static final DateTimeFormatter DATE_HEADER_FORMAT = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+	/** Formats the date on the "From " line that starts each message in an mbox file */
+	private static final DateTimeFormatter MBOX_DATE_FORMAT = DateTimeFormatter.ofPattern("EEE MMM ppd HH:mm:ss yyyy", Locale.US);
+
+	/** The format that e-mails are written in */
+	@Getter
+	private final EmailOutputMode mode;
+
+	/** The output file, or the output directory when writing one file per player */
+	private final Path outputPath;
+
+	/** The file being written in place of outputPath until commit() is called. Null when writing one file per player */
+	private final Path tempPath;
+
+	/** The open temporary file. Null when writing one file per player */
+	private FileChannel channel;
+
+	/** The address that messages are sent from */
+	private final String senderAddress;
+
+	/** The value of the Date header of every message */
+	private final String dateHeader;
+
+	/** The line that starts each message in an mbox file */
+	private final String mboxFromLine;
+
+	/** The number of e-mails written so far */
+	@Getter
+	private int emailCount = 0;
+
+	/** The number of bytes written so far */
+	@Getter
+	private long bytesWritten = 0;
+
+	/** True once the output has been committed */
+	private boolean committed = false;
+
+	/** The buffers of each thread that formats e-mails */
+	private final ThreadLocal<FormatBuffers> formatBuffers = ThreadLocal.withInitial(FormatBuffers::new);
+
+	/**
+	 * Prepares to write e-mails. For the per-player mode the output directory is created if needed, otherwise the
+	 * temporary output file is created.
+	 * @param outputMode The format to write e-mails in
+	 * @param outputName The output filename, or the output directory name for the per-player mode
+	 * @param sender The address that messages are sent from. Not used by the single file mode
+	 * @param sentDate The date given to every message. Not used by the single file mode
+	 */
+	public EmailFileWriter(EmailOutputMode outputMode, String outputName, String sender, ZonedDateTime sentDate) throws IOException {
+		if (outputMode == null || outputName == null) {
+			throw new RuntimeException("Null output mode or name passed to EmailFileWriter constructor");
+		}
+		mode = outputMode;
+		outputPath = Paths.get(outputName);
+		senderAddress = sender;
+		dateHeader = DATE_HEADER_FORMAT.format(sentDate);
+		mboxFromLine = "From " + sender + " " + MBOX_DATE_FORMAT.format(sentDate) + "\n";
+
+		if (mode == EmailOutputMode.EML_PER_PLAYER) {
+			Files.createDirectories(outputPath);
+			tempPath = null;
+		}
+		else {
+			tempPath = Paths.get(outputName + ".tmp");
+			channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		}
+	}
+
+	/**
+	 * Formats a player's e-mail for writing. Safe to call from several threads at once.
+	 * @param player The player the e-mail is addressed to
+	 * @param subject The subject line
+	 * @param body The body text, with lines separated by '\n'. Only read during the call, so may be a reused buffer
+	 * @return The UTF-8 encoded e-mail, ready to be passed to write()
+	 */
+	public byte[] formatEmail(Player player, String subject, CharSequence body) {
+		FormatBuffers buffers = formatBuffers.get();
+		StringBuilder text = buffers.text;
+		text.setLength(0);
+		String address = String.valueOf(player.getEmail());
+
+		if (mode == EmailOutputMode.SINGLE_FILE) {
+			text.append(address).append('\n').append(subject).append('\n').append(body);
+			text.append(PlayerEmailRenderer.EMAIL_SEPARATOR);
+			return buffers.encodeText();
+		}
+
+		// Message files use CRLF line endings, while mbox files use the local '\n' convention
+		String newline = (mode == EmailOutputMode.EML_PER_PLAYER) ? "\r\n" : "\n";
+		if (mode == EmailOutputMode.MBOX) {
+			text.append(mboxFromLine);
+		}
+		text.append("From: ").append(senderAddress).append(newline);
+		text.append("To: ").append(address).append(newline);
+		text.append("Subject: ").append(encodeHeader(subject)).append(newline);
+		text.append("Date: ").append(dateHeader).append(newline);
+		text.append("MIME-Version: 1.0").append(newline);
+		text.append("Content-Type: text/plain; charset=UTF-8").append(newline);
+		text.append("Content-Transfer-Encoding: 8bit").append(newline);
+		text.append(newline);
+
+		int lineStart = 0;
+		while (lineStart < body.length()) {
+			int lineEnd = lineStart;
+			while (lineEnd < body.length() && body.charAt(lineEnd) != '\n') {
+				lineEnd++;
+			}
+			// mboxrd quoting: a body line that looks like a message separator gets one more '>' in front of it
+			if (mode == EmailOutputMode.MBOX && isMboxFromLine(body, lineStart, lineEnd)) {
+				text.append('>');
+			}
+			text.append(body, lineStart, lineEnd).append(newline);
+			lineStart = lineEnd + 1;
+		}
+
+		// Messages in an mbox file are separated by an empty line
+		if (mode == EmailOutputMode.MBOX) {
+			text.append('\n');
+		}
+		return buffers.encodeText();
+	}
+
+	/**
+	 * Writes a block of formatted e-mails in order. The single file and mbox modes hand the whole block to the file
+	 * channel as one gathering write.
+	 * @param playerIds The ID of the player each e-mail belongs to
+	 * @param emails The e-mails from formatEmail(). Null entries are skipped
+	 * @param count The number of entries to write from the start of each array
+	 */
+	public void write(int[] playerIds, byte[][] emails, int count) throws IOException {
+		if (committed) {
+			throw new IOException("E-mails have already been committed to " + outputPath);
+		}
+
+		if (mode == EmailOutputMode.EML_PER_PLAYER) {
+			for (int i = 0; i < count; ++i) {
+				if (emails[i] != null) {
+					writeMessageFile(outputPath.resolve("player_" + playerIds[i] + ".eml"), emails[i]);
+				}
+			}
+			return;
+		}
+
+		ByteBuffer[] buffers = new ByteBuffer[count];
+		int bufferCount = 0;
+		long blockBytes = 0;
+		for (int i = 0; i < count; ++i) {
+			if (emails[i] != null) {
+				buffers[bufferCount++] = ByteBuffer.wrap(emails[i]);
+				blockBytes += emails[i].length;
+			}
+		}
+
+		// A gathering write may stop early, so keep going from the first buffer that still has data left
+		long remaining = blockBytes;
+		int first = 0;
+		while (remaining > 0) {
+			remaining -= channel.write(buffers, first, bufferCount - first);
+			while (first < bufferCount && buffers[first].hasRemaining() == false) {
+				first++;
+			}
+		}
+
+		emailCount += bufferCount;
+		bytesWritten += blockBytes;
+	}
+
+	/**
+	 * Finishes writing, replacing any existing output file with the newly written one. Does nothing more in the
+	 * per-player mode, where each file was already moved into place as it was written.
+	 */
+	public void commit() throws IOException {
+		if (committed) {
+			return;
+		}
+
+		if (channel != null) {
+			channel.close();
+			channel = null;
+			Files.move(tempPath, outputPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		committed = true;
+	}
+
+	/** Closes the output. If commit() was not called, the temporary file is deleted and the output is left untouched */
+	@Override
+	public void close() throws IOException {
+		if (committed) {
+			return;
+		}
+
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+		if (tempPath != null) {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	/** Writes a single message file through a temporary file so that a partial message is never left behind */
+	private void writeMessageFile(Path messagePath, byte[] message) throws IOException {
+		Path messageTempPath = Paths.get(messagePath + ".tmp");
+		try (FileChannel messageChannel = FileChannel.open(messageTempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buffer = ByteBuffer.wrap(message);
+			while (buffer.hasRemaining()) {
+				messageChannel.write(buffer);
+			}
+		}
+		catch (IOException e) {
+			Files.deleteIfExists(messageTempPath);
+			throw e;
+		}
+
+		Files.move(messageTempPath, messagePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		emailCount++;
+		bytesWritten += message.length;
+	}
+
+	/** Encodes a header value as an RFC 2047 encoded-word if it contains anything other than printable ASCII */
+	private static String encodeHeader(String value) {
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c < 0x20 || c > 0x7e) {
+				return "=?UTF-8?B?" + Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8)) + "?=";
+			}
+		}
+		return value;
+	}
+
+	/** Returns true if a body line matches ">*From ", which mbox readers could mistake for the start of a message */
+	private static boolean isMboxFromLine(CharSequence body, int lineStart, int lineEnd) {
+		int i = lineStart;
+		while (i < lineEnd && body.charAt(i) == '>') {
+			i++;
+		}
+		if (i + 5 > lineEnd) {
+			return false;
+		}
+		for (int j = 0; j < 5; ++j) {
+			if (body.charAt(i + j) != "From ".charAt(j)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
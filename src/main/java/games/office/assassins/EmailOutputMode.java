@@ -0,0 +1,15 @@
+package games.office.assassins;
+
+/**
+ * The ways that the weekly player e-mails can be written to disk
+ */
+public enum EmailOutputMode {
+	/** Every e-mail in one plain text file, each starting with the address and subject lines. Must be split by hand */
+	SINGLE_FILE,
+
+	/** One RFC 822 message file per player, named player_<id>.eml, in the output directory */
+	EML_PER_PLAYER,
+
+	/** Every e-mail as an RFC 822 message in a single mbox file, which most mail clients can import */
+	MBOX
+}
@@ -0,0 +1,264 @@
+package games.office.assassins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import java.util.HashMap;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import games.office.assassins.config.PooledConnection;
+import games.office.assassins.model.Bonus;
+import games.office.assassins.model.IntList;
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * A saved copy of the loaded player data model along with a high-water mark for each of the kills and bonuses tables.
+ * Restoring a snapshot allows a later run to only read and apply the rows that were added to the database since the
+ * snapshot was taken, instead of rebuilding every Score from scratch.
+ *
+ * The high-water marks use the SQLite rowid of each table, as the id columns of the kills and bonuses tables are not
+ * guaranteed to be filled in. The number of rows applied is kept alongside each mark so that deleted rows can be
+ * detected. Rows that reference a player missing from the players table are skipped but still count towards the
+ * marks, so the number of skipped rows is kept as well, and the snapshot is discarded once players are added while
+ * any rows were skipped. Edits made in place to existing kill or bonus rows can not be detected, and require the
+ * snapshot file to be deleted so that a full reload takes place.
+ */
+@Getter
+public class GameDataSnapshot {
+	/** Changed whenever the layout written by writeToFile() changes so that older snapshots are ignored */
+	private static final int FILE_FORMAT_VERSION = 2;
+
+	/** Size of the buffers used when reading and writing snapshot files */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** The player data model at the time the snapshot was taken. The player ID is the key */
+	private final HashMap<Integer, Player> playerData = new HashMap();
+
+	/** The highest rowid from the kills table that has been applied to playerData */
+	@Setter
+	private long lastKillRowId = 0;
+
+	/** The number of rows from the kills table that have been applied to playerData */
+	@Setter
+	private int killRowCount = 0;
+
+	/** The highest rowid from the bonuses table that has been applied to playerData */
+	@Setter
+	private long lastBonusRowId = 0;
+
+	/** The number of rows from the bonuses table that have been applied to playerData */
+	@Setter
+	private int bonusRowCount = 0;
+
+	/** The number of kill and bonus rows below the high-water marks that were skipped for naming an unknown player */
+	@Setter
+	private int skippedRowCount = 0;
+
+	/**
+	 * Checks that none of the kill or bonus rows that the snapshot has already applied have since been deleted
+	 * from the database
+	 * @param dbConnection An open connection to the database
+	 * @return True if the rows up to each high-water mark are still all present
+	 */
+	public boolean matchesAppliedRows(PooledConnection dbConnection) {
+		try {
+			return countRowsUpTo(dbConnection, "kills", lastKillRowId) == killRowCount &&
+				countRowsUpTo(dbConnection, "bonuses", lastBonusRowId) == bonusRowCount;
+		}
+		catch (SQLException e) {
+			System.out.println("Error validating game data snapshot: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Counts the number of rows in a table at or below the given rowid
+	 * @param dbConnection An open connection to the database
+	 * @param table The name of the table to count rows in
+	 * @param rowId The highest rowid to include in the count
+	 * @return The number of rows counted
+	 */
+	private static int countRowsUpTo(PooledConnection dbConnection, String table, long rowId) throws SQLException {
+		PreparedStatement dbStatement = dbConnection.prepareStatement("SELECT COUNT(*) FROM " + table + " WHERE rowid <= ?");
+		dbStatement.setLong(1, rowId);
+		try (ResultSet results = dbStatement.executeQuery()) {
+			return results.next() ? results.getInt(1) : 0;
+		}
+	}
+
+	/**
+	 * Reads a snapshot that was previously written with writeToFile()
+	 * @param filename The name of the snapshot file
+	 * @return The restored snapshot, or null if the file does not exist or could not be read
+	 */
+	public static GameDataSnapshot readFromFile(String filename) {
+		File snapshotFile = new File(filename);
+		if (snapshotFile.exists() == false) {
+			return null;
+		}
+
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile), BUFFER_SIZE))) {
+			if (input.readInt() != FILE_FORMAT_VERSION) {
+				System.out.println("Ignoring game data snapshot " + filename + " written by a different version");
+				return null;
+			}
+
+			GameDataSnapshot snapshot = new GameDataSnapshot();
+			snapshot.lastKillRowId = input.readLong();
+			snapshot.killRowCount = input.readInt();
+			snapshot.lastBonusRowId = input.readLong();
+			snapshot.bonusRowCount = input.readInt();
+			snapshot.skippedRowCount = input.readInt();
+
+			int playerCount = input.readInt();
+			for (int i = 0; i < playerCount; ++i) {
+				Player player = readPlayer(input);
+				snapshot.playerData.put(player.getId(), player);
+			}
+			return snapshot;
+		}
+		catch (IOException e) {
+			System.out.println("Unable to read game data snapshot " + filename + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the snapshot to a file. The data is first written to a temporary file which then replaces any existing
+	 * snapshot, so an interrupted write will never leave a partial snapshot behind.
+	 * @param filename The name of the snapshot file
+	 * @return True for success
+	 */
+	public boolean writeToFile(String filename) {
+		File snapshotFile = new File(filename);
+		File tempFile = new File(filename + ".tmp");
+
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE))) {
+			output.writeInt(FILE_FORMAT_VERSION);
+			output.writeLong(lastKillRowId);
+			output.writeInt(killRowCount);
+			output.writeLong(lastBonusRowId);
+			output.writeInt(bonusRowCount);
+			output.writeInt(skippedRowCount);
+
+			output.writeInt(playerData.size());
+			for (Player player : playerData.values()) {
+				writePlayer(output, player);
+			}
+		}
+		catch (IOException e) {
+			System.out.println("Unable to write game data snapshot " + filename + ": " + e.getMessage());
+			tempFile.delete();
+			return false;
+		}
+
+		try {
+			Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			System.out.println("Unable to replace game data snapshot " + filename + ": " + e.getMessage());
+			tempFile.delete();
+			return false;
+		}
+		return true;
+	}
+
+	/** Writes a player and all of their weekly score data */
+	private static void writePlayer(DataOutputStream output, Player player) throws IOException {
+		output.writeInt(player.getId());
+		writeString(output, player.getFirstName());
+		writeString(output, player.getLastName());
+		writeString(output, player.getEmail());
+		output.writeInt(player.getWeekEliminated());
+
+		output.writeInt(player.getWeekCount());
+		for (int i = 0; i < player.getWeekCount(); ++i) {
+			Score score = player.getWeekScore(i);
+			output.writeInt(player.getWeekNumber(i));
+
+			writeIntList(output, score.getTargetPlayerIds());
+			writeIntList(output, score.getAssassinPlayerIds());
+			output.writeInt(score.getBonuses().size());
+			for (Bonus bonus : score.getBonuses()) {
+				output.writeInt(bonus.getTargetId());
+				output.writeInt(bonus.getBonusPoints());
+				writeString(output, bonus.getBonusName());
+				writeString(output, bonus.getBonusDescription());
+			}
+		}
+	}
+
+	/** Reads a player and all of their weekly score data that was written by writePlayer() */
+	private static Player readPlayer(DataInputStream input) throws IOException {
+		Player player = new Player();
+		player.setId(input.readInt());
+		player.setFirstName(readString(input));
+		player.setLastName(readString(input));
+		player.setEmail(readString(input));
+		player.setWeekEliminated(input.readInt());
+
+		int weekCount = input.readInt();
+		for (int i = 0; i < weekCount; ++i) {
+			int weekNumber = input.readInt();
+			Score score = new Score();
+
+			int targetCount = input.readInt();
+			for (int j = 0; j < targetCount; ++j) {
+				score.addTargetKilled(input.readInt());
+			}
+			int assassinCount = input.readInt();
+			for (int j = 0; j < assassinCount; ++j) {
+				score.addAssassinKiller(input.readInt());
+			}
+			int bonusCount = input.readInt();
+			for (int j = 0; j < bonusCount; ++j) {
+				Bonus bonus = new Bonus();
+				bonus.setTargetId(input.readInt());
+				bonus.setBonusPoints(input.readInt());
+				bonus.setBonusName(readString(input));
+				bonus.setBonusDescription(readString(input));
+				score.addBonus(bonus);
+			}
+
+			player.addScoreData(weekNumber, score);
+		}
+		return player;
+	}
+
+	/** Writes the size of a list followed by each of its values */
+	private static void writeIntList(DataOutputStream output, IntList list) throws IOException {
+		output.writeInt(list.size());
+		for (int i = 0; i < list.size(); ++i) {
+			output.writeInt(list.get(i));
+		}
+	}
+
+	/** Writes a string that may be null */
+	private static void writeString(DataOutputStream output, String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	/** Reads a string that was written by writeString() */
+	private static String readString(DataInputStream input) throws IOException {
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+}
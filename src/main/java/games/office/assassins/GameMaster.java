@@ -1,35 +1,98 @@
 package games.office.assassins;
 
-import games.office.assassins.config.DatabaseConnection;
+import games.office.assassins.config.PooledConnection;
+import games.office.assassins.metrics.Metrics;
+import games.office.assassins.metrics.Stage;
+import games.office.assassins.metrics.StageTimer;
 import games.office.assassins.model.Bonus;
+import games.office.assassins.model.KillLog;
 import games.office.assassins.model.Player;
 import games.office.assassins.model.Score;
 
+import java.io.File;
+import java.io.IOException;
+
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 
 /**
  * Main class for the application. Loads all the game data, prints player rankings, and
  * generates weekly e-mails for all players with their target assignements or elimination notification.
  */
 public class GameMaster {
-	/** A map containing all player and game data loaded from the database */
-	private static HashMap<Integer, Player> playerData;
-
 	static public void main(String args[]) {
+		// Measure each stage of the run if a file to write the measurements to was given with -Dassassins.metrics=<file>
+		String metricsFilename = System.getProperty("assassins.metrics");
+		if (metricsFilename != null) {
+			Metrics.enable();
+		}
+
+		// Run the week for every league database given with "--leagues <database file or directory>..." at once
+		if (args.length > 0 && args[0].equals("--leagues")) {
+			runLeagues(Arrays.copyOfRange(args, 1, args.length), metricsFilename);
+			return;
+		}
+
+		// Read the optional snapshot file, "--serve <port>" and "--ranks" arguments that may follow the database file
+		String snapshotFilename = null;
+		int serverPort = -1;
+		boolean ranksOnly = false;
+		for (int i = 1; i < args.length; ++i) {
+			if (args[i].equals("--serve") && i + 1 < args.length) {
+				serverPort = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--ranks")) {
+				ranksOnly = true;
+			}
+			else {
+				snapshotFilename = args[i];
+			}
+		}
+
 		// Open a connection to the database
-		DatabaseConnection database = new DatabaseConnection();
-		if (database.openConnection(args[0]) == false) {
+		League league = new League(args[0], snapshotFilename);
+		if (league.open() == false) {
 			System.out.println("Failed to open DB connection to file: " + args[0]);
 			System.exit(1);
 		}
 
-		// Load all data from the database tables
-		loadGameData(database.getConnection());
+		// Only print the rankings, which the database can total up without loading every kill
+		if (ranksOnly == true) {
+			boolean success = false;
+			try (PooledConnection writer = league.getDatabase().borrowWriter()) {
+				success = PlayerRank.printPlayerRanks(writer.getConnection(), true);
+			}
+			catch (SQLException e) {
+				System.out.println("Unable to rank players: " + e.getMessage());
+			}
+			if (metricsFilename != null) {
+				Metrics.writeJson(metricsFilename);
+			}
+			league.close();
+			System.exit(success ? 0 : 1);
+		}
+
+		// Load all data from the database tables. With a snapshot file, only the rows added since the last run are read
+		if (league.load() == false) {
+			league.close();
+			System.exit(1);
+		}
+		HashMap<Integer, Player> playerData = league.getPlayerData();
+
+		// Keep the data loaded and answer requests for it until the process is stopped, instead of writing e-mails
+		if (serverPort >= 0) {
+			if (league.loadKillLog() == false) {
+				league.close();
+				System.exit(1);
+			}
+			serveGameData(league, serverPort, metricsFilename);
+			return;
+		}
 
 		// Print out player rankings and score info to determine weekly eliminations
 		PlayerRank rankings = new PlayerRank(playerData, true);
@@ -78,134 +141,435 @@ public class GameMaster {
 //		assignments.assignRandomTargets();
 //		assignments.writePlayerEmails(6);
 
+		// Any week: before choosing the format of the remaining weeks, play them out many times from the current
+		// standings to see each player's chances and how each format plays. Here 100 active players are cut to 20
+//		SeasonSimulator simulator = new SeasonSimulator(playerData, 3);
+//		SeasonSimulation simulation = simulator.simulate(Arrays.asList(WeekFormat.random(3, 40),
+//			WeekFormat.tiered(3, 2, 40), WeekFormat.nearby(2, 4, 0)), 100000, 1);
+//		simulation.printSummary(10);
+
+		// Any week: write one message file per player instead, and send them through an SMTP server. If delivery is
+		// interrupted, running it again with the same log sends only the messages that were not yet delivered
+//		assignments.setOutputMode(EmailOutputMode.EML_PER_PLAYER);
+//		assignments.setOutputFilename("emails/week_7");
+//		assignments.writePlayerEmails(7);
+//		EmailDelivery delivery = new EmailDelivery("localhost", 25);
+//		delivery.deliverDirectory("emails/week_7", "emails/week_7_delivered.log");
+//		delivery.printStatistics();
+
+		if (metricsFilename != null) {
+			league.getDatabase().printPoolStatistics();
+			Metrics.writeJson(metricsFilename);
+		}
+
 		// Close the database connection
-		database.closeConnection();
+		league.close();
 		System.exit(0);
 	}
 
 	/**
-	 * Loads all game data from the database and stores it in the static playerData structure.
-	 * This includes all data from the following tables:
+	 * Runs the week for many leagues at once with a LeagueRunner, then prints the combined throughput and memory use.
+	 * The number of leagues run at once can be set with -Dassassins.leagueThreads=<count>, and defaults to the number
+	 * of available processors.
+	 * @param databaseNames League database files, or directories whose .db files are each a league
+	 * @param metricsFilename The file to write stage measurements to once every league has finished, or null
+	 */
+	private static void runLeagues(String[] databaseNames, String metricsFilename) {
+		ArrayList<String> databaseFilenames = new ArrayList();
+		for (String name : databaseNames) {
+			File file = new File(name);
+			if (file.exists() == false) {
+				System.out.println("No league database file or directory: " + name);
+				continue;
+			}
+			File[] leagueFiles = file.isDirectory() ? file.listFiles((directory, filename) -> filename.endsWith(".db")) : new File[] {file};
+			if (leagueFiles != null) {
+				Arrays.sort(leagueFiles);
+				for (File leagueFile : leagueFiles) {
+					databaseFilenames.add(leagueFile.getPath());
+				}
+			}
+		}
+		if (databaseFilenames.isEmpty()) {
+			System.out.println("Usage: GameMaster --leagues <database file or directory>...");
+			System.exit(1);
+		}
+
+		LeagueRunner runner = new LeagueRunner(Integer.getInteger("assassins.leagueThreads", Runtime.getRuntime().availableProcessors()));
+		boolean success = runner.runLeagues(databaseFilenames);
+		runner.printStatistics();
+
+		if (metricsFilename != null) {
+			Metrics.writeJson(metricsFilename);
+		}
+		System.exit(success ? 0 : 1);
+	}
+
+	/**
+	 * Starts a GameServer for the loaded game data. The server runs until the process is stopped, at which point its
+	 * statistics are printed and the database connection is closed. The number of request threads can be set with
+	 * -Dassassins.serverThreads=<count>, and defaults to a virtual thread per request where the JVM supports them.
+	 * @param league The league whose game data and kill log have been loaded
+	 * @param port The port to listen on, or 0 for any free port
+	 * @param metricsFilename The file to write stage measurements to when the server stops, or null
+	 */
+	private static void serveGameData(League league, int port, String metricsFilename) {
+		GameServer server;
+		try {
+			server = new GameServer(league.getDatabase(), league.getPlayerData(), league.getKillLog(), port, Integer.getInteger("assassins.serverThreads", 0));
+		}
+		catch (IOException e) {
+			System.out.println("Failed to start the game server on port " + port + ": " + e.getMessage());
+			league.close();
+			System.exit(1);
+			return;
+		}
+
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.stop(1);
+			server.printStatistics();
+			if (metricsFilename != null) {
+				Metrics.writeJson(metricsFilename);
+			}
+			league.close();
+		}));
+		server.start();
+	}
+
+	/**
+	 * Loads all game data from the database. This includes all data from the following tables:
 	 * - players
 	 * - kills
 	 * - bonuses
 	 *
+	 * Each table is read in a single pass. Score objects are only created for the (player, week) pairs that actually
+	 * have kill, death, or bonus data, so player IDs do not need to be contiguous and no storage is reserved for weeks
+	 * in which a player had no activity. Rows that reference a player ID missing from the players table are skipped.
+	 *
+	 * @param dbConnection An open connection to the database
+	 * @return A map of all players keyed by player ID, or null if the data could not be read
+	 */
+	static HashMap<Integer, Player> loadGameData(Connection dbConnection) {
+		return loadGameData(dbConnection, null);
+	}
+
+	/**
+	 * Loads all game data in the same manner as loadGameData(Connection), starting from a snapshot of a previous load
+	 * when one is available. Only the kill and bonus rows added since the snapshot was taken are read and applied to
+	 * the restored player data. The snapshot is discarded and all data is reloaded if any player's elimination week has
+	 * changed, a player was removed, a player was added after rows naming an unknown player were skipped, or previously
+	 * applied kill or bonus rows were deleted, since any of those can change which kills are credited. The snapshot
+	 * file is updated once loading completes.
+	 *
 	 * @param dbConnection An open connection to the database
+	 * @param snapshotFilename The file to read and save the snapshot to, or null to always do a full load
+	 * @return A map of all players keyed by player ID, or null if the data could not be read
+	 */
+	static HashMap<Integer, Player> loadGameData(Connection dbConnection, String snapshotFilename) {
+		try (PooledConnection pooledConnection = PooledConnection.unpooled(dbConnection)) {
+			return loadGameData(pooledConnection, snapshotFilename);
+		}
+	}
+
+	/**
+	 * Loads all game data in the same manner as loadGameData(Connection, String), preparing each query through the
+	 * statement cache of a pooled connection
+	 *
+	 * @param dbConnection A connection borrowed from the pool
+	 * @param snapshotFilename The file to read and save the snapshot to, or null to always do a full load
+	 * @return A map of all players keyed by player ID, or null if the data could not be read
 	 */
-	static void loadGameData(Connection dbConnection) {
-		playerData = new HashMap();
+	static HashMap<Integer, Player> loadGameData(PooledConnection dbConnection, String snapshotFilename) {
+		GameDataSnapshot snapshot = null;
+		if (snapshotFilename != null) {
+			snapshot = GameDataSnapshot.readFromFile(snapshotFilename);
+			if (snapshot != null && snapshot.matchesAppliedRows(dbConnection) == false) {
+				System.out.println("Kill or bonus rows were removed since the game data snapshot was taken, reloading all data");
+				snapshot = null;
+			}
+		}
 
 		// Load data from table: players
-		try {
-			String sql = "SELECT ID, FirstName, LastName, Email, WeekEliminated FROM players";
-			Statement dbStatement = dbConnection.createStatement();
-			ResultSet results = dbStatement.executeQuery(sql);
+		HashMap<Integer, Player> databasePlayers = loadPlayers(dbConnection);
+		if (databasePlayers == null) {
+			return null;
+		}
+
+		if (snapshot != null && mergeSnapshotPlayers(snapshot, databasePlayers) == false) {
+			System.out.println("Players changed since the game data snapshot was taken, reloading all data");
+			snapshot = null;
+		}
+		boolean fullReload = (snapshot == null);
+		if (fullReload) {
+			snapshot = new GameDataSnapshot();
+			snapshot.getPlayerData().putAll(databasePlayers);
+		}
+		HashMap<Integer, Player> playerData = snapshot.getPlayerData();
+		System.out.println("Loaded data for " + playerData.size() + " players");
 
+		int previousKillCount = snapshot.getKillRowCount();
+		int previousBonusCount = snapshot.getBonusRowCount();
+		if (loadKills(dbConnection, snapshot) == false || loadBonuses(dbConnection, snapshot) == false) {
+			return null;
+		}
+		int newKillCount = snapshot.getKillRowCount() - previousKillCount;
+		int newBonusCount = snapshot.getBonusRowCount() - previousBonusCount;
+		if (fullReload == false) {
+			System.out.println("Applied " + newKillCount + " new kills and " + newBonusCount + " new bonuses to the game data snapshot");
+		}
+
+		// Player names and newly added players are always refreshed from the players table, so the snapshot only needs
+		// to be saved again when score data has changed
+		if (snapshotFilename != null && (fullReload || newKillCount > 0 || newBonusCount > 0)) {
+			snapshot.writeToFile(snapshotFilename);
+		}
+		return playerData;
+	}
+
+	/**
+	 * Reads every row of the players table
+	 * @param dbConnection An open connection to the database
+	 * @return A new map of all players keyed by player ID, or null if the table could not be read
+	 */
+	private static HashMap<Integer, Player> loadPlayers(PooledConnection dbConnection) {
+		HashMap<Integer, Player> players = new HashMap();
+
+		try (StageTimer timer = Metrics.time(Stage.LOAD_PLAYERS);
+			 ResultSet results = dbConnection.prepareStatement("SELECT ID, FirstName, LastName, Email, WeekEliminated FROM players").executeQuery()) {
 			while (results.next()) {
+				timer.addRows(1);
 				Player nextPlayer = new Player();
 				nextPlayer.setId(results.getInt("id"));
 				nextPlayer.setFirstName(results.getString("FirstName"));
 				nextPlayer.setLastName(results.getString("LastName"));
 				nextPlayer.setEmail(results.getString("Email"));
 				nextPlayer.setWeekEliminated(results.getInt("WeekEliminated"));
-				playerData.put(nextPlayer.getId(), nextPlayer);
+				players.put(nextPlayer.getId(), nextPlayer);
 			}
 		}
 		catch (SQLException e) {
 			System.out.println("Error reading 'players' table: " + e.getMessage());
-			return;
+			return null;
 		}
-		System.out.println("Loaded data for " + playerData.size() + " players");
 
-		// Lists the unique week numbers where we have kill data, sorted from oldest to newest
-		ArrayList<Integer> weekNumbers = new ArrayList();
+		return players;
+	}
 
-		// Holds score data for all players for all weeks of play
-		ArrayList<Score> playerScoreData = new ArrayList();
+	/**
+	 * Brings the players stored in a snapshot up to date with the players table. Names and e-mail addresses are
+	 * refreshed and newly added players are inserted into the snapshot.
+	 * @param snapshot The snapshot to update
+	 * @param databasePlayers All players as currently stored in the database
+	 * @return False if the snapshot can not be reused because a player was removed or their elimination week changed,
+	 * or because a player was added who may be named by kill or bonus rows that the snapshot skipped
+	 */
+	private static boolean mergeSnapshotPlayers(GameDataSnapshot snapshot, HashMap<Integer, Player> databasePlayers) {
+		HashMap<Integer, Player> snapshotPlayers = snapshot.getPlayerData();
+		if (databasePlayers.keySet().containsAll(snapshotPlayers.keySet()) == false) {
+			return false;
+		}
 
-		// Load data from table: kills
-		try {
-			String sql;
-			Statement dbStatement;
-			ResultSet results;
+		for (Player p : databasePlayers.values()) {
+			Player existing = snapshotPlayers.get(p.getId());
+			if (existing == null) {
+				// A skipped row may name the new player, and rows below the high-water marks are never read again
+				if (snapshot.getSkippedRowCount() > 0) {
+					return false;
+				}
+				snapshotPlayers.put(p.getId(), p);
+			}
+			else if (existing.getWeekEliminated() != p.getWeekEliminated()) {
+				return false;
+			}
+			else {
+				existing.setFirstName(p.getFirstName());
+				existing.setLastName(p.getLastName());
+				existing.setEmail(p.getEmail());
+			}
+		}
 
-			// First figure out how many distinct weeks of kill data exist so we can
-			// prepare enough objects to hold player scores
-			sql = "SELECT distinct WeekNumber FROM kills ORDER BY WeekNumber";
-			dbStatement = dbConnection.createStatement();
-			results = dbStatement.executeQuery(sql);
+		return true;
+	}
 
-			while (results.next()) {
-				weekNumbers.add(results.getInt("WeekNumber"));
+	/**
+	 * Applies every row of the kills table past the snapshot's high-water mark to the snapshot's player data
+	 * @param dbConnection An open connection to the database
+	 * @param snapshot The snapshot holding the player data and kills high-water mark
+	 * @return False if the table could not be read
+	 */
+	private static boolean loadKills(PooledConnection dbConnection, GameDataSnapshot snapshot) {
+		HashMap<Integer, Player> players = snapshot.getPlayerData();
+
+		try (StageTimer timer = Metrics.time(Stage.LOAD_KILLS)) {
+			PreparedStatement dbStatement = dbConnection.prepareStatement("SELECT rowid, AssassinId, TargetId, WeekNumber FROM kills WHERE rowid > ? ORDER BY rowid");
+			dbStatement.setLong(1, snapshot.getLastKillRowId());
+
+			try (ResultSet results = dbStatement.executeQuery()) {
+				while (results.next()) {
+					timer.addRows(1);
+					int assassinId = results.getInt("AssassinId");
+					int targetId = results.getInt("TargetId");
+					int weekNumber = results.getInt("WeekNumber");
+					snapshot.setLastKillRowId(results.getLong(1));
+					snapshot.setKillRowCount(snapshot.getKillRowCount() + 1);
+
+					Player assassin = players.get(assassinId);
+					if (assassin == null || players.containsKey(targetId) == false) {
+						System.out.println("Skipping kill in week " + weekNumber + " with unknown player ID: " + assassinId + " -> " + targetId);
+						snapshot.setSkippedRowCount(snapshot.getSkippedRowCount() + 1);
+						continue;
+					}
+
+					// The kill needs to be logged in the scores for both the assassin and target.
+					// Eliminated players can still make kills in the game, but those kills do not get
+					// added to their scores. Deaths will always be added to a player's score.
+					if (isKillCredited(assassin, weekNumber)) {
+						getWeekScore(assassin, weekNumber).addTargetKilled(targetId);
+					}
+					getWeekScore(players.get(targetId), weekNumber).addAssassinKiller(assassinId);
+				}
 			}
+		}
+		catch (SQLException e) {
+			System.out.println("Error reading 'kills' table: " + e.getMessage());
+			return false;
+		}
 
-			// Create a score record for each week for each player
-			for (int i = 0; i < playerData.size() * weekNumbers.size(); ++i) {
-				playerScoreData.add(new Score());
-			}
+		return true;
+	}
 
-			// Now grab all the kill data and put it into the appropriate score container
-			sql = "SELECT AssassinId, TargetId, WeekNumber FROM kills";
-			dbStatement = dbConnection.createStatement();
-			results = dbStatement.executeQuery(sql);
+	/**
+	 * Applies every row of the bonuses table past the snapshot's high-water mark to the snapshot's player data
+	 * @param dbConnection An open connection to the database
+	 * @param snapshot The snapshot holding the player data and bonuses high-water mark
+	 * @return False if the table could not be read
+	 */
+	private static boolean loadBonuses(PooledConnection dbConnection, GameDataSnapshot snapshot) {
+		HashMap<Integer, Player> players = snapshot.getPlayerData();
 
-			while (results.next()) {
-				int assassinId = results.getInt("AssassinId");
-				int targetId = results.getInt("TargetId");
-				int weekNumber = results.getInt("WeekNumber");
+		try (StageTimer timer = Metrics.time(Stage.LOAD_BONUSES)) {
+			PreparedStatement dbStatement = dbConnection.prepareStatement("SELECT rowid, AssassinId, TargetId, WeekNumber, BonusPoints, BonusName, BonusDescription FROM bonuses WHERE rowid > ? ORDER BY rowid");
+			dbStatement.setLong(1, snapshot.getLastBonusRowId());
 
-				// The kill needs to be logged in the scores for both the assassin and target.
-				// Player Ids are presumed to range from 1 to MAX. We can use this information
-				// and the week number to figure out where the two relevant scores are in the list.
-				int index;
-				// Eliminated players can still make kills in the game, but those kills do not get
-				// added to their scores. Deaths will always be added to a player's score.
-				if (playerData.get(assassinId).isPlayerEliminated() == false || playerData.get(assassinId).getWeekEliminated() >= weekNumber) {
-					index = (assassinId - 1) + (playerData.size() * (weekNumber - 1));
-					playerScoreData.get(index).addTargetKilled(targetId);
+			// AssassinID int, TargetId int, WeekNumber int, BonusPoints int, BonusName varchar(255), BonusDescription
+			try (ResultSet results = dbStatement.executeQuery()) {
+				while (results.next()) {
+					timer.addRows(1);
+					int assassinId = results.getInt("AssassinId");
+					int weekNumber = results.getInt("WeekNumber");
+					snapshot.setLastBonusRowId(results.getLong(1));
+					snapshot.setBonusRowCount(snapshot.getBonusRowCount() + 1);
+
+					Player assassin = players.get(assassinId);
+					if (assassin == null) {
+						System.out.println("Skipping bonus in week " + weekNumber + " with unknown player ID: " + assassinId);
+						snapshot.setSkippedRowCount(snapshot.getSkippedRowCount() + 1);
+						continue;
+					}
+
+					Bonus bonus = new Bonus();
+					bonus.setTargetId(results.getInt("TargetId"));
+					bonus.setBonusPoints(results.getInt("BonusPoints"));
+					bonus.setBonusName(results.getString("BonusName"));
+					bonus.setBonusDescription(results.getString("BonusDescription"));
+
+					getWeekScore(assassin, weekNumber).addBonus(bonus);
 				}
-				index = (targetId - 1) + (playerData.size() * (weekNumber - 1));
-				playerScoreData.get(index).addAssassinKiller(assassinId);
 			}
 		}
 		catch (SQLException e) {
-			System.out.println("Error reading 'kills' table: " + e.getMessage());
-			return;
+			System.out.println("Error reading 'bonuses' table: " + e.getMessage());
+			return false;
 		}
 
-		// Load data from table: bonuses
-		try {
-			String sql = "SELECT AssassinId, TargetId, WeekNumber, BonusPoints, BonusName, BonusDescription FROM bonuses";
-			Statement dbStatement = dbConnection.createStatement();
-			ResultSet results = dbStatement.executeQuery(sql);
+		return true;
+	}
 
-			// AssassinID int, TargetId int, WeekNumber int, BonusPoints int, BonusName varchar(255), BonusDescription
+	/**
+	 * Reads the entire kills table into a column oriented KillLog, which can answer questions such as "who killed whom
+	 * in week N" or "all kills made by player X in week N" with index lookups. The same rules are followed as when the
+	 * kills are loaded into the player data: rows that name a player missing from the players table are skipped, and
+	 * kills made by eliminated players after their elimination week are not credited to them.
+	 * @param dbConnection An open connection to the database
+	 * @param playerData The players loaded from the same database
+	 * @return The loaded kill log, or null if the table could not be read
+	 */
+	static KillLog loadKillLog(Connection dbConnection, HashMap<Integer, Player> playerData) {
+		try (PooledConnection pooledConnection = PooledConnection.unpooled(dbConnection)) {
+			return loadKillLog(pooledConnection, playerData);
+		}
+	}
+
+	/**
+	 * Reads the entire kills table into a KillLog in the same manner as loadKillLog(Connection, HashMap), preparing the
+	 * query through the statement cache of a pooled connection
+	 * @param dbConnection A connection borrowed from the pool
+	 * @param playerData The players loaded from the same database
+	 * @return The loaded kill log, or null if the table could not be read
+	 */
+	static KillLog loadKillLog(PooledConnection dbConnection, HashMap<Integer, Player> playerData) {
+		int size = 0;
+		int[] assassins = new int[1024];
+		int[] targets = new int[1024];
+		int[] weeks = new int[1024];
+		boolean[] credited = new boolean[1024];
+
+		try (StageTimer timer = Metrics.time(Stage.LOAD_KILL_LOG);
+			 ResultSet results = dbConnection.prepareStatement("SELECT AssassinId, TargetId, WeekNumber FROM kills ORDER BY rowid").executeQuery()) {
 			while (results.next()) {
+				timer.addRows(1);
 				int assassinId = results.getInt("AssassinId");
+				int targetId = results.getInt("TargetId");
 				int weekNumber = results.getInt("WeekNumber");
+				Player assassin = playerData.get(assassinId);
+				if (assassin == null || playerData.containsKey(targetId) == false) {
+					continue;
+				}
 
-				Bonus bonus = new Bonus();
-				bonus.setTargetId(results.getInt("TargetId"));
-				bonus.setBonusPoints(results.getInt("BonusPoints"));
-				bonus.setBonusName(results.getString("BonusName"));
-				bonus.setBonusDescription(results.getString("BonusDescription"));
-
-				// Determine which Score object the bonus applies to using the player ID and week number
-				int index = (assassinId - 1) + (playerData.size() * (weekNumber - 1));
-				playerScoreData.get(index).addBonus(bonus);
+				if (size == assassins.length) {
+					assassins = Arrays.copyOf(assassins, size * 2);
+					targets = Arrays.copyOf(targets, size * 2);
+					weeks = Arrays.copyOf(weeks, size * 2);
+					credited = Arrays.copyOf(credited, size * 2);
+				}
+				assassins[size] = assassinId;
+				targets[size] = targetId;
+				weeks[size] = weekNumber;
+				credited[size] = isKillCredited(assassin, weekNumber);
+				size++;
 			}
 		}
 		catch (SQLException e) {
-			System.out.println("Error reading 'bonuses' table: " + e.getMessage());
-			return;
+			System.out.println("Error reading 'kills' table: " + e.getMessage());
+			return null;
 		}
 
-		// With the score data complete, add it to the existing player data
-		for (Integer i : playerData.keySet()) {
-			for (int j : weekNumbers) {
-				int index = (i - 1) + (playerData.size() * (j - 1));
-				playerData.get(i).addScoreData(j, playerScoreData.get(index));
-			}
+		return new KillLog(assassins, targets, weeks, credited, size);
+	}
+
+	/**
+	 * Eliminated players can still make kills in the game, but those kills do not get added to their scores
+	 * @param assassin The player who made the kill
+	 * @param weekNumber The week the kill was made in
+	 * @return True if the kill counts towards the assassin's score
+	 */
+	static boolean isKillCredited(Player assassin, int weekNumber) {
+		return assassin.isPlayerEliminated() == false || assassin.getWeekEliminated() >= weekNumber;
+	}
+
+	/**
+	 * Retrieves a player's score for the given week, creating and attaching a new Score if this is the first
+	 * activity seen for the player in that week
+	 * @param player The player to look up the score for
+	 * @param weekNumber The week number of the score
+	 * @return The existing or newly created Score
+	 */
+	static Score getWeekScore(Player player, int weekNumber) {
+		Score score = player.getScore(weekNumber);
+		if (score == null) {
+			score = new Score();
+			player.addScoreData(weekNumber, score);
 		}
+		return score;
 	}
 }
@@ -0,0 +1,603 @@
+package games.office.assassins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+import java.lang.reflect.Method;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+
+import java.nio.charset.StandardCharsets;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import games.office.assassins.assignment.AssignmentGraph;
+import games.office.assassins.assignment.TargetAssignmentEngine;
+import games.office.assassins.config.DatabaseConnection;
+import games.office.assassins.config.PooledConnection;
+import games.office.assassins.metrics.LatencyHistogram;
+import games.office.assassins.metrics.Metrics;
+import games.office.assassins.metrics.Stage;
+import games.office.assassins.model.KillLog;
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * Keeps the game data loaded in memory and answers requests for it over a local HTTP API, so that rankings and player
+ * summaries can be looked up, kills reported and targets assigned without starting the application and reloading the
+ * database each time. All responses are JSON. The API is:
+ *
+ * GET  /rankings?from=1&amp;count=50         Players in rank order. Negative ranks list eliminated players
+ * GET  /players/{id}                      A player's totals, rank and weekly scores, with who they killed and who
+ *                                         killed them each week
+ * POST /kills?assassin=1&amp;target=2&amp;week=3  Records a kill in the database and then in the loaded data
+ * POST /assignments?targets=3&amp;mode=random Makes new target assignments. Modes are random, tiered, nearby and constrained
+ * GET  /assignments/{id}                  A player's targets and assassins from the last assignment
+ * GET  /stats                             Request count, throughput and latency percentiles since the server started
+ *
+ * Parameters may be given in the query string or, for POST requests, as a form encoded body.
+ *
+ * Player and Score are not thread safe, so the loaded data is guarded by a read/write lock. Any number of lookups run
+ * at once, while a reported kill holds the write lock only for the moment it takes to apply it to the two players'
+ * scores and move them on the Leaderboard. The database insert happens before that, outside of the lock, and a kill
+ * is only applied to the loaded data once it has been committed.
+ */
+public class GameServer {
+	private static final String INSERT_KILL_SQL = "INSERT INTO kills (AssassinId, TargetId, WeekNumber) VALUES (?, ?, ?)";
+
+	/** The most players returned by one rankings request */
+	private static final int MAX_RANKING_COUNT = 1000;
+
+	/** A map containing all player and game data loaded from the database. The player ID is the key */
+	private final HashMap<Integer, Player> playerData;
+
+	/** The database that reported kills are written to */
+	private final DatabaseConnection database;
+
+	/** Every kill in the game, appended to as kills are reported */
+	private final KillLog killLog;
+
+	/** Live rankings of every player, updated as kills are reported */
+	private final Leaderboard leaderboard;
+
+	/** Guards playerData, killLog and leaderboard. Held for reading by lookups and for writing while a kill is applied */
+	private final ReentrantReadWriteLock dataLock = new ReentrantReadWriteLock();
+
+	/** The most recent target assignments, or null if none have been made since the server started */
+	private volatile AssignmentGraph currentAssignments = null;
+
+	/** The HTTP server */
+	private final HttpServer server;
+
+	/** Runs request handlers */
+	private final ExecutorService requestExecutor;
+
+	/** How long each request took to handle, from the handler being called to the response being sent */
+	private final LatencyHistogram requestLatencies = new LatencyHistogram();
+
+	/** The number of requests answered with an error status */
+	private final LongAdder errorCount = new LongAdder();
+
+	/** When the server was started, for working out throughput */
+	private long startNanos;
+
+	/**
+	 * Creates a server for loaded game data. The server only listens on the loopback address.
+	 * @param openDatabase The open database that the data was loaded from, which reported kills are written to
+	 * @param data The loaded player data. Must not be used by anything else while the server is running
+	 * @param kills The kill log loaded from the same database, with GameMaster.loadKillLog(). Must not be used by
+	 *              anything else while the server is running
+	 * @param port The port to listen on
+	 * @param threadCount The number of threads that handle requests, or 0 to use a virtual thread per request where
+	 *                    the JVM supports them and a thread per processor otherwise
+	 */
+	public GameServer(DatabaseConnection openDatabase, HashMap<Integer, Player> data, KillLog kills, int port, int threadCount) throws IOException {
+		if (openDatabase == null || data == null || data.isEmpty() || kills == null) {
+			throw new RuntimeException("Null database, kill log or empty player data passed to GameServer constructor");
+		}
+		database = openDatabase;
+		playerData = data;
+		killLog = kills;
+		leaderboard = new Leaderboard(playerData.values());
+
+		// The JDK server sends response headers and bodies in separate writes, so without TCP_NODELAY each small
+		// response waits on the client's delayed acknowledgement of the headers, adding about 40 ms to every request
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		requestExecutor = createExecutor(threadCount);
+		server.setExecutor(requestExecutor);
+
+		server.createContext("/rankings", timed(this::handleRankings));
+		server.createContext("/players/", timed(this::handlePlayer));
+		server.createContext("/kills", timed(this::handleKill));
+		server.createContext("/assignments", timed(this::handleAssignments));
+		server.createContext("/stats", timed(this::handleStats));
+	}
+
+	/** Starts answering requests */
+	public void start() {
+		startNanos = System.nanoTime();
+		server.start();
+		System.out.println("Game server listening on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/");
+	}
+
+	/**
+	 * Stops answering requests, giving requests that are in progress a moment to finish
+	 * @param delaySeconds The most time to wait for requests in progress
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		requestExecutor.shutdown();
+		try {
+			requestExecutor.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Returns the port the server is listening on */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/** Prints the number of requests handled, the throughput and latency percentiles to the screen */
+	public void printStatistics() {
+		double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+		System.out.println("========== Game Server Statistics ==========");
+		System.out.println("Requests: " + requestLatencies.getCount() + " (" + errorCount.sum() + " errors) in " + String.format(Locale.ROOT, "%.1f", seconds) + " s");
+		System.out.println("Requests per second: " + String.format(Locale.ROOT, "%.1f", requestLatencies.getCount() / seconds));
+		System.out.println("Latency p50 / p99 / max: " + formatMillis(requestLatencies.getPercentileNanos(50)) + " / " +
+			formatMillis(requestLatencies.getPercentileNanos(99)) + " / " + formatMillis(requestLatencies.getMaxNanos()) + " ms");
+	}
+
+	/** GET /rankings?from=1&amp;count=50 */
+	private void handleRankings(HttpExchange exchange) throws IOException {
+		if (requireMethod(exchange, "GET") == false) {
+			return;
+		}
+		Map<String, String> params = readParameters(exchange);
+		Integer from = parseInt(params.getOrDefault("from", "1"));
+		Integer count = parseInt(params.getOrDefault("count", "50"));
+		if (from == null || from == 0 || count == null || count <= 0) {
+			sendError(exchange, 400, "from must be a non-zero rank and count must be positive");
+			return;
+		}
+		int to = (from > 0) ? from + Math.min(count, MAX_RANKING_COUNT) - 1 : from - Math.min(count, MAX_RANKING_COUNT) + 1;
+
+		StringBuilder json = new StringBuilder(128 * Math.min(count, MAX_RANKING_COUNT));
+		dataLock.readLock().lock();
+		try {
+			json.append("{\"players\": [");
+			int rank = from;
+			boolean first = true;
+			for (Player p : leaderboard.getRange(from, to)) {
+				json.append(first ? "\n" : ",\n");
+				first = false;
+				json.append("  {\"rank\": ").append(rank).append(", ");
+				appendPlayerTotals(json, p);
+				json.append('}');
+				rank += (from > 0) ? 1 : -1;
+			}
+			json.append("\n]}\n");
+		}
+		finally {
+			dataLock.readLock().unlock();
+		}
+		sendJson(exchange, 200, json.toString());
+	}
+
+	/** GET /players/{id} */
+	private void handlePlayer(HttpExchange exchange) throws IOException {
+		if (requireMethod(exchange, "GET") == false) {
+			return;
+		}
+		Integer playerId = parseInt(pathRemainder(exchange, "/players/"));
+		if (playerId == null) {
+			sendError(exchange, 400, "Invalid player ID");
+			return;
+		}
+
+		StringBuilder json = new StringBuilder(512);
+		dataLock.readLock().lock();
+		try {
+			Player player = playerData.get(playerId);
+			if (player == null) {
+				sendError(exchange, 404, "Unknown player " + playerId);
+				return;
+			}
+
+			json.append("{\"rank\": ").append(leaderboard.getRank(playerId)).append(", ");
+			appendPlayerTotals(json, player);
+			json.append(", \"email\": ");
+			appendJsonString(json, player.getEmail());
+			json.append(", \"weekEliminated\": ").append(player.getWeekEliminated());
+			json.append(", \"weeks\": [");
+			for (int i = 0; i < player.getWeekCount(); ++i) {
+				Score score = player.getWeekScore(i);
+				json.append((i == 0) ? "\n" : ",\n");
+				json.append("  {\"week\": ").append(player.getWeekNumber(i));
+				json.append(", \"kills\": ").append(score.getKills());
+				json.append(", \"deaths\": ").append(score.getDeaths());
+				json.append(", \"score\": ").append(score.getScore());
+				json.append(", \"killed\": ");
+				appendPlayerList(json, killLog.getTargetsKilled(playerId, player.getWeekNumber(i)).toArray());
+				json.append(", \"killedBy\": ");
+				appendPlayerList(json, killLog.getKilledBy(playerId, player.getWeekNumber(i)).toArray());
+				json.append('}');
+			}
+			json.append("\n]}\n");
+		}
+		finally {
+			dataLock.readLock().unlock();
+		}
+		sendJson(exchange, 200, json.toString());
+	}
+
+	/** POST /kills?assassin=1&amp;target=2&amp;week=3 */
+	private void handleKill(HttpExchange exchange) throws IOException {
+		if (requireMethod(exchange, "POST") == false) {
+			return;
+		}
+		Map<String, String> params = readParameters(exchange);
+		Integer assassinId = parseInt(params.get("assassin"));
+		Integer targetId = parseInt(params.get("target"));
+		Integer weekNumber = parseInt(params.get("week"));
+		if (assassinId == null || targetId == null || weekNumber == null || weekNumber <= 0 || assassinId.equals(targetId)) {
+			sendError(exchange, 400, "assassin, target and week are required, and assassin and target must differ");
+			return;
+		}
+
+		// The set of players never changes while the server runs, so they can be checked without the lock
+		if (playerData.containsKey(assassinId) == false || playerData.containsKey(targetId) == false) {
+			sendError(exchange, 404, "Unknown player ID: " + assassinId + " -> " + targetId);
+			return;
+		}
+
+		try (PooledConnection writer = database.borrowWriter()) {
+			PreparedStatement insert = writer.prepareStatement(INSERT_KILL_SQL);
+			insert.setInt(1, assassinId);
+			insert.setInt(2, targetId);
+			insert.setInt(3, weekNumber);
+			insert.executeUpdate();
+		}
+		catch (SQLException e) {
+			System.out.println("Error recording kill " + assassinId + " -> " + targetId + ": " + e.getMessage());
+			sendError(exchange, 503, "The kill could not be saved to the database");
+			return;
+		}
+
+		StringBuilder json = new StringBuilder(256);
+		dataLock.writeLock().lock();
+		try {
+			// Applied the same way as loading from the database: eliminated players are not credited with later kills
+			Player assassin = playerData.get(assassinId);
+			Player target = playerData.get(targetId);
+			boolean credited = GameMaster.isKillCredited(assassin, weekNumber);
+			if (credited == true) {
+				GameMaster.getWeekScore(assassin, weekNumber).addTargetKilled(targetId);
+				leaderboard.update(assassin);
+			}
+			GameMaster.getWeekScore(target, weekNumber).addAssassinKiller(assassinId);
+			leaderboard.update(target);
+			killLog.append(assassinId, targetId, weekNumber, credited);
+
+			json.append("{\"assassin\": {\"rank\": ").append(leaderboard.getRank(assassinId)).append(", ");
+			appendPlayerTotals(json, assassin);
+			json.append("}, \"target\": {\"rank\": ").append(leaderboard.getRank(targetId)).append(", ");
+			appendPlayerTotals(json, target);
+			json.append("}}\n");
+		}
+		finally {
+			dataLock.writeLock().unlock();
+		}
+		sendJson(exchange, 201, json.toString());
+	}
+
+	/** POST /assignments?targets=3&amp;mode=random and GET /assignments/{id} */
+	private void handleAssignments(HttpExchange exchange) throws IOException {
+		String playerPath = pathRemainder(exchange, "/assignments/");
+		if (playerPath != null) {
+			if (requireMethod(exchange, "GET") == false) {
+				return;
+			}
+			handlePlayerAssignments(exchange, playerPath);
+			return;
+		}
+		if (requireMethod(exchange, "POST") == false) {
+			return;
+		}
+
+		Map<String, String> params = readParameters(exchange);
+		Integer targetCount = parseInt(params.getOrDefault("targets", "3"));
+		String mode = params.getOrDefault("mode", "random");
+		if (targetCount == null || targetCount <= 0) {
+			sendError(exchange, 400, "targets must be positive");
+			return;
+		}
+
+		AssignmentGraph assignments;
+		dataLock.readLock().lock();
+		try {
+			WeeklySummaryAssignment summary;
+			try {
+				summary = new WeeklySummaryAssignment(playerData, targetCount);
+			}
+			catch (RuntimeException e) {
+				sendError(exchange, 400, e.getMessage());
+				return;
+			}
+
+			boolean success = true;
+			if (mode.equals("random")) {
+				summary.assignRandomTargets();
+			}
+			else if (mode.equals("tiered")) {
+				Integer tierCount = parseInt(params.getOrDefault("tiers", "2"));
+				success = (tierCount != null) && summary.assignTieredRandomTargets(tierCount);
+			}
+			else if (mode.equals("nearby")) {
+				Integer windowSize = parseInt(params.getOrDefault("window", "16"));
+				success = (windowSize != null) && summary.assignNearbyRankTargets(windowSize);
+			}
+			else if (mode.equals("constrained")) {
+				success = summary.assignConstrainedTargets(new TargetAssignmentEngine(targetCount)) >= 0;
+			}
+			else {
+				sendError(exchange, 400, "Unknown assignment mode: " + mode);
+				return;
+			}
+
+			if (success == false) {
+				sendError(exchange, 400, "Targets could not be assigned with the given settings");
+				return;
+			}
+			assignments = summary.getTargetAssignments();
+		}
+		finally {
+			dataLock.readLock().unlock();
+		}
+
+		currentAssignments = assignments;
+		sendJson(exchange, 201, "{\"mode\": \"" + mode + "\", \"players\": " + assignments.getPlayerCount() +
+			", \"pairings\": " + assignments.getPairingCount() + "}\n");
+	}
+
+	/** GET /assignments/{id} */
+	private void handlePlayerAssignments(HttpExchange exchange, String playerPath) throws IOException {
+		Integer playerId = parseInt(playerPath);
+		if (playerId == null) {
+			sendError(exchange, 400, "Invalid player ID");
+			return;
+		}
+		AssignmentGraph assignments = currentAssignments;
+		if (assignments == null) {
+			sendError(exchange, 404, "No targets have been assigned yet");
+			return;
+		}
+
+		int[] targetIds = assignments.getTargetsOf(playerId);
+		int[] assassinIds = assignments.getAssassinsOf(playerId);
+		StringBuilder json = new StringBuilder(256);
+		json.append("{\"id\": ").append(playerId).append(", \"targets\": ");
+		appendPlayerList(json, (targetIds == null) ? new int[0] : targetIds);
+		json.append(", \"assassins\": ");
+		appendPlayerList(json, assassinIds);
+		json.append("}\n");
+		sendJson(exchange, 200, json.toString());
+	}
+
+	/** GET /stats */
+	private void handleStats(HttpExchange exchange) throws IOException {
+		if (requireMethod(exchange, "GET") == false) {
+			return;
+		}
+		double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+		long requests = requestLatencies.getCount();
+		sendJson(exchange, 200, "{\"requests\": " + requests + ", \"errors\": " + errorCount.sum() +
+			", \"uptimeSeconds\": " + String.format(Locale.ROOT, "%.1f", seconds) +
+			", \"requestsPerSecond\": " + String.format(Locale.ROOT, "%.1f", requests / seconds) +
+			", \"p50Millis\": " + formatMillis(requestLatencies.getPercentileNanos(50)) +
+			", \"p99Millis\": " + formatMillis(requestLatencies.getPercentileNanos(99)) +
+			", \"maxMillis\": " + formatMillis(requestLatencies.getMaxNanos()) + "}\n");
+	}
+
+	/**
+	 * Wraps a handler so that its latency is recorded and any unexpected error is answered with a 500 response
+	 * instead of leaving the client waiting
+	 */
+	private HttpHandler timed(HttpHandler handler) {
+		return exchange -> {
+			long start = System.nanoTime();
+			long metricsStart = Metrics.startNanos();
+			try {
+				handler.handle(exchange);
+			}
+			catch (RuntimeException | IOException e) {
+				System.out.println("Error handling " + exchange.getRequestMethod() + " " + exchange.getRequestURI() + ": " + e);
+				if (exchange.getResponseCode() == -1) {
+					sendError(exchange, 500, "Internal error");
+				}
+			}
+			finally {
+				exchange.close();
+				if (exchange.getResponseCode() >= 400) {
+					errorCount.increment();
+				}
+				requestLatencies.record(System.nanoTime() - start);
+				Metrics.record(Stage.HTTP_REQUEST, metricsStart, 1, 0);
+			}
+		};
+	}
+
+	/** Sends a 405 response and returns false if the request does not use the given method */
+	private static boolean requireMethod(HttpExchange exchange, String method) throws IOException {
+		if (exchange.getRequestMethod().equalsIgnoreCase(method)) {
+			return true;
+		}
+		exchange.getResponseHeaders().set("Allow", method);
+		sendError(exchange, 405, "Use " + method + " for " + exchange.getRequestURI().getPath());
+		return false;
+	}
+
+	/**
+	 * Returns the part of the request path after a prefix, such as the ID in /players/{id}
+	 * @return The rest of the path, or null if the path does not start with the prefix or nothing follows it
+	 */
+	private static String pathRemainder(HttpExchange exchange, String prefix) {
+		String path = exchange.getRequestURI().getPath();
+		if (path.startsWith(prefix) == false || path.length() == prefix.length()) {
+			return null;
+		}
+		return path.substring(prefix.length());
+	}
+
+	/** Reads the parameters of the query string and, for POST requests, the form encoded body */
+	private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+		HashMap<String, String> params = new HashMap();
+		parseParameters(exchange.getRequestURI().getRawQuery(), params);
+		if (exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			InputStream input = exchange.getRequestBody();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = input.read(buffer)) != -1) {
+				body.write(buffer, 0, read);
+			}
+			parseParameters(new String(body.toByteArray(), StandardCharsets.UTF_8), params);
+		}
+		return params;
+	}
+
+	/** Adds the name=value pairs of a query string or form body to a map */
+	private static void parseParameters(String text, Map<String, String> params) throws UnsupportedEncodingException {
+		if (text == null || text.isEmpty()) {
+			return;
+		}
+		for (String pair : text.split("&")) {
+			int equals = pair.indexOf('=');
+			if (equals > 0) {
+				params.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"), URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+			}
+		}
+	}
+
+	/** Returns a string as an int, or null if it is missing or not a number */
+	private static Integer parseInt(String value) {
+		if (value == null) {
+			return null;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/** Appends the ID, name and totals of a player as members of a JSON object */
+	private static void appendPlayerTotals(StringBuilder json, Player player) {
+		json.append("\"id\": ").append(player.getId()).append(", \"name\": ");
+		appendJsonString(json, player.getFirstName() + " " + player.getLastName());
+		json.append(", \"score\": ").append(player.getTotalScore());
+		json.append(", \"kills\": ").append(player.getTotalKills());
+		json.append(", \"deaths\": ").append(player.getTotalDeaths());
+		json.append(", \"eliminated\": ").append(player.isPlayerEliminated());
+	}
+
+	/** Appends a JSON array of objects holding the ID and name of each player */
+	private void appendPlayerList(StringBuilder json, int[] playerIds) {
+		json.append('[');
+		for (int i = 0; i < playerIds.length; ++i) {
+			Player player = playerData.get(playerIds[i]);
+			json.append((i == 0) ? "" : ", ").append("{\"id\": ").append(playerIds[i]).append(", \"name\": ");
+			appendJsonString(json, (player == null) ? null : player.getFirstName() + " " + player.getLastName());
+			json.append('}');
+		}
+		json.append(']');
+	}
+
+	/** Appends a string as a quoted JSON string, or null */
+	private static void appendJsonString(StringBuilder json, String value) {
+		if (value == null) {
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		for (int i = 0; i < value.length(); ++i) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				json.append(String.format("\\u%04x", (int) c));
+			}
+			else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	/** Sends an error response with a JSON body holding the message */
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		StringBuilder json = new StringBuilder("{\"error\": ");
+		appendJsonString(json, message);
+		json.append("}\n");
+		sendJson(exchange, status, json.toString());
+	}
+
+	/** Sends a complete JSON response */
+	private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(body);
+		}
+	}
+
+	/** Formats nanoseconds as milliseconds with microsecond precision */
+	private static String formatMillis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+	}
+
+	/**
+	 * Creates the executor that runs request handlers. Virtual threads are looked up by reflection so the application
+	 * still runs on JVMs that do not have them.
+	 */
+	private static ExecutorService createExecutor(int threadCount) {
+		if (threadCount > 0) {
+			return Executors.newFixedThreadPool(threadCount);
+		}
+		try {
+			Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtualThreadExecutor.invoke(null);
+		}
+		catch (ReflectiveOperationException e) {
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		}
+	}
+}
@@ -0,0 +1,344 @@
+package games.office.assassins;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+
+import games.office.assassins.model.Player;
+
+/**
+ * A live version of the rankings computed by PlayerRank that can be kept up to date while the week is in progress.
+ * Players are held in order statistic trees (treaps where each node tracks the size of its subtree), so a single
+ * player can be repositioned after a kill or bonus is recorded, and rank or range queries answered, in O(log n) time
+ * instead of re-sorting every player.
+ *
+ * Players are ordered by the same rules as PlayerRank: higher score first, then more kills, then fewer deaths.
+ * Players tied on all three are ordered by ID so that every player holds a distinct position. Active and eliminated
+ * players are kept in separate trees and numbered in the same way as PlayerRank.assignPlayerRanks(): active players
+ * are ranked (1..n) and eliminated players (-1..-n).
+ *
+ * The leaderboard stores a copy of each player's totals when they are added. Whenever a player's score data or
+ * elimination week changes, update() must be called for that player so that they are moved to their new position.
+ */
+public class Leaderboard {
+	/** A position in one of the trees, holding the ranking values of a player at the time it was inserted */
+	private static class Node {
+		final Player player;
+		final int score;
+		final int kills;
+		final int deaths;
+		final int id;
+		final boolean eliminated;
+		final int priority;
+		int size = 1;
+		Node left;
+		Node right;
+
+		Node(Player p, int nodePriority) {
+			player = p;
+			score = p.getTotalScore();
+			kills = p.getTotalKills();
+			deaths = p.getTotalDeaths();
+			id = p.getId();
+			eliminated = p.isPlayerEliminated();
+			priority = nodePriority;
+		}
+	}
+
+	/** Tree of players that have not been eliminated */
+	private Node activeRoot;
+
+	/** Tree of eliminated players */
+	private Node eliminatedRoot;
+
+	/** The current node of every player on the leaderboard, keyed by player ID */
+	private final HashMap<Integer, Node> playerNodes = new HashMap();
+
+	/** Source of the random node priorities that keep the trees balanced */
+	private final Random random = new Random();
+
+	/**
+	 * Creates a leaderboard holding all of the given players
+	 * @param players The players to rank
+	 */
+	public Leaderboard(Collection<Player> players) {
+		for (Player p : players) {
+			update(p);
+		}
+	}
+
+	/**
+	 * Adds a player to the leaderboard, or moves them to their new position if their totals or elimination status have
+	 * changed since they were last added or updated
+	 * @param player The player to add or reposition
+	 */
+	public void update(Player player) {
+		remove(player.getId());
+
+		Node node = new Node(player, random.nextInt());
+		if (node.eliminated == true) {
+			eliminatedRoot = insert(eliminatedRoot, node);
+		}
+		else {
+			activeRoot = insert(activeRoot, node);
+		}
+		playerNodes.put(player.getId(), node);
+	}
+
+	/**
+	 * Removes a player from the leaderboard
+	 * @param playerId The ID of the player to remove
+	 * @return False if the player was not on the leaderboard
+	 */
+	public boolean remove(int playerId) {
+		Node node = playerNodes.remove(playerId);
+		if (node == null) {
+			return false;
+		}
+
+		// The node holds the values the player was inserted with, so it can be found even if the player has changed
+		if (node.eliminated == true) {
+			eliminatedRoot = delete(eliminatedRoot, node);
+		}
+		else {
+			activeRoot = delete(activeRoot, node);
+		}
+		return true;
+	}
+
+	/** Returns the number of active players on the leaderboard */
+	public int getActivePlayerCount() {
+		return size(activeRoot);
+	}
+
+	/** Returns the number of eliminated players on the leaderboard */
+	public int getEliminatedPlayerCount() {
+		return size(eliminatedRoot);
+	}
+
+	/**
+	 * Returns the rank of a player, numbered in the same way as PlayerRank.assignPlayerRanks()
+	 * @param playerId The ID of the player
+	 * @return (1..n) for active players, (-1..-n) for eliminated players, or 0 if the player is not on the leaderboard
+	 */
+	public int getRank(int playerId) {
+		Node node = playerNodes.get(playerId);
+		if (node == null) {
+			return 0;
+		}
+
+		if (node.eliminated == true) {
+			return -(countBefore(eliminatedRoot, node) + 1);
+		}
+		return countBefore(activeRoot, node) + 1;
+	}
+
+	/**
+	 * Returns the player holding a rank
+	 * @param rank (1..n) for active players or (-1..-n) for eliminated players
+	 * @return The player at that rank, or null if there is no such rank
+	 */
+	public Player getPlayerAtRank(int rank) {
+		Node root = (rank > 0) ? activeRoot : eliminatedRoot;
+		int index = Math.abs(rank) - 1;
+		if (rank == 0 || index >= size(root)) {
+			return null;
+		}
+		return select(root, index).player;
+	}
+
+	/**
+	 * Returns all players holding a range of ranks, in rank order. Both ranks must have the same sign, so that the
+	 * range covers either active players (1..n) or eliminated players (-1..-n). Ranks past the end of the leaderboard
+	 * are ignored. Runs in O(log n + m) time for m returned players.
+	 * @param fromRank The first rank to return
+	 * @param toRank The last rank to return
+	 * @return The players in the range, ordered from fromRank towards toRank
+	 */
+	public ArrayList<Player> getRange(int fromRank, int toRank) {
+		if (fromRank == 0 || toRank == 0 || (fromRank > 0) != (toRank > 0)) {
+			throw new IllegalArgumentException("Invalid leaderboard rank range: " + fromRank + " to " + toRank);
+		}
+
+		Node root = (fromRank > 0) ? activeRoot : eliminatedRoot;
+		int first = Math.min(Math.abs(fromRank), Math.abs(toRank)) - 1;
+		int last = Math.min(Math.max(Math.abs(fromRank), Math.abs(toRank)), size(root)) - 1;
+
+		ArrayList<Player> players = new ArrayList();
+		collectRange(root, first, last, 0, players);
+		if (Math.abs(fromRank) > Math.abs(toRank)) {
+			Collections.reverse(players);
+		}
+		return players;
+	}
+
+	/**
+	 * Orders two nodes. Negative if a ranks above b: higher score, then more kills, then fewer deaths, then lower ID.
+	 * Integer.compare() is used so that large values can not overflow.
+	 */
+	private static int compareNodes(Node a, Node b) {
+		int difference = Integer.compare(b.score, a.score);
+		if (difference == 0) {
+			difference = Integer.compare(b.kills, a.kills);
+		}
+		if (difference == 0) {
+			difference = Integer.compare(a.deaths, b.deaths);
+		}
+		if (difference == 0) {
+			difference = Integer.compare(a.id, b.id);
+		}
+		return difference;
+	}
+
+	/** Returns the number of nodes in a subtree */
+	private static int size(Node node) {
+		return (node == null) ? 0 : node.size;
+	}
+
+	/** Recomputes the subtree size of a node from its children */
+	private static void resize(Node node) {
+		node.size = 1 + size(node.left) + size(node.right);
+	}
+
+	/** Inserts a node into a subtree and returns the new root of that subtree */
+	private static Node insert(Node root, Node node) {
+		if (root == null) {
+			node.left = null;
+			node.right = null;
+			node.size = 1;
+			return node;
+		}
+
+		if (compareNodes(node, root) < 0) {
+			root.left = insert(root.left, node);
+			if (root.left.priority > root.priority) {
+				root = rotateRight(root);
+			}
+		}
+		else {
+			root.right = insert(root.right, node);
+			if (root.right.priority > root.priority) {
+				root = rotateLeft(root);
+			}
+		}
+		resize(root);
+		return root;
+	}
+
+	/** Deletes a node from a subtree and returns the new root of that subtree */
+	private static Node delete(Node root, Node node) {
+		if (root == null) {
+			return null;
+		}
+
+		if (root == node) {
+			return merge(root.left, root.right);
+		}
+		if (compareNodes(node, root) < 0) {
+			root.left = delete(root.left, node);
+		}
+		else {
+			root.right = delete(root.right, node);
+		}
+		resize(root);
+		return root;
+	}
+
+	/** Joins two subtrees where every node in left ranks above every node in right */
+	private static Node merge(Node left, Node right) {
+		if (left == null) {
+			return right;
+		}
+		if (right == null) {
+			return left;
+		}
+
+		if (left.priority > right.priority) {
+			left.right = merge(left.right, right);
+			resize(left);
+			return left;
+		}
+		right.left = merge(left, right.left);
+		resize(right);
+		return right;
+	}
+
+	private static Node rotateRight(Node node) {
+		Node newRoot = node.left;
+		node.left = newRoot.right;
+		newRoot.right = node;
+		resize(node);
+		resize(newRoot);
+		return newRoot;
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node newRoot = node.right;
+		node.right = newRoot.left;
+		newRoot.left = node;
+		resize(node);
+		resize(newRoot);
+		return newRoot;
+	}
+
+	/** Counts the nodes in a subtree that rank above the given node */
+	private static int countBefore(Node root, Node node) {
+		int count = 0;
+		while (root != null) {
+			int comparison = compareNodes(node, root);
+			if (comparison == 0) {
+				return count + size(root.left);
+			}
+			if (comparison < 0) {
+				root = root.left;
+			}
+			else {
+				count += size(root.left) + 1;
+				root = root.right;
+			}
+		}
+		return count;
+	}
+
+	/** Returns the node at a zero based position in a subtree */
+	private static Node select(Node root, int index) {
+		while (root != null) {
+			int leftSize = size(root.left);
+			if (index < leftSize) {
+				root = root.left;
+			}
+			else if (index == leftSize) {
+				return root;
+			}
+			else {
+				index -= leftSize + 1;
+				root = root.right;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the players at zero based positions first to last of a subtree to a list, skipping any subtree that lies
+	 * entirely outside of the range
+	 * @param offset The position of the leftmost node of this subtree within the whole tree
+	 */
+	private static void collectRange(Node root, int first, int last, int offset, ArrayList<Player> players) {
+		if (root == null || first > last) {
+			return;
+		}
+
+		int position = offset + size(root.left);
+		if (first < position) {
+			collectRange(root.left, first, last, offset, players);
+		}
+		if (first <= position && position <= last) {
+			players.add(root.player);
+		}
+		if (last > position) {
+			collectRange(root.right, first, last, position + 1, players);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package games.office.assassins;
+
+import java.io.File;
+
+import java.sql.SQLException;
+
+import java.util.HashMap;
+
+import lombok.Getter;
+
+import games.office.assassins.config.DatabaseConnection;
+import games.office.assassins.config.PooledConnection;
+import games.office.assassins.model.KillLog;
+import games.office.assassins.model.Player;
+
+/**
+ * Everything one game of assassins needs while it is being run: its own connection to the league's database and the
+ * player data loaded from it, along with the kill log when the league is served. Nothing is shared between leagues,
+ * so any number of them can be opened, loaded and run at once in the same JVM, each on its own thread. A single
+ * league is not thread safe, and must only be used by one thread at a time unless the caller guards it, as GameServer
+ * does.
+ */
+public class League implements AutoCloseable {
+	/** The name of the league, which is the database filename without its directory or extension */
+	@Getter
+	private final String name;
+
+	/** The filename of the league's database */
+	@Getter
+	private final String databaseFilename;
+
+	/** The file the loaded game data is saved to and read back from, or null to always do a full load */
+	@Getter
+	private final String snapshotFilename;
+
+	/** The league's connection to its database */
+	@Getter
+	private final DatabaseConnection database = new DatabaseConnection();
+
+	/** A map containing all player and game data loaded from the database, or null until load() succeeds */
+	@Getter
+	private HashMap<Integer, Player> playerData = null;
+
+	/** Every kill in the league's database, or null until loadKillLog() succeeds */
+	@Getter
+	private KillLog killLog = null;
+
+	/**
+	 * @param databaseFile The filename of the league's database
+	 * @param snapshotFile The file to read and save the snapshot to, or null to always do a full load
+	 */
+	public League(String databaseFile, String snapshotFile) {
+		if (databaseFile == null) {
+			throw new RuntimeException("Null database filename passed to League constructor");
+		}
+		databaseFilename = databaseFile;
+		snapshotFilename = snapshotFile;
+
+		String filename = new File(databaseFile).getName();
+		int extension = filename.lastIndexOf('.');
+		name = (extension > 0) ? filename.substring(0, extension) : filename;
+	}
+
+	/**
+	 * @param databaseFile The filename of the league's database
+	 */
+	public League(String databaseFile) {
+		this(databaseFile, null);
+	}
+
+	/**
+	 * Opens the connection to the league's database
+	 * @return True for success
+	 */
+	public boolean open() {
+		return database.openConnection(databaseFilename);
+	}
+
+	/**
+	 * Loads all game data from the league's database, holding its writer connection while doing so. See
+	 * GameMaster.loadGameData() for what is loaded
+	 * @return True for success
+	 */
+	public boolean load() {
+		try (PooledConnection writer = database.borrowWriter()) {
+			playerData = GameMaster.loadGameData(writer, snapshotFilename);
+		}
+		catch (SQLException e) {
+			System.out.println("Unable to load league " + name + ": " + e.getMessage());
+			return false;
+		}
+		return playerData != null;
+	}
+
+	/**
+	 * Reads the whole kills table into a KillLog for answering lookups while the league is served. This is a second
+	 * pass over the table, so it is only done when a GameServer needs it. Must be called after load()
+	 * @return True for success
+	 */
+	public boolean loadKillLog() {
+		if (playerData == null) {
+			System.out.println("The game data of league " + name + " must be loaded before its kill log");
+			return false;
+		}
+		try (PooledConnection writer = database.borrowWriter()) {
+			killLog = GameMaster.loadKillLog(writer, playerData);
+		}
+		catch (SQLException e) {
+			System.out.println("Unable to load the kill log of league " + name + ": " + e.getMessage());
+			return false;
+		}
+		return killLog != null;
+	}
+
+	/** Returns the number of players loaded, or 0 if no game data has been loaded */
+	public int getPlayerCount() {
+		return (playerData == null) ? 0 : playerData.size();
+	}
+
+	/** Closes the connection to the league's database. The loaded game data remains available */
+	@Override
+	public void close() {
+		database.closeConnection();
+	}
+}
@@ -0,0 +1,235 @@
+package games.office.assassins;
+
+import java.io.File;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Runs the same week for many leagues at once in one JVM. Every league database is opened as its own League, with its
+ * own connection and player data, and run from start to finish by a single task: its game data is loaded, its players
+ * are ranked, random targets are assigned and the week's e-mails are written to "[league name]_week[N].txt" in the
+ * output directory, and its connection is closed again. At most threadCount leagues run at once, so memory use is
+ * bounded by the largest threadCount leagues rather than by every league given. E-mails are rendered on the league's
+ * own thread, since the leagues themselves already keep every thread busy.
+ *
+ * A league that fails to run is reported and does not stop the others. Once every league has finished, the combined
+ * throughput and the peak heap use of the run can be printed.
+ *
+ * Output files are named after the league alone, so leagues from different directories whose databases share a name
+ * would overwrite each other's e-mails. A run given such leagues is refused before any of them are started.
+ */
+public class LeagueRunner {
+	/** The number of leagues run at once */
+	@Getter
+	private final int threadCount;
+
+	/** The number of targets assigned to each active player */
+	@Getter @Setter
+	private int targetCount = 3;
+
+	/** The week of play that the e-mails are written for */
+	@Getter @Setter
+	private int gameWeek = 1;
+
+	/** The directory that e-mail files are written to */
+	@Getter @Setter
+	private String outputDirectory = "emails";
+
+	/** The results of the last run, in the order the leagues were given */
+	private final ArrayList<LeagueResult> results = new ArrayList();
+
+	/** How long the last run took, from the first league being started to the last one finishing */
+	@Getter
+	private long runNanos;
+
+	/** The most heap in use at once during the last run */
+	@Getter
+	private long peakHeapBytes;
+
+	/** The outcome of running one league */
+	@Getter
+	public static class LeagueResult {
+		private final String name;
+		private final boolean success;
+		private final int playerCount;
+		private final long runNanos;
+
+		private LeagueResult(String leagueName, boolean succeeded, int players, long nanos) {
+			name = leagueName;
+			success = succeeded;
+			playerCount = players;
+			runNanos = nanos;
+		}
+	}
+
+	/**
+	 * @param threads The number of leagues to run at once
+	 */
+	public LeagueRunner(int threads) {
+		if (threads <= 0) {
+			throw new RuntimeException("Invalid thread count passed to LeagueRunner constructor: " + threads);
+		}
+		threadCount = threads;
+	}
+
+	/**
+	 * Runs the week for every league and waits for them all to finish
+	 * @param databaseFilenames The database file of each league
+	 * @return True if every league ran successfully, or false if any failed or two leagues share a name, in which case
+	 *         no league is run
+	 */
+	public boolean runLeagues(List<String> databaseFilenames) {
+		results.clear();
+		runNanos = 0;
+		peakHeapBytes = 0;
+		if (hasUniqueNames(databaseFilenames) == false) {
+			return false;
+		}
+
+		List<MemoryPoolMXBean> heapPools = new ArrayList();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+				heapPools.add(pool);
+			}
+		}
+
+		long startTime = System.nanoTime();
+		ExecutorService leagueExecutor = Executors.newFixedThreadPool(Math.min(threadCount, Math.max(1, databaseFilenames.size())));
+		ArrayList<Future<LeagueResult>> futures = new ArrayList();
+		for (String databaseFilename : databaseFilenames) {
+			futures.add(leagueExecutor.submit(() -> runLeague(databaseFilename)));
+		}
+
+		boolean success = true;
+		for (int i = 0; i < futures.size(); ++i) {
+			LeagueResult result;
+			try {
+				result = futures.get(i).get();
+			}
+			catch (InterruptedException | ExecutionException e) {
+				System.out.println("League " + databaseFilenames.get(i) + " did not finish: " + e.getMessage());
+				result = new LeagueResult(new League(databaseFilenames.get(i)).getName(), false, 0, 0);
+			}
+			results.add(result);
+			success &= result.isSuccess();
+		}
+		leagueExecutor.shutdown();
+		runNanos = System.nanoTime() - startTime;
+
+		// The pools do not reach their peaks at the same moment, so the sum of their peaks is an upper bound
+		peakHeapBytes = 0;
+		for (MemoryPoolMXBean pool : heapPools) {
+			peakHeapBytes += pool.getPeakUsage().getUsed();
+		}
+		return success;
+	}
+
+	/**
+	 * Checks that no two leagues would write to the same output file, printing every clash found
+	 * @param databaseFilenames The database file of each league
+	 * @return True if every league has a different name
+	 */
+	private static boolean hasUniqueNames(List<String> databaseFilenames) {
+		boolean unique = true;
+		HashMap<String, String> filenamesByName = new HashMap();
+		for (String databaseFilename : databaseFilenames) {
+			// Compared without case, since "Office.db" and "office.db" are the same output file on some file systems
+			String name = new League(databaseFilename).getName();
+			String otherFilename = filenamesByName.putIfAbsent(name.toLowerCase(), databaseFilename);
+			if (otherFilename != null) {
+				System.out.println("Leagues " + otherFilename + " and " + databaseFilename + " would both write their e-mails to " +
+					name + "_week*.txt, rename one of the databases");
+				unique = false;
+			}
+		}
+		return unique;
+	}
+
+	/** Runs the week for one league from start to finish. Run on a league thread */
+	private LeagueResult runLeague(String databaseFilename) {
+		long startTime = System.nanoTime();
+		League league = new League(databaseFilename);
+		boolean success = false;
+		try {
+			if (league.open() == false || league.load() == false) {
+				System.out.println("Failed to load league " + league.getName() + " from file: " + databaseFilename);
+			}
+			else {
+				PlayerRank.assignPlayerRanks(league.getPlayerData());
+				WeeklySummaryAssignment assignments = new WeeklySummaryAssignment(league.getPlayerData(), targetCount);
+				assignments.setEmailThreadCount(1);
+				assignments.setOutputFilename(new File(outputDirectory, league.getName() + "_week" + gameWeek + ".txt").getPath());
+				assignments.assignRandomTargets();
+				success = assignments.writePlayerEmails(gameWeek);
+			}
+		}
+		catch (RuntimeException e) {
+			System.out.println("Failed to run league " + league.getName() + ": " + e.getMessage());
+		}
+		finally {
+			league.close();
+		}
+
+		LeagueResult result = new LeagueResult(league.getName(), success, league.getPlayerCount(), System.nanoTime() - startTime);
+		System.out.println("League " + result.getName() + ": " + (success ? "ran" : "failed") + " with " +
+			result.getPlayerCount() + " players in " + result.getRunNanos() / 1000000 + " ms");
+		return result;
+	}
+
+	/** Returns the results of the last run, in the order the leagues were given */
+	public List<LeagueResult> getResults() {
+		return new ArrayList(results);
+	}
+
+	/** Returns the number of leagues in the last run that ran successfully */
+	public int getSuccessCount() {
+		int count = 0;
+		for (LeagueResult result : results) {
+			if (result.isSuccess() == true) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** Returns the total number of players loaded across every league in the last run */
+	public long getPlayerCount() {
+		long count = 0;
+		for (LeagueResult result : results) {
+			count += result.getPlayerCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Prints the combined throughput and peak heap use of the last run to the screen
+	 */
+	public void printStatistics() {
+		long runMillis = runNanos / 1000000;
+		long leagueMillis = 0;
+		for (LeagueResult result : results) {
+			leagueMillis += result.getRunNanos() / 1000000;
+		}
+		System.out.println("========== League Run ==========");
+		System.out.println("Ran " + results.size() + " leagues on " + threadCount + " threads: " + getSuccessCount() + " succeeded, " +
+			(results.size() - getSuccessCount()) + " failed");
+		System.out.println(getPlayerCount() + " players in " + runMillis + " ms (" +
+			(runMillis == 0 ? 0 : results.size() * 1000L / runMillis) + " leagues/s, " +
+			(runMillis == 0 ? 0 : getPlayerCount() * 1000L / runMillis) + " players/s), " + leagueMillis + " ms of league time");
+		System.out.println("Peak heap: " + peakHeapBytes / (1024 * 1024) + " MB");
+	}
+}
@@ -0,0 +1,249 @@
+package games.office.assassins;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import games.office.assassins.model.IntList;
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * Renders the text of the weekly e-mail sent to a single player. Each section is written straight to the output
+ * Writer instead of being concatenated into a String first.
+ *
+ * The weekly breakdown of a player's career makes up most of each e-mail, and is identical from one week's e-mails to
+ * the next for every week that has already been played. The text for each week of a player's score data is therefore
+ * cached by player and week, and reused for as long as that week's Score has not been modified or replaced. The cache
+ * holds at most one entry per week of score data in the game, and can be emptied with clearCache(). Cached text
+ * includes the names of the other players involved, so the cache should be cleared if player names are changed.
+ *
+ * A renderer may be used by several threads at once, provided the player data is not modified while rendering.
+ */
+public class PlayerEmailRenderer {
+	/** The line written between e-mails in the output */
+	static final String EMAIL_SEPARATOR = "\n=================================================================\n";
+
+	/** Rendered text for a week of score data, along with the Score it was rendered from and its state at the time */
+	private static class CachedWeek {
+		final Score score;
+		final int changeCount;
+		final String text;
+
+		CachedWeek(Score weeklyScore, String weekText) {
+			score = weeklyScore;
+			changeCount = weeklyScore.getChangeCount();
+			text = weekText;
+		}
+	}
+
+	/** A map containing all player and game data. The player ID is the key */
+	private final HashMap<Integer, Player> playerData;
+
+	/** Every week number of the game, sorted from oldest to newest */
+	private final List<Integer> gameWeekNumbers;
+
+	/** Rendered weekly breakdowns, keyed by weekCacheKey() of the player and week they were rendered for */
+	private final ConcurrentHashMap<Long, CachedWeek> weekCache = new ConcurrentHashMap();
+
+	/**
+	 * @param data The player data to render e-mails for
+	 * @param weekNumbers Every week number of the game, sorted from oldest to newest. Included in each player's
+	 *                    weekly breakdown whether or not they have score data for that week
+	 */
+	public PlayerEmailRenderer(HashMap<Integer, Player> data, List<Integer> weekNumbers) {
+		playerData = data;
+		gameWeekNumbers = weekNumbers;
+	}
+
+	/**
+	 * Writes a player's e-mail for a given week. Active players receive their target assignments, and players that
+	 * were eliminated in the previous week receive an elimination notice. Both include the player's career summary.
+	 * The e-mail address and subject are written on the first two lines, followed by the body and EMAIL_SEPARATOR.
+	 * @param out Where to write the e-mail
+	 * @param player The player to write the e-mail for
+	 * @param targetText The player's list of targets for the week from renderTargetList(), ignored for eliminated players
+	 * @param gameWeek The week of play that the e-mails are being written for
+	 * @return False if the player was eliminated in an earlier week, in which case nothing is written
+	 */
+	public boolean writeEmail(Writer out, Player player, String targetText, int gameWeek) throws IOException {
+		String subject = getEmailSubject(player, gameWeek);
+		if (subject == null) {
+			return false;
+		}
+
+		out.write(String.valueOf(player.getEmail()));
+		out.write('\n');
+		out.write(subject);
+		out.write('\n');
+		writeEmailBody(out, player, targetText, gameWeek);
+		out.write(EMAIL_SEPARATOR);
+		return true;
+	}
+
+	/**
+	 * Returns the subject line of a player's e-mail for a given week
+	 * @param player The player to write the e-mail for
+	 * @param gameWeek The week of play that the e-mails are being written for
+	 * @return The subject, or null if the player was eliminated in an earlier week and receives no e-mail
+	 */
+	public String getEmailSubject(Player player, int gameWeek) {
+		if (player.isPlayerEliminated() == false) {
+			return "[Assassins] - Week " + gameWeek + " Targets";
+		}
+		else if (player.getWeekEliminated() == (gameWeek - 1)) {
+			return "[Assassins] - You have been eliminated at the end of week " + (gameWeek - 1);
+		}
+		return null;
+	}
+
+	/**
+	 * Writes the body of a player's e-mail for a given week. Call getEmailSubject() first to check that the player
+	 * receives an e-mail at all.
+	 * @param out Where to write the body
+	 * @param player The player to write the e-mail for
+	 * @param targetText The player's list of targets for the week from renderTargetList(), ignored for eliminated players
+	 * @param gameWeek The week of play that the e-mails are being written for
+	 */
+	public void writeEmailBody(Writer out, Player player, String targetText, int gameWeek) throws IOException {
+		// If a player has not been eliminated, write their assign targets and then their score summaries
+		if (player.isPlayerEliminated() == false) {
+			out.write("Assassin ");
+			out.write(String.valueOf(player.getFirstName()));
+			out.write(", your list of assigned targets for this week follows.\n\n");
+			out.write(String.valueOf(targetText));
+			out.write("\nPlayer Career Summary:\n\n");
+		}
+		// If a player was eliminated, write a notification along with their score summaries
+		else {
+			out.write("Assassin ");
+			out.write(String.valueOf(player.getFirstName()));
+			out.write(", unfortunately your performance relative to your peers has been insufficient. " +
+				"You have been eliminated from the game. You will continue to receive the weekly game update for the remainder of the game. " +
+				"New modifiers may come into effect that will allow you to continue participating.\n\n");
+			out.write("Below is your final score and career summary.\n\n");
+		}
+
+		writeScoreSummary(out, player);
+	}
+
+	/**
+	 * Renders a player's list of targets, one full name per line
+	 * @param targetIds The IDs of the player's targets
+	 * @return The rendered list, or null if targetIds is null
+	 */
+	public String renderTargetList(int[] targetIds) {
+		if (targetIds == null) {
+			return null;
+		}
+
+		StringBuilder text = new StringBuilder(32 * targetIds.length);
+		for (int targetId : targetIds) {
+			Player target = playerData.get(targetId);
+			text.append("- ").append(target.getFirstName()).append(' ').append(target.getLastName()).append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Writes out a player's entire career score summary. This includes their total score/kills/deaths, bonuses, and
+	 * weekly breakdowns.
+	 * @param out Where to write the summary
+	 * @param player The player to summarize
+	 */
+	public void writeScoreSummary(Writer out, Player player) throws IOException {
+		out.write("Total Kills: ");
+		out.write(Integer.toString(player.getTotalKills()));
+		out.write("\nTotal Deaths: ");
+		out.write(Integer.toString(player.getTotalDeaths()));
+		out.write("\nTotal Score: ");
+		out.write(Integer.toString(player.getTotalScore()));
+		out.write("\n\n");
+
+		// Score data is only stored for weeks with player activity, so walk every week of the game
+		out.write("=== Weekly Breakdown ===\n\n");
+		for (int weekNumber : gameWeekNumbers) {
+			writeWeekSummary(out, player, weekNumber);
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Writes a summary of a player's activity for a given week, reusing the cached text when the week's score data
+	 * has not changed since it was last rendered
+	 * @param out Where to write the summary
+	 * @param player The player to summarize
+	 * @param weekNumber The week number to grab score data from
+	 *
+	 * Note that this function does not summarize a player's total activity, as this is done in writeScoreSummary()
+	 */
+	public void writeWeekSummary(Writer out, Player player, int weekNumber) throws IOException {
+		Score weeklyScore = player.getScore(weekNumber);
+		if (weeklyScore == null) {
+			out.write("Week number ");
+			out.write(Integer.toString(weekNumber));
+			out.write(":\nKills / Deaths / Score == 0 / 0 / 0\n");
+			return;
+		}
+
+		// A Score that replaced the cached one for the week overwrites its entry, so stale Scores are never kept
+		Long key = weekCacheKey(player.getId(), weekNumber);
+		CachedWeek cached = weekCache.get(key);
+		if (cached == null || cached.score != weeklyScore || cached.changeCount != weeklyScore.getChangeCount()) {
+			cached = new CachedWeek(weeklyScore, renderWeekSummary(weeklyScore, weekNumber));
+			weekCache.put(key, cached);
+		}
+		out.write(cached.text);
+	}
+
+	/** Returns the number of weekly breakdowns held in the cache */
+	public int getCachedWeekCount() {
+		return weekCache.size();
+	}
+
+	/** Discards every cached weekly breakdown, so each is rendered again the next time it is written */
+	public void clearCache() {
+		weekCache.clear();
+	}
+
+	/** Returns the weekCache key of a player's week */
+	private static Long weekCacheKey(int playerId, int weekNumber) {
+		return ((long) playerId << 32) | (weekNumber & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Renders the text for a week of score data. Everything is read from the Score, so the week's line always agrees
+	 * with the player's totals, including after a kill has been removed from it
+	 * @param weeklyScore The score data to render
+	 * @param weekNumber The week number that the score data belongs to
+	 * @return Human-friendly text describing the activity
+	 */
+	private String renderWeekSummary(Score weeklyScore, int weekNumber) {
+		StringBuilder text = new StringBuilder(128);
+		text.append("Week number ").append(weekNumber).append(":\n");
+		text.append("Kills / Deaths / Score == ").append(weeklyScore.getKills()).append(" / ")
+			.append(weeklyScore.getDeaths()).append(" / ").append(weeklyScore.getScore()).append('\n');
+		if (weeklyScore.getKills() > 0) {
+			text.append("You successfully killed the following targets:\n");
+			appendPlayerNames(text, weeklyScore.getTargetPlayerIds());
+		}
+		if (weeklyScore.getDeaths() > 0) {
+			text.append("You were killed by the following assassins:\n");
+			appendPlayerNames(text, weeklyScore.getAssassinPlayerIds());
+		}
+
+		// TODO: print any bonuses the player earned for the week
+
+		return text.toString();
+	}
+
+	/** Appends one indented line with the full name of each player in a list */
+	private void appendPlayerNames(StringBuilder text, IntList playerIds) {
+		for (int i = 0; i < playerIds.size(); ++i) {
+			Player p = playerData.get(playerIds.get(i));
+			text.append("\t- ").append(p.getFirstName()).append(' ').append(p.getLastName()).append('\n');
+		}
+	}
+}
@@ -1,9 +1,23 @@
 package games.office.assassins;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import lombok.Getter;
 
+import games.office.assassins.metrics.Metrics;
+import games.office.assassins.metrics.Stage;
+import games.office.assassins.metrics.StageTimer;
 import games.office.assassins.model.Player;
 
 /**
@@ -17,8 +31,77 @@ import games.office.assassins.model.Player;
  * or ignored, and eliminated players are assigned a negative ranking number. This class can be improved by not ignoring
  * eliminated players, but ranking players in an earlier eliminated week below eliminated or active players
  * in a later week. Getting rid of the negative ranking numbers would be ideal as well.
+ *
+ * For standings that need to be kept current while kills are being recorded, see Leaderboard.
  */
 public class PlayerRank {
+	/**
+	 * Totals every player's kills, deaths and bonus points in the database and returns them in rank order, applying
+	 * the same rules as GameMaster.loadGameData(): kills and deaths are only counted when both players exist, and
+	 * kills made after the assassin's elimination week are not credited to them. Ties are broken by lower player ID.
+	 * The credited CTE is read twice, once grouped by assassin and once by target. The bundled SQLite predates window
+	 * functions, so rank numbers are counted as the rows are read.
+	 */
+	private static final String RANKED_TOTALS_SQL =
+		"WITH credited AS (" +
+			"SELECT k.AssassinId AS AssassinId, k.TargetId AS TargetId, " +
+			"(COALESCE(a.WeekEliminated, 0) = 0 OR COALESCE(a.WeekEliminated, 0) >= COALESCE(k.WeekNumber, 0)) AS Credited " +
+			"FROM kills k JOIN players a ON a.ID = k.AssassinId JOIN players t ON t.ID = k.TargetId), " +
+		"killTotals AS (SELECT AssassinId AS ID, SUM(Credited) AS Kills FROM credited GROUP BY AssassinId), " +
+		"deathTotals AS (SELECT TargetId AS ID, COUNT(*) AS Deaths FROM credited GROUP BY TargetId), " +
+		"bonusTotals AS (SELECT AssassinId AS ID, SUM(BonusPoints) AS BonusPoints FROM bonuses GROUP BY AssassinId) " +
+		"SELECT p.ID, p.FirstName, p.LastName, COALESCE(p.WeekEliminated, 0) AS WeekEliminated, " +
+			"COALESCE(kt.Kills, 0) AS Kills, COALESCE(dt.Deaths, 0) AS Deaths, " +
+			"COALESCE(kt.Kills, 0) - COALESCE(dt.Deaths, 0) + COALESCE(bt.BonusPoints, 0) AS Score " +
+		"FROM players p " +
+		"LEFT JOIN killTotals kt ON kt.ID = p.ID " +
+		"LEFT JOIN deathTotals dt ON dt.ID = p.ID " +
+		"LEFT JOIN bonusTotals bt ON bt.ID = p.ID ";
+
+	/** Orders the rows of RANKED_TOTALS_SQL in the same order as Player.compareTo() */
+	private static final String RANK_ORDER_SQL = "ORDER BY Score DESC, Kills DESC, Deaths ASC, p.ID ASC";
+
+	/**
+	 * Orders players by rank in the same way as Player.compareTo(), breaking ties by lower player ID as
+	 * RANK_ORDER_SQL does. Every player has a different place in this order, so selections and tier splits made with
+	 * it do not depend on the order the players were given in
+	 */
+	public static final Comparator<Player> RANK_ORDER = (a, b) -> {
+		int comparison = a.compareTo(b);
+		return (comparison != 0) ? comparison : Integer.compare(a.getId(), b.getId());
+	};
+
+	/** The seed for the pivots of partitionTopPlayers(), fixed so that the partitioned order is the same every run */
+	private static final long PARTITION_SEED = 1;
+
+	/**
+	 * The SQLite page cache size used while ranking from the database, in KiB. The query looks up both players of
+	 * every kill in the players table, which takes about half as long once the table fits in the cache. Pages are
+	 * only allocated as they are read, so small databases use no more memory than before
+	 */
+	private static final int RANKING_CACHE_KIB = 64 * 1024;
+
+	/**
+	 * One row of a ranking read straight from the database by streamPlayerRanks(). The same object is reused for every
+	 * row, so copy out any values that are needed after the handler returns.
+	 */
+	@Getter
+	public static class RankedPlayer {
+		/** (1..n) for active players and (-1..-n) for eliminated players, as assignPlayerRanks() numbers them */
+		private int rank;
+		private int id;
+		private String firstName;
+		private String lastName;
+		private int weekEliminated;
+		private int score;
+		private int kills;
+		private int deaths;
+
+		public boolean isPlayerEliminated() {
+			return (weekEliminated != 0);
+		}
+	}
+
 	/** A map containing all player and game data loaded from the database. The player ID is the key */
 	private HashMap<Integer, Player> playerData;
 
@@ -56,7 +139,10 @@ public class PlayerRank {
 	 */
 	public static void assignPlayerRanks(HashMap<Integer, Player> allPlayerData) {
 		ArrayList<Player> rankingList = new ArrayList(allPlayerData.values());
-		Collections.sort(rankingList);
+		try (StageTimer timer = Metrics.time(Stage.RANK_PLAYERS)) {
+			Collections.sort(rankingList);
+			timer.addRows(rankingList.size());
+		}
 
 		int rankNumber = 1;
 		int eliminatedRankNumber = -1;
@@ -77,7 +163,10 @@ public class PlayerRank {
 	 */
 	public void printPlayerRanks() {
 		ArrayList<Player> rankingList = new ArrayList(playerData.values());
-		Collections.sort(rankingList);
+		try (StageTimer timer = Metrics.time(Stage.RANK_PLAYERS)) {
+			Collections.sort(rankingList);
+			timer.addRows(rankingList.size());
+		}
 
 		System.out.println("========== Player Rankings ==========");
 		System.out.println("(Rank) ID: Name ... Score/Kills/Deaths\n");
@@ -89,4 +178,215 @@ public class PlayerRank {
 			rankNumber++;
 		}
 	}
+
+	/**
+	 * Ranks players straight from the database without loading the game data. SQLite totals each player's kills,
+	 * deaths and bonus points and sorts the players, and only one row per player is read back, so no Player or Score
+	 * objects are created and memory use does not grow with the number of kills. Gives the same ranks as loading the
+	 * game data and calling assignPlayerRanks(), apart from the order of players that are tied on score, kills and
+	 * deaths, which are ordered by ID here.
+	 *
+	 * @param dbConnection An open connection to the database
+	 * @param ignoreEliminatedPlayers If true, eliminated players are left out
+	 * @param handler Called with each player in rank order. The RankedPlayer passed to it is reused for every row
+	 * @return False if the database could not be read
+	 */
+	public static boolean streamPlayerRanks(Connection dbConnection, boolean ignoreEliminatedPlayers, Consumer<RankedPlayer> handler) {
+		String query = RANKED_TOTALS_SQL + (ignoreEliminatedPlayers ? "WHERE COALESCE(p.WeekEliminated, 0) = 0 " : "") + RANK_ORDER_SQL;
+		RankedPlayer row = new RankedPlayer();
+		int rankNumber = 1;
+		int eliminatedRankNumber = -1;
+
+		try (StageTimer timer = Metrics.time(Stage.RANK_PLAYERS);
+			 Statement dbStatement = dbConnection.createStatement()) {
+			int previousCacheSize;
+			try (ResultSet results = dbStatement.executeQuery("PRAGMA cache_size")) {
+				if (results.next() == false) {
+					throw new SQLException("PRAGMA cache_size returned no value");
+				}
+				previousCacheSize = results.getInt(1);
+			}
+
+			dbStatement.execute("PRAGMA cache_size = -" + RANKING_CACHE_KIB);
+			try (ResultSet results = dbStatement.executeQuery(query)) {
+				while (results.next()) {
+					timer.addRows(1);
+					row.id = results.getInt("ID");
+					row.firstName = results.getString("FirstName");
+					row.lastName = results.getString("LastName");
+					row.weekEliminated = results.getInt("WeekEliminated");
+					row.score = results.getInt("Score");
+					row.kills = results.getInt("Kills");
+					row.deaths = results.getInt("Deaths");
+					row.rank = row.isPlayerEliminated() ? eliminatedRankNumber-- : rankNumber++;
+					handler.accept(row);
+				}
+			}
+			finally {
+				dbStatement.execute("PRAGMA cache_size = " + previousCacheSize);
+			}
+		}
+		catch (SQLException e) {
+			System.out.println("Error ranking players in the database: " + e.getMessage());
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Prints rankings for all players to the screen in the same format as printPlayerRanks(), reading them straight
+	 * from the database with streamPlayerRanks()
+	 *
+	 * @param dbConnection An open connection to the database
+	 * @param ignoreEliminatedPlayers If true, eliminated players are left out
+	 * @return False if the database could not be read
+	 */
+	public static boolean printPlayerRanks(Connection dbConnection, boolean ignoreEliminatedPlayers) {
+		System.out.println("========== Player Rankings ==========");
+		System.out.println("(Rank) ID: Name ... Score/Kills/Deaths\n");
+
+		int[] rankNumber = {1};
+		return streamPlayerRanks(dbConnection, ignoreEliminatedPlayers, p -> {
+			System.out.println("(" + rankNumber[0] + ") " + p.getId() + ": " + p.getFirstName() + " " + p.getLastName());
+			System.out.println("    " + p.getScore() + "/" + p.getKills() + "/" + p.getDeaths());
+			rankNumber[0]++;
+		});
+	}
+
+	/**
+	 * Returns the k highest ranked players without sorting every player. A bounded heap holding the best k players seen
+	 * so far is kept while walking the player data once, which takes O(n log k) time. Tied players are ordered by
+	 * RANK_ORDER.
+	 *
+	 * @param k The number of players to return
+	 * @return Up to k players, ordered from highest to lowest rank
+	 */
+	public ArrayList<Player> getTopPlayers(int k) {
+		return selectPlayers(k, RANK_ORDER.reversed());
+	}
+
+	/**
+	 * Returns the k lowest ranked players without sorting every player, such as the candidates for elimination at the
+	 * end of a week. Runs in O(n log k) time in the same manner as getTopPlayers().
+	 *
+	 * @param k The number of players to return
+	 * @return Up to k players, ordered from highest to lowest rank
+	 */
+	public ArrayList<Player> getBottomPlayers(int k) {
+		ArrayList<Player> bottomPlayers = selectPlayers(k, RANK_ORDER);
+		Collections.reverse(bottomPlayers);
+		return bottomPlayers;
+	}
+
+	/**
+	 * Finds the rank of a single player by counting the players that are ranked above them, which takes O(n) time
+	 * instead of the O(n log n) of a full sort. Players that are tied share the same rank number.
+	 *
+	 * @param playerId The ID of the player to rank
+	 * @return The player's rank number (1..n), or 0 if the player is not part of this ranking
+	 */
+	public int getPlayerRank(int playerId) {
+		Player player = playerData.get(playerId);
+		if (player == null) {
+			return 0;
+		}
+
+		int rankNumber = 1;
+		for (Player p : playerData.values()) {
+			if (p.compareTo(player) < 0) {
+				rankNumber++;
+			}
+		}
+		return rankNumber;
+	}
+
+	/**
+	 * Helper for getTopPlayers() and getBottomPlayers(). Keeps a heap of k players where the head is the player that
+	 * would be dropped first according to heapOrder.
+	 *
+	 * @param k The number of players to select
+	 * @param heapOrder Ordering of the heap. The players at the end of this ordering are the ones selected
+	 * @return The selected players, ordered from the end of heapOrder to the start
+	 */
+	private ArrayList<Player> selectPlayers(int k, Comparator<Player> heapOrder) {
+		if (k <= 0) {
+			return new ArrayList();
+		}
+
+		PriorityQueue<Player> heap = new PriorityQueue(Math.min(k, playerData.size()) + 1, heapOrder);
+		for (Player p : playerData.values()) {
+			if (heap.size() < k) {
+				heap.add(p);
+			}
+			else if (heapOrder.compare(p, heap.peek()) > 0) {
+				heap.poll();
+				heap.add(p);
+			}
+		}
+
+		ArrayList<Player> selected = new ArrayList(heap.size());
+		while (heap.isEmpty() == false) {
+			selected.add(heap.poll());
+		}
+		Collections.reverse(selected);
+		return selected;
+	}
+
+	/**
+	 * Partially orders an array of players so that the k highest ranked players occupy the first k positions and the
+	 * remaining players follow them. Neither group is sorted. This uses a quickselect with random pivots, which runs
+	 * in O(n) expected time, and is used to split players into tiers without sorting them.
+	 *
+	 * Players are compared with RANK_ORDER, so of the players tied at the boundary the ones with the lowest IDs are
+	 * placed in the top k, and the top k are always the first k players of a full sort. The pivots are drawn from a
+	 * fixed seed, so the same players in the same order are always partitioned into the same order.
+	 *
+	 * @param players The players to partition. The array is reordered in place
+	 * @param k The number of top ranked players to move to the front of the array
+	 */
+	public static void partitionTopPlayers(Player[] players, int k) {
+		int low = 0;
+		int high = players.length - 1;
+		Random random = new Random(PARTITION_SEED);
+
+		while (k > low && k <= high) {
+			// Three-way partition around a random pivot: [low, lessEnd) ranks higher than the pivot,
+			// [lessEnd, greaterStart) ties with it, and [greaterStart, high] ranks lower
+			Player pivot = players[low + random.nextInt(high - low + 1)];
+			int lessEnd = low;
+			int greaterStart = high + 1;
+			int i = low;
+			while (i < greaterStart) {
+				int comparison = RANK_ORDER.compare(players[i], pivot);
+				if (comparison < 0) {
+					swapPlayers(players, i++, lessEnd++);
+				}
+				else if (comparison > 0) {
+					swapPlayers(players, i, --greaterStart);
+				}
+				else {
+					i++;
+				}
+			}
+
+			// Continue only in the partition that contains the split point
+			if (k < lessEnd) {
+				high = lessEnd - 1;
+			}
+			else if (k > greaterStart) {
+				low = greaterStart;
+			}
+			else {
+				return;
+			}
+		}
+	}
+
+	/** Swaps two entries of a player array */
+	private static void swapPlayers(Player[] players, int i, int j) {
+		Player temp = players[i];
+		players[i] = players[j];
+		players[j] = temp;
+	}
 }
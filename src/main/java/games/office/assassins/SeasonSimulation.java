@@ -0,0 +1,185 @@
+package games.office.assassins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The results of a SeasonSimulator run: how often each active player was eliminated or won, and statistics that
+ * describe how the simulated week formats played out.
+ */
+public class SeasonSimulation {
+	/** The IDs of the simulated players in ascending order */
+	private final int[] playerIds;
+
+	/** The names of the simulated players */
+	private final String[] playerNames;
+
+	/** The number of seasons in which each player was eliminated */
+	private final long[] eliminationCounts;
+
+	/** The number of seasons each player won */
+	private final long[] winCounts;
+
+	/** The format of each simulated week */
+	@Getter
+	private final List<WeekFormat> weeks;
+
+	/** The number of seasons simulated */
+	@Getter
+	private final int seasonCount;
+
+	/** The seed the simulation was run with */
+	@Getter
+	private final long seed;
+
+	/** How long the simulation took */
+	@Getter
+	@Setter(AccessLevel.PACKAGE)
+	private long elapsedNanos;
+
+	private long pairingCount;
+	private long killCount;
+	private long rankDistanceTotal;
+	private long playerWeekCount;
+	private long favouriteWinCount;
+	private long eliminationTotal;
+	private long tiedEliminationCount;
+
+	SeasonSimulation(int[] ids, String[] names, List<WeekFormat> weekFormats, int seasons, long randomSeed) {
+		playerIds = ids;
+		playerNames = names;
+		eliminationCounts = new long[ids.length];
+		winCounts = new long[ids.length];
+		weeks = new ArrayList(weekFormats);
+		seasonCount = seasons;
+		seed = randomSeed;
+	}
+
+	/** Adds the tallies of one simulating thread */
+	void add(long[] eliminations, long[] wins, long pairings, long kills, long rankDistance, long playerWeeks,
+			long favouriteWins, long eliminated, long tiedEliminations) {
+		for (int i = 0; i < playerIds.length; ++i) {
+			eliminationCounts[i] += eliminations[i];
+			winCounts[i] += wins[i];
+		}
+		pairingCount += pairings;
+		killCount += kills;
+		rankDistanceTotal += rankDistance;
+		playerWeekCount += playerWeeks;
+		favouriteWinCount += favouriteWins;
+		eliminationTotal += eliminated;
+		tiedEliminationCount += tiedEliminations;
+	}
+
+	/**
+	 * Returns the chance that a player is eliminated before the end of the simulated weeks
+	 * @param playerId The ID of the player
+	 * @return From 0 to 1, or 1 for a player who was already eliminated
+	 */
+	public double getEliminationProbability(int playerId) {
+		int index = Arrays.binarySearch(playerIds, playerId);
+		return (index >= 0) ? (double) eliminationCounts[index] / seasonCount : 1;
+	}
+
+	/**
+	 * Returns the chance that a player is ranked first at the end of the simulated weeks
+	 * @param playerId The ID of the player
+	 * @return From 0 to 1, or 0 for a player who was already eliminated
+	 */
+	public double getWinProbability(int playerId) {
+		int index = Arrays.binarySearch(playerIds, playerId);
+		return (index >= 0) ? (double) winCounts[index] / seasonCount : 0;
+	}
+
+	/** Returns the number of player-weeks simulated: one for each active player in each week of each season */
+	public long getPlayerWeekCount() {
+		return playerWeekCount;
+	}
+
+	/** Returns the number of weeks simulated, counting each week of each season once */
+	public long getSimulatedWeekCount() {
+		return (long) seasonCount * weeks.size();
+	}
+
+	/** Returns the number of weeks simulated per second */
+	public double getWeeksPerSecond() {
+		return getSimulatedWeekCount() / Math.max(1e-9, elapsedNanos / 1e9);
+	}
+
+	/** Returns the average number of kills made by each active player in a week */
+	public double getKillsPerPlayerWeek() {
+		return (playerWeekCount > 0) ? (double) killCount / playerWeekCount : 0;
+	}
+
+	/** Returns the fraction of assigned targets that were killed */
+	public double getKillFraction() {
+		return (pairingCount > 0) ? (double) killCount / pairingCount : 0;
+	}
+
+	/** Returns the average difference in rank between an assassin and their target when targets were assigned */
+	public double getMeanTargetRankDistance() {
+		return (pairingCount > 0) ? (double) rankDistanceTotal / pairingCount : 0;
+	}
+
+	/** Returns the chance that the player ranked first when the simulation started goes on to win */
+	public double getFavouriteWinProbability() {
+		return (double) favouriteWinCount / seasonCount;
+	}
+
+	/**
+	 * Returns the fraction of weeks with eliminations in which the last player to survive had the same score, kills
+	 * and deaths as the first player eliminated, so that the elimination came down to the tie break. High values mean
+	 * the format does not separate the players near the elimination line
+	 */
+	public double getTiedEliminationFraction() {
+		long eliminationWeeks = 0;
+		for (WeekFormat week : weeks) {
+			if (week.getEliminationCount() > 0) {
+				eliminationWeeks += seasonCount;
+			}
+		}
+		return (eliminationWeeks > 0) ? (double) tiedEliminationCount / eliminationWeeks : 0;
+	}
+
+	/** Returns the number of players eliminated in an average season */
+	public double getEliminationsPerSeason() {
+		return (double) eliminationTotal / seasonCount;
+	}
+
+	/**
+	 * Prints the format statistics and the players most likely to win to the screen
+	 * @param playerCount The number of players to list
+	 */
+	public void printSummary(int playerCount) {
+		System.out.println("========== Season Simulation ==========");
+		for (int i = 0; i < weeks.size(); ++i) {
+			System.out.println("Week " + (i + 1) + ": " + weeks.get(i));
+		}
+		System.out.println(seasonCount + " seasons of " + playerIds.length + " players, seed " + seed + ": " +
+			String.format(Locale.ROOT, "%.0f", getWeeksPerSecond()) + " weeks per second");
+		System.out.println(String.format(Locale.ROOT, "Kills per player-week: %.3f, targets killed: %.1f%%, mean target rank distance: %.1f",
+			getKillsPerPlayerWeek(), 100 * getKillFraction(), getMeanTargetRankDistance()));
+		System.out.println(String.format(Locale.ROOT, "Favourite wins: %.1f%%, eliminations decided by tie break: %.1f%%",
+			100 * getFavouriteWinProbability(), 100 * getTiedEliminationFraction()));
+
+		Integer[] order = new Integer[playerIds.length];
+		for (int i = 0; i < order.length; ++i) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> (winCounts[a] != winCounts[b]) ? Long.compare(winCounts[b], winCounts[a]) :
+			Long.compare(eliminationCounts[a], eliminationCounts[b]));
+
+		System.out.println("ID: Name ... Win/Eliminated");
+		for (int i = 0; i < Math.min(playerCount, order.length); ++i) {
+			int index = order[i];
+			System.out.println(playerIds[index] + ": " + playerNames[index] + " ... " +
+				String.format(Locale.ROOT, "%.1f%%/%.1f%%", 100.0 * winCounts[index] / seasonCount, 100.0 * eliminationCounts[index] / seasonCount));
+		}
+	}
+}
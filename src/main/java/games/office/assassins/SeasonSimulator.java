@@ -0,0 +1,443 @@
+package games.office.assassins;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import games.office.assassins.model.Player;
+
+/**
+ * Plays out the rest of a game many times from the current standings, to estimate each active player's chances of
+ * being eliminated or winning and to compare week formats (target counts, pairing algorithms and elimination counts)
+ * before choosing one.
+ *
+ * Each simulated week pairs the active players with the same algorithms as WeeklySummaryAssignment, resolves every
+ * pairing as a kill or not at random, ranks the players in the same order as PlayerRank and eliminates the lowest
+ * ranked. A pairing A -> T is a kill with probability huntRate(A) * exposure(T). The hunt rate is the player's kills
+ * per week divided by historicalTargetCount, and the exposure is their deaths per week relative to the average
+ * player. Both are smoothed towards the league average with PRIOR_WEEKS weeks of average play, so that players with
+ * little history are not given extreme rates. Bonuses are not simulated.
+ *
+ * Seasons are simulated in parallel in tasks of SEASONS_PER_TASK seasons. Every task gets its own SplittableRandom
+ * split from the seed in a fixed order, so the same player data, formats, season count and seed always give the same
+ * result however many threads are used. Each thread reuses one set of arrays for all of its seasons, so the inner
+ * loops allocate nothing.
+ */
+public class SeasonSimulator {
+	/** The number of seasons simulated by each task */
+	private static final int SEASONS_PER_TASK = 64;
+
+	/** The number of weeks of league average play that each player's history is smoothed with */
+	private static final double PRIOR_WEEKS = 2;
+
+	/** Sorts ranges shorter than this with an insertion sort */
+	private static final int INSERTION_SORT_LENGTH = 16;
+
+	/** The IDs of the simulated players, who are the active players of the game, in ascending order */
+	private final int[] playerIds;
+
+	/** The names of the simulated players, for printing results */
+	private final String[] playerNames;
+
+	/** The total score of each simulated player when the simulation starts */
+	private final int[] startScores;
+
+	/** The total kills of each simulated player when the simulation starts */
+	private final int[] startKills;
+
+	/** The total deaths of each simulated player when the simulation starts */
+	private final int[] startDeaths;
+
+	/** Player indexes in rank order when the simulation starts */
+	private final int[] startRanking;
+
+	/** The chance that each player kills a target of average exposure in a week */
+	private final double[] huntRates;
+
+	/** How likely each player is to be killed by an assassin, relative to the average player */
+	private final double[] exposures;
+
+	/** The number of threads that simulate seasons. Does not affect the result */
+	@Getter @Setter
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * Prepares to simulate the rest of a game from the current standings of its active players
+	 * @param data The player data loaded from the database. It is only read here and is not changed by simulating
+	 * @param historicalTargetCount The number of targets players have usually been given each week so far, which
+	 *                              turns kills per week into the chance of killing one target
+	 */
+	public SeasonSimulator(HashMap<Integer, Player> data, int historicalTargetCount) {
+		if (data == null || historicalTargetCount <= 0) {
+			throw new RuntimeException("Null player data or invalid target count passed to SeasonSimulator constructor");
+		}
+
+		TreeSet<Integer> weekNumbers = new TreeSet();
+		ArrayList<Player> activePlayers = new ArrayList();
+		for (Player p : data.values()) {
+			for (int i = 0; i < p.getWeekCount(); ++i) {
+				weekNumbers.add(p.getWeekNumber(i));
+			}
+			if (p.isPlayerEliminated() == false) {
+				activePlayers.add(p);
+			}
+		}
+		if (activePlayers.size() < 2) {
+			throw new RuntimeException("At least two active players are needed to simulate a game");
+		}
+		activePlayers.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
+
+		// League averages over every week each player was in the game, eliminated players included. A game with no
+		// history yet is assumed to average one kill and one death per player per week
+		long totalKills = 0;
+		long totalDeaths = 0;
+		long totalWeeks = 0;
+		for (Player p : data.values()) {
+			totalKills += p.getTotalKills();
+			totalDeaths += p.getTotalDeaths();
+			totalWeeks += getWeeksPlayed(p, weekNumbers);
+		}
+		double killsPerWeek = (totalWeeks > 0 && totalKills > 0) ? (double) totalKills / totalWeeks : 1;
+		double deathsPerWeek = (totalWeeks > 0 && totalDeaths > 0) ? (double) totalDeaths / totalWeeks : 1;
+
+		int playerCount = activePlayers.size();
+		playerIds = new int[playerCount];
+		playerNames = new String[playerCount];
+		startScores = new int[playerCount];
+		startKills = new int[playerCount];
+		startDeaths = new int[playerCount];
+		huntRates = new double[playerCount];
+		exposures = new double[playerCount];
+		for (int i = 0; i < playerCount; ++i) {
+			Player p = activePlayers.get(i);
+			playerIds[i] = p.getId();
+			playerNames[i] = p.getFirstName() + " " + p.getLastName();
+			startScores[i] = p.getTotalScore();
+			startKills[i] = p.getTotalKills();
+			startDeaths[i] = p.getTotalDeaths();
+
+			double weeks = getWeeksPlayed(p, weekNumbers) + PRIOR_WEEKS;
+			huntRates[i] = (p.getTotalKills() + PRIOR_WEEKS * killsPerWeek) / weeks / historicalTargetCount;
+			exposures[i] = (p.getTotalDeaths() + PRIOR_WEEKS * deathsPerWeek) / weeks / deathsPerWeek;
+		}
+
+		startRanking = new int[playerCount];
+		for (int i = 0; i < playerCount; ++i) {
+			startRanking[i] = i;
+		}
+		sortRanking(startRanking, 0, playerCount, startScores, startKills, startDeaths);
+	}
+
+	/** Returns the number of active players being simulated */
+	public int getPlayerCount() {
+		return playerIds.length;
+	}
+
+	/**
+	 * Simulates the rest of the game many times
+	 * @param weeks The format of each remaining week, in order
+	 * @param seasonCount The number of times to play out the remaining weeks
+	 * @param seed The seed that determines every random choice made by the simulation
+	 * @return The results, or null if a week's format can not be played with the players left in the game at that point
+	 */
+	public SeasonSimulation simulate(List<WeekFormat> weeks, int seasonCount, long seed) {
+		if (weeks == null || weeks.isEmpty() || seasonCount <= 0) {
+			System.out.println("No weeks or seasons to simulate");
+			return null;
+		}
+
+		// Eliminations are fixed numbers of players, so the number of players in each week is known in advance
+		int activePlayerCount = playerIds.length;
+		for (int i = 0; i < weeks.size(); ++i) {
+			String error = weeks.get(i).checkPlayerCount(activePlayerCount);
+			if (error != null) {
+				System.out.println("Cannot simulate week " + (i + 1) + " (" + weeks.get(i) + "): " + error);
+				return null;
+			}
+			activePlayerCount -= weeks.get(i).getEliminationCount();
+		}
+
+		long startTime = System.nanoTime();
+		WeekFormat[] weekFormats = weeks.toArray(new WeekFormat[0]);
+		int taskCount = (seasonCount + SEASONS_PER_TASK - 1) / SEASONS_PER_TASK;
+		SplittableRandom seedRandom = new SplittableRandom(seed);
+		SplittableRandom[] taskRandoms = new SplittableRandom[taskCount];
+		for (int i = 0; i < taskCount; ++i) {
+			taskRandoms[i] = seedRandom.split();
+		}
+
+		// One set of season arrays per thread, kept in a queue so that their tallies can be added up afterwards
+		ConcurrentLinkedQueue<Season> seasons = new ConcurrentLinkedQueue();
+		ThreadLocal<Season> threadSeasons = ThreadLocal.withInitial(() -> {
+			Season season = new Season(playerIds.length);
+			seasons.add(season);
+			return season;
+		});
+
+		ForkJoinPool simulationPool = new ForkJoinPool(Math.max(1, threadCount));
+		try {
+			simulationPool.submit(() -> IntStream.range(0, taskCount).parallel().forEach(task -> {
+				Season season = threadSeasons.get();
+				int taskSeasons = Math.min(SEASONS_PER_TASK, seasonCount - task * SEASONS_PER_TASK);
+				for (int i = 0; i < taskSeasons; ++i) {
+					playSeason(season, weekFormats, taskRandoms[task]);
+				}
+			})).get();
+		}
+		catch (ExecutionException e) {
+			System.out.println("Error while simulating seasons: " + e.getCause());
+			return null;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.out.println("Interrupted while simulating seasons");
+			return null;
+		}
+		finally {
+			simulationPool.shutdown();
+		}
+
+		// Every tally is a whole number, so adding them up in any order gives the same result
+		SeasonSimulation result = new SeasonSimulation(playerIds, playerNames, weeks, seasonCount, seed);
+		for (Season season : seasons) {
+			result.add(season.eliminationCounts, season.winCounts, season.pairingCount, season.killCount,
+				season.rankDistanceTotal, season.playerWeekCount, season.favouriteWinCount,
+				season.eliminationTotal, season.tiedEliminationCount);
+		}
+		result.setElapsedNanos(System.nanoTime() - startTime);
+		return result;
+	}
+
+	/** Plays out every remaining week once from the starting standings and tallies the outcome */
+	private void playSeason(Season season, WeekFormat[] weeks, SplittableRandom random) {
+		int playerCount = playerIds.length;
+		System.arraycopy(startScores, 0, season.scores, 0, playerCount);
+		System.arraycopy(startKills, 0, season.kills, 0, playerCount);
+		System.arraycopy(startDeaths, 0, season.deaths, 0, playerCount);
+		System.arraycopy(startRanking, 0, season.ranking, 0, playerCount);
+		season.activeCount = playerCount;
+
+		for (WeekFormat week : weeks) {
+			playWeek(season, week, random);
+		}
+
+		int winner = season.ranking[0];
+		season.winCounts[winner]++;
+		if (winner == startRanking[0]) {
+			season.favouriteWinCount++;
+		}
+	}
+
+	/** Pairs the active players, resolves every pairing, then ranks the players and eliminates the lowest ranked */
+	private void playWeek(Season season, WeekFormat week, SplittableRandom random) {
+		int activeCount = season.activeCount;
+		int[] ranking = season.ranking;
+		int[] order = season.order;
+		for (int i = 0; i < activeCount; ++i) {
+			season.rankPositions[ranking[i]] = i;
+		}
+
+		// Lay the players out as WeeklySummaryAssignment does, so that each player's targets are the next
+		// targetCount players in their group
+		System.arraycopy(ranking, 0, order, 0, activeCount);
+		switch (week.getPairing()) {
+			case RANDOM:
+				WeeklySummaryAssignment.shuffleRange(order, 0, activeCount, random);
+				resolveGroup(season, order, 0, activeCount, week.getTargetCount(), random);
+				break;
+			case TIERED:
+				for (int tier = 0; tier < week.getPairingSize(); ++tier) {
+					int start = (int) ((long) tier * activeCount / week.getPairingSize());
+					int end = (int) ((long) (tier + 1) * activeCount / week.getPairingSize());
+					WeeklySummaryAssignment.shuffleRange(order, start, end, random);
+					resolveGroup(season, order, start, end, week.getTargetCount(), random);
+				}
+				break;
+			case NEARBY:
+				WeeklySummaryAssignment.shuffleWithinWindows(order, 0, activeCount, week.getPairingSize(), random);
+				WeeklySummaryAssignment.layOutRankCircle(order, activeCount, season.circle);
+				resolveGroup(season, season.circle, 0, activeCount, week.getTargetCount(), random);
+				break;
+		}
+		season.playerWeekCount += activeCount;
+
+		sortRanking(ranking, 0, activeCount, season.scores, season.kills, season.deaths);
+
+		// The lowest ranked players are eliminated. Note when the last survivor was only ahead on the tie break
+		int eliminations = week.getEliminationCount();
+		if (eliminations > 0) {
+			int lastSurvivor = ranking[activeCount - eliminations - 1];
+			int firstEliminated = ranking[activeCount - eliminations];
+			if (Player.compareTotals(season.scores[lastSurvivor], season.kills[lastSurvivor], season.deaths[lastSurvivor],
+					season.scores[firstEliminated], season.kills[firstEliminated], season.deaths[firstEliminated]) == 0) {
+				season.tiedEliminationCount++;
+			}
+			for (int i = activeCount - eliminations; i < activeCount; ++i) {
+				season.eliminationCounts[ranking[i]]++;
+			}
+			season.eliminationTotal += eliminations;
+			season.activeCount = activeCount - eliminations;
+		}
+	}
+
+	/**
+	 * Resolves the pairings within one group of players laid out in order, where each player's targets are the next
+	 * targetCount players after them, wrapping around to the start of the group
+	 */
+	private void resolveGroup(Season season, int[] order, int start, int end, int targetCount, SplittableRandom random) {
+		int groupSize = end - start;
+		int[] scores = season.scores;
+		int[] rankPositions = season.rankPositions;
+		long kills = 0;
+		long rankDistance = 0;
+		for (int i = 0; i < groupSize; ++i) {
+			int assassin = order[start + i];
+			double huntRate = huntRates[assassin];
+			for (int j = 1; j <= targetCount; ++j) {
+				int target = order[start + (i + j) % groupSize];
+				rankDistance += Math.abs(rankPositions[assassin] - rankPositions[target]);
+				if (random.nextDouble() < huntRate * exposures[target]) {
+					scores[assassin]++;
+					season.kills[assassin]++;
+					scores[target]--;
+					season.deaths[target]++;
+					kills++;
+				}
+			}
+		}
+		season.pairingCount += (long) groupSize * targetCount;
+		season.killCount += kills;
+		season.rankDistanceTotal += rankDistance;
+	}
+
+	/**
+	 * Sorts player indexes into rank order with the same ordering as Player.compareTo(), breaking ties by lower player
+	 * ID. A quicksort over int arrays, since sorting boxed values or through a Comparator would allocate
+	 */
+	private static void sortRanking(int[] ranking, int from, int to, int[] scores, int[] kills, int[] deaths) {
+		while (to - from > INSERTION_SORT_LENGTH) {
+			// Median of three pivot, which keeps nearly sorted rankings from the previous week fast
+			int middle = (from + to) >>> 1;
+			if (compareRanks(ranking[middle], ranking[from], scores, kills, deaths) < 0) {
+				swap(ranking, middle, from);
+			}
+			if (compareRanks(ranking[to - 1], ranking[from], scores, kills, deaths) < 0) {
+				swap(ranking, to - 1, from);
+			}
+			if (compareRanks(ranking[to - 1], ranking[middle], scores, kills, deaths) < 0) {
+				swap(ranking, to - 1, middle);
+			}
+			int pivot = ranking[middle];
+
+			int i = from;
+			int j = to - 1;
+			while (i <= j) {
+				while (compareRanks(ranking[i], pivot, scores, kills, deaths) < 0) {
+					i++;
+				}
+				while (compareRanks(ranking[j], pivot, scores, kills, deaths) > 0) {
+					j--;
+				}
+				if (i <= j) {
+					swap(ranking, i++, j--);
+				}
+			}
+
+			// Recurse into the smaller side and loop on the larger one, so the stack stays shallow
+			if (j - from < to - i) {
+				sortRanking(ranking, from, j + 1, scores, kills, deaths);
+				from = i;
+			}
+			else {
+				sortRanking(ranking, i, to, scores, kills, deaths);
+				to = j + 1;
+			}
+		}
+
+		for (int i = from + 1; i < to; ++i) {
+			int player = ranking[i];
+			int j = i - 1;
+			while (j >= from && compareRanks(ranking[j], player, scores, kills, deaths) > 0) {
+				ranking[j + 1] = ranking[j];
+				j--;
+			}
+			ranking[j + 1] = player;
+		}
+	}
+
+	/** Orders two player indexes by rank, then by index, which is the same as by player ID */
+	private static int compareRanks(int a, int b, int[] scores, int[] kills, int[] deaths) {
+		int difference = Player.compareTotals(scores[a], kills[a], deaths[a], scores[b], kills[b], deaths[b]);
+		return (difference != 0) ? difference : Integer.compare(a, b);
+	}
+
+	/** Swaps two entries of an int array */
+	private static void swap(int[] values, int i, int j) {
+		int temp = values[i];
+		values[i] = values[j];
+		values[j] = temp;
+	}
+
+	/**
+	 * Returns the number of game weeks a player took part in: every week so far for active players, or the weeks up
+	 * to and including the one they were eliminated in
+	 */
+	private static int getWeeksPlayed(Player player, TreeSet<Integer> weekNumbers) {
+		if (player.isPlayerEliminated() == false) {
+			return weekNumbers.size();
+		}
+		return Math.max(1, weekNumbers.headSet(player.getWeekEliminated(), true).size());
+	}
+
+	/** The standings of one season being played, reused for every season a thread plays, and the thread's tallies */
+	private static class Season {
+		final int[] scores;
+		final int[] kills;
+		final int[] deaths;
+
+		/** Indexes of the active players in rank order. Only the first activeCount entries are used */
+		final int[] ranking;
+
+		/** Each active player's position in ranking at the start of the week */
+		final int[] rankPositions;
+
+		/** The order players are paired in */
+		final int[] order;
+
+		/** The circle that NEARBY weeks pair players around */
+		final int[] circle;
+
+		int activeCount;
+
+		final long[] eliminationCounts;
+		final long[] winCounts;
+		long pairingCount;
+		long killCount;
+		long rankDistanceTotal;
+		long playerWeekCount;
+		long favouriteWinCount;
+		long eliminationTotal;
+		long tiedEliminationCount;
+
+		Season(int playerCount) {
+			scores = new int[playerCount];
+			kills = new int[playerCount];
+			deaths = new int[playerCount];
+			ranking = new int[playerCount];
+			rankPositions = new int[playerCount];
+			order = new int[playerCount];
+			circle = new int[playerCount];
+			eliminationCounts = new long[playerCount];
+			winCounts = new long[playerCount];
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package games.office.assassins;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import lombok.Getter;
+
+/**
+ * A minimal SMTP client connection (RFC 5321) that is able to send complete, already formatted messages. If the server
+ * advertises the PIPELINING extension (RFC 2920), the MAIL, RCPT and DATA commands of each message are sent together
+ * and their replies read afterwards, saving two round trips per message.
+ *
+ * A connection is not thread safe and is meant to be used by one delivery thread at a time.
+ */
+public class SmtpConnection implements AutoCloseable {
+	/** Thrown when the server rejects a command. Carries the reply code so callers can tell if a retry may succeed */
+	public static class SmtpException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		/** The three digit SMTP reply code */
+		@Getter
+		private final int replyCode;
+
+		public SmtpException(int code, String message) {
+			super(message);
+			replyCode = code;
+		}
+
+		/** Returns true for 5xx replies, which will fail again if the same command is retried */
+		public boolean isPermanent() {
+			return replyCode >= 500;
+		}
+	}
+
+	/** The open socket to the server */
+	private final Socket socket;
+
+	/** Buffered stream of the server's replies */
+	private final InputStream input;
+
+	/** Buffered stream of commands to the server. Only flushed when replies are needed */
+	private final OutputStream output;
+
+	/** True if the server advertised the PIPELINING extension */
+	@Getter
+	private final boolean pipelining;
+
+	/** The number of messages sent over this connection */
+	@Getter
+	private int messageCount = 0;
+
+	/**
+	 * Connects to an SMTP server and introduces the client
+	 * @param host The server's host name or address
+	 * @param port The server's port, usually 25 or 587
+	 * @param heloName The name this client identifies itself with in the EHLO command
+	 * @param timeoutMillis How long to wait to connect, and for each reply, before giving up
+	 */
+	public SmtpConnection(String host, int port, String heloName, int timeoutMillis) throws IOException {
+		socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+			socket.setSoTimeout(timeoutMillis);
+			socket.setTcpNoDelay(true);
+			input = new BufferedInputStream(socket.getInputStream());
+			output = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+
+			expectReply(220, readReply());
+
+			// Fall back to HELO for old servers that do not understand EHLO, which means no extensions
+			writeCommand("EHLO " + heloName);
+			output.flush();
+			String ehloReply = readReply();
+			if (replyCode(ehloReply) == 250) {
+				pipelining = ehloReply.toUpperCase().contains("PIPELINING");
+			}
+			else {
+				writeCommand("HELO " + heloName);
+				output.flush();
+				expectReply(250, readReply());
+				pipelining = false;
+			}
+		}
+		catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Sends a single message. If the server rejects the message the transaction is reset, so the connection may be
+	 * used to send the next message.
+	 * @param sender The envelope sender address
+	 * @param recipient The envelope recipient address
+	 * @param message The complete message, headers included, with CRLF line endings
+	 * @throws SmtpException If the server rejected the message
+	 * @throws IOException If the connection failed, after which this connection should be closed
+	 */
+	public void sendMessage(String sender, String recipient, byte[] message) throws IOException {
+		try {
+			if (pipelining) {
+				writeCommand("MAIL FROM:<" + sender + ">");
+				writeCommand("RCPT TO:<" + recipient + ">");
+				writeCommand("DATA");
+				output.flush();
+
+				// All three replies must be read, even if the first one was a rejection
+				String mailReply = readReply();
+				String recipientReply = readReply();
+				String dataReply = readReply();
+				if (replyCode(dataReply) == 354 && (replyCode(mailReply) != 250 || replyCode(recipientReply) != 250)) {
+					// The server is waiting for message data that must not be sent, so end it with an empty message
+					output.write(".\r\n".getBytes(StandardCharsets.US_ASCII));
+					output.flush();
+					readReply();
+				}
+				expectReply(250, mailReply);
+				expectReply(250, recipientReply);
+				expectReply(354, dataReply);
+			}
+			else {
+				writeCommand("MAIL FROM:<" + sender + ">");
+				output.flush();
+				expectReply(250, readReply());
+				writeCommand("RCPT TO:<" + recipient + ">");
+				output.flush();
+				expectReply(250, readReply());
+				writeCommand("DATA");
+				output.flush();
+				expectReply(354, readReply());
+			}
+		}
+		catch (SmtpException e) {
+			reset();
+			throw e;
+		}
+
+		writeMessageData(message);
+		output.flush();
+		expectReply(250, readReply());
+		messageCount++;
+	}
+
+	/** Ends the session politely and closes the socket. Errors are ignored since the connection is finished anyway */
+	@Override
+	public void close() {
+		try {
+			if (socket.isClosed() == false) {
+				writeCommand("QUIT");
+				output.flush();
+				readReply();
+			}
+		}
+		catch (IOException e) {
+			// The server may already have hung up
+		}
+
+		try {
+			socket.close();
+		}
+		catch (IOException e) {
+			System.out.println("Error closing SMTP connection: " + e.getMessage());
+		}
+	}
+
+	/** Aborts the current mail transaction */
+	private void reset() throws IOException {
+		writeCommand("RSET");
+		output.flush();
+		readReply();
+	}
+
+	/**
+	 * Writes the message body for the DATA command, doubling any '.' at the start of a line so that it is not taken
+	 * for the end of the message, and then writes the terminating line
+	 */
+	private void writeMessageData(byte[] message) throws IOException {
+		boolean lineStart = true;
+		for (byte b : message) {
+			if (lineStart && b == '.') {
+				output.write('.');
+			}
+			output.write(b);
+			lineStart = (b == '\n');
+		}
+
+		if (message.length > 0 && lineStart == false) {
+			output.write('\r');
+			output.write('\n');
+		}
+		output.write(".\r\n".getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/** Buffers a command line. The output must be flushed before its reply is read */
+	private void writeCommand(String command) throws IOException {
+		output.write(command.getBytes(StandardCharsets.US_ASCII));
+		output.write('\r');
+		output.write('\n');
+	}
+
+	/**
+	 * Reads a complete reply from the server, which may span several lines
+	 * @return Every line of the reply, separated by '\n'
+	 */
+	private String readReply() throws IOException {
+		StringBuilder reply = new StringBuilder();
+		while (true) {
+			String line = readLine();
+			reply.append(line).append('\n');
+
+			// Every line of a multi-line reply but the last has a '-' after the reply code
+			if (line.length() < 4 || line.charAt(3) != '-') {
+				return reply.toString();
+			}
+		}
+	}
+
+	/** Reads one line from the server, without its line ending */
+	private String readLine() throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = input.read()) != '\n') {
+			if (c == -1) {
+				throw new IOException("SMTP server closed the connection");
+			}
+			if (c != '\r') {
+				line.append((char) c);
+			}
+		}
+		return line.toString();
+	}
+
+	/** Throws an SmtpException if a reply does not have the expected reply code */
+	private static void expectReply(int expectedCode, String reply) throws SmtpException {
+		int code = replyCode(reply);
+		if (code != expectedCode) {
+			throw new SmtpException(code, "Unexpected SMTP reply: " + reply.trim());
+		}
+	}
+
+	/** Returns the reply code at the start of a reply, or 0 if it has none */
+	private static int replyCode(String reply) {
+		if (reply.length() < 3) {
+			return 0;
+		}
+		try {
+			return Integer.parseInt(reply.substring(0, 3));
+		}
+		catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+}
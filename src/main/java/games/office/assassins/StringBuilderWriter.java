@@ -0,0 +1,58 @@
+package games.office.assassins;
+
+import java.io.Writer;
+
+/**
+ * A Writer that appends to a StringBuilder, for rendering e-mails into a buffer that is reused from one e-mail to the
+ * next. Unlike StringWriter it is not synchronized and its text can be read as a CharSequence without copying it to a
+ * String. Must only be used by one thread at a time.
+ */
+class StringBuilderWriter extends Writer {
+	/** The text written so far */
+	private final StringBuilder text;
+
+	/**
+	 * @param initialCapacity The number of chars the buffer holds before it needs to grow
+	 */
+	StringBuilderWriter(int initialCapacity) {
+		text = new StringBuilder(initialCapacity);
+	}
+
+	/** Returns the text written since the last reset(). Only valid until the next write or reset */
+	CharSequence getText() {
+		return text;
+	}
+
+	/** Empties the buffer, keeping its capacity */
+	void reset() {
+		text.setLength(0);
+	}
+
+	@Override
+	public void write(int c) {
+		text.append((char) c);
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) {
+		text.append(chars, offset, length);
+	}
+
+	@Override
+	public void write(String str) {
+		text.append(str);
+	}
+
+	@Override
+	public void write(String str, int offset, int length) {
+		text.append(str, offset, offset + length);
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() {
+	}
+}
@@ -0,0 +1,96 @@
+package games.office.assassins;
+
+import lombok.Getter;
+
+/**
+ * The format of one simulated week of play for SeasonSimulator: how many targets each active player is given, which
+ * of WeeklySummaryAssignment's algorithms pairs them up, and how many of the lowest ranked players are eliminated at
+ * the end of the week.
+ */
+@Getter
+public class WeekFormat {
+	/** The WeeklySummaryAssignment algorithms that a simulated week can use */
+	public enum Pairing {
+		/** Random targets from all active players, as assignRandomTargets() */
+		RANDOM,
+
+		/** Random targets from within equal tiers of ranked players, as assignTieredRandomTargets(tierCount) */
+		TIERED,
+
+		/** Targets close in rank, as assignNearbyRankTargets(windowSize) */
+		NEARBY
+	}
+
+	/** The number of targets assigned to each active player */
+	private final int targetCount;
+
+	/** How players are paired with their targets */
+	private final Pairing pairing;
+
+	/** The number of tiers for TIERED, or the rank window size for NEARBY. Unused for RANDOM */
+	private final int pairingSize;
+
+	/** The number of lowest ranked active players eliminated at the end of the week */
+	private final int eliminationCount;
+
+	/**
+	 * @param targets The number of targets assigned to each active player
+	 * @param weekPairing How players are paired with their targets
+	 * @param size The number of tiers for TIERED, or the rank window size for NEARBY. Ignored for RANDOM
+	 * @param eliminations The number of lowest ranked active players eliminated at the end of the week
+	 */
+	public WeekFormat(int targets, Pairing weekPairing, int size, int eliminations) {
+		if (targets <= 0 || weekPairing == null || (weekPairing != Pairing.RANDOM && size <= 0) || eliminations < 0) {
+			throw new RuntimeException("Invalid settings passed to WeekFormat constructor");
+		}
+		targetCount = targets;
+		pairing = weekPairing;
+		pairingSize = (weekPairing == Pairing.RANDOM) ? 1 : size;
+		eliminationCount = eliminations;
+	}
+
+	/** Returns a week of random targets from all active players */
+	public static WeekFormat random(int targets, int eliminations) {
+		return new WeekFormat(targets, Pairing.RANDOM, 1, eliminations);
+	}
+
+	/** Returns a week of random targets from within tierCount tiers of ranked players */
+	public static WeekFormat tiered(int targets, int tierCount, int eliminations) {
+		return new WeekFormat(targets, Pairing.TIERED, tierCount, eliminations);
+	}
+
+	/** Returns a week of targets close in rank, shuffled within windows of windowSize ranks */
+	public static WeekFormat nearby(int targets, int windowSize, int eliminations) {
+		return new WeekFormat(targets, Pairing.NEARBY, windowSize, eliminations);
+	}
+
+	/**
+	 * Returns an error message if this format can not be played with a number of active players, or null if it can.
+	 * Follows the same limits as WeeklySummaryAssignment: a group of n players can be given at most n - 2 targets,
+	 * and each tier must hold at least two more players than the number of targets.
+	 */
+	String checkPlayerCount(int activePlayerCount) {
+		if (pairing == Pairing.TIERED && activePlayerCount / pairingSize < targetCount + 2) {
+			return "Cannot split " + activePlayerCount + " active players into " + pairingSize + " tiers with " + targetCount + " targets each";
+		}
+		if (targetCount >= activePlayerCount - 1) {
+			return "Number of targets (" + targetCount + ") exceeds active player size: " + activePlayerCount;
+		}
+		if (eliminationCount >= activePlayerCount) {
+			return "Cannot eliminate " + eliminationCount + " of " + activePlayerCount + " active players";
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		String format = targetCount + " targets, " + pairing.name().toLowerCase();
+		if (pairing == Pairing.TIERED) {
+			format += " in " + pairingSize + " tiers";
+		}
+		else if (pairing == Pairing.NEARBY) {
+			format += " within " + pairingSize + " ranks";
+		}
+		return format + ", " + eliminationCount + " eliminated";
+	}
+}
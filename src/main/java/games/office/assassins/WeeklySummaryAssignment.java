@@ -1,35 +1,67 @@
 package games.office.assassins;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.UncheckedIOException;
+
+import java.sql.Connection;
+
+import java.time.ZonedDateTime;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
+import lombok.Getter;
 import lombok.Setter;
 
+import games.office.assassins.assignment.AssignmentGraph;
+import games.office.assassins.assignment.AssignmentSearch;
+import games.office.assassins.assignment.TargetAssignment;
+import games.office.assassins.assignment.TargetAssignmentEngine;
+import games.office.assassins.metrics.Metrics;
+import games.office.assassins.metrics.Stage;
+import games.office.assassins.metrics.StageTimer;
 import games.office.assassins.model.Player;
-import games.office.assassins.model.Score;
 
 /**
  * Generates the weekly e-mails to be sent to individual players. This involves using one of several
  * available algorithms to generate and assign targets to active players. E-mails also include other data such
- * as a player summary and score data. The e-mail address, subject, and text for all players is printed to
- * a single text file, and must be copied over manually to generate the individual e-mails.
+ * as a player summary and score data. By default the e-mail address, subject, and text for all players is printed to
+ * a single text file, and must be copied over manually to generate the individual e-mails. See EmailOutputMode for
+ * formats that mail clients can read directly. Message files written one per player can be sent to players with
+ * EmailDelivery.
+ *
+ * E-mails are rendered in parallel, but are always written to the file in order of player ID, so the same player data
+ * and target assignments produce the same file no matter how many threads are used.
  */
 public class WeeklySummaryAssignment {
+	/** The number of e-mails rendered in parallel before they are written out, which bounds the memory they hold */
+	private static final int EMAIL_BLOCK_SIZE = 1024;
+
 	/** A map containing all player and game data loaded from the database. The player ID is the key */
 	private final HashMap<Integer, Player> playerData;
 	
-	/** The list of target names for placers */
-	private HashMap<Integer, String> targetAssignments;
+	/**
+	 * The targets assigned to each active player by the last assignment. Targets are only turned into names when
+	 * e-mails are rendered. May be replaced with assignments loaded from the database or a file
+	 */
+	@Getter
+	private AssignmentGraph targetAssignments;
+
+	/**
+	 * The seed of the search that made the current target assignments, or null if they were not made by
+	 * assignSearchedTargets(). Saved along with the assignments so that they can be reproduced
+	 */
+	@Getter
+	private Long assignmentSeed = null;
 
 	/** The number of targets to be assigned to each active player */
 	private final int numberTargets;
@@ -37,17 +69,39 @@ public class WeeklySummaryAssignment {
 	/** The number of players in playerData that have not been eliminated */
 	private final int activePlayerCount;
 
-	/** Holds the name of the output file to write to */
+	/** Every week number that any player has score data for, sorted from oldest to newest */
+	private final ArrayList<Integer> gameWeekNumbers;
+
+	/** Renders the e-mail text for each player */
+	private final PlayerEmailRenderer emailRenderer;
+
+	/** Holds the name of the output file to write to, or the output directory when writing one file per player */
 	@Setter
 	private String outputFilename = "emails/unnamed_output_list.txt";
 
+	/** The format that e-mails are written in */
+	@Setter
+	private EmailOutputMode outputMode = EmailOutputMode.SINGLE_FILE;
+
+	/** The address that e-mails are sent from. Only written to message files */
+	@Setter
+	private String senderAddress = "assassins@localhost";
+
+	/** The date given to e-mails in message files, or null to use the time they are written */
+	@Setter
+	private ZonedDateTime emailDate = null;
+
+	/** The number of threads used to render e-mails. Defaults to the number of available processors */
+	@Setter
+	private int emailThreadCount = Runtime.getRuntime().availableProcessors();
+
 	/**
 	 *
 	 * @param data
 	 * @param targets
 	 */
 	public WeeklySummaryAssignment(HashMap<Integer, Player> data, int targets) {
-		targetAssignments = new HashMap();
+		targetAssignments = new AssignmentGraph.Builder().build();
 
 		if (data == null || data.isEmpty()) {
 			throw new RuntimeException("Null or empty player data passed to WeeklySummaryAssignment constructor");
@@ -55,71 +109,160 @@ public class WeeklySummaryAssignment {
 		playerData = data;
 
 		int activePlayers = 0;
+		TreeSet<Integer> weekNumbers = new TreeSet();
 		for (Player p : playerData.values()) {
 			if (p.isPlayerEliminated() == false) {
 				activePlayers++;
 			}
+			for (int i = 0; i < p.getWeekCount(); ++i) {
+				weekNumbers.add(p.getWeekNumber(i));
+			}
 		}
 		activePlayerCount = activePlayers;
+		gameWeekNumbers = new ArrayList(weekNumbers);
+		emailRenderer = new PlayerEmailRenderer(playerData, gameWeekNumbers);
 
 		if (targets <= 0 || targets >= activePlayerCount) {
 			throw new RuntimeException("Invalid number of targets in WeeklySummaryAssignment constructor: " + targets);
 		}
 		numberTargets = targets;
 	}
+
+	/**
+	 * Discards the weekly breakdowns cached by the e-mail renderer. Call this after changing player names, or to
+	 * release the memory held by the cache once no more e-mails will be written
+	 */
+	public void clearEmailCache() {
+		emailRenderer.clearCache();
+	}
 	
 	/**
 	 * Assigns random targets to all active players. See assignListRandomTargets for detailed information on
 	 * how the assignments are made.
 	 */
 	public void assignRandomTargets() {
-		// Build a list of all active player IDs
-		ArrayList<Integer> activePlayerIds = new ArrayList();
-		for (Player p : playerData.values()) {
-			if (p.isPlayerEliminated() == false) {
-				activePlayerIds.add(p.getId());
+		try (StageTimer timer = Metrics.time(Stage.ASSIGN_TARGETS)) {
+			// Build a list of all active player IDs
+			ArrayList<Integer> activePlayerIds = new ArrayList();
+			for (Player p : playerData.values()) {
+				if (p.isPlayerEliminated() == false) {
+					activePlayerIds.add(p.getId());
+				}
 			}
-		}
 
-		assignListRandomTargets(activePlayerIds);
+			AssignmentGraph.Builder assignments = new AssignmentGraph.Builder();
+			assignListRandomTargets(activePlayerIds, assignments);
+			finishAssignment(assignments, timer);
+		}
 	}
 
 	/**
 	 * Active players are split into two tiers. Players are assigned to random targets within their tier in the same
-	 * manner as assignRandomTargets() does.
+	 * manner as assignRandomTargets() does. The top tier holds the highest ranked half of the active players (rounded
+	 * down), with players tied at the boundary placed by lower ID as PlayerRank.RANK_ORDER does. Players are only
+	 * partitioned around the tier boundary rather than fully sorted.
 	 */
 	public void assignTieredRandomTargets() {
-		// First assign the rankings for all players
-		PlayerRank.assignPlayerRanks(playerData);
+		try (StageTimer timer = Metrics.time(Stage.ASSIGN_TARGETS)) {
+			// Gather the active players and move the top half of them by rank to the front of the array
+			Player[] activePlayers = new Player[activePlayerCount];
+			int index = 0;
+			for (Player p : playerData.values()) {
+				if (p.isPlayerEliminated() == false) {
+					activePlayers[index++] = p;
+				}
+			}
+			int splitRankNumber = activePlayerCount / 2;
+			PlayerRank.partitionTopPlayers(activePlayers, splitRankNumber);
+
+			// Now build two player lists: one for the top tier players and another for the bottom tier players.
+			// Populate each, and send each container off to be randomized and target assignments made
+			ArrayList<Integer> topTierPlayerIds = new ArrayList();
+			ArrayList<Integer> bottomTierPlayerIds = new ArrayList();
+			for (int i = 0; i < activePlayers.length; ++i) {
+				if (i < splitRankNumber) {
+					topTierPlayerIds.add(activePlayers[i].getId());
+				}
+				else {
+					bottomTierPlayerIds.add(activePlayers[i].getId());
+				}
+			}
 
-		// Determine how many players in the game are still active and divide that by two to get the tier split
-		int splitRankNumber = 0;
-		for (Player p : playerData.values()) {
-			if (p.isPlayerEliminated() == false) {
-				splitRankNumber++;
+			AssignmentGraph.Builder assignments = new AssignmentGraph.Builder();
+			assignListRandomTargets(topTierPlayerIds, assignments);
+			assignListRandomTargets(bottomTierPlayerIds, assignments);
+			finishAssignment(assignments, timer);
+		}
+	}
+
+	/**
+	 * Active players are sorted by rank and split into tierCount tiers of nearly equal size. Players are assigned
+	 * random targets within their tier in the same manner as assignRandomTargets() does. Tiers are taken from the
+	 * highest ranked players down, so two tiers split the players the same way as assignTieredRandomTargets().
+	 * @param tierCount The number of tiers to split the active players into
+	 * @return False if the tiers would be too small to assign numberTargets targets within each of them
+	 */
+	public boolean assignTieredRandomTargets(int tierCount) {
+		try (StageTimer timer = Metrics.time(Stage.ASSIGN_TARGETS)) {
+			if (tierCount <= 0 || activePlayerCount / tierCount < numberTargets + 2) {
+				System.out.println("Cannot split " + activePlayerCount + " active players into " + tierCount + " tiers with " + numberTargets + " targets each");
+				return false;
+			}
+
+			Player[] rankedPlayers = getRankedActivePlayers();
+			AssignmentGraph.Builder assignments = new AssignmentGraph.Builder();
+			boolean success = true;
+			for (int tier = 0; tier < tierCount; ++tier) {
+				int start = (int) ((long) tier * activePlayerCount / tierCount);
+				int end = (int) ((long) (tier + 1) * activePlayerCount / tierCount);
+				ArrayList<Integer> tierPlayerIds = new ArrayList(end - start);
+				for (int i = start; i < end; ++i) {
+					tierPlayerIds.add(rankedPlayers[i].getId());
+				}
+				success &= assignListRandomTargets(tierPlayerIds, assignments);
 			}
+			finishAssignment(assignments, timer);
+			return success;
 		}
-		splitRankNumber = splitRankNumber / 2;
+	}
 
-		// Now build two player lists: one for the top tier players and another for the bottom tier players. Populate
-		// each, and send each container off to be randomized and target assignments made
-		ArrayList<Integer> topTierPlayerIds = new ArrayList();
-		ArrayList<Integer> bottomTierPlayerIds = new ArrayList();
-		for (Player p : playerData.values()) {
-			if (p.isPlayerEliminated() == true) {
-				continue;
+	/**
+	 * Assigns each active player targets that are close to them in rank, without the hard boundaries of tiers. Active
+	 * players are sorted by rank and then shuffled within windows of windowSize consecutive ranks, so that assignments
+	 * vary from week to week. The players are then laid out in a circle that runs down the even positions and back up
+	 * the odd ones, so that neighbours in the circle are never more than two positions apart, and each player is
+	 * assigned the next numberTargets players in the circle. Every target is within about 2 * (numberTargets +
+	 * windowSize) ranks of their assassin, and every player is the target of exactly numberTargets assassins.
+	 * @param windowSize The number of consecutive ranks that players are shuffled within. 1 gives the same assignment
+	 *                   every week for the same rankings
+	 * @return False if the window size is invalid
+	 */
+	public boolean assignNearbyRankTargets(int windowSize) {
+		try (StageTimer timer = Metrics.time(Stage.ASSIGN_TARGETS)) {
+			if (windowSize <= 0) {
+				System.out.println("Invalid rank window size: " + windowSize);
+				return false;
 			}
 
-			if (p.getRank() <= splitRankNumber) {
-				topTierPlayerIds.add(p.getId());
+			// Shuffle the ranked players within windows of consecutive ranks, then lay them out in a circle
+			Player[] rankedPlayers = getRankedActivePlayers();
+			int[] rankedIds = new int[activePlayerCount];
+			for (int i = 0; i < activePlayerCount; ++i) {
+				rankedIds[i] = rankedPlayers[i].getId();
 			}
-			else {
-				bottomTierPlayerIds.add(p.getId());
+			shuffleWithinWindows(rankedIds, 0, activePlayerCount, windowSize, new SplittableRandom());
+			int[] circle = new int[activePlayerCount];
+			layOutRankCircle(rankedIds, activePlayerCount, circle);
+
+			AssignmentGraph.Builder assignments = new AssignmentGraph.Builder();
+			for (int i = 0; i < activePlayerCount; ++i) {
+				for (int j = 1; j <= numberTargets; ++j) {
+					assignments.addPairing(circle[i], circle[(i + j) % activePlayerCount]);
+				}
 			}
+			finishAssignment(assignments, timer);
+			return true;
 		}
-
-		assignListRandomTargets(topTierPlayerIds);
-		assignListRandomTargets(bottomTierPlayerIds);
 	}
 
 	/**
@@ -128,48 +271,168 @@ public class WeeklySummaryAssignment {
 	 * by (1 + numberTargets).
 	 */
 	public void assignMutualTargets() {
-		// Build a list of all active player IDs
-		int activePlayerCount = 0;
-		ArrayList<Integer> randomizedTargetList = new ArrayList();
-		for (Player p : playerData.values()) {
-			if (p.isPlayerEliminated() == false) {
-				activePlayerCount++;
-				randomizedTargetList.add(p.getId());
+		try (StageTimer timer = Metrics.time(Stage.ASSIGN_TARGETS)) {
+			// Build a list of all active player IDs
+			int activePlayerCount = 0;
+			ArrayList<Integer> randomizedTargetList = new ArrayList();
+			for (Player p : playerData.values()) {
+				if (p.isPlayerEliminated() == false) {
+					activePlayerCount++;
+					randomizedTargetList.add(p.getId());
+				}
+			}
+
+			// Ascertain that the number of active players is evenly divisible by the number of targets + 1
+			// This ensures that we will have even sized groups.
+			if (activePlayerCount % (numberTargets + 1) != 0) {
+				System.out.println("Active player count not evenly divisible by target number + 1");
+				return;
+			}
+
+			// Shuffle the list of IDs. We can then iterate through here and assign targets
+			Collections.shuffle(randomizedTargetList, new Random());
+			String targetOrder = "";
+			for (Integer i : randomizedTargetList) {
+				targetOrder += i + ",";
 			}
+			System.out.println(targetOrder);
+
+			AssignmentGraph.Builder assignments = new AssignmentGraph.Builder();
+			for (int i = 0; i < randomizedTargetList.size(); i = i + (1 + numberTargets)) {
+				List<Integer> targetGroup = randomizedTargetList.subList(i, i + (1+ numberTargets));
+				for (int j = 0; j < targetGroup.size(); ++j) {
+					int playerId = targetGroup.get(j);
+					for (int k = 0; k < targetGroup.size(); ++k) {
+						if (playerId == targetGroup.get(k)) {
+							continue;
+						}
+						assignments.addPairing(playerId, targetGroup.get(k));
+					}
+				}
+			}
+			finishAssignment(assignments, timer);
 		}
+	}
 
-		// Ascertain that the number of active players is evenly divisible by the number of targets + 1
-		// This ensures that we will have even sized groups.
-		if (activePlayerCount % (numberTargets + 1) != 0) {
-			System.out.println("Active player count not evenly divisible by target number + 1");
-			return;
+	/**
+	 * Assigns targets to all active players using a TargetAssignmentEngine, which tries to satisfy the constraints it
+	 * was given, such as avoiding pairings from earlier weeks, while keeping the number of times each player is
+	 * targeted the same for everyone.
+	 * @param engine The engine to make the assignment with. Must assign the same number of targets as this object
+	 * @return The number of pairings that break a constraint, or -1 if no assignment could be made
+	 */
+	public int assignConstrainedTargets(TargetAssignmentEngine engine) {
+		try (StageTimer timer = Metrics.time(Stage.ASSIGN_TARGETS)) {
+			if (engine.getTargetsPerPlayer() != numberTargets) {
+				System.out.println("Assignment engine assigns " + engine.getTargetsPerPlayer() + " targets instead of " + numberTargets);
+				return -1;
+			}
+
+			TargetAssignment assignment = engine.assign(getActivePlayerIds(), new SplittableRandom());
+			if (assignment == null) {
+				return -1;
+			}
+			return applyAssignment(assignment, timer);
 		}
+	}
 
-		// Shuffle the list of IDs. We can then iterate through here and assign targets
-		Collections.shuffle(randomizedTargetList, new Random());
-		String targetOrder = "";
-		for (Integer i : randomizedTargetList) {
-			targetOrder += i + ",";
+	/**
+	 * Assigns targets to all active players with a new random seed. See assignSearchedTargets(AssignmentSearch, long).
+	 * @param search The search to make the assignment with
+	 * @return The number of pairings that break a constraint, or -1 if no assignment could be made
+	 */
+	public int assignSearchedTargets(AssignmentSearch search) {
+		return assignSearchedTargets(search, new Random().nextLong());
+	}
+
+	/**
+	 * Assigns targets to all active players using an AssignmentSearch, which keeps the fairest of many candidate
+	 * assignments made by its engine. Player ranks are included in the fairness score, so rank the players with
+	 * PlayerRank first if rank spread matters. The seed is printed, kept as assignmentSeed and saved with the
+	 * assignments by saveTargetAssignments(), and calling this again with the same seed, player data and search
+	 * settings reproduces the same assignment.
+	 * @param search The search to make the assignment with. Its engine must assign the same number of targets as this
+	 *               object
+	 * @param seed The seed that determines every random choice made by the search
+	 * @return The number of pairings that break a constraint, or -1 if no assignment could be made
+	 */
+	public int assignSearchedTargets(AssignmentSearch search, long seed) {
+		try (StageTimer timer = Metrics.time(Stage.ASSIGN_TARGETS)) {
+			if (search.getEngine().getTargetsPerPlayer() != numberTargets) {
+				System.out.println("Assignment engine assigns " + search.getEngine().getTargetsPerPlayer() + " targets instead of " + numberTargets);
+				return -1;
+			}
+
+			TargetAssignment assignment = search.search(getActivePlayerIds(), seed, id -> playerData.get(id).getRank());
+			if (assignment == null) {
+				return -1;
+			}
+
+			System.out.println("Target assignment seed " + seed + ": kept candidate " + (search.getLastCandidateIndex() + 1) +
+				" of " + search.getCandidateCount() + " with " + search.getLastScore());
+			int violationCount = applyAssignment(assignment, timer);
+			assignmentSeed = seed;
+			return violationCount;
 		}
-		System.out.println(targetOrder);
-
-		for (int i = 0; i < randomizedTargetList.size(); i = i + (1 + numberTargets)) {
-			List<Integer> targetGroup = randomizedTargetList.subList(i, i + (1+ numberTargets));
-			for (int j = 0; j < targetGroup.size(); ++j) {
-				int playerId = targetGroup.get(j);
-				String targets = "";
-				for (int k = 0; k < targetGroup.size(); ++k) {
-					if (playerId == targetGroup.get(k)) {
-						continue;
-					}
+	}
 
-					Player target = playerData.get(targetGroup.get(k));
-					targets += "- " + target.getFirstName() + " " + target.getLastName() + "\n";
-				}
+	/** Returns all active players sorted from highest to lowest rank by PlayerRank.RANK_ORDER, using a single sort */
+	private Player[] getRankedActivePlayers() {
+		Player[] activePlayers = new Player[activePlayerCount];
+		int index = 0;
+		for (Player p : playerData.values()) {
+			if (p.isPlayerEliminated() == false) {
+				activePlayers[index++] = p;
+			}
+		}
+		Arrays.sort(activePlayers, PlayerRank.RANK_ORDER);
+		return activePlayers;
+	}
+
+	/** Returns the IDs of all active players in ascending order, so that seeded assignments can be reproduced */
+	private int[] getActivePlayerIds() {
+		int[] activePlayerIds = new int[activePlayerCount];
+		int index = 0;
+		for (Player p : playerData.values()) {
+			if (p.isPlayerEliminated() == false) {
+				activePlayerIds[index++] = p.getId();
+			}
+		}
+		Arrays.sort(activePlayerIds);
+		return activePlayerIds;
+	}
+
+	/**
+	 * Replaces the target assignments with the pairings that have been added to a builder, and records the
+	 * assignment's pairing count
+	 * @param assignments The pairings of the new assignment
+	 * @param timer The timer of the assignment, which the caller closes
+	 */
+	private void finishAssignment(AssignmentGraph.Builder assignments, StageTimer timer) {
+		targetAssignments = assignments.build();
+		assignmentSeed = null;
+		timer.addRows(targetAssignments.getPairingCount());
+	}
 
-				targetAssignments.put(playerId, targets);
+	/**
+	 * Replaces the target assignments with those of an assignment
+	 * @param assignment The assignment made by a TargetAssignmentEngine
+	 * @param timer The timer of the assignment, which the caller closes
+	 * @return The number of pairings in the assignment that break a constraint
+	 */
+	private int applyAssignment(TargetAssignment assignment, StageTimer timer) {
+		AssignmentGraph.Builder assignments = new AssignmentGraph.Builder();
+		for (int i = 0; i < assignment.size(); ++i) {
+			for (int j = 0; j < assignment.getTargetsPerPlayer(); ++j) {
+				assignments.addPairing(assignment.getPlayerId(i), assignment.getTargetId(i, j));
 			}
 		}
+		finishAssignment(assignments, timer);
+
+		if (assignment.getViolationCount() > 0) {
+			System.out.println("Target assignment left " + assignment.getViolationCount() + " pairings that break a constraint");
+		}
+		return assignment.getViolationCount();
 	}
 
 	/**
@@ -180,9 +443,10 @@ public class WeeklySummaryAssignment {
 	 * effects in the game.
 	 *
 	 * @param playerIds The list of playerIds to assign targets to (all players in this list are assumed to be active)
+	 * @param assignments Where the assigned pairings are added
 	 * @return False if target assignment was unsuccessful
 	 */
-	private boolean assignListRandomTargets(ArrayList<Integer> playerIds) {
+	private boolean assignListRandomTargets(ArrayList<Integer> playerIds, AssignmentGraph.Builder assignments) {
 		// Build a list of all active player IDs
 		if (numberTargets >= playerIds.size() - 1) {
 			System.out.println("Number of targets (" + numberTargets + ") exceeds active player size: " + playerIds.size());
@@ -194,19 +458,14 @@ public class WeeklySummaryAssignment {
 
 		int assassinIndex = 0;
 		for (int assassinId : playerIds) {
-			String targetText = "";
-
 			for (int j = 0; j < numberTargets; ++j) {
 				int nextTargetIndex = assassinIndex + 1 + j;
 				if (nextTargetIndex >= playerIds.size()) {
 					nextTargetIndex -= playerIds.size();
 				}
-
-				Player target = playerData.get(playerIds.get(nextTargetIndex));
-				targetText += "- " + target.getFirstName() + " " + target.getLastName() + "\n";
+				assignments.addPairing(assassinId, playerIds.get(nextTargetIndex));
 			}
 
-			targetAssignments.put(assassinId, targetText);
 			assassinIndex++;
 		}
 
@@ -214,109 +473,175 @@ public class WeeklySummaryAssignment {
 	}
 
 	/**
-	 * Writes a player's target assignments for a given week, as well as their score summary
-	 * @param gameWeek The week of play that the e-mails are being written for
+	 * Shuffles a range of values within windows of windowSize consecutive positions, so that each value stays close
+	 * to where it started. The windows start at a random offset so that the same values do not always share a window.
+	 * Used by assignNearbyRankTargets() and SeasonSimulator.
+	 * @param values The values to shuffle in place
+	 * @param from The first position to shuffle
+	 * @param to The position after the last one to shuffle
+	 * @param windowSize The number of consecutive positions shuffled together
+	 * @param random The source of randomness
 	 */
-	public void writePlayerEmails(int gameWeek) {
-		try {
-			File outputFile = new File(outputFilename);
-			FileOutputStream os = new FileOutputStream(outputFile);
-			OutputStreamWriter osw = new OutputStreamWriter(os);
-			Writer writer = new BufferedWriter(osw);
-
-			for (int id : playerData.keySet()) {
-				Player assassin = playerData.get(id);
-
-				// If a player has not been eliminated, write their assign targets and then their score summaries
-				if (assassin.isPlayerEliminated() == false) {
-					String outputText = assassin.getEmail() + "\n[Assassins] - Week " + gameWeek + " Targets\n";
-					outputText += "Assassin " + assassin.getFirstName() + ", your list of assigned targets for this week follows.\n\n";
-					outputText += targetAssignments.get(id) + "\n";
-					outputText += "Player Career Summary:\n\n";
-					outputText += playerScoreSummary(id);
-					outputText += "\n=================================================================\n";
-					writer.write(outputText);
-				}
-				// If a player was eliminated last week, write a notification along with their score summaries
-				else if (assassin.getWeekEliminated() == (gameWeek - 1)) {
-					String outputText = assassin.getEmail() + "\n[Assassins] - You have been eliminated at the end of week " + (gameWeek - 1) + "\n";
-					outputText += "Assassin " + assassin.getFirstName() + ", unfortunately your performance relative to your peers has been insufficient. " +
-						"You have been eliminated from the game. You will continue to receive the weekly game update for the remainder of the game. " +
-						"New modifiers may come into effect that will allow you to continue participating.\n\n";
-					outputText += "Below is your final score and career summary.\n\n";
-					outputText += playerScoreSummary(id);
-					outputText += "\n=================================================================\n";
-					writer.write(outputText);
-				}
-				// If a player was eliminated in an earlier week, do not write any information to e-mail them
-				else {
-					continue;
-				}
-			}
-			writer.close();
+	static void shuffleWithinWindows(int[] values, int from, int to, int windowSize, SplittableRandom random) {
+		int windowStart = from - random.nextInt(windowSize);
+		while (windowStart < to) {
+			shuffleRange(values, Math.max(from, windowStart), Math.min(to, windowStart + windowSize), random);
+			windowStart += windowSize;
 		}
-		catch (IOException e) {
-			System.err.println("IOException while writing to output file " + outputFilename + ": " + e.getMessage());
+	}
+
+	/** Shuffles the values at positions [from, to) of an array in place */
+	static void shuffleRange(int[] values, int from, int to, SplittableRandom random) {
+		for (int i = to - 1; i > from; --i) {
+			int j = from + random.nextInt(i - from + 1);
+			int swap = values[i];
+			values[i] = values[j];
+			values[j] = swap;
 		}
 	}
 
 	/**
-	 * Prints out a player's entire career score summary. This includes their total score/kills/deaths, bonuses, and
-	 * weekly breakdowns.
-	 * @param playerId The ID of the player to print
-	 * @return Human-friendly text summarizing the player's career activity
+	 * Lays out values that are in rank order in a circle that runs down the even positions and back up the odd ones,
+	 * so that neighbours in the circle are never more than two ranks apart. Used by assignNearbyRankTargets() and
+	 * SeasonSimulator.
+	 * @param rankedValues The values in rank order
+	 * @param count The number of values to lay out
+	 * @param circle Receives the first count values in circle order
 	 */
-	private String playerScoreSummary(int playerId) {
-		Player player = playerData.get(playerId);
-		String summaryText = "";
-		summaryText += "Total Kills: " + player.getTotalKills() + "\n";
-		summaryText += "Total Deaths: " + player.getTotalDeaths() + "\n";
-		summaryText += "Total Score: " + player.getTotalScore() + "\n";
-		summaryText += "\n";
-
-		summaryText += "=== Weekly Breakdown ===\n\n";
-		ArrayList<Integer> weekNumbers = new ArrayList(player.getScoreData().keySet());
-		Collections.sort(weekNumbers);
-		for (int i : weekNumbers) {
-			summaryText += playerWeekSummary(playerId, i) + "\n";
+	static void layOutRankCircle(int[] rankedValues, int count, int[] circle) {
+		int index = 0;
+		for (int i = 0; i < count; i += 2) {
+			circle[index++] = rankedValues[i];
+		}
+		for (int i = (count % 2 == 0) ? count - 1 : count - 2; i > 0; i -= 2) {
+			circle[index++] = rankedValues[i];
 		}
-		return summaryText;
 	}
 
 	/**
-	 * Returns a string of text summarizing a player's activity for a given week
-	 * @param playerId The ID of the player to generate the summary for
-	 * @param weekNumber The week number to grab score data from
-	 * @return Human-friendly text describing the activity
-	 *
-	 * Note that this function does not summarize a player's total activity, as this is done in playerScoreSummary()
+	 * Returns the IDs of the targets assigned to a player by the last assignment
+	 * @param playerId The ID of the player
+	 * @return The target IDs, or null if the player has not been assigned targets
 	 */
-	private String playerWeekSummary(int playerId, int weekNumber) {
-		Player player = playerData.get(playerId);
-		HashMap<Integer, Score> scores = player.getScoreData();
+	public int[] getAssignedTargets(int playerId) {
+		return targetAssignments.getTargetsOf(playerId);
+	}
+
+	/**
+	 * Replaces the target assignments with assignments made elsewhere, such as in an earlier run. The assignments have
+	 * no seed, unless one is given with setTargetAssignments(AssignmentGraph, Long)
+	 * @param assignments The new target assignments
+	 */
+	public void setTargetAssignments(AssignmentGraph assignments) {
+		setTargetAssignments(assignments, null);
+	}
 
-		String text = "Week number " + weekNumber + ":\n";
-		if (scores.containsKey(weekNumber) == false) {
-			return "no data";
+	/**
+	 * Replaces the target assignments with assignments made elsewhere, along with the seed they were searched with
+	 * @param assignments The new target assignments
+	 * @param seed The seed of the search that made the assignments, or null if they were not made by a search
+	 */
+	public void setTargetAssignments(AssignmentGraph assignments, Long seed) {
+		targetAssignments = assignments;
+		assignmentSeed = seed;
+	}
+
+	/**
+	 * Saves the current target assignments to the assignments table of the database, so that later weeks can avoid
+	 * repeating them with a PairingHistory. The seed of the assignments, if any, is saved with them and can be loaded
+	 * with PairingHistory.loadAssignmentSeed()
+	 * @param dbConnection An open connection to the database
+	 * @param gameWeek The week of play that the assignments are for
+	 * @return True for success
+	 */
+	public boolean saveTargetAssignments(Connection dbConnection, int gameWeek) {
+		try (StageTimer timer = Metrics.time(Stage.SAVE_ASSIGNMENTS)) {
+			timer.addRows(targetAssignments.getPairingCount());
+			return targetAssignments.saveToDatabase(dbConnection, gameWeek, assignmentSeed);
 		}
+	}
 
-		Score weeklyScore = scores.get(weekNumber);
-		text += "Kills / Deaths / Score == " + weeklyScore.getKills() + " / " + weeklyScore.getDeaths() + " / " + weeklyScore.getScore() + "\n";
-		if (weeklyScore.getKills() > 0) {
-			text += "You successfully killed the following targets:\n";
-			for (int i : weeklyScore.getTargetPlayerIds()) {
-				text += "\t- " + playerData.get(i).getFirstName() + " " + playerData.get(i).getLastName() + "\n";
-			}
+	/**
+	 * Writes a player's target assignments for a given week, as well as their score summary. E-mails are rendered on
+	 * emailThreadCount threads and written in order of player ID, in the format given by outputMode. Any previous
+	 * output is only replaced once every e-mail has been written.
+	 * @param gameWeek The week of play that the e-mails are being written for
+	 * @return True for success
+	 */
+	public boolean writePlayerEmails(int gameWeek) {
+		int[] playerIds = new int[playerData.size()];
+		int index = 0;
+		for (int id : playerData.keySet()) {
+			playerIds[index++] = id;
 		}
-		if (weeklyScore.getDeaths() > 0) {
-			text += "You were killed by the following assassins:\n";
-			for (int i : weeklyScore.getAssassinPlayerIds()) {
-				text += "\t- " + playerData.get(i).getFirstName() + " " + playerData.get(i).getLastName() + "\n";
+		Arrays.sort(playerIds);
+
+		ZonedDateTime sentDate = (emailDate == null) ? ZonedDateTime.now() : emailDate;
+		ForkJoinPool renderPool = new ForkJoinPool(Math.max(1, emailThreadCount));
+		try (StageTimer timer = Metrics.time(Stage.WRITE_EMAILS);
+			 EmailFileWriter output = new EmailFileWriter(outputMode, outputFilename, senderAddress, sentDate)) {
+			// Each render thread reuses one body buffer for all of its e-mails
+			ThreadLocal<StringBuilderWriter> bodyBuffers = ThreadLocal.withInitial(() -> new StringBuilderWriter(4096));
+			int[] blockIds = new int[EMAIL_BLOCK_SIZE];
+			byte[][] emails = new byte[EMAIL_BLOCK_SIZE][];
+			for (int blockStart = 0; blockStart < playerIds.length; blockStart += EMAIL_BLOCK_SIZE) {
+				int start = blockStart;
+				int count = Math.min(playerIds.length - blockStart, EMAIL_BLOCK_SIZE);
+				System.arraycopy(playerIds, start, blockIds, 0, count);
+				renderPool.submit(() -> IntStream.range(0, count).parallel()
+					.forEach(i -> emails[i] = renderPlayerEmail(output, bodyBuffers.get(), blockIds[i], gameWeek))).get();
+				output.write(blockIds, emails, count);
 			}
+			output.commit();
+			timer.addRows(output.getEmailCount());
+			timer.addBytes(output.getBytesWritten());
 		}
+		catch (IOException e) {
+			System.err.println("IOException while writing to output " + outputFilename + ": " + e.getMessage());
+			return false;
+		}
+		catch (ExecutionException e) {
+			System.err.println("Error while rendering player e-mails: " + e.getCause());
+			return false;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.err.println("Interrupted while rendering player e-mails");
+			return false;
+		}
+		finally {
+			renderPool.shutdown();
+		}
+		return true;
+	}
 
-		// TODO: print any bonuses the player earned for the week
+	/**
+	 * Renders a single player's e-mail for a given week
+	 * @param output The writer that the e-mail will be written to, which formats the rendered text
+	 * @param body The calling thread's buffer for the body text, which is emptied first
+	 * @param playerId The ID of the player to render the e-mail for
+	 * @param gameWeek The week of play that the e-mails are being written for
+	 * @return The formatted e-mail, or null if the player does not receive an e-mail this week
+	 */
+	private byte[] renderPlayerEmail(EmailFileWriter output, StringBuilderWriter body, int playerId, int gameWeek) {
+		long startNanos = Metrics.startNanos();
+		long startAllocatedBytes = Metrics.startAllocatedBytes();
+		Player player = playerData.get(playerId);
+		String subject = emailRenderer.getEmailSubject(player, gameWeek);
+		if (subject == null) {
+			return null;
+		}
 
-		return text;
+		body.reset();
+		try {
+			emailRenderer.writeEmailBody(body, player, emailRenderer.renderTargetList(targetAssignments.getTargetsOf(playerId)), gameWeek);
+		}
+		catch (IOException e) {
+			// A StringBuilderWriter never throws, but writeEmailBody() is declared for any Writer
+			throw new UncheckedIOException(e);
+		}
+		byte[] email = output.formatEmail(player, subject, body.getText());
+		Metrics.record(Stage.RENDER_EMAIL, startNanos, startAllocatedBytes, 1, email.length);
+		return email;
 	}
 }
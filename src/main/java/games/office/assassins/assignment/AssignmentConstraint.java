@@ -0,0 +1,15 @@
+package games.office.assassins.assignment;
+
+/**
+ * A rule that TargetAssignmentEngine tries to satisfy when assigning targets, such as not assigning a target that a
+ * player had in an earlier week. The engine calls isAllowed() many times per assignment, so it should be cheap and
+ * must be safe to call from several threads at once.
+ */
+public interface AssignmentConstraint {
+	/**
+	 * @param assassinId The ID of the player being assigned a target
+	 * @param targetId The ID of the candidate target
+	 * @return True if this constraint allows the assassin to be assigned the target
+	 */
+	boolean isAllowed(int assassinId, int targetId);
+}
@@ -0,0 +1,423 @@
+package games.office.assassins.assignment;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import java.util.Arrays;
+
+import games.office.assassins.config.PooledConnection;
+import games.office.assassins.model.IntList;
+
+/**
+ * One week's target assignments, stored as a directed graph from each assassin to their targets. The graph is kept
+ * in compressed sparse row form: the IDs of every player in the graph are held in one sorted array, and the targets
+ * of the player at index i are targetIds[targetStart[i]] to targetIds[targetStart[i + 1] - 1]. The same layout is
+ * kept in reverse for the assassins hunting each player, so both questions are answered with one binary search and
+ * no per-player objects.
+ *
+ * A graph is never changed once built, so it may be shared between threads. Use a Builder to make one, or load one
+ * that was saved to the database or to a file.
+ */
+public class AssignmentGraph {
+	/** Changed whenever the layout written by writeToFile() changes so that older files are rejected */
+	private static final int FILE_FORMAT_VERSION = 1;
+
+	/** The number of ints at the start of a file, before the arrays: the version and the player and pairing counts */
+	private static final int FILE_HEADER_INTS = 3;
+
+	/** The ID of every assassin and target in the graph, in ascending order */
+	private final int[] playerIds;
+
+	/** Where the targets of the player at each index start in targetIds. Has one more entry than playerIds */
+	private final int[] targetStart;
+
+	/** The targets of every player, grouped by assassin in the order of playerIds */
+	private final int[] targetIds;
+
+	/** Where the assassins of the player at each index start in assassinIds. Has one more entry than playerIds */
+	private final int[] assassinStart;
+
+	/** The assassins of every player, grouped by target in the order of playerIds */
+	private final int[] assassinIds;
+
+	/**
+	 * Builds an assignment graph one pairing at a time. The targets of each assassin keep the order they were added
+	 * in, which is the order they are listed in e-mails.
+	 */
+	public static class Builder {
+		/** The assassin of each pairing added so far */
+		private final IntList pairAssassinIds = new IntList();
+
+		/** The target of each pairing added so far */
+		private final IntList pairTargetIds = new IntList();
+
+		/** Adds one assassin and target pairing */
+		public Builder addPairing(int assassinId, int targetId) {
+			pairAssassinIds.add(assassinId);
+			pairTargetIds.add(targetId);
+			return this;
+		}
+
+		/** Returns the number of pairings added so far */
+		public int getPairingCount() {
+			return pairAssassinIds.size();
+		}
+
+		/** Creates the graph from every pairing added so far */
+		public AssignmentGraph build() {
+			int[] assassins = pairAssassinIds.toArray();
+			int[] targets = pairTargetIds.toArray();
+
+			// Every player that appears on either side of a pairing, sorted with duplicates removed
+			int[] allIds = new int[assassins.length * 2];
+			System.arraycopy(assassins, 0, allIds, 0, assassins.length);
+			System.arraycopy(targets, 0, allIds, assassins.length, targets.length);
+			Arrays.sort(allIds);
+			int playerCount = 0;
+			for (int i = 0; i < allIds.length; ++i) {
+				if (i == 0 || allIds[i] != allIds[i - 1]) {
+					allIds[playerCount++] = allIds[i];
+				}
+			}
+
+			int[] ids = Arrays.copyOf(allIds, playerCount);
+			int[] starts = new int[playerCount + 1];
+			int[] groupedTargets = groupByKey(ids, assassins, targets, starts);
+			return new AssignmentGraph(ids, starts, groupedTargets);
+		}
+	}
+
+	/**
+	 * Creates a graph from its forward arrays and builds the reverse arrays from them
+	 * @param ids The ID of every player in the graph, in ascending order
+	 * @param starts Where the targets of each player start in targets, followed by the total number of pairings
+	 * @param targets The targets of every player, grouped by assassin. Every target must be in ids
+	 */
+	private AssignmentGraph(int[] ids, int[] starts, int[] targets) {
+		playerIds = ids;
+		targetStart = starts;
+		targetIds = targets;
+
+		int[] pairAssassinIds = new int[targets.length];
+		for (int i = 0; i < ids.length; ++i) {
+			Arrays.fill(pairAssassinIds, starts[i], starts[i + 1], ids[i]);
+		}
+		assassinStart = new int[ids.length + 1];
+		assassinIds = groupByKey(ids, targets, pairAssassinIds, assassinStart);
+	}
+
+	/**
+	 * Groups the values of a list of pairs by their key with a counting sort, so that pairs with the same key keep
+	 * their original order
+	 * @param ids The sorted IDs that keys are looked up in
+	 * @param keys The key of each pair, which must be in ids
+	 * @param values The value of each pair
+	 * @param starts Filled with where the values of each key start in the returned array, followed by the pair count
+	 * @return The values grouped by key in the order of ids
+	 */
+	private static int[] groupByKey(int[] ids, int[] keys, int[] values, int[] starts) {
+		int[] keyIndexes = new int[keys.length];
+		for (int i = 0; i < keys.length; ++i) {
+			keyIndexes[i] = Arrays.binarySearch(ids, keys[i]);
+			if (keyIndexes[i] < 0) {
+				throw new IllegalArgumentException("Player " + keys[i] + " is missing from the assignment graph");
+			}
+			starts[keyIndexes[i] + 1]++;
+		}
+		for (int i = 0; i < ids.length; ++i) {
+			starts[i + 1] += starts[i];
+		}
+
+		int[] grouped = new int[values.length];
+		int[] next = Arrays.copyOf(starts, ids.length);
+		for (int i = 0; i < keys.length; ++i) {
+			grouped[next[keyIndexes[i]]++] = values[i];
+		}
+		return grouped;
+	}
+
+	/** Returns the number of players that are an assassin or a target in the graph */
+	public int getPlayerCount() {
+		return playerIds.length;
+	}
+
+	/** Returns the total number of assassin and target pairings */
+	public int getPairingCount() {
+		return targetIds.length;
+	}
+
+	/**
+	 * Returns the targets assigned to a player
+	 * @param playerId The ID of the assassin
+	 * @return The target IDs in the order they were assigned, or null if the player was not assigned any targets
+	 */
+	public int[] getTargetsOf(int playerId) {
+		int index = Arrays.binarySearch(playerIds, playerId);
+		if (index < 0 || targetStart[index] == targetStart[index + 1]) {
+			return null;
+		}
+		return Arrays.copyOfRange(targetIds, targetStart[index], targetStart[index + 1]);
+	}
+
+	/**
+	 * Returns the assassins that were assigned a player as a target
+	 * @param playerId The ID of the target
+	 * @return The assassin IDs in ascending order, or an empty array if no one was assigned the player
+	 */
+	public int[] getAssassinsOf(int playerId) {
+		int index = Arrays.binarySearch(playerIds, playerId);
+		if (index < 0) {
+			return new int[0];
+		}
+		return Arrays.copyOfRange(assassinIds, assassinStart[index], assassinStart[index + 1]);
+	}
+
+	/** Returns the number of targets assigned to a player */
+	public int getTargetCount(int playerId) {
+		int index = Arrays.binarySearch(playerIds, playerId);
+		return (index < 0) ? 0 : targetStart[index + 1] - targetStart[index];
+	}
+
+	/** Returns the number of assassins that were assigned a player as a target */
+	public int getAssassinCount(int playerId) {
+		int index = Arrays.binarySearch(playerIds, playerId);
+		return (index < 0) ? 0 : assassinStart[index + 1] - assassinStart[index];
+	}
+
+	/** Returns true if the assassin was assigned the target */
+	public boolean hasPairing(int assassinId, int targetId) {
+		int index = Arrays.binarySearch(playerIds, assassinId);
+		if (index < 0) {
+			return false;
+		}
+		for (int i = targetStart[index]; i < targetStart[index + 1]; ++i) {
+			if (targetIds[i] == targetId) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Saves the assignments to the assignments table of the database. See PairingHistory.saveAssignments().
+	 * @param dbConnection An open connection to the database
+	 * @param weekNumber The week the assignments are for
+	 * @return True for success
+	 */
+	public boolean saveToDatabase(Connection dbConnection, int weekNumber) {
+		return saveToDatabase(dbConnection, weekNumber, null);
+	}
+
+	/**
+	 * Saves the assignments to the assignments table of the database, along with the seed of the search that made
+	 * them. See PairingHistory.saveAssignments().
+	 * @param dbConnection An open connection to the database
+	 * @param weekNumber The week the assignments are for
+	 * @param seed The seed of the search that made the assignments, or null if they were not made by a search
+	 * @return True for success
+	 */
+	public boolean saveToDatabase(Connection dbConnection, int weekNumber, Long seed) {
+		try (PooledConnection pooledConnection = PooledConnection.unpooled(dbConnection)) {
+			return saveToDatabase(pooledConnection, weekNumber, seed);
+		}
+	}
+
+	/**
+	 * Saves the assignments and seed in the same manner as saveToDatabase(Connection, int, Long), through the statement
+	 * cache of a pooled connection
+	 * @param dbConnection A connection borrowed from the pool
+	 * @param weekNumber The week the assignments are for
+	 * @param seed The seed of the search that made the assignments, or null if they were not made by a search
+	 * @return True for success
+	 */
+	public boolean saveToDatabase(PooledConnection dbConnection, int weekNumber, Long seed) {
+		int[] pairAssassinIds = new int[targetIds.length];
+		for (int i = 0; i < playerIds.length; ++i) {
+			Arrays.fill(pairAssassinIds, targetStart[i], targetStart[i + 1], playerIds[i]);
+		}
+		return PairingHistory.saveAssignments(dbConnection, weekNumber, pairAssassinIds, targetIds, targetIds.length, seed);
+	}
+
+	/**
+	 * Loads one week's assignments from the assignments table of the database. The targets of each assassin are
+	 * listed in the order they were saved in, which is the order they are listed in e-mails. Weeks saved before the
+	 * table kept that order list each assassin's targets in ascending order.
+	 * @param dbConnection An open connection to the database
+	 * @param weekNumber The week to load the assignments of
+	 * @return The assignments, which are empty if none were saved for the week, or null if they could not be read
+	 */
+	public static AssignmentGraph loadFromDatabase(Connection dbConnection, int weekNumber) {
+		try (PooledConnection pooledConnection = PooledConnection.unpooled(dbConnection)) {
+			return loadFromDatabase(pooledConnection, weekNumber);
+		}
+	}
+
+	/**
+	 * Loads one week's assignments in the same manner as loadFromDatabase(Connection, int), through the statement cache
+	 * of a pooled connection
+	 * @param dbConnection A connection borrowed from the pool
+	 * @param weekNumber The week to load the assignments of
+	 * @return The assignments, which are empty if none were saved for the week, or null if they could not be read
+	 */
+	public static AssignmentGraph loadFromDatabase(PooledConnection dbConnection, int weekNumber) {
+		Builder builder = new Builder();
+		try {
+			if (PairingHistory.hasTable(dbConnection, "assignments") == false) {
+				return builder.build();
+			}
+
+			String order = PairingHistory.hasOrdinalColumn(dbConnection) ? "AssassinID, Ordinal, TargetId" : "AssassinID, TargetId";
+			PreparedStatement query = dbConnection.prepareStatement("SELECT AssassinID, TargetId FROM assignments WHERE WeekNumber = ? ORDER BY " + order);
+			query.setInt(1, weekNumber);
+			try (ResultSet results = query.executeQuery()) {
+				while (results.next()) {
+					builder.addPairing(results.getInt("AssassinID"), results.getInt("TargetId"));
+				}
+			}
+		}
+		catch (SQLException e) {
+			System.out.println("Error loading week " + weekNumber + " assignments: " + e.getMessage());
+			return null;
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Saves the graph to a binary file as the raw forward arrays, which can be read back in a few bulk copies. The
+	 * data is first written to a temporary file which then replaces any existing file, so an interrupted write will
+	 * never leave a partial file behind.
+	 * @param filename The name of the file to write
+	 * @return True for success
+	 */
+	public boolean writeToFile(String filename) {
+		Path filePath = Paths.get(filename);
+		Path tempPath = Paths.get(filename + ".tmp");
+
+		ByteBuffer buffer = ByteBuffer.allocate(4 * (FILE_HEADER_INTS + playerIds.length + targetStart.length + targetIds.length));
+		IntBuffer ints = buffer.asIntBuffer();
+		ints.put(FILE_FORMAT_VERSION).put(playerIds.length).put(targetIds.length);
+		ints.put(playerIds).put(targetStart).put(targetIds);
+
+		try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+		catch (IOException e) {
+			System.out.println("Unable to write target assignments " + filename + ": " + e.getMessage());
+			deleteQuietly(tempPath);
+			return false;
+		}
+
+		try {
+			Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			System.out.println("Unable to replace target assignments " + filename + ": " + e.getMessage());
+			deleteQuietly(tempPath);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads a graph that was previously written with writeToFile()
+	 * @param filename The name of the file to read
+	 * @return The graph, or null if the file does not exist or could not be read
+	 */
+	public static AssignmentGraph readFromFile(String filename) {
+		Path filePath = Paths.get(filename);
+		if (Files.exists(filePath) == false) {
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+			long fileSize = channel.size();
+			if (fileSize < 4 * FILE_HEADER_INTS || fileSize > Integer.MAX_VALUE || fileSize % 4 != 0) {
+				System.out.println("Target assignment file " + filename + " has an invalid size");
+				return null;
+			}
+
+			ByteBuffer buffer = ByteBuffer.allocate((int) fileSize);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) {
+					break;
+				}
+			}
+			buffer.flip();
+			IntBuffer ints = buffer.asIntBuffer();
+
+			if (ints.get() != FILE_FORMAT_VERSION) {
+				System.out.println("Ignoring target assignment file " + filename + " written by a different version");
+				return null;
+			}
+			int playerCount = ints.get();
+			int pairingCount = ints.get();
+			if (playerCount < 0 || pairingCount < 0 || ints.remaining() != (long) playerCount * 2 + 1 + pairingCount) {
+				System.out.println("Target assignment file " + filename + " is truncated or corrupt");
+				return null;
+			}
+
+			int[] ids = new int[playerCount];
+			int[] starts = new int[playerCount + 1];
+			int[] targets = new int[pairingCount];
+			ints.get(ids).get(starts).get(targets);
+
+			// Building the reverse arrays also checks that every target is one of the players
+			if (isValidLayout(ids, starts, targets) == false) {
+				System.out.println("Target assignment file " + filename + " is truncated or corrupt");
+				return null;
+			}
+			return new AssignmentGraph(ids, starts, targets);
+		}
+		catch (IllegalArgumentException e) {
+			System.out.println("Target assignment file " + filename + " is corrupt: " + e.getMessage());
+			return null;
+		}
+		catch (IOException e) {
+			System.out.println("Unable to read target assignments " + filename + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	/** Returns true if the player IDs and start positions read from a file are in order and cover every target */
+	private static boolean isValidLayout(int[] ids, int[] starts, int[] targets) {
+		for (int i = 1; i < ids.length; ++i) {
+			if (ids[i] <= ids[i - 1]) {
+				return false;
+			}
+		}
+		if (starts[0] != 0 || starts[ids.length] != targets.length) {
+			return false;
+		}
+		for (int i = 0; i < ids.length; ++i) {
+			if (starts[i + 1] < starts[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Deletes a file, ignoring errors since the file is only a leftover temporary file */
+	private static void deleteQuietly(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		}
+		catch (IOException e) {
+			System.out.println("Unable to delete " + path + ": " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package games.office.assassins.assignment;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.IntUnaryOperator;
+
+import lombok.Getter;
+
+/**
+ * Measures how fair a TargetAssignment is. Lower values are better for every measure.
+ */
+public class AssignmentScore {
+	/** The number of pairings that break a constraint */
+	@Getter
+	private final int violationCount;
+
+	/** The variance in the number of assassins each player has. Always 0 for assignments made by the engine */
+	@Getter
+	private final double targetCountVariance;
+
+	/**
+	 * The number of targets shared by a pair of assassins beyond the first. Assassins that share several targets tend
+	 * to keep running into each other, so the hunting is less spread out.
+	 */
+	@Getter
+	private final int sharedTargetOverlap;
+
+	/**
+	 * The average difference in rank between each assassin and their targets, as a fraction of the number of players
+	 * so that it ranges from 0 to 1. 0 if ranks were not given
+	 */
+	@Getter
+	private final double rankSpread;
+
+	private AssignmentScore(int violations, double variance, int overlap, double spread) {
+		violationCount = violations;
+		targetCountVariance = variance;
+		sharedTargetOverlap = overlap;
+		rankSpread = spread;
+	}
+
+	/**
+	 * Scores an assignment
+	 * @param assignment The assignment to score
+	 * @param playerIndexes Maps each player ID in the assignment to a distinct index from 0 to assignment.size() - 1
+	 * @param playerRanks Returns the rank of a player ID, or null to skip the rank spread measure
+	 */
+	public static AssignmentScore score(TargetAssignment assignment, HashMap<Integer, Integer> playerIndexes, IntUnaryOperator playerRanks) {
+		int playerCount = assignment.size();
+		int k = assignment.getTargetsPerPlayer();
+
+		// Group the assassins of each target together, indexed by the target's position in playerIndexes
+		int[] assassinCounts = new int[playerCount];
+		int[] targetIndexes = new int[playerCount * k];
+		int[] assassinIndexes = new int[playerCount];
+		for (int i = 0; i < playerCount; ++i) {
+			assassinIndexes[i] = playerIndexes.get(assignment.getPlayerId(i));
+			for (int j = 0; j < k; ++j) {
+				int targetIndex = playerIndexes.get(assignment.getTargetId(i, j));
+				targetIndexes[i * k + j] = targetIndex;
+				assassinCounts[targetIndex]++;
+			}
+		}
+
+		int[] assassinStart = new int[playerCount + 1];
+		for (int t = 0; t < playerCount; ++t) {
+			assassinStart[t + 1] = assassinStart[t] + assassinCounts[t];
+		}
+		int[] assassinsByTarget = new int[playerCount * k];
+		int[] fill = Arrays.copyOf(assassinStart, playerCount);
+		for (int i = 0; i < playerCount; ++i) {
+			for (int j = 0; j < k; ++j) {
+				assassinsByTarget[fill[targetIndexes[i * k + j]]++] = assassinIndexes[i];
+			}
+		}
+
+		double mean = (double) k;
+		double variance = 0;
+		for (int t = 0; t < playerCount; ++t) {
+			variance += (assassinCounts[t] - mean) * (assassinCounts[t] - mean);
+		}
+		variance /= playerCount;
+
+		// For each assassin, list the other assassins of each of their targets. An assassin appearing more than once
+		// shares more than one target with them. Each such pair is seen from both sides, so halve the total
+		int overlap = 0;
+		int[] coAssassins = new int[16];
+		for (int i = 0; i < playerCount; ++i) {
+			int count = 0;
+			for (int j = 0; j < k; ++j) {
+				int target = targetIndexes[i * k + j];
+				for (int a = assassinStart[target]; a < assassinStart[target + 1]; ++a) {
+					if (assassinsByTarget[a] == assassinIndexes[i]) {
+						continue;
+					}
+					if (count == coAssassins.length) {
+						coAssassins = Arrays.copyOf(coAssassins, count * 2);
+					}
+					coAssassins[count++] = assassinsByTarget[a];
+				}
+			}
+			Arrays.sort(coAssassins, 0, count);
+			for (int c = 1; c < count; ++c) {
+				if (coAssassins[c] == coAssassins[c - 1]) {
+					overlap++;
+				}
+			}
+		}
+		overlap /= 2;
+
+		double spread = 0;
+		if (playerRanks != null) {
+			long totalDifference = 0;
+			for (int i = 0; i < playerCount; ++i) {
+				int assassinRank = playerRanks.applyAsInt(assignment.getPlayerId(i));
+				for (int j = 0; j < k; ++j) {
+					totalDifference += Math.abs(assassinRank - playerRanks.applyAsInt(assignment.getTargetId(i, j)));
+				}
+			}
+			spread = (double) totalDifference / ((double) playerCount * k * playerCount);
+		}
+
+		return new AssignmentScore(assignment.getViolationCount(), variance, overlap, spread);
+	}
+
+	@Override
+	public String toString() {
+		return violationCount + " violations, " + sharedTargetOverlap + " repeated shared targets, target count variance " +
+			String.format("%.3f", targetCountVariance) + ", rank spread " + String.format("%.4f", rankSpread);
+	}
+}
@@ -0,0 +1,137 @@
+package games.office.assassins.assignment;
+
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Runs a TargetAssignmentEngine many times with different random choices and keeps the fairest result, as measured
+ * by a weighted sum of the AssignmentScore measures.
+ *
+ * Every search is driven by a single seed. Each candidate gets its own SplittableRandom split from the seed in a fixed
+ * order, and ties between equally scored candidates go to the earliest one, so searching the same players in the same
+ * order with the same seed and settings always returns the same assignment, however many threads are used. Log the
+ * seed of any assignment that is sent to players so that it can be reproduced.
+ */
+public class AssignmentSearch {
+	/** The engine that makes each candidate assignment */
+	@Getter
+	private final TargetAssignmentEngine engine;
+
+	/** The number of candidate assignments to make in each search */
+	@Getter @Setter
+	private int candidateCount = 64;
+
+	/** The number of threads used to make candidates. Does not affect the result */
+	@Getter @Setter
+	private int threadCount = Runtime.getRuntime().availableProcessors();
+
+	/** Weight of each pairing that breaks a constraint. Large, so that fairness never outweighs a constraint */
+	@Getter @Setter
+	private double violationWeight = 1000;
+
+	/** Weight of the variance in how many assassins each player has */
+	@Getter @Setter
+	private double targetCountVarianceWeight = 100;
+
+	/** Weight of each target shared by a pair of assassins beyond the first */
+	@Getter @Setter
+	private double sharedTargetOverlapWeight = 1;
+
+	/** Weight of the average rank difference between assassins and their targets, which ranges from 0 to 1 */
+	@Getter @Setter
+	private double rankSpreadWeight = 100;
+
+	/** The score of the assignment returned by the last search */
+	@Getter
+	private AssignmentScore lastScore;
+
+	/** The position of the assignment returned by the last search among its candidates, counting from 0 */
+	@Getter
+	private int lastCandidateIndex;
+
+	/**
+	 * @param assignmentEngine The engine that makes each candidate assignment, along with its constraints
+	 */
+	public AssignmentSearch(TargetAssignmentEngine assignmentEngine) {
+		if (assignmentEngine == null) {
+			throw new RuntimeException("Null engine passed to AssignmentSearch constructor");
+		}
+		engine = assignmentEngine;
+	}
+
+	/**
+	 * Makes candidateCount assignments in parallel and returns the one with the lowest weighted score
+	 * @param playerIds The IDs of the players to assign targets to. The order affects the result
+	 * @param seed The seed that determines every random choice made by the search
+	 * @param playerRanks Returns the rank of a player ID, or null to ignore rank spread
+	 * @return The best assignment, or null if no assignment could be made
+	 */
+	public TargetAssignment search(int[] playerIds, long seed, IntUnaryOperator playerRanks) {
+		int candidates = Math.max(1, candidateCount);
+		SplittableRandom seedRandom = new SplittableRandom(seed);
+		SplittableRandom[] candidateRandoms = new SplittableRandom[candidates];
+		for (int i = 0; i < candidates; ++i) {
+			candidateRandoms[i] = seedRandom.split();
+		}
+
+		HashMap<Integer, Integer> playerIndexes = new HashMap();
+		for (int i = 0; i < playerIds.length; ++i) {
+			playerIndexes.put(playerIds[i], i);
+		}
+
+		TargetAssignment[] assignments = new TargetAssignment[candidates];
+		AssignmentScore[] scores = new AssignmentScore[candidates];
+		ForkJoinPool searchPool = new ForkJoinPool(Math.max(1, threadCount));
+		try {
+			searchPool.submit(() -> IntStream.range(0, candidates).parallel().forEach(i -> {
+				assignments[i] = engine.assign(playerIds, candidateRandoms[i]);
+				if (assignments[i] != null) {
+					scores[i] = AssignmentScore.score(assignments[i], playerIndexes, playerRanks);
+				}
+			})).get();
+		}
+		catch (ExecutionException e) {
+			System.out.println("Error while searching for target assignments: " + e.getCause());
+			return null;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.out.println("Interrupted while searching for target assignments");
+			return null;
+		}
+		finally {
+			searchPool.shutdown();
+		}
+
+		int best = -1;
+		double bestTotal = Double.MAX_VALUE;
+		for (int i = 0; i < candidates; ++i) {
+			if (scores[i] != null && weightedTotal(scores[i]) < bestTotal) {
+				best = i;
+				bestTotal = weightedTotal(scores[i]);
+			}
+		}
+		if (best < 0) {
+			return null;
+		}
+
+		lastScore = scores[best];
+		lastCandidateIndex = best;
+		return assignments[best];
+	}
+
+	/** Returns the weighted sum of a score's measures. Lower is better */
+	public double weightedTotal(AssignmentScore score) {
+		return violationWeight * score.getViolationCount() +
+			targetCountVarianceWeight * score.getTargetCountVariance() +
+			sharedTargetOverlapWeight * score.getSharedTargetOverlap() +
+			rankSpreadWeight * score.getRankSpread();
+	}
+}
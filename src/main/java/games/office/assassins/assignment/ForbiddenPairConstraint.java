@@ -0,0 +1,50 @@
+package games.office.assassins.assignment;
+
+import games.office.assassins.model.LongHashSet;
+
+/**
+ * Forbids specific assassin and target pairings, such as those that were assigned in earlier weeks. Pairs should all
+ * be added before the constraint is used by an assignment.
+ */
+public class ForbiddenPairConstraint implements AssignmentConstraint {
+	/** Each forbidden pair, with the assassin ID in the upper 32 bits and the target ID in the lower 32 bits */
+	private final LongHashSet forbiddenPairs = new LongHashSet();
+
+	/** If true, a forbidden pair also forbids the target from being assigned the assassin */
+	private final boolean eitherDirection;
+
+	/**
+	 * @param forbidEitherDirection If true, forbidding an assassin from targeting a player also forbids that player
+	 *                              from targeting the assassin
+	 */
+	public ForbiddenPairConstraint(boolean forbidEitherDirection) {
+		eitherDirection = forbidEitherDirection;
+	}
+
+	/**
+	 * Forbids an assassin from being assigned a target
+	 * @param assassinId The ID of the assassin
+	 * @param targetId The ID of the target
+	 */
+	public void addPair(int assassinId, int targetId) {
+		forbiddenPairs.add(pairKey(assassinId, targetId));
+		if (eitherDirection) {
+			forbiddenPairs.add(pairKey(targetId, assassinId));
+		}
+	}
+
+	/** Returns the number of forbidden pairs, counting each direction separately */
+	public int size() {
+		return forbiddenPairs.size();
+	}
+
+	@Override
+	public boolean isAllowed(int assassinId, int targetId) {
+		return forbiddenPairs.contains(pairKey(assassinId, targetId)) == false;
+	}
+
+	/** Packs an assassin and target ID into a single value */
+	static long pairKey(int assassinId, int targetId) {
+		return ((long) assassinId << 32) | (targetId & 0xffffffffL);
+	}
+}
@@ -0,0 +1,290 @@
+package games.office.assassins.assignment;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import lombok.Getter;
+
+import games.office.assassins.config.PooledConnection;
+import games.office.assassins.model.LongHashSet;
+
+/**
+ * Every assassin and target pairing that has been assigned in past weeks. Assignments are stored in the assignments
+ * table of the database, one row per pairing, and loaded into a compact in-memory index of packed pair IDs so that
+ * "have these players been paired before" can be answered in constant time, even with hundreds of thousands of past
+ * pairings.
+ *
+ * As an AssignmentConstraint, the history forbids assigning any pairing that has been assigned before. Once loaded
+ * the history is only read, so it may be shared by assignments running on several threads.
+ *
+ * Every query and insert is prepared through a PooledConnection, so that a connection borrowed from the pool reuses
+ * its cached statements. The methods that take a plain Connection wrap it for the length of the call.
+ */
+public class PairingHistory implements AssignmentConstraint {
+	/**
+	 * Ordinal is the position of each pairing in the week's assignments, which keeps the order targets are listed in
+	 * e-mails. Tables created before it was added are given the column when assignments are next saved
+	 */
+	private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS assignments(WeekNumber int, AssassinID int, TargetId int, " +
+		"Ordinal int, PRIMARY KEY (WeekNumber, AssassinID, TargetId))";
+
+	private static final String ADD_ORDINAL_SQL = "ALTER TABLE assignments ADD COLUMN Ordinal int";
+
+	private static final String DELETE_WEEK_SQL = "DELETE FROM assignments WHERE WeekNumber = ?";
+
+	private static final String INSERT_SQL = "INSERT OR IGNORE INTO assignments (WeekNumber, AssassinID, TargetId, Ordinal) VALUES (?, ?, ?, ?)";
+
+	private static final String CREATE_SEED_TABLE_SQL = "CREATE TABLE IF NOT EXISTS assignment_seeds(WeekNumber int PRIMARY KEY, Seed int8)";
+
+	private static final String DELETE_SEED_SQL = "DELETE FROM assignment_seeds WHERE WeekNumber = ?";
+
+	private static final String INSERT_SEED_SQL = "INSERT INTO assignment_seeds (WeekNumber, Seed) VALUES (?, ?)";
+
+	/** Every past pairing, packed with ForbiddenPairConstraint.pairKey() */
+	private final LongHashSet pairings;
+
+	/** If true, a past pairing also forbids the target from being assigned the assassin */
+	@Getter
+	private final boolean eitherDirection;
+
+	/**
+	 * Creates an empty history
+	 * @param forbidEitherDirection If true, a player that was assigned a target may not later be that target's target
+	 *                              either
+	 */
+	public PairingHistory(boolean forbidEitherDirection) {
+		eitherDirection = forbidEitherDirection;
+		pairings = new LongHashSet();
+	}
+
+	/**
+	 * Loads the pairings assigned before a given week from the database. See loadFromDatabase(PooledConnection, int,
+	 * boolean).
+	 * @return The history, or null if it could not be read
+	 */
+	public static PairingHistory loadFromDatabase(Connection dbConnection, int beforeWeek, boolean forbidEitherDirection) {
+		try (PooledConnection pooledConnection = PooledConnection.unpooled(dbConnection)) {
+			return loadFromDatabase(pooledConnection, beforeWeek, forbidEitherDirection);
+		}
+	}
+
+	/**
+	 * Loads the pairings assigned before a given week from the database. A database with no assignments table has no
+	 * history.
+	 * @param dbConnection An open connection to the database
+	 * @param beforeWeek Only pairings from weeks before this one are loaded
+	 * @param forbidEitherDirection If true, a player that was assigned a target may not later be that target's target
+	 *                              either
+	 * @return The history, or null if it could not be read
+	 */
+	public static PairingHistory loadFromDatabase(PooledConnection dbConnection, int beforeWeek, boolean forbidEitherDirection) {
+		PairingHistory history = new PairingHistory(forbidEitherDirection);
+		try {
+			if (hasTable(dbConnection, "assignments") == false) {
+				return history;
+			}
+
+			PreparedStatement query = dbConnection.prepareStatement("SELECT AssassinID, TargetId FROM assignments WHERE WeekNumber < ?");
+			query.setInt(1, beforeWeek);
+			try (ResultSet results = query.executeQuery()) {
+				while (results.next()) {
+					history.addPairing(results.getInt("AssassinID"), results.getInt("TargetId"));
+				}
+			}
+		}
+		catch (SQLException e) {
+			System.out.println("Error loading pairing history: " + e.getMessage());
+			return null;
+		}
+		return history;
+	}
+
+	/**
+	 * Saves one week's assignments to the database without a seed. See saveAssignments(Connection, int, int[], int[],
+	 * int, Long).
+	 * @return True for success
+	 */
+	public static boolean saveAssignments(Connection dbConnection, int weekNumber, int[] assassinIds, int[] targetIds, int count) {
+		return saveAssignments(dbConnection, weekNumber, assassinIds, targetIds, count, null);
+	}
+
+	/**
+	 * Saves one week's assignments to the database. See saveAssignments(PooledConnection, int, int[], int[], int,
+	 * Long).
+	 * @return True for success
+	 */
+	public static boolean saveAssignments(Connection dbConnection, int weekNumber, int[] assassinIds, int[] targetIds, int count, Long seed) {
+		try (PooledConnection pooledConnection = PooledConnection.unpooled(dbConnection)) {
+			return saveAssignments(pooledConnection, weekNumber, assassinIds, targetIds, count, seed);
+		}
+	}
+
+	/**
+	 * Saves one week's assignments to the database in a single transaction, creating the assignments table if needed.
+	 * Any pairings saved for the week before are replaced, so a week that is reassigned and saved again only keeps the
+	 * pairings that were saved last. Each pairing is saved with its position in the arrays, so the targets of each
+	 * assassin are loaded back in the order they were given. The seed of the search that made the assignments is saved in the
+	 * assignment_seeds table, replacing any seed saved for the week before.
+	 * @param dbConnection An open connection to the database
+	 * @param weekNumber The week the assignments are for
+	 * @param assassinIds The assassin of each pairing
+	 * @param targetIds The target of each pairing
+	 * @param count The number of pairings to save from the start of each array
+	 * @param seed The seed of the search that made the assignments, or null if they were not made by a search
+	 * @return True for success
+	 */
+	public static boolean saveAssignments(PooledConnection dbConnection, int weekNumber, int[] assassinIds, int[] targetIds, int count, Long seed) {
+		Connection connection = null;
+		boolean autoCommit = true;
+		try {
+			connection = dbConnection.getConnection();
+			try (Statement dbStatement = connection.createStatement()) {
+				dbStatement.execute(CREATE_TABLE_SQL);
+				dbStatement.execute(CREATE_SEED_TABLE_SQL);
+				if (hasOrdinalColumn(dbConnection) == false) {
+					dbStatement.execute(ADD_ORDINAL_SQL);
+				}
+			}
+
+			autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			PreparedStatement delete = dbConnection.prepareStatement(DELETE_WEEK_SQL);
+			delete.setInt(1, weekNumber);
+			delete.executeUpdate();
+
+			PreparedStatement insert = dbConnection.prepareStatement(INSERT_SQL);
+			for (int i = 0; i < count; ++i) {
+				insert.setInt(1, weekNumber);
+				insert.setInt(2, assassinIds[i]);
+				insert.setInt(3, targetIds[i]);
+				insert.setInt(4, i);
+				insert.addBatch();
+			}
+			insert.executeBatch();
+
+			PreparedStatement deleteSeed = dbConnection.prepareStatement(DELETE_SEED_SQL);
+			deleteSeed.setInt(1, weekNumber);
+			deleteSeed.executeUpdate();
+			if (seed != null) {
+				PreparedStatement insertSeed = dbConnection.prepareStatement(INSERT_SEED_SQL);
+				insertSeed.setInt(1, weekNumber);
+				insertSeed.setLong(2, seed);
+				insertSeed.executeUpdate();
+			}
+			connection.commit();
+		}
+		catch (SQLException e) {
+			System.out.println("Error saving week " + weekNumber + " assignments: " + e.getMessage());
+			if (connection == null) {
+				return false;
+			}
+			try {
+				connection.rollback();
+			}
+			catch (SQLException rollbackError) {
+				System.out.println("Error rolling back failed write: " + rollbackError.getMessage());
+			}
+			return false;
+		}
+		finally {
+			try {
+				if (connection != null) {
+					connection.setAutoCommit(autoCommit);
+				}
+			}
+			catch (SQLException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the assignments table has the Ordinal column, which tables created by older versions lack until
+	 * assignments are next saved
+	 * @param dbConnection An open connection to a database with an assignments table
+	 */
+	static boolean hasOrdinalColumn(PooledConnection dbConnection) throws SQLException {
+		try (ResultSet results = dbConnection.prepareStatement("PRAGMA table_info(assignments)").executeQuery()) {
+			while (results.next()) {
+				if ("Ordinal".equalsIgnoreCase(results.getString("name"))) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/** Returns true if the database has a table with the given name */
+	static boolean hasTable(PooledConnection dbConnection, String table) throws SQLException {
+		PreparedStatement query = dbConnection.prepareStatement("SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?");
+		query.setString(1, table);
+		try (ResultSet results = query.executeQuery()) {
+			return results.next() && results.getInt(1) > 0;
+		}
+	}
+
+	/**
+	 * Loads the seed of the search that made a week's saved assignments. See loadAssignmentSeed(PooledConnection, int).
+	 * @return The seed, or null if the week's assignments were saved without one or it could not be read
+	 */
+	public static Long loadAssignmentSeed(Connection dbConnection, int weekNumber) {
+		try (PooledConnection pooledConnection = PooledConnection.unpooled(dbConnection)) {
+			return loadAssignmentSeed(pooledConnection, weekNumber);
+		}
+	}
+
+	/**
+	 * Loads the seed of the search that made a week's saved assignments, which reproduces them when passed back to
+	 * WeeklySummaryAssignment.assignSearchedTargets() with the same player data and search settings.
+	 * @param dbConnection An open connection to the database
+	 * @param weekNumber The week to load the seed of
+	 * @return The seed, or null if the week's assignments were saved without one or it could not be read
+	 */
+	public static Long loadAssignmentSeed(PooledConnection dbConnection, int weekNumber) {
+		try {
+			if (hasTable(dbConnection, "assignment_seeds") == false) {
+				return null;
+			}
+
+			PreparedStatement query = dbConnection.prepareStatement("SELECT Seed FROM assignment_seeds WHERE WeekNumber = ?");
+			query.setInt(1, weekNumber);
+			try (ResultSet results = query.executeQuery()) {
+				if (results.next() == false) {
+					return null;
+				}
+				return results.getLong(1);
+			}
+		}
+		catch (SQLException e) {
+			System.out.println("Error loading week " + weekNumber + " assignment seed: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/** Records that an assassin has been assigned a target */
+	public void addPairing(int assassinId, int targetId) {
+		pairings.add(ForbiddenPairConstraint.pairKey(assassinId, targetId));
+	}
+
+	/** Returns true if the assassin has been assigned the target before */
+	public boolean hasPaired(int assassinId, int targetId) {
+		return pairings.contains(ForbiddenPairConstraint.pairKey(assassinId, targetId));
+	}
+
+	/** Returns the number of distinct past pairings */
+	public int size() {
+		return pairings.size();
+	}
+
+	@Override
+	public boolean isAllowed(int assassinId, int targetId) {
+		if (hasPaired(assassinId, targetId)) {
+			return false;
+		}
+		return eitherDirection == false || hasPaired(targetId, assassinId) == false;
+	}
+}
@@ -0,0 +1,27 @@
+package games.office.assassins.assignment;
+
+import java.util.HashMap;
+
+/**
+ * Forbids players on the same team from being assigned to each other. Players that have not been given a team may be
+ * assigned anyone.
+ */
+public class SameTeamConstraint implements AssignmentConstraint {
+	/** The team of each player. The player ID is the key */
+	private final HashMap<Integer, Integer> playerTeams = new HashMap();
+
+	/**
+	 * Places a player on a team. Must be done before the constraint is used by an assignment.
+	 * @param playerId The ID of the player
+	 * @param teamId Any number that identifies the team
+	 */
+	public void setTeam(int playerId, int teamId) {
+		playerTeams.put(playerId, teamId);
+	}
+
+	@Override
+	public boolean isAllowed(int assassinId, int targetId) {
+		Integer assassinTeam = playerTeams.get(assassinId);
+		return assassinTeam == null || assassinTeam.equals(playerTeams.get(targetId)) == false;
+	}
+}
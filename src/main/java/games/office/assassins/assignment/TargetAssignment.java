@@ -0,0 +1,55 @@
+package games.office.assassins.assignment;
+
+import lombok.Getter;
+
+/**
+ * The result of a TargetAssignmentEngine run. Every player is assigned targetsPerPlayer distinct targets, never
+ * themselves, and is the target of exactly targetsPerPlayer other players.
+ */
+public class TargetAssignment {
+	/** The ID of each assigned player */
+	private final int[] playerIds;
+
+	/** The number of targets assigned to each player */
+	@Getter
+	private final int targetsPerPlayer;
+
+	/** The target IDs of the player at each index, stored at targetIds[index * targetsPerPlayer + targetNumber] */
+	private final int[] targetIds;
+
+	/** The number of assassin and target pairings that break at least one constraint */
+	@Getter
+	private final int violationCount;
+
+	TargetAssignment(int[] players, int targets, int[] assignedTargetIds, int violations) {
+		playerIds = players;
+		targetsPerPlayer = targets;
+		targetIds = assignedTargetIds;
+		violationCount = violations;
+	}
+
+	/** Returns the number of players in the assignment */
+	public int size() {
+		return playerIds.length;
+	}
+
+	/**
+	 * Returns the ID of a player in the assignment
+	 * @param index The position of the player, from 0 to size() - 1
+	 */
+	public int getPlayerId(int index) {
+		return playerIds[index];
+	}
+
+	/**
+	 * Returns the ID of one of a player's targets
+	 * @param index The position of the player, from 0 to size() - 1
+	 * @param targetNumber Which of the player's targets to return, from 0 to targetsPerPlayer - 1
+	 */
+	public int getTargetId(int index, int targetNumber) {
+		if (targetNumber < 0 || targetNumber >= targetsPerPlayer) {
+			throw new IndexOutOfBoundsException("Target number " + targetNumber + " out of range for " + targetsPerPlayer + " targets");
+		}
+		return targetIds[index * targetsPerPlayer + targetNumber];
+	}
+}
@@ -0,0 +1,213 @@
+package games.office.assassins.assignment;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import games.office.assassins.model.IntList;
+
+/**
+ * Assigns each player a fixed number of targets while trying to satisfy a set of pluggable constraints.
+ *
+ * The assignment is always k-regular: every player has exactly k distinct targets and is the target of exactly k
+ * players, so no player is hunted more than any other. The engine starts from a random assignment of that shape by
+ * shuffling the players into a circle and giving each player the players at k distinct, randomly chosen distances
+ * further around it. Random distances, rather than the next k players used by WeeklySummaryAssignment's random
+ * assignments, make it unlikely that two assassins share more than one target. It then repairs the pairings that
+ * break a constraint. A broken pairing A -> B is swapped with a randomly chosen pairing C -> D to give A -> D and
+ * C -> B, which keeps every player's number of targets and assassins the same.
+ * A swap is only made if it reduces the number of broken pairings. Repair stops when nothing is broken, when a full
+ * pass over the broken pairings improves nothing, or after maxRepairPasses passes.
+ *
+ * Constraints are treated as preferences rather than requirements: when they cannot all be met, the engine still
+ * returns a complete assignment and reports how many pairings break a constraint.
+ *
+ * An engine may make several assignments at once on different threads, as long as constraints are not added while it
+ * is in use.
+ */
+public class TargetAssignmentEngine {
+	/** The number of targets assigned to each player */
+	@Getter
+	private final int targetsPerPlayer;
+
+	/** The constraints the assignment should satisfy */
+	private final ArrayList<AssignmentConstraint> constraints = new ArrayList();
+
+	/** The most passes made over the broken pairings before giving up */
+	@Getter @Setter
+	private int maxRepairPasses = 32;
+
+	/** The number of random pairings tried as a swap partner for each broken pairing in a pass */
+	@Getter @Setter
+	private int repairAttemptsPerViolation = 64;
+
+	/**
+	 * @param targets The number of targets to assign to each player
+	 */
+	public TargetAssignmentEngine(int targets) {
+		if (targets <= 0) {
+			throw new RuntimeException("Invalid number of targets in TargetAssignmentEngine constructor: " + targets);
+		}
+		targetsPerPlayer = targets;
+	}
+
+	/** Adds a constraint that assignments should satisfy */
+	public void addConstraint(AssignmentConstraint constraint) {
+		constraints.add(constraint);
+	}
+
+	/**
+	 * Returns true if every constraint allows an assassin to be assigned a target
+	 * @param assassinId The ID of the assassin
+	 * @param targetId The ID of the target
+	 */
+	public boolean isAllowed(int assassinId, int targetId) {
+		for (int i = 0; i < constraints.size(); ++i) {
+			if (constraints.get(i).isAllowed(assassinId, targetId) == false) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Assigns targets to a group of players
+	 * @param playerIds The IDs of the players to assign targets to, who are also the only possible targets
+	 * @param random The source of randomness. Assignments made with equally seeded sources and the same player order
+	 *               are identical
+	 * @return The assignment, or null if there are not more players than targetsPerPlayer
+	 */
+	public TargetAssignment assign(int[] playerIds, SplittableRandom random) {
+		int playerCount = playerIds.length;
+		int k = targetsPerPlayer;
+		if (playerCount <= k) {
+			System.out.println("Number of targets (" + k + ") requires more players than the " + playerCount + " given");
+			return null;
+		}
+
+		// Shuffle the players into a circle and give each the players at k distinct distances around it, which is
+		// k-regular by construction
+		int[] players = playerIds.clone();
+		for (int i = playerCount - 1; i > 0; --i) {
+			int j = random.nextInt(i + 1);
+			int swap = players[i];
+			players[i] = players[j];
+			players[j] = swap;
+		}
+
+		int[] offsets = new int[k];
+		for (int j = 0; j < k; ++j) {
+			boolean duplicate = true;
+			while (duplicate) {
+				offsets[j] = 1 + random.nextInt(playerCount - 1);
+				duplicate = false;
+				for (int d = 0; d < j; ++d) {
+					duplicate |= (offsets[d] == offsets[j]);
+				}
+			}
+		}
+
+		int[] targets = new int[playerCount * k];
+		IntList broken = new IntList();
+		for (int i = 0; i < playerCount; ++i) {
+			for (int j = 0; j < k; ++j) {
+				int pairing = i * k + j;
+				targets[pairing] = players[(i + offsets[j]) % playerCount];
+				if (isAllowed(players[i], targets[pairing]) == false) {
+					broken.add(pairing);
+				}
+			}
+		}
+
+		for (int pass = 0; pass < maxRepairPasses && broken.isEmpty() == false; ++pass) {
+			IntList stillBroken = new IntList();
+			boolean improved = false;
+			for (int b = 0; b < broken.size(); ++b) {
+				int pairing = broken.get(b);
+				// An earlier swap in this pass may already have fixed this pairing
+				if (isAllowed(players[pairing / k], targets[pairing])) {
+					continue;
+				}
+
+				int partner = repairPairing(players, targets, pairing, random);
+				if (partner < 0) {
+					stillBroken.add(pairing);
+					continue;
+				}
+
+				improved = true;
+				if (isAllowed(players[pairing / k], targets[pairing]) == false) {
+					stillBroken.add(pairing);
+				}
+				if (isAllowed(players[partner / k], targets[partner]) == false) {
+					stillBroken.add(partner);
+				}
+			}
+
+			broken = stillBroken;
+			if (improved == false) {
+				break;
+			}
+		}
+
+		int violations = 0;
+		for (int pairing = 0; pairing < targets.length; ++pairing) {
+			if (isAllowed(players[pairing / k], targets[pairing]) == false) {
+				violations++;
+			}
+		}
+		return new TargetAssignment(players, k, targets, violations);
+	}
+
+	/**
+	 * Tries to reduce the number of broken pairings by swapping the target of a broken pairing with that of a random
+	 * other pairing
+	 * @param players The players, in the order their targets are stored
+	 * @param targets The target of every pairing, modified if a swap is made
+	 * @param pairing The index of the broken pairing in targets
+	 * @param random The source of randomness
+	 * @return The index of the pairing that was swapped with, or -1 if no improving swap was found
+	 */
+	private int repairPairing(int[] players, int[] targets, int pairing, SplittableRandom random) {
+		int k = targetsPerPlayer;
+		int assassinIndex = pairing / k;
+		int assassin = players[assassinIndex];
+		int target = targets[pairing];
+
+		for (int attempt = 0; attempt < repairAttemptsPerViolation; ++attempt) {
+			int partner = random.nextInt(targets.length);
+			int partnerIndex = partner / k;
+			int partnerAssassin = players[partnerIndex];
+			int partnerTarget = targets[partner];
+
+			// The swap must not make anyone their own target or give anyone the same target twice
+			if (partnerIndex == assassinIndex || partnerTarget == assassin || target == partnerAssassin ||
+				hasTarget(targets, assassinIndex, partnerTarget) || hasTarget(targets, partnerIndex, target)) {
+				continue;
+			}
+
+			// The pairing being repaired is broken, so it counts as one violation before the swap
+			int before = 1 + (isAllowed(partnerAssassin, partnerTarget) ? 0 : 1);
+			int after = (isAllowed(assassin, partnerTarget) ? 0 : 1) + (isAllowed(partnerAssassin, target) ? 0 : 1);
+			if (after < before) {
+				targets[pairing] = partnerTarget;
+				targets[partner] = target;
+				return partner;
+			}
+		}
+		return -1;
+	}
+
+	/** Returns true if the player at the given index already has the given target */
+	private boolean hasTarget(int[] targets, int playerIndex, int targetId) {
+		int start = playerIndex * targetsPerPlayer;
+		for (int j = start; j < start + targetsPerPlayer; ++j) {
+			if (targets[j] == targetId) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
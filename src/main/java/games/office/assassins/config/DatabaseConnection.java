@@ -5,17 +5,84 @@ import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
 import java.sql.Statement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteJDBCLoader;
 
 import lombok.Getter;
+import lombok.Setter;
 
 /**
  * Handles all connection and configuration with the SQlite database that retains the assassins data.
+ *
+ * Connections are only handed out through a small bounded pool, which can be used from several threads. SQLite
+ * allows only one writer at a time but any number of readers, so the pool holds one writer connection, which
+ * borrowWriter() lends to one borrower at a time, and up to maxReaderConnections read-only connections that are
+ * opened as they are needed. Borrowers wait when every connection of the kind they need is in use. The time spent
+ * waiting and the hit rate of the prepared statement cache kept on each pooled connection are tracked so that
+ * contention can be seen.
  */
 public class DatabaseConnection {
-	/** */
-	@Getter
+	/** The writer connection, or null if no database is open */
 	private Connection connection;
 
+	/** The filename of the open database */
+	private String databaseFilename;
+
+	/** The most read-only connections the pool will open. Must be set before openConnection() to take effect */
+	@Getter @Setter
+	private int maxReaderConnections = 4;
+
+	/** How long to wait for a pooled connection before giving up */
+	@Getter @Setter
+	private long borrowTimeoutMillis = 30000;
+
+	/** The pooled writer connection */
+	private PooledConnection.Slot writer;
+
+	/** Allows only one borrower of the writer connection at a time */
+	private final Semaphore writerPermits = new Semaphore(1, true);
+
+	/** Limits the number of read-only connections in use at once */
+	private Semaphore readerPermits;
+
+	/** Read-only connections that are open but not currently borrowed */
+	private final ConcurrentLinkedQueue<PooledConnection.Slot> idleReaders = new ConcurrentLinkedQueue();
+
+	/** Every read-only connection that has been opened, so that they can all be closed */
+	private final ArrayList<PooledConnection.Slot> openReaders = new ArrayList();
+
+	/** The number of times a pooled connection has been borrowed */
+	private final AtomicLong borrowCount = new AtomicLong();
+
+	/** Total time spent waiting to borrow a pooled connection */
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+
+	/** The longest single wait to borrow a pooled connection */
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	/** The number of prepared statements served from a connection's cache */
+	private final AtomicLong statementCacheHits = new AtomicLong();
+
+	/** The number of prepared statements that had to be compiled because they were not cached */
+	private final AtomicLong statementCacheMisses = new AtomicLong();
+
+	static {
+		// The SQLite driver can crash when several threads open their first connections at the same moment while it is
+		// still loading its native library, as happens when leagues are run in parallel, so load it before any are opened
+		try {
+			SQLiteJDBCLoader.initialize();
+		}
+		catch (Exception e) {
+			System.out.println("Failed to load the SQLite native library: " + e.getMessage());
+		}
+	}
+
 	/**
 	 * Open a connection with a SQlite database
 	 * @param database_filename The filename where the database is stored
@@ -34,21 +101,162 @@ public class DatabaseConnection {
 			return false;
 		}
 
+		databaseFilename = database_filename;
+		writer = new PooledConnection.Slot(connection, true);
+		readerPermits = new Semaphore(maxReaderConnections, true);
 		return true;
 	}
 
-	/** Closes a connection to an open database. Does nothing if there is no open connection */
+	/** Closes a connection to an open database, along with every pooled connection. Does nothing if there is no open connection */
 	public void closeConnection() {
 		if (connection == null) {
 			return;
 		}
 
+		synchronized (openReaders) {
+			for (PooledConnection.Slot reader : openReaders) {
+				reader.closeAll();
+			}
+			openReaders.clear();
+			idleReaders.clear();
+		}
+
+		writer.closeAll();
+		writer = null;
+		connection = null;
+		databaseFilename = null;
+	}
+
+	/**
+	 * Borrows the writer connection, waiting if another thread has it. The connection must be returned by closing it,
+	 * ideally with try-with-resources.
+	 * @return The writer connection
+	 * @throws SQLException If no database is open or the wait timed out
+	 */
+	public PooledConnection borrowWriter() throws SQLException {
+		if (connection == null) {
+			throw new SQLException("No open database connection");
+		}
+
+		acquire(writerPermits, "writer");
+		return new PooledConnection(this, writer);
+	}
+
+	/**
+	 * Borrows a read-only connection, opening a new one if none are idle and the pool is not full, or waiting for one
+	 * to be returned otherwise. The connection must be returned by closing it, ideally with try-with-resources.
+	 * @return A read-only connection
+	 * @throws SQLException If no database is open, the wait timed out, or a new connection could not be opened
+	 */
+	public PooledConnection borrowReader() throws SQLException {
+		if (connection == null) {
+			throw new SQLException("No open database connection");
+		}
+
+		acquire(readerPermits, "reader");
+		PooledConnection.Slot reader = idleReaders.poll();
+		if (reader != null) {
+			return new PooledConnection(this, reader);
+		}
+
 		try {
-			connection.close();
-			connection = null;
+			SQLiteConfig config = new SQLiteConfig();
+			config.setReadOnly(true);
+			reader = new PooledConnection.Slot(DriverManager.getConnection("jdbc:sqlite:" + databaseFilename, config.toProperties()), false);
 		}
 		catch (SQLException e) {
-			System.out.println(e.getMessage());
+			readerPermits.release();
+			throw e;
+		}
+
+		synchronized (openReaders) {
+			openReaders.add(reader);
 		}
+		return new PooledConnection(this, reader);
+	}
+
+	/** Returns true if a database is open */
+	public boolean isOpen() {
+		return connection != null;
+	}
+
+	/** Returns the number of times a pooled connection has been borrowed */
+	public long getBorrowCount() {
+		return borrowCount.get();
+	}
+
+	/** Returns the total time in nanoseconds spent waiting to borrow pooled connections */
+	public long getTotalWaitNanos() {
+		return totalWaitNanos.get();
+	}
+
+	/** Returns the longest time in nanoseconds spent waiting for a single pooled connection */
+	public long getMaxWaitNanos() {
+		return maxWaitNanos.get();
+	}
+
+	/** Returns the number of prepared statements served from a pooled connection's cache */
+	public long getStatementCacheHits() {
+		return statementCacheHits.get();
+	}
+
+	/** Returns the number of prepared statements that were compiled because they were not yet cached */
+	public long getStatementCacheMisses() {
+		return statementCacheMisses.get();
+	}
+
+	/** Prints connection pool wait times and statement cache hit rates to the screen */
+	public void printPoolStatistics() {
+		long borrows = getBorrowCount();
+		long lookups = getStatementCacheHits() + getStatementCacheMisses();
+		System.out.println("Connection pool: " + borrows + " borrows, " +
+			(borrows == 0 ? 0 : getTotalWaitNanos() / borrows / 1000) + " us average wait, " +
+			getMaxWaitNanos() / 1000 + " us max wait");
+		System.out.println("Statement cache: " + getStatementCacheHits() + " hits, " + getStatementCacheMisses() + " misses (" +
+			(lookups == 0 ? 0 : 100 * getStatementCacheHits() / lookups) + "% hit rate)");
+	}
+
+	/** Returns a borrowed connection to the pool. Called once when each PooledConnection is closed */
+	void release(PooledConnection.Slot slot) {
+		if (slot.isWriter()) {
+			writerPermits.release();
+			return;
+		}
+
+		synchronized (openReaders) {
+			// If the pool was closed while the connection was borrowed, it has already been closed as well
+			if (openReaders.contains(slot) == false) {
+				return;
+			}
+			idleReaders.add(slot);
+		}
+		readerPermits.release();
+	}
+
+	void recordStatementCacheHit() {
+		statementCacheHits.incrementAndGet();
+	}
+
+	void recordStatementCacheMiss() {
+		statementCacheMisses.incrementAndGet();
+	}
+
+	/** Waits for a permit to borrow a connection, recording how long the wait took */
+	private void acquire(Semaphore permits, String connectionType) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			if (permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS) == false) {
+				throw new SQLException("Timed out waiting for a " + connectionType + " database connection");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a " + connectionType + " database connection");
+		}
+
+		long waited = System.nanoTime() - start;
+		borrowCount.incrementAndGet();
+		totalWaitNanos.addAndGet(waited);
+		maxWaitNanos.accumulateAndGet(waited, Math::max);
 	}
 }
@@ -0,0 +1,257 @@
+package games.office.assassins.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+
+import lombok.Getter;
+
+import games.office.assassins.model.Bonus;
+
+/**
+ * Writes kill and bonus events to the kills and bonuses tables. Events are buffered and written in batches using
+ * prepared statements, with each batch committed as a single transaction. This is far faster than inserting one row
+ * at a time with autocommit, where SQLite must sync the database file for every row.
+ *
+ * An event is only durable once flush() has returned successfully. If a batch fails to write, its transaction is
+ * rolled back and the events remain buffered so that flush() may be tried again. All methods are synchronized so the
+ * writer may be shared between threads.
+ *
+ * The insert statements are prepared through the statement cache of a PooledConnection, so each is only compiled once
+ * and then reused by every flush. A writer given a connection borrowed from the pool must be finished with before the
+ * connection is returned.
+ */
+public class DatabaseWriter {
+	/** A buffered row for the kills or bonuses table. Bonus is null for kills */
+	private static class PendingEvent {
+		final int assassinId;
+		final int targetId;
+		final int weekNumber;
+		final Bonus bonus;
+
+		PendingEvent(int assassin, int target, int week, Bonus earnedBonus) {
+			assassinId = assassin;
+			targetId = target;
+			weekNumber = week;
+			bonus = earnedBonus;
+		}
+	}
+
+	private static final String INSERT_KILL_SQL = "INSERT INTO kills (AssassinId, TargetId, WeekNumber) VALUES (?, ?, ?)";
+
+	private static final String INSERT_BONUS_SQL = "INSERT INTO bonuses (AssassinId, TargetId, WeekNumber, BonusPoints, BonusName, BonusDescription) VALUES (?, ?, ?, ?, ?, ?)";
+
+	/** The open database connection to write to */
+	private final PooledConnection connection;
+
+	/** The number of buffered events that causes a batch to be written automatically */
+	@Getter
+	private final int batchSize;
+
+	/** Events that have been queued but not yet committed to the database */
+	private final ArrayList<PendingEvent> pendingEvents = new ArrayList();
+
+	/** The total number of events that have been committed by this writer */
+	@Getter
+	private long committedEventCount = 0;
+
+	/**
+	 * Creates a writer for an open database connection. The connection should not be used for other writes while the
+	 * writer holds uncommitted events. The writer's statements stay open until the connection is closed.
+	 * @param dbConnection An open connection to the database
+	 * @param eventsPerBatch The number of buffered events that causes a batch to be written automatically
+	 */
+	public DatabaseWriter(Connection dbConnection, int eventsPerBatch) {
+		this((dbConnection == null) ? null : PooledConnection.unpooled(dbConnection), eventsPerBatch);
+	}
+
+	/**
+	 * Creates a writer for a connection borrowed from the pool, which is normally the pool's writer connection. The
+	 * connection should not be used for other writes while the writer holds uncommitted events.
+	 * @param dbConnection A borrowed connection, which must not be returned to the pool while the writer is in use
+	 * @param eventsPerBatch The number of buffered events that causes a batch to be written automatically
+	 */
+	public DatabaseWriter(PooledConnection dbConnection, int eventsPerBatch) {
+		if (dbConnection == null) {
+			throw new RuntimeException("Null connection passed to DatabaseWriter constructor");
+		}
+		if (eventsPerBatch <= 0) {
+			throw new RuntimeException("Invalid batch size in DatabaseWriter constructor: " + eventsPerBatch);
+		}
+		connection = dbConnection;
+		batchSize = eventsPerBatch;
+	}
+
+	/**
+	 * Switches a database to write-ahead logging. Readers no longer block the writer (and the reverse), and each commit
+	 * appends to the log instead of rewriting pages in the main database file. The journal mode is stored in the
+	 * database file, so every later connection to the database uses the log as well.
+	 *
+	 * The sync setting is not stored: it only applies to the given connection, and other connections keep SQLite's
+	 * default of FULL. Call this on each connection that writes, such as the one given to a DatabaseWriter, for the
+	 * setting to take effect there.
+	 * @param dbConnection An open connection to the database
+	 * @param fullSync If true, every commit on this connection is synced to disk so committed events survive a power
+	 *                 loss. If false, its commits are only synced at checkpoints, which is faster but may lose the most
+	 *                 recent commits after a power loss (not after an application crash)
+	 * @return True for success
+	 */
+	public static boolean enableWriteAheadLog(Connection dbConnection, boolean fullSync) {
+		try (Statement dbStatement = dbConnection.createStatement()) {
+			dbStatement.execute("PRAGMA journal_mode=WAL");
+			dbStatement.execute("PRAGMA synchronous=" + (fullSync ? "FULL" : "NORMAL"));
+		}
+		catch (SQLException e) {
+			System.out.println("Unable to enable write-ahead logging: " + e.getMessage());
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Queues a kill to be written. If this fills the batch, the batch is written immediately.
+	 * @param assassinId The ID of the player that made the kill
+	 * @param targetId The ID of the player that was killed
+	 * @param weekNumber The week of play that the kill took place in
+	 * @return False if a batch was written and it failed. The event remains queued
+	 */
+	public synchronized boolean queueKill(int assassinId, int targetId, int weekNumber) {
+		pendingEvents.add(new PendingEvent(assassinId, targetId, weekNumber, null));
+		return flushIfFull();
+	}
+
+	/**
+	 * Queues a bonus to be written. If this fills the batch, the batch is written immediately.
+	 * @param assassinId The ID of the player that earned the bonus
+	 * @param weekNumber The week of play that the bonus was earned in
+	 * @param bonus The bonus earned. Must not be modified until it has been written. Null bonus points are written as
+	 *              NULL, which is loaded as 0
+	 * @return False if a batch was written and it failed. The event remains queued
+	 */
+	public synchronized boolean queueBonus(int assassinId, int weekNumber, Bonus bonus) {
+		if (bonus == null) {
+			return true;
+		}
+
+		int targetId = (bonus.getTargetId() == null) ? 0 : bonus.getTargetId();
+		pendingEvents.add(new PendingEvent(assassinId, targetId, weekNumber, bonus));
+		return flushIfFull();
+	}
+
+	/** Returns the number of events that have been queued but not yet committed */
+	public synchronized int getPendingEventCount() {
+		return pendingEvents.size();
+	}
+
+	/**
+	 * Writes all queued events to the database in a single transaction. Once this returns true, every event queued
+	 * before the call has been committed.
+	 * @return True if all events were committed, or false if the transaction failed and was rolled back
+	 */
+	public synchronized boolean flush() {
+		if (pendingEvents.isEmpty()) {
+			return true;
+		}
+
+		Connection jdbcConnection = null;
+		PreparedStatement killStatement = null;
+		PreparedStatement bonusStatement = null;
+		boolean autoCommit = true;
+		try {
+			jdbcConnection = connection.getConnection();
+			autoCommit = jdbcConnection.getAutoCommit();
+			jdbcConnection.setAutoCommit(false);
+
+			killStatement = connection.prepareStatement(INSERT_KILL_SQL);
+			bonusStatement = connection.prepareStatement(INSERT_BONUS_SQL);
+			int killCount = 0;
+			int bonusCount = 0;
+			for (PendingEvent event : pendingEvents) {
+				if (event.bonus == null) {
+					killStatement.setInt(1, event.assassinId);
+					killStatement.setInt(2, event.targetId);
+					killStatement.setInt(3, event.weekNumber);
+					killStatement.addBatch();
+					killCount++;
+				}
+				else {
+					bonusStatement.setInt(1, event.assassinId);
+					bonusStatement.setInt(2, event.targetId);
+					bonusStatement.setInt(3, event.weekNumber);
+					if (event.bonus.getBonusPoints() == null) {
+						bonusStatement.setNull(4, Types.INTEGER);
+					}
+					else {
+						bonusStatement.setInt(4, event.bonus.getBonusPoints());
+					}
+					bonusStatement.setString(5, event.bonus.getBonusName());
+					bonusStatement.setString(6, event.bonus.getBonusDescription());
+					bonusStatement.addBatch();
+					bonusCount++;
+				}
+			}
+
+			if (killCount > 0) {
+				killStatement.executeBatch();
+			}
+			if (bonusCount > 0) {
+				bonusStatement.executeBatch();
+			}
+
+			jdbcConnection.commit();
+		}
+		catch (SQLException e) {
+			System.out.println("Error writing " + pendingEvents.size() + " events to the database: " + e.getMessage());
+			// The statements are reused by the next flush, which must not also run what was left of this batch
+			clearBatch(killStatement);
+			clearBatch(bonusStatement);
+			if (jdbcConnection != null) {
+				try {
+					jdbcConnection.rollback();
+				}
+				catch (SQLException rollbackError) {
+					System.out.println("Error rolling back failed write: " + rollbackError.getMessage());
+				}
+			}
+			return false;
+		}
+		finally {
+			try {
+				if (jdbcConnection != null) {
+					jdbcConnection.setAutoCommit(autoCommit);
+				}
+			}
+			catch (SQLException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+
+		committedEventCount += pendingEvents.size();
+		pendingEvents.clear();
+		return true;
+	}
+
+	/** Discards any rows added to a statement's batch. Does nothing if the statement was never prepared */
+	private static void clearBatch(PreparedStatement statement) {
+		if (statement == null) {
+			return;
+		}
+		try {
+			statement.clearBatch();
+		}
+		catch (SQLException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/** Writes the queued events if a full batch has been reached */
+	private boolean flushIfFull() {
+		if (pendingEvents.size() < batchSize) {
+			return true;
+		}
+		return flush();
+	}
+}
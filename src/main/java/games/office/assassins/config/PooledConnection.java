@@ -0,0 +1,164 @@
+package games.office.assassins.config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A database connection borrowed from the pool kept by DatabaseConnection. Prepared statements created through this
+ * object are cached by their SQL text and reused the next time any borrower of the same connection prepares that SQL,
+ * so the statement is only compiled by SQLite once. Closing this object returns the connection to the pool; the
+ * connection and its cached statements stay open until DatabaseConnection.closeConnection() is called.
+ *
+ * Every borrow gets a new PooledConnection, which can only be returned once. Closing it again does nothing, and using
+ * it after it has been closed throws, so a borrower that holds on to it can never release or use the connection while
+ * somebody else has borrowed it.
+ *
+ * Cached statements must not be closed by the caller, but any ResultSet obtained from them must be.
+ *
+ * Code that prepares its statements through this class can also be given a plain JDBC connection wrapped with
+ * unpooled(). Its statements are then cached until the wrapper is closed, which closes them but not the connection.
+ */
+public class PooledConnection implements AutoCloseable {
+	/** The pool that this connection belongs to, or null if it wraps a connection that is not pooled */
+	private final DatabaseConnection pool;
+
+	/** The pooled connection that has been borrowed */
+	private final Slot slot;
+
+	/** Set once the connection has been returned to the pool */
+	private final AtomicBoolean released = new AtomicBoolean(false);
+
+	/**
+	 * A connection kept by the pool, along with its cached statements. Lent out to one PooledConnection at a time
+	 */
+	static class Slot {
+		/** The underlying JDBC connection */
+		private final Connection connection;
+
+		/** True if this is the pool's single writer connection, false for a read-only connection */
+		private final boolean writer;
+
+		/** Prepared statements created on this connection, keyed by their SQL text */
+		private final HashMap<String, PreparedStatement> statementCache = new HashMap();
+
+		Slot(Connection jdbcConnection, boolean isWriter) {
+			connection = jdbcConnection;
+			writer = isWriter;
+		}
+
+		boolean isWriter() {
+			return writer;
+		}
+
+		/** Closes every cached statement and the underlying connection. Called by the pool when it shuts down */
+		void closeAll() {
+			closeStatements();
+
+			try {
+				connection.close();
+			}
+			catch (SQLException e) {
+				System.out.println(e.getMessage());
+			}
+		}
+
+		/** Closes every cached statement, leaving the connection open */
+		void closeStatements() {
+			for (PreparedStatement statement : statementCache.values()) {
+				try {
+					statement.close();
+				}
+				catch (SQLException e) {
+					System.out.println(e.getMessage());
+				}
+			}
+			statementCache.clear();
+		}
+	}
+
+	PooledConnection(DatabaseConnection owner, Slot borrowedSlot) {
+		pool = owner;
+		slot = borrowedSlot;
+	}
+
+	/**
+	 * Wraps a JDBC connection that does not belong to a pool, so that it can be passed to code that prepares its
+	 * statements through a PooledConnection. Statement cache hits and misses are not counted anywhere. Closing the
+	 * wrapper closes its cached statements but leaves the connection open.
+	 * @param jdbcConnection An open connection, treated as a writer
+	 * @return A wrapper around the connection
+	 */
+	public static PooledConnection unpooled(Connection jdbcConnection) {
+		return new PooledConnection(null, new Slot(jdbcConnection, true));
+	}
+
+	/**
+	 * Returns the underlying JDBC connection. It must not be used or closed once this object has been closed
+	 * @throws SQLException If the connection has already been returned to the pool
+	 */
+	public Connection getConnection() throws SQLException {
+		checkNotReleased();
+		return slot.connection;
+	}
+
+	/** Returns true if this is the pool's single writer connection, false for a read-only connection */
+	public boolean isWriter() {
+		return slot.writer;
+	}
+
+	/**
+	 * Returns a prepared statement for the given SQL, reusing a cached statement if this connection has prepared the
+	 * same SQL before. Any parameters left over from the last use are cleared.
+	 * @param sql The SQL text of the statement
+	 * @return The prepared statement. Do not close it
+	 * @throws SQLException If the statement could not be prepared or the connection has already been returned to the pool
+	 */
+	public PreparedStatement prepareStatement(String sql) throws SQLException {
+		checkNotReleased();
+		PreparedStatement statement = slot.statementCache.get(sql);
+		if (statement != null && statement.isClosed() == false) {
+			if (pool != null) {
+				pool.recordStatementCacheHit();
+			}
+			statement.clearParameters();
+			return statement;
+		}
+
+		if (pool != null) {
+			pool.recordStatementCacheMiss();
+		}
+		statement = slot.connection.prepareStatement(sql);
+		slot.statementCache.put(sql, statement);
+		return statement;
+	}
+
+	/** Returns true once the connection has been returned to the pool */
+	public boolean isClosed() {
+		return released.get();
+	}
+
+	/**
+	 * Returns the connection to the pool it was borrowed from, or closes the cached statements of an unpooled
+	 * connection. Does nothing if it has already been closed
+	 */
+	@Override
+	public void close() {
+		if (released.compareAndSet(false, true)) {
+			if (pool == null) {
+				slot.closeStatements();
+			}
+			else {
+				pool.release(slot);
+			}
+		}
+	}
+
+	private void checkNotReleased() throws SQLException {
+		if (released.get() == true) {
+			throw new SQLException("Pooled database connection used after it was returned to the pool");
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package games.office.assassins.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds that may be recorded to from several threads at once. Durations are counted
+ * in buckets that split each power of two into eight, so every bucket is within 12.5% of the durations in it, and a
+ * fixed array of counters covers everything from 1 ns to centuries. Recording takes no locks and allocates nothing.
+ */
+public class LatencyHistogram {
+	/** The number of buckets each power of two is split into. Must be a power of two itself */
+	private static final int SUB_BUCKETS = 8;
+
+	/** log2(SUB_BUCKETS) */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	/** Enough buckets for any positive long */
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	/** The number of durations recorded in each bucket */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+	/** The number of durations recorded */
+	private final LongAdder count = new LongAdder();
+
+	/** The sum of every duration recorded */
+	private final LongAdder totalNanos = new LongAdder();
+
+	/** The longest duration recorded */
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	/** Records a duration. Negative durations are counted as 0 */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets.incrementAndGet(bucketIndex(value));
+		count.increment();
+		totalNanos.add(value);
+		maxNanos.accumulateAndGet(value, Math::max);
+	}
+
+	/** Returns the number of durations recorded */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/** Returns the sum of every duration recorded */
+	public long getTotalNanos() {
+		return totalNanos.sum();
+	}
+
+	/** Returns the longest duration recorded, or 0 if there are none */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * Returns an upper bound of the given percentile of the recorded durations, accurate to within the width of a
+	 * bucket and never more than the longest duration recorded
+	 * @param percentile The percentile, from 0 to 100
+	 * @return The duration in nanoseconds, or 0 if there are none
+	 */
+	public long getPercentileNanos(double percentile) {
+		long total = getCount();
+		if (total == 0) {
+			return 0;
+		}
+
+		long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			seen += buckets.get(i);
+			if (seen >= rank) {
+				return Math.min(bucketUpperBound(i), getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	/** Returns the bucket a duration is counted in */
+	private static int bucketIndex(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int highestBit = 63 - Long.numberOfLeadingZeros(nanos);
+		int subBucket = (int) (nanos >>> (highestBit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (highestBit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/** Returns the longest duration that is counted in a bucket */
+	private static long bucketUpperBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lowerBound + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,260 @@
+package games.office.assassins.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import java.time.Instant;
+
+import java.util.EnumMap;
+import java.util.Locale;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Measures how long each stage of a run takes and how much work it does. Metrics are off until enable() is called,
+ * and while they are off every timer and recording call returns after a single check, so the instrumented code paths
+ * run at full speed.
+ *
+ * Once enabled, each stage's measurements are published through JMX as a StageMetricsMXBean, every timed run is also
+ * a StageEvent for Java Flight Recorder, and writeJson() dumps everything to a file at the end of a run.
+ *
+ * Allocation is measured for the thread that runs a stage. Work that a stage hands to other threads, such as the
+ * parallel rendering inside WRITE_EMAILS, is not included in that stage's allocation count, but is counted by the
+ * stages recorded on those threads, such as RENDER_EMAIL.
+ */
+public class Metrics {
+	/** The domain of the JMX names that stages are published under */
+	private static final String JMX_DOMAIN = "games.office.assassins";
+
+	/**
+	 * True once metrics have been enabled. Set before the run starts, and only turned off again by tests, so threads
+	 * started later always see it
+	 */
+	private static volatile boolean enabled = false;
+
+	/** The measurements of each stage. Filled in by enable() */
+	private static final EnumMap<Stage, StageMetrics> stageMetrics = new EnumMap(Stage.class);
+
+	/** Reports memory allocated per thread, or null if the JVM can not */
+	private static com.sun.management.ThreadMXBean allocationCounter = null;
+
+	/** Returns true if metrics are being collected */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Starts collecting metrics and publishes each stage through JMX. Calling this again has no effect.
+	 */
+	public static synchronized void enable() {
+		if (enabled) {
+			return;
+		}
+
+		for (Stage stage : Stage.values()) {
+			stageMetrics.put(stage, new StageMetrics(stage));
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+			if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+				allocationCounter = sunThreads;
+			}
+		}
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (StageMetrics metrics : stageMetrics.values()) {
+			try {
+				server.registerMBean(metrics, new ObjectName(JMX_DOMAIN + ":type=Stage,name=" + metrics.getStage().getMetricName()));
+			}
+			catch (JMException e) {
+				System.out.println("Unable to publish " + metrics.getStage().getMetricName() + " metrics through JMX: " + e.getMessage());
+			}
+		}
+
+		// Loading the flight recorder classes takes a moment, so do it now rather than inside the first timed stage
+		new StageEvent().isEnabled();
+
+		enabled = true;
+	}
+
+	/**
+	 * Stops collecting metrics, removes the stages from JMX and discards their measurements, so that enable() starts
+	 * again from nothing. Only for tests, which must not call it while a stage is running.
+	 */
+	static synchronized void disable() {
+		if (enabled == false) {
+			return;
+		}
+		enabled = false;
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (StageMetrics metrics : stageMetrics.values()) {
+			try {
+				server.unregisterMBean(new ObjectName(JMX_DOMAIN + ":type=Stage,name=" + metrics.getStage().getMetricName()));
+			}
+			catch (JMException e) {
+				System.out.println("Unable to remove " + metrics.getStage().getMetricName() + " metrics from JMX: " + e.getMessage());
+			}
+		}
+		stageMetrics.clear();
+		allocationCounter = null;
+	}
+
+	/**
+	 * Starts timing a run of a stage. Close the returned timer when the run is finished.
+	 * @param stage The stage being run
+	 * @return A timer for the run, or a timer that does nothing if metrics are disabled
+	 */
+	public static StageTimer time(Stage stage) {
+		if (enabled == false) {
+			return StageTimer.DISABLED;
+		}
+		return new StageTimer(stageMetrics.get(stage));
+	}
+
+	/**
+	 * Returns the start time to pass to record(), for stages that run too often to use a StageTimer
+	 * @return The current time in nanoseconds, or 0 if metrics are disabled
+	 */
+	public static long startNanos() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records one run of a stage that started at startNanos, without a flight recorder event or allocation count.
+	 * Used for stages such as RENDER_EMAIL that run once per player on several threads.
+	 * @param stage The stage that was run
+	 * @param startNanos The value returned by startNanos() when the run started
+	 * @param rows The number of rows, pairings or e-mails handled
+	 * @param bytes The number of bytes written
+	 */
+	public static void record(Stage stage, long startNanos, long rows, long bytes) {
+		if (enabled == false) {
+			return;
+		}
+		stageMetrics.get(stage).record(System.nanoTime() - startNanos, rows, bytes, 0);
+	}
+
+	/**
+	 * Returns the allocation count to pass to record() along with startNanos()
+	 * @return The number of bytes the current thread has allocated, or -1 if metrics are disabled or the JVM can not
+	 *         measure it
+	 */
+	public static long startAllocatedBytes() {
+		return enabled ? getCurrentThreadAllocatedBytes() : -1;
+	}
+
+	/**
+	 * Records one run of a stage that started at startNanos, without a flight recorder event, along with the bytes the
+	 * current thread has allocated since startAllocatedBytes
+	 * @param stage The stage that was run
+	 * @param startNanos The value returned by startNanos() when the run started
+	 * @param startAllocatedBytes The value returned by startAllocatedBytes() when the run started
+	 * @param rows The number of rows, pairings or e-mails handled
+	 * @param bytes The number of bytes written
+	 */
+	public static void record(Stage stage, long startNanos, long startAllocatedBytes, long rows, long bytes) {
+		if (enabled == false) {
+			return;
+		}
+		long allocated = 0;
+		if (startAllocatedBytes >= 0) {
+			allocated = Math.max(0, getCurrentThreadAllocatedBytes() - startAllocatedBytes);
+		}
+		stageMetrics.get(stage).record(System.nanoTime() - startNanos, rows, bytes, allocated);
+	}
+
+	/**
+	 * Returns the measurements of a stage
+	 * @return The measurements, or null if metrics are disabled
+	 */
+	public static StageMetrics getStageMetrics(Stage stage) {
+		return enabled ? stageMetrics.get(stage) : null;
+	}
+
+	/**
+	 * Returns the number of bytes the current thread has allocated since it started
+	 * @return The number of bytes, or -1 if the JVM can not measure it
+	 */
+	static long getCurrentThreadAllocatedBytes() {
+		if (allocationCounter == null) {
+			return -1;
+		}
+		return allocationCounter.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Writes the measurements of every stage to a JSON file. The file is first written under a temporary name and
+	 * then moved into place, so a reader never sees a partial file.
+	 * @param filename The file to write
+	 * @return True for success, or false if metrics are disabled or the file could not be written
+	 */
+	public static boolean writeJson(String filename) {
+		if (enabled == false) {
+			System.out.println("Metrics are not enabled, nothing to write to " + filename);
+			return false;
+		}
+
+		Path filePath = Paths.get(filename);
+		Path tempPath = Paths.get(filename + ".tmp");
+		try {
+			try (Writer out = Files.newBufferedWriter(tempPath, StandardCharsets.UTF_8)) {
+				out.write("{\n  \"timestamp\": \"" + Instant.now() + "\",\n  \"stages\": {");
+				boolean first = true;
+				for (StageMetrics metrics : stageMetrics.values()) {
+					out.write(first ? "\n" : ",\n");
+					first = false;
+					writeStageJson(out, metrics);
+				}
+				out.write("\n  }\n}\n");
+			}
+			Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			System.out.println("Unable to write metrics to " + filename + ": " + e.getMessage());
+			try {
+				Files.deleteIfExists(tempPath);
+			}
+			catch (IOException deleteError) {
+				System.out.println("Unable to delete " + tempPath + ": " + deleteError.getMessage());
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/** Writes one stage as a member of the "stages" object */
+	private static void writeStageJson(Writer out, StageMetrics metrics) throws IOException {
+		LatencyHistogram latencies = metrics.getLatencies();
+		out.write("    \"" + metrics.getStage().getMetricName() + "\": {");
+		out.write("\"count\": " + metrics.getCount());
+		out.write(", \"totalMillis\": " + formatMillis(latencies.getTotalNanos()));
+		out.write(", \"meanMillis\": " + String.format(Locale.ROOT, "%.3f", metrics.getMeanMillis()));
+		out.write(", \"p50Millis\": " + formatMillis(latencies.getPercentileNanos(50)));
+		out.write(", \"p90Millis\": " + formatMillis(latencies.getPercentileNanos(90)));
+		out.write(", \"p99Millis\": " + formatMillis(latencies.getPercentileNanos(99)));
+		out.write(", \"maxMillis\": " + formatMillis(latencies.getMaxNanos()));
+		out.write(", \"rows\": " + metrics.getRowCount());
+		out.write(", \"bytes\": " + metrics.getByteCount());
+		out.write(", \"allocatedBytes\": " + metrics.getAllocatedBytes());
+		out.write("}");
+	}
+
+	/** Formats nanoseconds as milliseconds with microsecond precision, always with '.' as the decimal point */
+	private static String formatMillis(long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+	}
+}
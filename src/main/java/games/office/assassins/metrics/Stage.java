@@ -0,0 +1,41 @@
+package games.office.assassins.metrics;
+
+/**
+ * The stages of a weekly run that are measured when metrics are enabled
+ */
+public enum Stage {
+	/** Reading the players table */
+	LOAD_PLAYERS,
+
+	/** Reading the kills table and applying each kill to the player data */
+	LOAD_KILLS,
+
+	/** Reading the bonuses table and applying each bonus to the player data */
+	LOAD_BONUSES,
+
+	/** Reading the kills table into a KillLog */
+	LOAD_KILL_LOG,
+
+	/** Sorting players by rank */
+	RANK_PLAYERS,
+
+	/** Making one complete set of target assignments. Rows are assassin and target pairings */
+	ASSIGN_TARGETS,
+
+	/** Saving target assignments to the database. Rows are assassin and target pairings */
+	SAVE_ASSIGNMENTS,
+
+	/** Rendering and formatting a single player's e-mail. Bytes are the size of the formatted e-mail */
+	RENDER_EMAIL,
+
+	/** Rendering and writing every player's e-mail. Rows are e-mails and bytes are the output written */
+	WRITE_EMAILS,
+
+	/** Handling one request to the game server. Bytes are the size of the response */
+	HTTP_REQUEST;
+
+	/** Returns the name used for the stage in JMX and in the JSON dump, such as "load_kills" */
+	public String getMetricName() {
+		return name().toLowerCase();
+	}
+}
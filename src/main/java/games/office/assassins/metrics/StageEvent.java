@@ -0,0 +1,28 @@
+package games.office.assassins.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event covering one run of a stage, so that stages line up with GC pauses, I/O and CPU
+ * samples in a recording. Only committed while a recording that enables the event is running.
+ */
+@Name("games.office.assassins.Stage")
+@Label("Game Stage")
+@Category("Office Assassins")
+@Description("One run of a measured stage of the weekly game run")
+class StageEvent extends Event {
+	@Label("Stage")
+	String stage;
+
+	@Label("Rows")
+	long rows;
+
+	@Label("Bytes Written")
+	@DataAmount
+	long bytes;
+}
@@ -0,0 +1,92 @@
+package games.office.assassins.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+/**
+ * Everything measured about one stage: a histogram of how long each run took, and counters of the rows handled, bytes
+ * written and memory allocated. May be updated from several threads at once.
+ */
+public class StageMetrics implements StageMetricsMXBean {
+	/** Nanoseconds in a millisecond */
+	private static final double NANOS_PER_MILLI = 1000000.0;
+
+	/** The stage being measured */
+	@Getter
+	private final Stage stage;
+
+	/** How long each run of the stage took */
+	@Getter
+	private final LatencyHistogram latencies = new LatencyHistogram();
+
+	private final LongAdder rows = new LongAdder();
+
+	private final LongAdder bytes = new LongAdder();
+
+	private final LongAdder allocatedBytes = new LongAdder();
+
+	StageMetrics(Stage measuredStage) {
+		stage = measuredStage;
+	}
+
+	/**
+	 * Records one run of the stage
+	 * @param nanos How long the run took
+	 * @param rowCount The number of rows, pairings or e-mails handled
+	 * @param byteCount The number of bytes written
+	 * @param allocated The number of bytes allocated, or 0 if unknown
+	 */
+	void record(long nanos, long rowCount, long byteCount, long allocated) {
+		latencies.record(nanos);
+		rows.add(rowCount);
+		bytes.add(byteCount);
+		allocatedBytes.add(allocated);
+	}
+
+	@Override
+	public long getCount() {
+		return latencies.getCount();
+	}
+
+	@Override
+	public double getTotalMillis() {
+		return latencies.getTotalNanos() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getMeanMillis() {
+		long count = latencies.getCount();
+		return (count == 0) ? 0 : latencies.getTotalNanos() / NANOS_PER_MILLI / count;
+	}
+
+	@Override
+	public double getMedianMillis() {
+		return latencies.getPercentileNanos(50) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getPercentile99Millis() {
+		return latencies.getPercentileNanos(99) / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public double getMaxMillis() {
+		return latencies.getMaxNanos() / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public long getRowCount() {
+		return rows.sum();
+	}
+
+	@Override
+	public long getByteCount() {
+		return bytes.sum();
+	}
+
+	@Override
+	public long getAllocatedBytes() {
+		return allocatedBytes.sum();
+	}
+}
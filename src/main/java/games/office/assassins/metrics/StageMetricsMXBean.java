@@ -0,0 +1,34 @@
+package games.office.assassins.metrics;
+
+/**
+ * The measurements of one stage as published through JMX, under the name
+ * games.office.assassins:type=Stage,name=&lt;stage&gt;
+ */
+public interface StageMetricsMXBean {
+	/** Returns the number of times the stage has run */
+	long getCount();
+
+	/** Returns the total time spent in the stage */
+	double getTotalMillis();
+
+	/** Returns the average time of one run of the stage */
+	double getMeanMillis();
+
+	/** Returns the median time of one run of the stage */
+	double getMedianMillis();
+
+	/** Returns the 99th percentile time of one run of the stage */
+	double getPercentile99Millis();
+
+	/** Returns the longest time of one run of the stage */
+	double getMaxMillis();
+
+	/** Returns the number of rows, pairings or e-mails the stage has handled */
+	long getRowCount();
+
+	/** Returns the number of bytes the stage has written */
+	long getByteCount();
+
+	/** Returns the number of bytes allocated on the heap by the threads that ran the stage, where the JVM can tell */
+	long getAllocatedBytes();
+}
@@ -0,0 +1,86 @@
+package games.office.assassins.metrics;
+
+/**
+ * Times one run of a stage, from when it is created by Metrics.time() until it is closed. Meant to be used in a
+ * try-with-resources block. When metrics are disabled a shared timer that does nothing is returned, so timing a stage
+ * costs one check and no allocation.
+ */
+public class StageTimer implements AutoCloseable {
+	/** The timer handed out while metrics are disabled */
+	static final StageTimer DISABLED = new StageTimer(null);
+
+	/** Where the run is recorded, or null for the disabled timer */
+	private final StageMetrics metrics;
+
+	private final long startNanos;
+
+	/** The bytes the current thread had allocated when the run started, or -1 if unknown */
+	private final long startAllocatedBytes;
+
+	/** The flight recorder event for the run, or null if no recording wants it */
+	private final StageEvent event;
+
+	private long rows = 0;
+
+	private long bytes = 0;
+
+	private boolean closed = false;
+
+	/**
+	 * Starts timing a run
+	 * @param stageMetrics Where the run is recorded, or null for a timer that does nothing
+	 */
+	StageTimer(StageMetrics stageMetrics) {
+		metrics = stageMetrics;
+		if (metrics == null) {
+			event = null;
+			startAllocatedBytes = -1;
+			startNanos = 0;
+			return;
+		}
+
+		StageEvent stageEvent = new StageEvent();
+		if (stageEvent.isEnabled()) {
+			stageEvent.stage = metrics.getStage().getMetricName();
+			stageEvent.begin();
+			event = stageEvent;
+		}
+		else {
+			event = null;
+		}
+		startAllocatedBytes = Metrics.getCurrentThreadAllocatedBytes();
+		startNanos = System.nanoTime();
+	}
+
+	/** Adds to the number of rows, pairings or e-mails handled by this run */
+	public void addRows(long count) {
+		rows += count;
+	}
+
+	/** Adds to the number of bytes written by this run */
+	public void addBytes(long count) {
+		bytes += count;
+	}
+
+	/** Records the run. Only the first call has any effect */
+	@Override
+	public void close() {
+		if (metrics == null || closed) {
+			return;
+		}
+		closed = true;
+
+		long nanos = System.nanoTime() - startNanos;
+		long allocated = 0;
+		if (startAllocatedBytes >= 0) {
+			allocated = Math.max(0, Metrics.getCurrentThreadAllocatedBytes() - startAllocatedBytes);
+		}
+		metrics.record(nanos, rows, bytes, allocated);
+
+		if (event != null) {
+			event.rows = rows;
+			event.bytes = bytes;
+			event.commit();
+		}
+	}
+}
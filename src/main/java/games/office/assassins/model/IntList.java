@@ -0,0 +1,108 @@
+package games.office.assassins.model;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A growable list of primitive ints. Used in place of ArrayList<Integer> to store player IDs without boxing each
+ * value. The list can still be used in for-each loops, although callers on a hot path should use size() and get()
+ * to avoid boxing while iterating.
+ */
+public class IntList implements Iterable<Integer> {
+	/** Most lists hold the kills or deaths of a single player in a single week, so start small */
+	private static final int INITIAL_CAPACITY = 2;
+
+	/** Shared storage for lists that have not had any values added yet */
+	private static final int[] EMPTY = new int[0];
+
+	/** Holds the values of the list. Only the first size entries are in use */
+	private int[] values = EMPTY;
+
+	/** The number of values in the list */
+	private int size;
+
+	/** Returns the number of values in the list */
+	public int size() {
+		return size;
+	}
+
+	/** Returns true if the list holds no values */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the value at the given position in the list
+	 * @param index The position of the value, from 0 to size() - 1
+	 */
+	public int get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for IntList of size " + size);
+		}
+		return values[index];
+	}
+
+	/** Adds a value to the end of the list */
+	public void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, Math.max(INITIAL_CAPACITY, size * 2));
+		}
+		values[size++] = value;
+	}
+
+	/**
+	 * Removes the first occurrence of a value from the list
+	 * @return False if the value was not found
+	 */
+	public boolean removeValue(int value) {
+		for (int i = 0; i < size; ++i) {
+			if (values[i] == value) {
+				System.arraycopy(values, i + 1, values, i, size - i - 1);
+				size--;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Returns true if the list holds the given value */
+	public boolean contains(int value) {
+		for (int i = 0; i < size; ++i) {
+			if (values[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** Returns a copy of the values in the list */
+	public int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size;
+			}
+
+			@Override
+			public Integer next() {
+				if (index >= size) {
+					throw new NoSuchElementException();
+				}
+				return values[index++];
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return Arrays.toString(toArray());
+	}
+}
@@ -0,0 +1,344 @@
+package games.office.assassins.model;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ * A column oriented copy of the kills table. Each kill is a row made up of an entry in four parallel arrays (assassin,
+ * target, week number, and whether the kill is credited to the assassin), with rows ordered by week number and then
+ * by the order the kills were entered. Offset indexes over the rows allow all kills in a given week, or all kills made
+ * or suffered by a given player in a week, to be found without walking the Player and Score object graph.
+ *
+ * Kills made by eliminated players after their elimination week are kept, since they still count as deaths for their
+ * targets, but are not credited to the assassin, following the same rule as Score.
+ *
+ * Kills can be appended to a loaded log. Appended rows are kept unindexed at the end of the log and scanned by each
+ * lookup until there are enough of them to be worth sorting into the indexes, so appending stays cheap while lookups
+ * never scan more than a small fraction of the log. Row numbers change whenever the indexes are rebuilt, so they are
+ * only valid until the next append(). The log is not thread safe: any number of threads may read it at once, but
+ * appends must not run at the same time as anything else.
+ */
+public class KillLog {
+	/** The fewest unindexed rows that cause the indexes to be rebuilt */
+	private static final int MIN_UNINDEXED_ROWS = 256;
+
+	/** The indexes are rebuilt once the unindexed rows reach this fraction of the indexed rows */
+	private static final int UNINDEXED_ROW_DIVISOR = 16;
+
+	/** The assassin ID of each row */
+	private int[] assassinIds;
+
+	/** The target ID of each row */
+	private int[] targetIds;
+
+	/** The week number of each row. Indexed rows are sorted by this column */
+	private int[] weekNumbers;
+
+	/** Whether each row's kill is credited to the assassin */
+	private boolean[] credited;
+
+	/** The number of rows in the log */
+	private int size;
+
+	/** The rows before this one are sorted and indexed, and the rows from it onwards were appended since */
+	private int indexedSize;
+
+	/** Every distinct week number of the indexed rows, sorted */
+	private int[] weekKeys;
+
+	/** The rows for weekKeys[i] are from weekOffsets[i] up to (not including) weekOffsets[i + 1] */
+	private int[] weekOffsets;
+
+	/** Every distinct assassin ID of the indexed rows, sorted */
+	private int[] assassinKeys;
+
+	/** The rows for assassinKeys[i] are listed in assassinRows from assassinOffsets[i] up to assassinOffsets[i + 1] */
+	private int[] assassinOffsets;
+
+	/** Indexed row numbers grouped by assassin ID, in row order within each assassin */
+	private int[] assassinRows;
+
+	/** Every distinct target ID of the indexed rows, sorted */
+	private int[] targetKeys;
+
+	/** The rows for targetKeys[i] are listed in targetRows from targetOffsets[i] up to targetOffsets[i + 1] */
+	private int[] targetOffsets;
+
+	/** Indexed row numbers grouped by target ID, in row order within each target */
+	private int[] targetRows;
+
+	/**
+	 * Builds the log and its indexes from columns of kill data. The arrays may be longer than the number of kills and
+	 * are not modified or kept.
+	 * @param assassins The assassin ID of each kill
+	 * @param targets The target ID of each kill
+	 * @param weeks The week number of each kill
+	 * @param creditedKills Whether each kill is credited to the assassin
+	 * @param count The number of kills held in the arrays, in the order they were entered
+	 */
+	public KillLog(int[] assassins, int[] targets, int[] weeks, boolean[] creditedKills, int count) {
+		int capacity = Math.max(count, 16);
+		assassinIds = Arrays.copyOf(assassins, capacity);
+		targetIds = Arrays.copyOf(targets, capacity);
+		weekNumbers = Arrays.copyOf(weeks, capacity);
+		credited = Arrays.copyOf(creditedKills, capacity);
+		size = count;
+		buildIndexes();
+	}
+
+	/**
+	 * Adds a kill to the end of the log. Row numbers obtained before the call may no longer be valid afterwards.
+	 * @param assassinId The ID of the assassin
+	 * @param targetId The ID of the target
+	 * @param weekNumber The week the kill was made in
+	 * @param creditedKill Whether the kill is credited to the assassin
+	 */
+	public void append(int assassinId, int targetId, int weekNumber, boolean creditedKill) {
+		if (size == assassinIds.length) {
+			int capacity = size + (size >> 1);
+			assassinIds = Arrays.copyOf(assassinIds, capacity);
+			targetIds = Arrays.copyOf(targetIds, capacity);
+			weekNumbers = Arrays.copyOf(weekNumbers, capacity);
+			credited = Arrays.copyOf(credited, capacity);
+		}
+		assassinIds[size] = assassinId;
+		targetIds[size] = targetId;
+		weekNumbers[size] = weekNumber;
+		credited[size] = creditedKill;
+		size++;
+
+		if (size - indexedSize >= Math.max(MIN_UNINDEXED_ROWS, indexedSize / UNINDEXED_ROW_DIVISOR)) {
+			buildIndexes();
+		}
+	}
+
+	/** Returns the number of kills in the log */
+	public int size() {
+		return size;
+	}
+
+	/** Returns the assassin ID of a row */
+	public int getAssassinId(int row) {
+		return assassinIds[checkRow(row)];
+	}
+
+	/** Returns the target ID of a row */
+	public int getTargetId(int row) {
+		return targetIds[checkRow(row)];
+	}
+
+	/** Returns the week number of a row */
+	public int getWeekNumber(int row) {
+		return weekNumbers[checkRow(row)];
+	}
+
+	/** Returns true if the kill in a row is credited to the assassin */
+	public boolean isCredited(int row) {
+		return credited[checkRow(row)];
+	}
+
+	/** Returns every distinct week number that has at least one kill, sorted from oldest to newest */
+	public int[] getWeekNumbers() {
+		if (indexedSize == size) {
+			return weekKeys.clone();
+		}
+
+		TreeSet<Integer> weeks = new TreeSet();
+		for (int week : weekKeys) {
+			weeks.add(week);
+		}
+		for (int row = indexedSize; row < size; ++row) {
+			weeks.add(weekNumbers[row]);
+		}
+		int[] sortedWeeks = new int[weeks.size()];
+		int index = 0;
+		for (int week : weeks) {
+			sortedWeeks[index++] = week;
+		}
+		return sortedWeeks;
+	}
+
+	/**
+	 * Returns the rows of every kill made in a week, in the order the kills were entered
+	 * @param weekNumber The week number
+	 * @return The row numbers, which are only valid until the next append()
+	 */
+	public int[] getWeekRows(int weekNumber) {
+		IntList rows = new IntList();
+		int index = Arrays.binarySearch(weekKeys, weekNumber);
+		if (index >= 0) {
+			for (int row = weekOffsets[index]; row < weekOffsets[index + 1]; ++row) {
+				rows.add(row);
+			}
+		}
+		for (int row = indexedSize; row < size; ++row) {
+			if (weekNumbers[row] == weekNumber) {
+				rows.add(row);
+			}
+		}
+		return rows.toArray();
+	}
+
+	/**
+	 * Returns the targets of the kills credited to a player in a week, in the order the kills were entered. Kills the
+	 * player made after being eliminated are left out
+	 * @param playerId The ID of the assassin
+	 * @param weekNumber The week number
+	 * @return The target IDs, which may be empty
+	 */
+	public IntList getTargetsKilled(int playerId, int weekNumber) {
+		return collectWeekGroup(assassinKeys, assassinOffsets, assassinRows, assassinIds, targetIds, playerId, weekNumber, true);
+	}
+
+	/**
+	 * Returns the assassins who killed a player in a week, in the order the kills were entered
+	 * @param playerId The ID of the target
+	 * @param weekNumber The week number
+	 * @return The assassin IDs, which may be empty
+	 */
+	public IntList getKilledBy(int playerId, int weekNumber) {
+		return collectWeekGroup(targetKeys, targetOffsets, targetRows, targetIds, assassinIds, playerId, weekNumber, false);
+	}
+
+	/**
+	 * Collects a column from the rows of one player's group that fall in a week: first from the indexed rows, where
+	 * the group is in week order so the week can be found with a binary search, and then from the unindexed rows
+	 */
+	private IntList collectWeekGroup(int[] keys, int[] offsets, int[] groupRows, int[] keyColumn, int[] valueColumn,
+			int playerId, int weekNumber, boolean creditedOnly) {
+		IntList values = new IntList();
+		int index = Arrays.binarySearch(keys, playerId);
+		if (index >= 0) {
+			int low = offsets[index];
+			int high = offsets[index + 1];
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (weekNumbers[groupRows[middle]] < weekNumber) {
+					low = middle + 1;
+				}
+				else {
+					high = middle;
+				}
+			}
+			for (int i = low; i < offsets[index + 1] && weekNumbers[groupRows[i]] == weekNumber; ++i) {
+				int row = groupRows[i];
+				if (creditedOnly == false || credited[row] == true) {
+					values.add(valueColumn[row]);
+				}
+			}
+		}
+
+		for (int row = indexedSize; row < size; ++row) {
+			if (keyColumn[row] == playerId && weekNumbers[row] == weekNumber && (creditedOnly == false || credited[row] == true)) {
+				values.add(valueColumn[row]);
+			}
+		}
+		return values;
+	}
+
+	/** Sorts every row by week and rebuilds the indexes over them */
+	private void buildIndexes() {
+		// Order the rows by week. Ties keep their existing order, and appended rows follow every indexed row, so rows
+		// within a week stay in the order the kills were entered
+		int[] order = sortedRowOrder(weekNumbers, size);
+		int[] sortedAssassins = new int[assassinIds.length];
+		int[] sortedTargets = new int[assassinIds.length];
+		int[] sortedWeeks = new int[assassinIds.length];
+		boolean[] sortedCredited = new boolean[assassinIds.length];
+		for (int i = 0; i < size; ++i) {
+			sortedAssassins[i] = assassinIds[order[i]];
+			sortedTargets[i] = targetIds[order[i]];
+			sortedWeeks[i] = weekNumbers[order[i]];
+			sortedCredited[i] = credited[order[i]];
+		}
+		assassinIds = sortedAssassins;
+		targetIds = sortedTargets;
+		weekNumbers = sortedWeeks;
+		credited = sortedCredited;
+		indexedSize = size;
+
+		// The rows are already grouped by week, so the week index only needs the start of each group
+		int weekCount = 0;
+		for (int i = 0; i < size; ++i) {
+			if (i == 0 || weekNumbers[i] != weekNumbers[i - 1]) {
+				weekCount++;
+			}
+		}
+		weekKeys = new int[weekCount];
+		weekOffsets = new int[weekCount + 1];
+		int week = 0;
+		for (int i = 0; i < size; ++i) {
+			if (i == 0 || weekNumbers[i] != weekNumbers[i - 1]) {
+				weekKeys[week] = weekNumbers[i];
+				weekOffsets[week] = i;
+				week++;
+			}
+		}
+		weekOffsets[weekCount] = size;
+
+		assassinRows = sortedRowOrder(assassinIds, size);
+		assassinKeys = groupKeys(assassinIds, assassinRows);
+		assassinOffsets = groupOffsets(assassinIds, assassinRows, assassinKeys.length);
+
+		targetRows = sortedRowOrder(targetIds, size);
+		targetKeys = groupKeys(targetIds, targetRows);
+		targetOffsets = groupOffsets(targetIds, targetRows, targetKeys.length);
+	}
+
+	private int checkRow(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("No kill at row " + row + " of " + size);
+		}
+		return row;
+	}
+
+	/**
+	 * Returns the row numbers of a column sorted by the column value. Rows with equal values keep their original order.
+	 * Each value and row number are packed into a single long so that the sort is done on primitives.
+	 */
+	private static int[] sortedRowOrder(int[] column, int size) {
+		long[] packed = new long[size];
+		for (int i = 0; i < size; ++i) {
+			packed[i] = ((long) column[i] << 32) | i;
+		}
+		Arrays.sort(packed);
+
+		int[] rows = new int[size];
+		for (int i = 0; i < size; ++i) {
+			rows[i] = (int) packed[i];
+		}
+		return rows;
+	}
+
+	/** Returns the distinct values of a column, visiting the rows in the given sorted order */
+	private static int[] groupKeys(int[] column, int[] rows) {
+		int count = 0;
+		for (int i = 0; i < rows.length; ++i) {
+			if (i == 0 || column[rows[i]] != column[rows[i - 1]]) {
+				count++;
+			}
+		}
+
+		int[] keys = new int[count];
+		int key = 0;
+		for (int i = 0; i < rows.length; ++i) {
+			if (i == 0 || column[rows[i]] != column[rows[i - 1]]) {
+				keys[key++] = column[rows[i]];
+			}
+		}
+		return keys;
+	}
+
+	/** Returns the position in rows where each group of equal column values starts, followed by rows.length */
+	private static int[] groupOffsets(int[] column, int[] rows, int groupCount) {
+		int[] offsets = new int[groupCount + 1];
+		int group = 0;
+		for (int i = 0; i < rows.length; ++i) {
+			if (i == 0 || column[rows[i]] != column[rows[i - 1]]) {
+				offsets[group++] = i;
+			}
+		}
+		offsets[groupCount] = rows.length;
+		return offsets;
+	}
+}
@@ -0,0 +1,134 @@
+package games.office.assassins.model;
+
+import java.util.Arrays;
+
+/**
+ * A set of primitive longs. Used in place of HashSet<Long> to hold packed pairs of player IDs, where boxing every
+ * value would take several times the memory and make each lookup chase pointers. Values are stored in a single array
+ * using open addressing with linear probing, which is kept at most half full.
+ */
+public class LongHashSet {
+	/** The smallest number of slots in the table */
+	private static final int MINIMUM_CAPACITY = 16;
+
+	/** The table of values. Empty slots hold 0, so 0 itself is tracked by containsZero instead */
+	private long[] slots;
+
+	/** True if 0 has been added to the set */
+	private boolean containsZero = false;
+
+	/** The number of values in the set */
+	private int size = 0;
+
+	public LongHashSet() {
+		this(MINIMUM_CAPACITY / 2);
+	}
+
+	/**
+	 * @param expectedSize The number of values the set should hold before it needs to grow
+	 */
+	public LongHashSet(int expectedSize) {
+		slots = new long[tableSizeFor(expectedSize)];
+	}
+
+	/** Returns the number of values in the set */
+	public int size() {
+		return size;
+	}
+
+	/** Returns true if the set holds no values */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds a value to the set
+	 * @return True if the value was not already in the set
+	 */
+	public boolean add(long value) {
+		if (value == 0) {
+			if (containsZero) {
+				return false;
+			}
+			containsZero = true;
+			size++;
+			return true;
+		}
+
+		int mask = slots.length - 1;
+		int slot = hash(value) & mask;
+		while (slots[slot] != 0) {
+			if (slots[slot] == value) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		slots[slot] = value;
+		size++;
+		if (size * 2 > slots.length) {
+			resize(slots.length * 2);
+		}
+		return true;
+	}
+
+	/** Returns true if the value is in the set */
+	public boolean contains(long value) {
+		if (value == 0) {
+			return containsZero;
+		}
+
+		int mask = slots.length - 1;
+		int slot = hash(value) & mask;
+		long stored;
+		while ((stored = slots[slot]) != 0) {
+			if (stored == value) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/** Removes every value from the set, keeping the current capacity */
+	public void clear() {
+		Arrays.fill(slots, 0);
+		containsZero = false;
+		size = 0;
+	}
+
+	/** Moves every value into a new table of the given size, which must be a power of two */
+	private void resize(int newLength) {
+		long[] oldSlots = slots;
+		slots = new long[newLength];
+		int mask = newLength - 1;
+		for (long value : oldSlots) {
+			if (value != 0) {
+				int slot = hash(value) & mask;
+				while (slots[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = value;
+			}
+		}
+	}
+
+	/** Spreads the bits of a value so that packed pairs of small IDs do not cluster in the table */
+	private static int hash(long value) {
+		value ^= value >>> 33;
+		value *= 0xff51afd7ed558ccdL;
+		value ^= value >>> 33;
+		value *= 0xc4ceb9fe1a85ec53L;
+		value ^= value >>> 33;
+		return (int) value;
+	}
+
+	/** Returns the power of two table size that holds the expected number of values while at most half full */
+	private static int tableSizeFor(int expectedSize) {
+		int length = MINIMUM_CAPACITY;
+		while (length < (long) expectedSize * 2 && length < (1 << 30)) {
+			length *= 2;
+		}
+		return length;
+	}
+}
@@ -1,8 +1,11 @@
 package games.office.assassins.model;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -23,17 +26,22 @@ import java.io.Writer;
 
 /**
  * Primary data model structure that represents a single player's information and all of their
- * score history throughout the game.
+ * score history throughout the game. All numeric fields are stored as primitives so that large rosters
+ * can be held and sorted without boxing.
  */
 @Getter
 public class Player implements Comparable<Player> {
+	/** Most players take part in only a handful of weeks, so start the week table small */
+	private static final int INITIAL_WEEK_CAPACITY = 4;
+
 	public Player() {
-		scoreData = new HashMap();
+		weekNumbers = new int[INITIAL_WEEK_CAPACITY];
+		weekScores = new Score[INITIAL_WEEK_CAPACITY];
 	}
 
 	/** ID serves both as the row ID in the database and the player's unique ID number */
 	@Setter
-	private Integer id;
+	private int id;
 
 	@Setter
 	private String firstName;
@@ -46,23 +54,33 @@ public class Player implements Comparable<Player> {
 
 	/** Set to non-zero when a player has been eliminated from the game */
 	@Setter
-	private Integer weekEliminated;
+	private int weekEliminated;
 
 	/** The player's assigned rank number (1-n) relative to other non-eliminated players */
 	@Setter
-	private Integer rank = 0;
+	private int rank = 0;
+
+	/**
+	 * Tracks the players entire score history for each week. The week numbers are kept sorted, and the score for
+	 * weekNumbers[i] is stored at weekScores[i]. Only the first weekCount entries of each array are in use.
+	 */
+	@Getter(AccessLevel.NONE)
+	private int[] weekNumbers;
+
+	@Getter(AccessLevel.NONE)
+	private Score[] weekScores;
 
-	/** Tracks the players entire score history for each week. The Integer key is the week number */
-	private HashMap<Integer, Score> scoreData;
+	/** The number of weeks that the player has score data for */
+	private int weekCount;
 
 	/** Player's total score summed across all weeks */
-	private Integer totalScore = 0;
+	private int totalScore = 0;
 
 	/** Player's total number of kills summed across all weeks */
-	private Integer totalKills = 0;
+	private int totalKills = 0;
 
 	/** Player's total number of deaths summed across all weeks */
-	private Integer totalDeaths = 0;
+	private int totalDeaths = 0;
 
 	/** Returns true if this player has been eliminated from the game */
 	public boolean isPlayerEliminated() {
@@ -70,27 +88,103 @@ public class Player implements Comparable<Player> {
 	}
 
 	/**
-	 * Adds a new set of score data to the player
+	 * Adds a new set of score data to the player. The player's totals are kept up to date with any later changes made
+	 * to the score.
 	 * @param weekNumber The week number that the score applies to
 	 * @param score The score data to add
 	 *
 	 * If score data already exists at the specified week number, it will be overwritten
 	 */
 	public void addScoreData(int weekNumber, Score score) {
-		scoreData.put(weekNumber, score);
-		recalculateTotalScores();
+		int index = Arrays.binarySearch(weekNumbers, 0, weekCount, weekNumber);
+		if (index >= 0) {
+			Score previousScore = weekScores[index];
+			previousScore.setPlayer(null);
+			updateTotalScores(-previousScore.getScore(), -previousScore.getKills(), -previousScore.getDeaths());
+		}
+		else {
+			// Insert the new week in sorted position, growing the table if it is full
+			index = -(index + 1);
+			if (weekCount == weekNumbers.length) {
+				weekNumbers = Arrays.copyOf(weekNumbers, weekCount * 2);
+				weekScores = Arrays.copyOf(weekScores, weekCount * 2);
+			}
+			System.arraycopy(weekNumbers, index, weekNumbers, index + 1, weekCount - index);
+			System.arraycopy(weekScores, index, weekScores, index + 1, weekCount - index);
+			weekNumbers[index] = weekNumber;
+			weekCount++;
+		}
+
+		weekScores[index] = score;
+		score.setPlayer(this);
+		updateTotalScores(score.getScore(), score.getKills(), score.getDeaths());
 	}
 
+	/**
+	 * Looks up the player's score data for a single week
+	 * @param weekNumber The week number to look up
+	 * @return The score for that week, or null if the player has no score data for the week
+	 */
+	public Score getScore(int weekNumber) {
+		int index = Arrays.binarySearch(weekNumbers, 0, weekCount, weekNumber);
+		return (index >= 0) ? weekScores[index] : null;
+	}
 
 	/**
-	 * Updates the total score, kills, and deaths for the player
+	 * Returns a week number that the player has score data for. Weeks are ordered from oldest to newest.
+	 * @param index The position of the week, from 0 to getWeekCount() - 1
 	 */
-	private void recalculateTotalScores() {
+	public int getWeekNumber(int index) {
+		if (index < 0 || index >= weekCount) {
+			throw new IndexOutOfBoundsException("Week index " + index + " out of bounds for week count " + weekCount);
+		}
+		return weekNumbers[index];
+	}
+
+	/**
+	 * Returns the score data for the week at getWeekNumber(index)
+	 * @param index The position of the week, from 0 to getWeekCount() - 1
+	 */
+	public Score getWeekScore(int index) {
+		if (index < 0 || index >= weekCount) {
+			throw new IndexOutOfBoundsException("Week index " + index + " out of bounds for week count " + weekCount);
+		}
+		return weekScores[index];
+	}
+
+	/**
+	 * Returns a copy of the player's entire score history, keyed and sorted by week number. Changes made to the
+	 * returned map are not reflected in the player; use addScoreData() instead. Prefer getScore() and the indexed
+	 * week accessors where possible, as they do not allocate.
+	 */
+	public SortedMap<Integer, Score> getScoreData() {
+		TreeMap<Integer, Score> scoreData = new TreeMap();
+		for (int i = 0; i < weekCount; ++i) {
+			scoreData.put(weekNumbers[i], weekScores[i]);
+		}
+		return Collections.unmodifiableSortedMap(scoreData);
+	}
+
+	/**
+	 * Applies a change in score, kills, or deaths from one week of score data to the player's totals
+	 */
+	void updateTotalScores(int scoreChange, int killChange, int deathChange) {
+		totalScore += scoreChange;
+		totalKills += killChange;
+		totalDeaths += deathChange;
+	}
+
+	/**
+	 * Recomputes the total score, kills, and deaths for the player from every week of score data. The totals are
+	 * normally kept up to date as score data changes, so this is only needed to verify or repair them.
+	 */
+	public void recalculateTotalScores() {
 		totalScore = 0;
 		totalKills = 0;
 		totalDeaths = 0;
 
-		for (Score s : scoreData.values()) {
+		for (int i = 0; i < weekCount; ++i) {
+			Score s = weekScores[i];
 			totalScore += s.getScore();
 			totalKills += s.getKills();
 			totalDeaths += s.getDeaths();
@@ -101,15 +195,25 @@ public class Player implements Comparable<Player> {
 	 * Used for comparison in collections. Players with higher scores are ranked higher. If scores are tied, the player
 	 * with the most kills is ranked higher. If kills are also tied, the player with the fewer deaths is ranked higher.
 	 * @param otherPlayer Other Player object to compare
-	 * @return The difference in rank score
+	 * @return Negative if this player ranks higher, positive if the other player ranks higher, or zero if tied
 	 */
 	public int compareTo(Player otherPlayer) {
-		int difference = otherPlayer.totalScore - this.totalScore;
+		return compareTotals(this.totalScore, this.totalKills, this.totalDeaths,
+			otherPlayer.totalScore, otherPlayer.totalKills, otherPlayer.totalDeaths);
+	}
+
+	/**
+	 * Compares two sets of totals in the same order as compareTo(), for code that keeps totals outside of Player
+	 * objects, such as SeasonSimulator
+	 * @return Negative if the first totals rank higher, positive if the second totals rank higher, or zero if tied
+	 */
+	public static int compareTotals(int scoreA, int killsA, int deathsA, int scoreB, int killsB, int deathsB) {
+		int difference = Integer.compare(scoreB, scoreA);
 		if (difference == 0) {
-			difference = otherPlayer.totalKills - this.totalKills;
+			difference = Integer.compare(killsB, killsA);
 		}
 		if (difference == 0) {
-			difference = this.totalDeaths - otherPlayer.totalDeaths;
+			difference = Integer.compare(deathsA, deathsB);
 		}
 
 		return difference;
@@ -136,24 +240,24 @@ public class Player implements Comparable<Player> {
 			totalDeaths + "/" +
 			totalScore
 		);
-		for (int i : scoreData.keySet()) {
+		for (int i = 0; i < weekCount; ++i) {
 			System.out.println(
-				"\t\tWeek " + i + ": " +
-					scoreData.get(i).getKills() + "/" +
-					scoreData.get(i).getDeaths() + "/" +
-					scoreData.get(i).getScore()
+				"\t\tWeek " + weekNumbers[i] + ": " +
+					weekScores[i].getKills() + "/" +
+					weekScores[i].getDeaths() + "/" +
+					weekScores[i].getScore()
 			);
 		}
 		System.out.println("\tBonuses:");
-		for (int i : scoreData.keySet()) {
-			ArrayList<Bonus> bonuses = scoreData.get(i).getBonuses();
+		for (int i = 0; i < weekCount; ++i) {
+			ArrayList<Bonus> bonuses = weekScores[i].getBonuses();
 			if (bonuses.isEmpty()) {
 				continue;
 			}
 
 			for (Bonus j : bonuses) {
 				System.out.println(
-					"\t\tWeek " + i + ": " +
+					"\t\tWeek " + weekNumbers[i] + ": " +
 						j.getBonusName() + " - " +
 						j.getBonusDescription() + ": " +
 						j.getBonusPoints() + ", " +
@@ -2,21 +2,25 @@ package games.office.assassins.model;
 
 import java.util.ArrayList;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
 /**
  * Keeps track of a player's weekly score, targets, assassins, and bonuses.
  * Primarily a helper to the Player class
+ *
+ * The kill, death, and score totals are kept up to date as each event is added or removed, and any change is passed
+ * along to the Player that the score has been added to so that their career totals stay in sync as well.
  */
 @Getter
 public class Score {
 	public Score() {
-		targetPlayerIds = new ArrayList();
-		assassinPlayerIds = new ArrayList();
+		targetPlayerIds = new IntList();
+		assassinPlayerIds = new IntList();
 		bonuses = new ArrayList();
 	}
 
-	/** Always set to the value of killCount - deathCount */
+	/** Always set to the value of killCount - deathCount + bonusPoints */
 	private int score;
 
 	/** Number of kills made */
@@ -25,47 +29,112 @@ public class Score {
 	/** Number of times killed */
 	private int deaths;
 
+	/** Sum of the points awarded by all bonuses */
+	private int bonusPoints;
+
+	/** Incremented every time an event is added or removed, so that anything derived from the score can tell it is stale */
+	private int changeCount;
+
 	/** Ids of players that this player has killed */
-	private ArrayList<Integer> targetPlayerIds;
+	private IntList targetPlayerIds;
 
 	/** Ids of players who assassinated this player */
-	private ArrayList<Integer> assassinPlayerIds;
+	private IntList assassinPlayerIds;
 
 	/** Holds any bonuses earned by the player for the week */
 	private ArrayList<Bonus> bonuses;
 
+	/** The player that this score has been added to, if any. Notified whenever the totals change */
+	@Getter(AccessLevel.NONE)
+	private Player player;
+
 	/** Adds a new assassin that killed this player */
 	public void addAssassinKiller(int playerId) {
 		assassinPlayerIds.add(playerId);
-		recomputeTotals();
+		updateTotals(0, 1, 0);
 	}
 
 	/** Adds a new target that this player killed */
 	public void addTargetKilled(int playerId) {
 		targetPlayerIds.add(playerId);
-		recomputeTotals();
+		updateTotals(1, 0, 0);
 	}
 
+	/**
+	 * Adds a bonus earned by the player. The bonus points must not be changed after the bonus has been added, or the
+	 * score totals will no longer be correct. Remove the bonus and add it again instead.
+	 */
 	public void addBonus(Bonus bonus) {
 		if (bonus == null) {
 			return;
 		}
 
 		bonuses.add(bonus);
-		recomputeTotals();
+		updateTotals(0, 0, bonus.getBonusPoints());
 	}
 
 	/**
-	 * Recalculates kills, deaths, and total score using existing class data. Called whenever new data is added that
-	 * may or may not affect the scores.
+	 * Removes an assassin that was recorded as killing this player, such as when a kill is disputed
+	 * @return False if the player was not recorded as an assassin
 	 */
-	private void recomputeTotals() {
-		kills = targetPlayerIds.size();
-		deaths = assassinPlayerIds.size();
-		int totalBonusPoints = 0;
-		for (Bonus i : bonuses) {
-			totalBonusPoints += i.getBonusPoints();
+	public boolean removeAssassinKiller(int playerId) {
+		if (assassinPlayerIds.removeValue(playerId) == false) {
+			return false;
+		}
+
+		updateTotals(0, -1, 0);
+		return true;
+	}
+
+	/**
+	 * Removes a target that was recorded as killed by this player, such as when a kill is disputed
+	 * @return False if the player was not recorded as a target
+	 */
+	public boolean removeTargetKilled(int playerId) {
+		if (targetPlayerIds.removeValue(playerId) == false) {
+			return false;
+		}
+
+		updateTotals(-1, 0, 0);
+		return true;
+	}
+
+	/**
+	 * Removes a bonus that was previously added
+	 * @return False if the bonus was not found
+	 */
+	public boolean removeBonus(Bonus bonus) {
+		if (bonus == null || bonuses.remove(bonus) == false) {
+			return false;
+		}
+
+		updateTotals(0, 0, -bonus.getBonusPoints());
+		return true;
+	}
+
+	/**
+	 * Assigns the player that this score belongs to. Called by Player when the score is added to or removed from
+	 * their score data.
+	 */
+	void setPlayer(Player owner) {
+		player = owner;
+	}
+
+	/**
+	 * Applies a change to kills, deaths, and bonus points, updates the score, and forwards the change to the
+	 * owning player. Runs in constant time regardless of how many events the score holds.
+	 */
+	private void updateTotals(int killChange, int deathChange, int bonusPointChange) {
+		kills += killChange;
+		deaths += deathChange;
+		bonusPoints += bonusPointChange;
+
+		int scoreChange = killChange - deathChange + bonusPointChange;
+		score += scoreChange;
+		changeCount++;
+
+		if (player != null) {
+			player.updateTotalScores(scoreChange, killChange, deathChange);
 		}
-		score = kills - deaths + totalBonusPoints;
 	}
 }
@@ -0,0 +1,188 @@
+package games.office.assassins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.office.assassins.model.Bonus;
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * Checks that kills and bonuses recorded from many threads at once give the same player data, and the same live
+ * totals, as loading the same events from the database one at a time.
+ */
+public class ConcurrentKillRecorderTest {
+	private static final int PLAYER_COUNT = 50;
+
+	private static final int WEEK_COUNT = 6;
+
+	private static final int THREAD_COUNT = 4;
+
+	private static final int EVENTS_PER_THREAD = 2000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Creates a bonus the way GameMaster loads one written by TestGameDatabase.addBonus() */
+	private static Bonus createBonus(int points) {
+		Bonus bonus = new Bonus();
+		bonus.setTargetId(0);
+		bonus.setBonusPoints(points);
+		bonus.setBonusName("Bonus " + points);
+		bonus.setBonusDescription("Worth " + points);
+		return bonus;
+	}
+
+	/**
+	 * Describes every player's totals and weekly kills, deaths and bonus points in player ID order. Events recorded
+	 * from several threads reach each Score in no particular order, so the lists are sorted.
+	 */
+	private static String describeUnordered(HashMap<Integer, Player> playerData) {
+		StringBuilder description = new StringBuilder();
+		for (Player p : new TreeMap<Integer, Player>(playerData).values()) {
+			description.append(p.getId()).append(": ").append(p.getTotalScore()).append('/').append(p.getTotalKills())
+				.append('/').append(p.getTotalDeaths()).append('\n');
+			for (int i = 0; i < p.getWeekCount(); ++i) {
+				Score score = p.getWeekScore(i);
+				int[] targets = score.getTargetPlayerIds().toArray();
+				int[] assassins = score.getAssassinPlayerIds().toArray();
+				Arrays.sort(targets);
+				Arrays.sort(assassins);
+				description.append("  week ").append(p.getWeekNumber(i)).append(" killed ").append(Arrays.toString(targets))
+					.append(" killed by ").append(Arrays.toString(assassins)).append(" bonus points ").append(score.getBonusPoints()).append('\n');
+			}
+		}
+		return description.toString();
+	}
+
+	/** Checks the recorder's live totals against loaded player data */
+	private static void assertLiveTotals(ConcurrentKillRecorder recorder, HashMap<Integer, Player> expectedData) {
+		for (Player expected : expectedData.values()) {
+			assertEquals("score of " + expected.getId(), expected.getTotalScore(), recorder.getTotalScore(expected.getId()));
+			assertEquals("kills of " + expected.getId(), expected.getTotalKills(), recorder.getTotalKills(expected.getId()));
+			assertEquals("deaths of " + expected.getId(), expected.getTotalDeaths(), recorder.getTotalDeaths(expected.getId()));
+		}
+	}
+
+	@Test
+	public void concurrentEventsMatchASequentialLoad() throws Exception {
+		try (TestGameDatabase database = new TestGameDatabase(folder.newFile("game.db"))) {
+			Random random = new Random(3);
+			for (int id = 1; id <= PLAYER_COUNT; ++id) {
+				database.addPlayer(id, (id % 4 == 0) ? 1 + random.nextInt(WEEK_COUNT) : 0);
+			}
+			HashMap<Integer, Player> playerData = GameMaster.loadGameData(database.connection);
+			assertNotNull(playerData);
+			ConcurrentKillRecorder recorder = new ConcurrentKillRecorder(playerData);
+
+			// Each event is {assassin, target, week, bonus points}, where a target of 0 makes it a bonus. A few name a
+			// player who does not exist, which both the recorder and the loader must skip
+			List<int[][]> threadEvents = new ArrayList();
+			int unknownCount = 0;
+			database.connection.setAutoCommit(false);
+			for (int t = 0; t < THREAD_COUNT; ++t) {
+				int[][] events = new int[EVENTS_PER_THREAD][];
+				for (int i = 0; i < EVENTS_PER_THREAD; ++i) {
+					int assassinId = 1 + random.nextInt(PLAYER_COUNT + 1);
+					int weekNumber = 1 + random.nextInt(WEEK_COUNT);
+					if (random.nextInt(10) == 0) {
+						events[i] = new int[] {assassinId, 0, weekNumber, random.nextInt(7) - 3};
+						database.addBonus(assassinId, weekNumber, events[i][3]);
+					}
+					else {
+						int targetId = 1 + (assassinId + random.nextInt(PLAYER_COUNT - 1)) % PLAYER_COUNT;
+						events[i] = new int[] {assassinId, targetId, weekNumber, 0};
+						database.addKill(assassinId, targetId, weekNumber);
+					}
+					if (assassinId > PLAYER_COUNT) {
+						unknownCount++;
+					}
+				}
+				threadEvents.add(events);
+			}
+			database.connection.commit();
+			database.connection.setAutoCommit(true);
+
+			AtomicInteger rejectedCount = new AtomicInteger();
+			CountDownLatch start = new CountDownLatch(1);
+			List<Thread> threads = new ArrayList();
+			for (int[][] events : threadEvents) {
+				Thread thread = new Thread(() -> {
+					try {
+						start.await();
+					}
+					catch (InterruptedException e) {
+						return;
+					}
+					for (int[] event : events) {
+						boolean recorded = (event[1] == 0) ? recorder.recordBonus(event[0], event[2], createBonus(event[3]))
+							: recorder.recordKill(event[0], event[1], event[2]);
+						if (recorded == false) {
+							rejectedCount.incrementAndGet();
+						}
+					}
+				});
+				thread.start();
+				threads.add(thread);
+			}
+
+			// Apply batches while the other threads are still recording
+			start.countDown();
+			int appliedCount = 0;
+			for (Thread thread : threads) {
+				while (thread.isAlive()) {
+					appliedCount += recorder.applyPendingEvents();
+					thread.join(1);
+				}
+			}
+			appliedCount += recorder.applyPendingEvents();
+
+			assertEquals(unknownCount, rejectedCount.get());
+			assertEquals(THREAD_COUNT * EVENTS_PER_THREAD - unknownCount, appliedCount);
+			assertEquals(0, recorder.getPendingEventCount());
+
+			HashMap<Integer, Player> expectedData = GameMaster.loadGameData(database.connection);
+			assertNotNull(expectedData);
+			assertEquals(describeUnordered(expectedData), describeUnordered(playerData));
+			assertLiveTotals(recorder, expectedData);
+		}
+	}
+
+	@Test
+	public void killsByEliminatedAssassinsAreNotCredited() throws Exception {
+		try (TestGameDatabase database = new TestGameDatabase(folder.newFile("game.db"))) {
+			database.addPlayer(1, 2);
+			database.addPlayer(2, 0);
+			database.addPlayer(3, 0);
+			ConcurrentKillRecorder recorder = new ConcurrentKillRecorder(GameMaster.loadGameData(database.connection));
+
+			// Player 1 was eliminated at the end of week 2, so only their week 2 kill counts
+			assertTrue(recorder.recordKill(1, 2, 2));
+			assertTrue(recorder.recordKill(1, 3, 3));
+			database.addKill(1, 2, 2);
+			database.addKill(1, 3, 3);
+			assertFalse(recorder.recordKill(1, 4, 3));
+
+			assertEquals(1, recorder.getTotalKills(1));
+			assertEquals(1, recorder.getTotalScore(1));
+			assertEquals(1, recorder.getTotalDeaths(3));
+			assertEquals(-1, recorder.getTotalScore(3));
+			assertLiveTotals(recorder, GameMaster.loadGameData(database.connection));
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package games.office.assassins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Delivers messages to a FakeSmtpServer to check pipelining, recovery from rejected and failed messages, retries, and
+ * resuming an interrupted run from the delivery log.
+ */
+public class EmailDeliveryTest {
+	private static final int MESSAGE_COUNT = 12;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FakeSmtpServer server;
+
+	private File messageDirectory;
+
+	private String logFilename;
+
+	@Before
+	public void startServer() throws Exception {
+		server = new FakeSmtpServer();
+		messageDirectory = folder.newFolder("messages");
+		logFilename = new File(folder.getRoot(), "delivered.log").getPath();
+		for (int i = 0; i < MESSAGE_COUNT; ++i) {
+			Files.write(new File(messageDirectory, String.format("%03d.eml", i)).toPath(), messageData(i).getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@After
+	public void stopServer() throws Exception {
+		server.close();
+	}
+
+	private static String recipient(int i) {
+		return "player" + i + "@example.com";
+	}
+
+	/** A message file, with a body line that must be dot stuffed */
+	private static String messageData(int i) {
+		return "From: Assassins <assassins@example.com>\r\nTo: Player " + i + " <" + recipient(i) + ">\r\n" +
+			"Subject: [Assassins] - Week 1 Targets\r\n\r\nYour targets follow.\r\n.hidden line " + i + "\r\n";
+	}
+
+	private EmailDelivery createDelivery() {
+		EmailDelivery delivery = new EmailDelivery("127.0.0.1", server.getPort());
+		delivery.setConnectionCount(2);
+		delivery.setQueueCapacity(4);
+		delivery.setInitialBackoffMillis(50);
+		delivery.setSocketTimeoutMillis(5000);
+		return delivery;
+	}
+
+	private static List<String> sorted(List<String> values) {
+		List<String> copy = new ArrayList(values);
+		Collections.sort(copy);
+		return copy;
+	}
+
+	private List<String> allRecipients() {
+		List<String> recipients = new ArrayList();
+		for (int i = 0; i < MESSAGE_COUNT; ++i) {
+			recipients.add(recipient(i));
+		}
+		return sorted(recipients);
+	}
+
+	private List<String> readLog() throws Exception {
+		return sorted(Files.readAllLines(new File(logFilename).toPath(), StandardCharsets.UTF_8));
+	}
+
+	@Test(timeout = 30000)
+	public void pipelinedMessagesAreDeliveredIntact() throws Exception {
+		EmailDelivery delivery = createDelivery();
+		assertTrue(delivery.deliverDirectory(messageDirectory.getPath(), logFilename));
+
+		assertEquals(MESSAGE_COUNT, delivery.getDeliveredCount());
+		assertEquals(allRecipients(), sorted(server.getRecipients()));
+		assertEquals(MESSAGE_COUNT, server.pipelinedCount.get());
+		for (FakeSmtpServer.ReceivedMessage message : server.receivedMessages) {
+			int i = Integer.parseInt(message.recipient.substring(6, message.recipient.indexOf('@')));
+			assertEquals("assassins@example.com", message.sender);
+			assertEquals(messageData(i), message.data);
+		}
+		assertEquals(MESSAGE_COUNT, readLog().size());
+	}
+
+	@Test(timeout = 30000)
+	public void commandsAreNotPipelinedUnlessAdvertised() throws Exception {
+		server.pipelining = false;
+		try (SmtpConnection connection = new SmtpConnection("127.0.0.1", server.getPort(), "localhost", 5000)) {
+			assertFalse(connection.isPipelining());
+			connection.sendMessage("assassins@example.com", recipient(1), messageData(1).getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals(Arrays.asList(recipient(1)), server.getRecipients());
+		assertEquals(0, server.pipelinedCount.get());
+	}
+
+	@Test(timeout = 30000)
+	public void rejectedRecipientLeavesThePipelinedConnectionUsable() throws Exception {
+		// The server rejects the recipient but still answers the pipelined DATA with 354
+		server.dataAfterRejection = true;
+		server.rejectedRecipients.add(recipient(1));
+		try (SmtpConnection connection = new SmtpConnection("127.0.0.1", server.getPort(), "localhost", 5000)) {
+			assertTrue(connection.isPipelining());
+			try {
+				connection.sendMessage("assassins@example.com", recipient(1), messageData(1).getBytes(StandardCharsets.UTF_8));
+				fail("The rejected recipient was accepted");
+			}
+			catch (SmtpConnection.SmtpException e) {
+				assertEquals(550, e.getReplyCode());
+				assertTrue(e.isPermanent());
+			}
+
+			connection.sendMessage("assassins@example.com", recipient(2), messageData(2).getBytes(StandardCharsets.UTF_8));
+			assertEquals(1, connection.getMessageCount());
+		}
+		assertEquals(Arrays.asList(recipient(2)), server.getRecipients());
+		assertEquals(1, server.connectionCount.get());
+	}
+
+	@Test(timeout = 30000)
+	public void permanentRejectionsAreNotRetried() throws Exception {
+		server.dataAfterRejection = true;
+		server.rejectedRecipients.add(recipient(3));
+		EmailDelivery delivery = createDelivery();
+		assertFalse(delivery.deliverDirectory(messageDirectory.getPath(), logFilename));
+
+		assertEquals(MESSAGE_COUNT - 1, delivery.getDeliveredCount());
+		assertEquals(1, delivery.getFailedCount());
+		assertEquals(0, delivery.getRetryCount());
+		assertFalse(server.getRecipients().contains(recipient(3)));
+	}
+
+	@Test(timeout = 30000)
+	public void temporaryFailuresAreRetriedWithBackoff() throws Exception {
+		// One connection, so the failures all fall on the first message: two 451 replies and then a dropped connection
+		server.temporaryFailures.set(2);
+		server.droppedConnections.set(1);
+		EmailDelivery delivery = createDelivery();
+		delivery.setConnectionCount(1);
+
+		long start = System.nanoTime();
+		assertTrue(delivery.deliverDirectory(messageDirectory.getPath(), logFilename));
+		long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+		assertEquals(MESSAGE_COUNT, delivery.getDeliveredCount());
+		assertEquals(3, delivery.getRetryCount());
+		assertEquals(allRecipients(), sorted(server.getRecipients()));
+		// Backoffs of 50, 100 and 200 ms
+		assertTrue("Retries took only " + elapsedMillis + " ms", elapsedMillis >= 350);
+		// A new connection is made for each retry
+		assertEquals(4, server.connectionCount.get());
+	}
+
+	@Test(timeout = 30000)
+	public void messagesAreGivenUpAfterTheLastAttempt() throws Exception {
+		server.temporaryFailures.set(3);
+		EmailDelivery delivery = createDelivery();
+		delivery.setConnectionCount(1);
+		delivery.setMaxAttempts(3);
+		assertFalse(delivery.deliverDirectory(messageDirectory.getPath(), logFilename));
+
+		assertEquals(MESSAGE_COUNT - 1, delivery.getDeliveredCount());
+		assertEquals(1, delivery.getFailedCount());
+		assertEquals(2, delivery.getRetryCount());
+		assertFalse(server.getRecipients().contains(recipient(0)));
+	}
+
+	@Test(timeout = 30000)
+	public void resumedRunOnlySendsUndeliveredMessages() throws Exception {
+		server.rejectedRecipients.add(recipient(4));
+		server.rejectedRecipients.add(recipient(7));
+		EmailDelivery delivery = createDelivery();
+		assertFalse(delivery.deliverDirectory(messageDirectory.getPath(), logFilename));
+		assertEquals(MESSAGE_COUNT - 2, readLog().size());
+		assertFalse(readLog().contains("004.eml"));
+
+		server.rejectedRecipients.clear();
+		assertTrue(delivery.deliverDirectory(messageDirectory.getPath(), logFilename));
+		assertEquals(2, delivery.getDeliveredCount());
+		assertEquals(MESSAGE_COUNT - 2, delivery.getSkippedCount());
+
+		// Every message was accepted exactly once across the two runs, and the log now lists them all
+		assertEquals(allRecipients(), sorted(server.getRecipients()));
+		assertEquals(MESSAGE_COUNT, readLog().size());
+	}
+}
@@ -0,0 +1,250 @@
+package games.office.assassins;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+
+import java.nio.charset.StandardCharsets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An SMTP server for tests that runs in the same process, listens on a free loopback port and keeps every message it
+ * accepts in memory. Failures can be injected to test how clients recover from them.
+ *
+ * The server notes whether the RCPT and DATA commands of each transaction had already arrived when MAIL was read,
+ * which is only the case when the client pipelines them.
+ */
+class FakeSmtpServer implements AutoCloseable {
+	/** A message the server accepted */
+	static class ReceivedMessage {
+		final String sender;
+		final String recipient;
+
+		/** The message data with dot stuffing removed, each line ending in CRLF */
+		final String data;
+
+		ReceivedMessage(String senderAddress, String recipientAddress, String messageData) {
+			sender = senderAddress;
+			recipient = recipientAddress;
+			data = messageData;
+		}
+	}
+
+	/** True to advertise the PIPELINING extension */
+	volatile boolean pipelining = true;
+
+	/**
+	 * True to answer DATA with 354 even when no recipient was accepted, as some servers do when commands are
+	 * pipelined. The client must then send an empty message, which is rejected
+	 */
+	volatile boolean dataAfterRejection = false;
+
+	/** Recipients that are rejected with a permanent 550 reply */
+	final Set<String> rejectedRecipients = ConcurrentHashMap.newKeySet();
+
+	/** The number of MAIL commands still to be answered with a temporary 451 reply */
+	final AtomicInteger temporaryFailures = new AtomicInteger();
+
+	/** The number of messages still to be dropped by closing the connection once their data has been read */
+	final AtomicInteger droppedConnections = new AtomicInteger();
+
+	/** The number of connections accepted */
+	final AtomicInteger connectionCount = new AtomicInteger();
+
+	/** The number of MAIL commands that arrived with later commands of the same transaction already waiting */
+	final AtomicInteger pipelinedCount = new AtomicInteger();
+
+	/** Every message accepted, in the order they were accepted */
+	final List<ReceivedMessage> receivedMessages = Collections.synchronizedList(new ArrayList());
+
+	private final ServerSocket serverSocket;
+
+	private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+
+	FakeSmtpServer() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptThread = new Thread(this::acceptConnections, "fake-smtp-accept");
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+	}
+
+	int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/** Returns the recipient of every accepted message */
+	List<String> getRecipients() {
+		List<String> recipients = new ArrayList();
+		synchronized (receivedMessages) {
+			for (ReceivedMessage message : receivedMessages) {
+				recipients.add(message.recipient);
+			}
+		}
+		return recipients;
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+		for (Socket socket : openSockets) {
+			socket.close();
+		}
+	}
+
+	private void acceptConnections() {
+		try {
+			while (true) {
+				Socket socket = serverSocket.accept();
+				connectionCount.incrementAndGet();
+				openSockets.add(socket);
+				Thread session = new Thread(() -> runSession(socket), "fake-smtp-session");
+				session.setDaemon(true);
+				session.start();
+			}
+		}
+		catch (IOException e) {
+			// The server was closed
+		}
+	}
+
+	private void runSession(Socket socket) {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+			reply(out, "220 fake.example.com ESMTP");
+
+			String sender = null;
+			String recipient = null;
+			String line;
+			while ((line = in.readLine()) != null) {
+				String command = line.toUpperCase();
+				if (command.startsWith("EHLO")) {
+					reply(out, pipelining ? "250-fake.example.com\r\n250-PIPELINING\r\n250 8BITMIME" : "250-fake.example.com\r\n250 8BITMIME");
+				}
+				else if (command.startsWith("HELO")) {
+					reply(out, "250 fake.example.com");
+				}
+				else if (command.startsWith("MAIL FROM:")) {
+					if (in.ready()) {
+						pipelinedCount.incrementAndGet();
+					}
+					if (takeOne(temporaryFailures)) {
+						reply(out, "451 Try again later");
+					}
+					else {
+						sender = address(line);
+						reply(out, "250 OK");
+					}
+				}
+				else if (command.startsWith("RCPT TO:")) {
+					String address = address(line);
+					if (sender == null) {
+						reply(out, "503 MAIL first");
+					}
+					else if (rejectedRecipients.contains(address)) {
+						reply(out, "550 No such user: " + address);
+					}
+					else {
+						recipient = address;
+						reply(out, "250 OK");
+					}
+				}
+				else if (command.equals("DATA")) {
+					if (recipient == null && dataAfterRejection == false) {
+						reply(out, "554 No valid recipients");
+						continue;
+					}
+					reply(out, "354 End data with <CR><LF>.<CR><LF>");
+
+					StringBuilder data = new StringBuilder();
+					while ((line = in.readLine()) != null && line.equals(".") == false) {
+						data.append(line.startsWith(".") ? line.substring(1) : line).append("\r\n");
+					}
+					if (line == null) {
+						return;
+					}
+
+					if (recipient == null) {
+						reply(out, "554 No valid recipients");
+					}
+					else if (takeOne(droppedConnections)) {
+						socket.close();
+						return;
+					}
+					else {
+						receivedMessages.add(new ReceivedMessage(sender, recipient, data.toString()));
+						reply(out, "250 Queued");
+					}
+					sender = null;
+					recipient = null;
+				}
+				else if (command.equals("RSET")) {
+					sender = null;
+					recipient = null;
+					reply(out, "250 OK");
+				}
+				else if (command.equals("QUIT")) {
+					reply(out, "221 Bye");
+					return;
+				}
+				else {
+					reply(out, "500 Unknown command");
+				}
+			}
+		}
+		catch (SocketException e) {
+			// The client or the test closed the connection
+		}
+		catch (IOException e) {
+			System.out.println("Fake SMTP session failed: " + e.getMessage());
+		}
+		finally {
+			openSockets.remove(socket);
+			try {
+				socket.close();
+			}
+			catch (IOException e) {
+				// Already closed
+			}
+		}
+	}
+
+	private static void reply(Writer out, String reply) throws IOException {
+		out.write(reply);
+		out.write("\r\n");
+		out.flush();
+	}
+
+	/** Returns the address between the angle brackets of a MAIL or RCPT command */
+	private static String address(String line) {
+		int open = line.indexOf('<');
+		int close = line.lastIndexOf('>');
+		return (open >= 0 && close > open) ? line.substring(open + 1, close) : "";
+	}
+
+	/** Decrements a counter if it is positive, returning true if it was */
+	private static boolean takeOne(AtomicInteger counter) {
+		while (true) {
+			int remaining = counter.get();
+			if (remaining <= 0) {
+				return false;
+			}
+			if (counter.compareAndSet(remaining, remaining - 1)) {
+				return true;
+			}
+		}
+	}
+}
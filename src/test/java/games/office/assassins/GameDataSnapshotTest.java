@@ -0,0 +1,139 @@
+package games.office.assassins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.office.assassins.model.Player;
+
+/**
+ * Checks that loading game data from a snapshot and then applying the new rows always gives the same data as a full
+ * reload of the database, and that reloading through a league's connection pool reuses its prepared statements.
+ */
+public class GameDataSnapshotTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Loads the database through the snapshot file and checks the result against a full load */
+	private static HashMap<Integer, Player> loadAndCompare(TestGameDatabase database, String snapshotFilename) {
+		HashMap<Integer, Player> snapshotData = GameMaster.loadGameData(database.connection, snapshotFilename);
+		HashMap<Integer, Player> fullData = GameMaster.loadGameData(database.connection);
+		assertNotNull(snapshotData);
+		assertNotNull(fullData);
+		assertEquals(TestGameDatabase.describe(fullData), TestGameDatabase.describe(snapshotData));
+		return snapshotData;
+	}
+
+	@Test
+	public void newRowsAreAppliedToTheSnapshot() throws Exception {
+		String snapshotFilename = new File(folder.getRoot(), "game.snapshot").getPath();
+		try (TestGameDatabase database = new TestGameDatabase(folder.newFile("game.db"))) {
+			for (int id = 1; id <= 4; ++id) {
+				database.addPlayer(id, 0);
+			}
+			database.addKill(1, 2, 1);
+			database.addKill(3, 4, 1);
+			database.addBonus(2, 1, 3);
+			loadAndCompare(database, snapshotFilename);
+
+			database.addPlayer(5, 0);
+			database.addKill(5, 1, 2);
+			database.addKill(2, 3, 2);
+			database.addBonus(5, 2, -1);
+			loadAndCompare(database, snapshotFilename);
+
+			// Nothing new, so the snapshot is used as it is
+			loadAndCompare(database, snapshotFilename);
+		}
+	}
+
+	@Test
+	public void reloadingALeagueReusesItsCachedStatements() throws Exception {
+		File databaseFile = folder.newFile("game.db");
+		String snapshotFilename = new File(folder.getRoot(), "game.snapshot").getPath();
+		try (TestGameDatabase database = new TestGameDatabase(databaseFile)) {
+			for (int id = 1; id <= 3; ++id) {
+				database.addPlayer(id, 0);
+			}
+			database.addKill(1, 2, 1);
+			database.addBonus(3, 1, 2);
+
+			League league = new League(databaseFile.getPath(), snapshotFilename);
+			assertTrue(league.open());
+			try {
+				// The players, kills and bonuses queries are compiled by the first load
+				assertTrue(league.load());
+				assertEquals(0, league.getDatabase().getStatementCacheHits());
+				assertEquals(3, league.getDatabase().getStatementCacheMisses());
+
+				// The second load also checks the snapshot's rows with two queries of its own
+				database.addKill(3, 1, 2);
+				assertTrue(league.load());
+				assertEquals(3, league.getDatabase().getStatementCacheHits());
+				assertEquals(5, league.getDatabase().getStatementCacheMisses());
+				assertEquals(TestGameDatabase.describe(GameMaster.loadGameData(database.connection)), TestGameDatabase.describe(league.getPlayerData()));
+			}
+			finally {
+				league.close();
+			}
+		}
+	}
+
+	@Test
+	public void skippedRowsAreAppliedOnceTheirPlayerIsAdded() throws Exception {
+		String snapshotFilename = new File(folder.getRoot(), "game.snapshot").getPath();
+		try (TestGameDatabase database = new TestGameDatabase(folder.newFile("game.db"))) {
+			for (int id = 1; id <= 3; ++id) {
+				database.addPlayer(id, 0);
+			}
+			database.addKill(1, 2, 1);
+
+			// Kills and a bonus entered before the player's row
+			database.addKill(4, 3, 1);
+			database.addKill(1, 4, 1);
+			database.addBonus(4, 1, 2);
+			HashMap<Integer, Player> beforeData = loadAndCompare(database, snapshotFilename);
+			assertEquals(1, beforeData.get(1).getTotalKills());
+
+			database.addPlayer(4, 0);
+			database.addKill(2, 1, 2);
+			HashMap<Integer, Player> afterData = loadAndCompare(database, snapshotFilename);
+			assertEquals(2, afterData.get(1).getTotalKills());
+			assertEquals(1, afterData.get(4).getTotalKills());
+			assertEquals(1, afterData.get(4).getTotalDeaths());
+			assertEquals(2, afterData.get(4).getTotalScore());
+
+			// The reloaded snapshot has nothing skipped, so later players are added to it without another reload
+			database.addPlayer(5, 0);
+			database.addKill(5, 4, 2);
+			loadAndCompare(database, snapshotFilename);
+		}
+	}
+
+	@Test
+	public void eliminationChangesReloadEverything() throws Exception {
+		String snapshotFilename = new File(folder.getRoot(), "game.snapshot").getPath();
+		try (TestGameDatabase database = new TestGameDatabase(folder.newFile("game.db"))) {
+			for (int id = 1; id <= 3; ++id) {
+				database.addPlayer(id, 0);
+			}
+			database.addKill(1, 2, 1);
+			database.addKill(1, 3, 2);
+			loadAndCompare(database, snapshotFilename);
+
+			// Kills made after the week a player was eliminated are no longer credited to them
+			try (java.sql.Statement statement = database.connection.createStatement()) {
+				statement.executeUpdate("UPDATE players SET WeekEliminated = 1 WHERE ID = 1");
+			}
+			HashMap<Integer, Player> playerData = loadAndCompare(database, snapshotFilename);
+			assertEquals(1, playerData.get(1).getTotalKills());
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package games.office.assassins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.office.assassins.model.KillLog;
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * Checks that the kill log answers "who did a player kill" and "who killed a player" in each week with the same lists,
+ * in the same order, as the Scores built by loading the game data.
+ */
+public class KillLogTest {
+	private static final int PLAYER_COUNT = 40;
+
+	private static final int WEEK_COUNT = 6;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/** Creates players, some eliminated, and random kills between them, along with kills naming unknown players */
+	private static void addRandomGame(TestGameDatabase database, Random random, int killCount) throws Exception {
+		for (int id = 1; id <= PLAYER_COUNT; ++id) {
+			database.addPlayer(id, (id % 5 == 0) ? 1 + random.nextInt(WEEK_COUNT) : 0);
+		}
+		addRandomKills(database, random, killCount);
+		database.addKill(PLAYER_COUNT + 1, 1, 1);
+		database.addKill(1, PLAYER_COUNT + 1, 2);
+	}
+
+	/**
+	 * Adds random kills between the players
+	 * @return The assassin, target and week number of each kill, in the order they were added
+	 */
+	private static int[][] addRandomKills(TestGameDatabase database, Random random, int killCount) throws Exception {
+		int[][] kills = new int[killCount][];
+		database.connection.setAutoCommit(false);
+		for (int i = 0; i < killCount; ++i) {
+			int assassinId = 1 + random.nextInt(PLAYER_COUNT);
+			int targetId = 1 + (assassinId + random.nextInt(PLAYER_COUNT - 1)) % PLAYER_COUNT;
+			kills[i] = new int[] {assassinId, targetId, 1 + random.nextInt(WEEK_COUNT)};
+			database.addKill(kills[i][0], kills[i][1], kills[i][2]);
+		}
+		database.connection.commit();
+		database.connection.setAutoCommit(true);
+		return kills;
+	}
+
+	/** Checks every player and week of the log against the loaded Scores */
+	private static void assertLogMatchesScores(HashMap<Integer, Player> playerData, KillLog killLog) {
+		for (Player player : playerData.values()) {
+			for (int weekNumber = 1; weekNumber <= WEEK_COUNT; ++weekNumber) {
+				Score score = player.getScore(weekNumber);
+				String where = "player " + player.getId() + " week " + weekNumber;
+				assertEquals(where, (score == null) ? "[]" : score.getTargetPlayerIds().toString(),
+					killLog.getTargetsKilled(player.getId(), weekNumber).toString());
+				assertEquals(where, (score == null) ? "[]" : score.getAssassinPlayerIds().toString(),
+					killLog.getKilledBy(player.getId(), weekNumber).toString());
+			}
+		}
+	}
+
+	@Test
+	public void loadedLogMatchesTheLoadedScores() throws Exception {
+		try (TestGameDatabase database = new TestGameDatabase(folder.newFile("game.db"))) {
+			addRandomGame(database, new Random(5), 600);
+
+			HashMap<Integer, Player> playerData = GameMaster.loadGameData(database.connection);
+			assertNotNull(playerData);
+			KillLog killLog = GameMaster.loadKillLog(database.connection, playerData);
+			assertNotNull(killLog);
+			assertEquals(600, killLog.size());
+			assertLogMatchesScores(playerData, killLog);
+		}
+	}
+
+	@Test
+	public void appendedKillsMatchAFullReload() throws Exception {
+		try (TestGameDatabase database = new TestGameDatabase(folder.newFile("game.db"))) {
+			Random random = new Random(11);
+			addRandomGame(database, random, 100);
+			HashMap<Integer, Player> playerData = GameMaster.loadGameData(database.connection);
+			KillLog killLog = GameMaster.loadKillLog(database.connection, playerData);
+
+			// Enough kills for the indexes to be rebuilt twice, leaving some in the unindexed tail
+			int[][] kills = addRandomKills(database, random, 700);
+			HashMap<Integer, Player> reloadedData = GameMaster.loadGameData(database.connection);
+			for (int i = 0; i < kills.length; ++i) {
+				killLog.append(kills[i][0], kills[i][1], kills[i][2], GameMaster.isKillCredited(playerData.get(kills[i][0]), kills[i][2]));
+			}
+			assertEquals(800, killLog.size());
+			assertLogMatchesScores(reloadedData, killLog);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package games.office.assassins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import games.office.assassins.model.Bonus;
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * Checks the leaderboard against a full sort with PlayerRank after every one of a long run of random kills, deaths,
+ * bonuses, disputed kills, eliminations, new players and removals. Scores are kept in a small range so that many
+ * players are tied, and bonuses let players tie on score and kills with different deaths.
+ */
+public class LeaderboardTest {
+	/** Describes a player's totals, which must match between any two correct rankings even where ties differ */
+	private static String totals(Player p) {
+		return p.getTotalScore() + "/" + p.getTotalKills() + "/" + p.getTotalDeaths();
+	}
+
+	private static Player createPlayer(int id) {
+		Player p = new Player();
+		p.setId(id);
+		p.addScoreData(1, new Score());
+		return p;
+	}
+
+	/** Checks every query of the leaderboard against a full sort of the players */
+	private static void assertMatchesFullSort(Leaderboard leaderboard, HashMap<Integer, Player> playerData, String step) {
+		// assignPlayerRanks() is the reference for the totals at each rank, RANK_ORDER for the order of tied players
+		PlayerRank.assignPlayerRanks(playerData);
+		List<Player> sorted = new ArrayList(playerData.values());
+		Collections.sort(sorted, PlayerRank.RANK_ORDER);
+		List<Player> active = new ArrayList();
+		List<Player> eliminated = new ArrayList();
+		for (Player p : sorted) {
+			(p.isPlayerEliminated() ? eliminated : active).add(p);
+		}
+		assertEquals(step, active.size(), leaderboard.getActivePlayerCount());
+		assertEquals(step, eliminated.size(), leaderboard.getEliminatedPlayerCount());
+
+		HashMap<Integer, String> totalsByRank = new HashMap();
+		for (Player p : playerData.values()) {
+			totalsByRank.put(p.getRank(), totals(p));
+		}
+		for (int sign : new int[] {1, -1}) {
+			List<Player> players = (sign > 0) ? active : eliminated;
+			for (int i = 0; i < players.size(); ++i) {
+				int rank = sign * (i + 1);
+				Player expected = players.get(i);
+				assertEquals(step, rank, leaderboard.getRank(expected.getId()));
+				assertEquals(step, expected, leaderboard.getPlayerAtRank(rank));
+				assertEquals(step, totalsByRank.get(rank), totals(leaderboard.getPlayerAtRank(rank)));
+			}
+			assertNull(step, leaderboard.getPlayerAtRank(sign * (players.size() + 1)));
+
+			if (players.isEmpty() == false) {
+				assertEquals(step, players, leaderboard.getRange(sign, sign * (players.size() + 5)));
+				int from = 1 + players.size() / 3;
+				int to = Math.max(from, players.size() - 2);
+				List<Player> reversed = new ArrayList(players.subList(from - 1, to));
+				Collections.reverse(reversed);
+				assertEquals(step, reversed, leaderboard.getRange(sign * to, sign * from));
+			}
+		}
+	}
+
+	@Test
+	public void randomUpdatesMatchAFullSort() {
+		Random random = new Random(7);
+		HashMap<Integer, Player> playerData = new HashMap();
+		for (int id = 1; id <= 40; ++id) {
+			playerData.put(id, createPlayer(id));
+		}
+		Leaderboard leaderboard = new Leaderboard(playerData.values());
+		int nextId = 41;
+
+		for (int step = 0; step < 2000; ++step) {
+			ArrayList<Integer> ids = new ArrayList(playerData.keySet());
+			Player p = playerData.get(ids.get(random.nextInt(ids.size())));
+			Score score = p.getWeekScore(0);
+			int action = random.nextInt(12);
+			if (action < 3) {
+				score.addTargetKilled(random.nextInt(1000));
+			}
+			else if (action < 5) {
+				score.addAssassinKiller(random.nextInt(1000));
+			}
+			else if (action < 6) {
+				Bonus bonus = new Bonus();
+				bonus.setBonusPoints(random.nextInt(3) - 1);
+				score.addBonus(bonus);
+			}
+			else if (action < 7) {
+				// A disputed kill is taken back
+				if (score.getTargetPlayerIds().isEmpty() == false) {
+					score.removeTargetKilled(score.getTargetPlayerIds().get(0));
+				}
+			}
+			else if (action < 8) {
+				p.setWeekEliminated(p.isPlayerEliminated() ? 0 : 1);
+			}
+			else if (action < 10) {
+				p = createPlayer(nextId++);
+				playerData.put(p.getId(), p);
+			}
+			else {
+				if (playerData.size() > 10) {
+					playerData.remove(p.getId());
+					leaderboard.remove(p.getId());
+					assertEquals(0, leaderboard.getRank(p.getId()));
+				}
+				assertMatchesFullSort(leaderboard, playerData, "step " + step);
+				continue;
+			}
+			leaderboard.update(p);
+			assertMatchesFullSort(leaderboard, playerData, "step " + step);
+		}
+	}
+}
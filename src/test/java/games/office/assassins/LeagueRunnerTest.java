@@ -0,0 +1,37 @@
+package games.office.assassins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that leagues whose e-mails would be written to the same file are refused before any of them run.
+ */
+public class LeagueRunnerTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void leaguesWithTheSameNameAreRefused() throws Exception {
+		File outputDirectory = folder.newFolder("emails");
+		LeagueRunner runner = new LeagueRunner(2);
+		runner.setOutputDirectory(outputDirectory.getPath());
+
+		String officeA = new File(folder.newFolder("officeA"), "game.db").getPath();
+		String officeB = new File(folder.newFolder("officeB"), "Game.db").getPath();
+		assertFalse(runner.runLeagues(Arrays.asList(officeA, officeB)));
+
+		assertEquals(0, runner.getResults().size());
+		assertEquals(0, outputDirectory.list().length);
+		// Nothing was opened, so neither database was created
+		assertFalse(new File(officeA).exists());
+		assertFalse(new File(officeB).exists());
+	}
+}
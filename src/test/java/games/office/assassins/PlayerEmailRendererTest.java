@@ -0,0 +1,107 @@
+package games.office.assassins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * Checks that cached weekly breakdowns follow changes to the score data, including removed kills, and that the cache
+ * keeps one entry per week.
+ */
+public class PlayerEmailRendererTest {
+	private HashMap<Integer, Player> playerData;
+
+	private PlayerEmailRenderer renderer;
+
+	@Before
+	public void createPlayers() {
+		playerData = new HashMap();
+		for (int id = 1; id <= 3; ++id) {
+			Player p = new Player();
+			p.setId(id);
+			p.setFirstName("Player");
+			p.setLastName(Integer.toString(id));
+			playerData.put(id, p);
+		}
+		renderer = new PlayerEmailRenderer(playerData, Arrays.asList(1, 2));
+	}
+
+	private String renderWeek(int playerId, int weekNumber) throws Exception {
+		StringWriter out = new StringWriter();
+		renderer.writeWeekSummary(out, playerData.get(playerId), weekNumber);
+		return out.toString();
+	}
+
+	private static Score killScore(int targetId) {
+		Score score = new Score();
+		score.addTargetKilled(targetId);
+		return score;
+	}
+
+	@Test
+	public void modifiedScoreIsRenderedAgain() throws Exception {
+		Score score = killScore(2);
+		playerData.get(1).addScoreData(1, score);
+		assertEquals("Week number 1:\nKills / Deaths / Score == 1 / 0 / 1\nYou successfully killed the following targets:\n\t- Player 2\n", renderWeek(1, 1));
+
+		score.addTargetKilled(3);
+		assertEquals("Week number 1:\nKills / Deaths / Score == 2 / 0 / 2\nYou successfully killed the following targets:\n\t- Player 2\n\t- Player 3\n", renderWeek(1, 1));
+		assertEquals(1, renderer.getCachedWeekCount());
+	}
+
+	@Test
+	public void removedKillLeavesTheWeekInStepWithTheTotals() throws Exception {
+		Score assassinScore = new Score();
+		assassinScore.addTargetKilled(2);
+		assassinScore.addTargetKilled(3);
+		playerData.get(1).addScoreData(1, assassinScore);
+		Score targetScore = new Score();
+		targetScore.addAssassinKiller(1);
+		playerData.get(3).addScoreData(1, targetScore);
+
+		StringWriter out = new StringWriter();
+		renderer.writeScoreSummary(out, playerData.get(1));
+		assertEquals("Total Kills: 2\nTotal Deaths: 0\nTotal Score: 2\n\n=== Weekly Breakdown ===\n\n" +
+			"Week number 1:\nKills / Deaths / Score == 2 / 0 / 2\nYou successfully killed the following targets:\n\t- Player 2\n\t- Player 3\n\n" +
+			"Week number 2:\nKills / Deaths / Score == 0 / 0 / 0\n\n", out.toString());
+
+		// The kill of player 3 is disputed and removed after the week was cached
+		assertTrue(assassinScore.removeTargetKilled(3));
+		assertTrue(targetScore.removeAssassinKiller(1));
+
+		out = new StringWriter();
+		renderer.writeScoreSummary(out, playerData.get(1));
+		assertEquals("Total Kills: 1\nTotal Deaths: 0\nTotal Score: 1\n\n=== Weekly Breakdown ===\n\n" +
+			"Week number 1:\nKills / Deaths / Score == 1 / 0 / 1\nYou successfully killed the following targets:\n\t- Player 2\n\n" +
+			"Week number 2:\nKills / Deaths / Score == 0 / 0 / 0\n\n", out.toString());
+		assertEquals("Week number 1:\nKills / Deaths / Score == 0 / 0 / 0\n", renderWeek(3, 1));
+	}
+
+	@Test
+	public void replacedScoreTakesOverItsWeeksEntry() throws Exception {
+		for (int i = 0; i < 10; ++i) {
+			playerData.get(1).addScoreData(1, killScore(2 + i % 2));
+			assertEquals("Week number 1:\nKills / Deaths / Score == 1 / 0 / 1\nYou successfully killed the following targets:\n\t- Player " + (2 + i % 2) + "\n", renderWeek(1, 1));
+		}
+		assertEquals(1, renderer.getCachedWeekCount());
+
+		playerData.get(1).addScoreData(2, killScore(3));
+		playerData.get(2).addScoreData(1, killScore(3));
+		renderWeek(1, 2);
+		renderWeek(2, 1);
+		assertEquals(3, renderer.getCachedWeekCount());
+
+		renderer.clearCache();
+		assertEquals(0, renderer.getCachedWeekCount());
+	}
+}
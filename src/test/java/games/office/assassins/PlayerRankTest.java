@@ -0,0 +1,227 @@
+package games.office.assassins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * Checks the top-K, bottom-K, rank-of-player and tier split queries of PlayerRank against a full sort of the same
+ * players, and ranks streamed from the database against ranks of the loaded game data. Totals are drawn from a small
+ * range so that many players are tied.
+ */
+public class PlayerRankTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final int PLAYER_COUNT = 200;
+
+	private HashMap<Integer, Player> playerData;
+
+	/** The active players, fully sorted by PlayerRank.RANK_ORDER */
+	private List<Player> sortedActivePlayers;
+
+	@Before
+	public void createPlayers() {
+		Random random = new Random(6);
+		playerData = new HashMap();
+		for (int i = 0; i < PLAYER_COUNT; ++i) {
+			// Spread the IDs out so that the map does not hold the players in ID order
+			int id = 1 + random.nextInt(100000);
+			while (playerData.containsKey(id)) {
+				id = 1 + random.nextInt(100000);
+			}
+			Player p = new Player();
+			p.setId(id);
+			if (random.nextInt(5) == 0) {
+				p.setWeekEliminated(1);
+			}
+
+			Score score = new Score();
+			int kills = random.nextInt(4);
+			int deaths = random.nextInt(3);
+			for (int k = 0; k < kills; ++k) {
+				score.addTargetKilled(k);
+			}
+			for (int d = 0; d < deaths; ++d) {
+				score.addAssassinKiller(d);
+			}
+			p.addScoreData(1, score);
+			playerData.put(id, p);
+		}
+
+		sortedActivePlayers = new ArrayList();
+		for (Player p : playerData.values()) {
+			if (p.isPlayerEliminated() == false) {
+				sortedActivePlayers.add(p);
+			}
+		}
+		Collections.sort(sortedActivePlayers, PlayerRank.RANK_ORDER);
+	}
+
+	/** Describes each player's totals, which must match between any two correct rankings even where ties differ */
+	private static List<String> totals(List<Player> players) {
+		List<String> totals = new ArrayList();
+		for (Player p : players) {
+			totals.add(p.getTotalScore() + "/" + p.getTotalKills() + "/" + p.getTotalDeaths());
+		}
+		return totals;
+	}
+
+	private static int[] ids(List<Player> players) {
+		int[] ids = new int[players.size()];
+		for (int i = 0; i < ids.length; ++i) {
+			ids[i] = players.get(i).getId();
+		}
+		return ids;
+	}
+
+	@Test
+	public void topAndBottomPlayersMatchAFullSort() {
+		PlayerRank ranking = new PlayerRank(playerData, true);
+		int n = sortedActivePlayers.size();
+
+		// The sort used by assignPlayerRanks(), which may order tied players differently
+		List<Player> naturalOrder = new ArrayList(sortedActivePlayers);
+		Collections.shuffle(naturalOrder, new Random(1));
+		Collections.sort(naturalOrder);
+
+		for (int k : new int[] {0, 1, 2, 17, n / 2, n - 1, n, n + 10}) {
+			int count = Math.min(Math.max(k, 0), n);
+			List<Player> expectedTop = sortedActivePlayers.subList(0, count);
+			List<Player> expectedBottom = sortedActivePlayers.subList(n - count, n);
+
+			List<Player> top = ranking.getTopPlayers(k);
+			List<Player> bottom = ranking.getBottomPlayers(k);
+			assertEquals("top " + k, Arrays.toString(ids(expectedTop)), Arrays.toString(ids(top)));
+			assertEquals("bottom " + k, Arrays.toString(ids(expectedBottom)), Arrays.toString(ids(bottom)));
+			assertEquals("top " + k, totals(naturalOrder.subList(0, count)), totals(top));
+			assertEquals("bottom " + k, totals(naturalOrder.subList(n - count, n)), totals(bottom));
+		}
+		assertEquals(0, ranking.getTopPlayers(-1).size());
+	}
+
+	@Test
+	public void playerRankMatchesAFullSort() {
+		PlayerRank ranking = new PlayerRank(playerData, true);
+
+		// Tied players share the rank of the first of them in the sorted list
+		for (int i = 0; i < sortedActivePlayers.size(); ++i) {
+			int firstTied = i;
+			while (firstTied > 0 && sortedActivePlayers.get(firstTied - 1).compareTo(sortedActivePlayers.get(i)) == 0) {
+				firstTied--;
+			}
+			assertEquals(firstTied + 1, ranking.getPlayerRank(sortedActivePlayers.get(i).getId()));
+		}
+
+		for (Player p : playerData.values()) {
+			if (p.isPlayerEliminated()) {
+				assertEquals(0, ranking.getPlayerRank(p.getId()));
+			}
+		}
+		assertEquals(0, ranking.getPlayerRank(-5));
+	}
+
+	@Test
+	public void partitionedTopPlayersAreTheFirstOfAFullSort() {
+		int n = sortedActivePlayers.size();
+		for (int k : new int[] {0, 1, 2, 17, n / 2, n - 1, n, n + 10}) {
+			int count = Math.min(k, n);
+			int[] expectedTop = ids(sortedActivePlayers.subList(0, count));
+			Arrays.sort(expectedTop);
+
+			for (long seed = 0; seed < 5; ++seed) {
+				// The same players given in a different order must be split the same way
+				List<Player> shuffled = new ArrayList(sortedActivePlayers);
+				Collections.shuffle(shuffled, new Random(seed));
+				Player[] players = shuffled.toArray(new Player[0]);
+				PlayerRank.partitionTopPlayers(players, k);
+
+				int[] top = ids(Arrays.asList(players).subList(0, count));
+				Arrays.sort(top);
+				assertEquals("k = " + k, Arrays.toString(expectedTop), Arrays.toString(top));
+				for (int i = count; i < n; ++i) {
+					for (int j = 0; j < count; ++j) {
+						assertTrue(PlayerRank.RANK_ORDER.compare(players[j], players[i]) < 0);
+					}
+				}
+
+				// Partitioning the same order again gives the same result
+				Player[] again = shuffled.toArray(new Player[0]);
+				PlayerRank.partitionTopPlayers(again, k);
+				assertEquals(Arrays.toString(ids(Arrays.asList(players))), Arrays.toString(ids(Arrays.asList(again))));
+			}
+		}
+	}
+
+	/** Describes a player's place in a ranking, which must match between two correct rankings even where ties differ */
+	private static String place(int rank, int score, int kills, int deaths) {
+		return rank + ": " + score + "/" + kills + "/" + deaths;
+	}
+
+	@Test
+	public void streamedRanksMatchTheLoadedGameData() throws Exception {
+		Random random = new Random(24);
+		try (TestGameDatabase database = new TestGameDatabase(folder.newFile("ranks.db"))) {
+			for (int id = 1; id <= 80; ++id) {
+				database.addPlayer(id, (random.nextInt(4) == 0) ? 1 + random.nextInt(3) : 0);
+			}
+			for (int i = 0; i < 300; ++i) {
+				// Some kills are made after the assassin's elimination week, and some involve players that do not exist
+				int assassinId = (random.nextInt(20) == 0) ? 500 + i : 1 + random.nextInt(80);
+				int targetId = (random.nextInt(20) == 0) ? 900 + i : 1 + random.nextInt(80);
+				database.addKill(assassinId, targetId, 1 + random.nextInt(4));
+			}
+			for (int i = 0; i < 40; ++i) {
+				database.addBonus(1 + random.nextInt(80), 1 + random.nextInt(4), (i % 4 == 0) ? null : random.nextInt(5) - 1);
+			}
+
+			for (boolean ignoreEliminated : new boolean[] {false, true}) {
+				HashMap<Integer, Player> playerData = GameMaster.loadGameData(database.connection);
+				if (ignoreEliminated) {
+					playerData.values().removeIf(Player::isPlayerEliminated);
+				}
+				PlayerRank.assignPlayerRanks(playerData);
+				List<Player> expected = new ArrayList(playerData.values());
+				Collections.sort(expected, PlayerRank.RANK_ORDER);
+
+				List<String> expectedPlaces = new ArrayList();
+				TreeMap<Integer, String> expectedByRank = new TreeMap();
+				int activeRank = 1;
+				int eliminatedRank = -1;
+				for (Player p : expected) {
+					int rank = p.isPlayerEliminated() ? eliminatedRank-- : activeRank++;
+					expectedPlaces.add(p.getId() + " " + place(rank, p.getTotalScore(), p.getTotalKills(), p.getTotalDeaths()));
+				}
+				// assignPlayerRanks() may order tied players differently, but gives each rank the same totals
+				for (Player p : playerData.values()) {
+					expectedByRank.put(p.getRank(), place(p.getRank(), p.getTotalScore(), p.getTotalKills(), p.getTotalDeaths()));
+				}
+
+				List<String> streamedPlaces = new ArrayList();
+				TreeMap<Integer, String> streamedByRank = new TreeMap();
+				assertTrue(PlayerRank.streamPlayerRanks(database.connection, ignoreEliminated, row -> {
+					streamedPlaces.add(row.getId() + " " + place(row.getRank(), row.getScore(), row.getKills(), row.getDeaths()));
+					streamedByRank.put(row.getRank(), place(row.getRank(), row.getScore(), row.getKills(), row.getDeaths()));
+				}));
+
+				assertEquals(expectedPlaces, streamedPlaces);
+				assertEquals(expectedByRank, streamedByRank);
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package games.office.assassins;
+
+import java.io.File;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import games.office.assassins.model.Bonus;
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * A small game database for tests, with the same tables as the real game databases, and a way to compare loaded
+ * player data.
+ */
+class TestGameDatabase implements AutoCloseable {
+	/** The database file */
+	final File file;
+
+	/** An open connection to the database */
+	final Connection connection;
+
+	TestGameDatabase(File databaseFile) throws SQLException {
+		file = databaseFile;
+		connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getPath());
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE players(ID INTEGER PRIMARY KEY, FirstName varchar(255), LastName varchar(255), Email varchar(255), WeekEliminated INT)");
+			statement.execute("CREATE TABLE kills(id int primary key, AssassinID int, TargetId int, WeekNumber int)");
+			statement.execute("CREATE TABLE bonuses(id int primary key, AssassinID int, TargetId int, WeekNumber int, BonusPoints int, BonusName varchar(255), BonusDescription varchar(255))");
+		}
+	}
+
+	void addPlayer(int id, int weekEliminated) throws SQLException {
+		try (PreparedStatement insert = connection.prepareStatement("INSERT INTO players (ID, FirstName, LastName, Email, WeekEliminated) VALUES (?, ?, ?, ?, ?)")) {
+			insert.setInt(1, id);
+			insert.setString(2, "Player");
+			insert.setString(3, "P" + id);
+			insert.setString(4, "p" + id + "@example.com");
+			insert.setInt(5, weekEliminated);
+			insert.executeUpdate();
+		}
+	}
+
+	void addKill(int assassinId, int targetId, int weekNumber) throws SQLException {
+		try (PreparedStatement insert = connection.prepareStatement("INSERT INTO kills (AssassinID, TargetId, WeekNumber) VALUES (?, ?, ?)")) {
+			insert.setInt(1, assassinId);
+			insert.setInt(2, targetId);
+			insert.setInt(3, weekNumber);
+			insert.executeUpdate();
+		}
+	}
+
+	/** Adds a bonus, which has no points if points is null */
+	void addBonus(int assassinId, int weekNumber, Integer points) throws SQLException {
+		try (PreparedStatement insert = connection.prepareStatement("INSERT INTO bonuses (AssassinID, TargetId, WeekNumber, BonusPoints, BonusName, BonusDescription) VALUES (?, 0, ?, ?, ?, ?)")) {
+			insert.setInt(1, assassinId);
+			insert.setInt(2, weekNumber);
+			if (points == null) {
+				insert.setNull(3, Types.INTEGER);
+			}
+			else {
+				insert.setInt(3, points);
+			}
+			insert.setString(4, "Bonus " + points);
+			insert.setString(5, "Worth " + points);
+			insert.executeUpdate();
+		}
+	}
+
+	@Override
+	public void close() throws SQLException {
+		connection.close();
+	}
+
+	/**
+	 * Describes every player's totals and weekly kills, deaths and bonuses in player ID order, so that two loads of the
+	 * same game can be compared with assertEquals
+	 */
+	static String describe(HashMap<Integer, Player> playerData) {
+		StringBuilder description = new StringBuilder();
+		for (Player p : new TreeMap<Integer, Player>(playerData).values()) {
+			description.append(p.getId()).append(" eliminated ").append(p.getWeekEliminated()).append(": ")
+				.append(p.getTotalScore()).append('/').append(p.getTotalKills()).append('/').append(p.getTotalDeaths()).append('\n');
+			for (int i = 0; i < p.getWeekCount(); ++i) {
+				Score score = p.getWeekScore(i);
+				description.append("  week ").append(p.getWeekNumber(i)).append(" killed ").append(score.getTargetPlayerIds())
+					.append(" killed by ").append(score.getAssassinPlayerIds()).append(" bonuses");
+				for (Bonus bonus : score.getBonuses()) {
+					description.append(' ').append(bonus.getBonusName()).append('=').append(bonus.getBonusPoints());
+				}
+				description.append('\n');
+			}
+		}
+		return description.toString();
+	}
+}
@@ -0,0 +1,216 @@
+package games.office.assassins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import java.nio.file.Files;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.office.assassins.assignment.AssignmentSearch;
+import games.office.assassins.assignment.PairingHistory;
+import games.office.assassins.assignment.TargetAssignmentEngine;
+import games.office.assassins.metrics.Metrics;
+import games.office.assassins.metrics.Stage;
+import games.office.assassins.metrics.StageMetrics;
+import games.office.assassins.metrics.TestMetrics;
+import games.office.assassins.assignment.AssignmentGraph;
+import games.office.assassins.model.Player;
+import games.office.assassins.model.Score;
+
+/**
+ * Checks that every target assignment is timed exactly once, including assignments that give up early, that players
+ * tied at a tier boundary always land in the same tier, that the saved seed of a searched assignment replays it, and
+ * that e-mails are written the same way however many threads render them.
+ */
+public class WeeklySummaryAssignmentTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private WeeklySummaryAssignment summary;
+
+	private StageMetrics assignMetrics;
+
+	@Before
+	public void createPlayers() {
+		HashMap<Integer, Player> playerData = new HashMap();
+		for (int id = 1; id <= 10; ++id) {
+			Player p = new Player();
+			p.setId(id);
+			playerData.put(id, p);
+		}
+		summary = new WeeklySummaryAssignment(playerData, 3);
+
+		Metrics.enable();
+		assignMetrics = Metrics.getStageMetrics(Stage.ASSIGN_TARGETS);
+	}
+
+	@After
+	public void disableMetrics() {
+		TestMetrics.disable();
+	}
+
+	@Test
+	public void completedAssignmentRecordsItsPairings() {
+		summary.assignRandomTargets();
+		assertEquals(1, assignMetrics.getCount());
+		assertEquals(30, assignMetrics.getRowCount());
+	}
+
+	@Test
+	public void abandonedAssignmentsAreStillTimed() {
+		assertFalse(summary.assignTieredRandomTargets(5));
+		assertFalse(summary.assignNearbyRankTargets(0));
+		assertEquals(-1, summary.assignConstrainedTargets(new TargetAssignmentEngine(2)));
+		// 10 active players can not be split into groups of 4
+		summary.assignMutualTargets();
+		assertEquals(4, assignMetrics.getCount());
+	}
+
+	/** Returns true if every pairing of the assignment is between two players of the same tier */
+	private static boolean keepsTiers(AssignmentGraph assignments, HashMap<Integer, Player> playerData, int topTierMaxId) {
+		for (int assassinId : playerData.keySet()) {
+			for (int targetId : assignments.getTargetsOf(assassinId)) {
+				if ((assassinId <= topTierMaxId) != (targetId <= topTierMaxId)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Test
+	public void playersTiedAtTheTierBoundaryAreSplitByLowerId() {
+		// Players 1-6 have a score of 2, players 7-14 a score of 1 and players 15-20 no score. The top half is players
+		// 1-6 and the four players tied on a score of 1 with the lowest IDs
+		HashMap<Integer, Player> playerData = new HashMap();
+		for (int id = 1; id <= 20; ++id) {
+			Player p = new Player();
+			p.setId(id);
+			int kills = (id <= 6) ? 2 : (id <= 14) ? 1 : 0;
+			if (kills > 0) {
+				Score score = new Score();
+				for (int i = 0; i < kills; ++i) {
+					score.addTargetKilled(1000 + i);
+				}
+				p.addScoreData(1, score);
+			}
+			playerData.put(id, p);
+		}
+
+		WeeklySummaryAssignment tiered = new WeeklySummaryAssignment(playerData, 3);
+		for (int run = 0; run < 20; ++run) {
+			tiered.assignTieredRandomTargets();
+			assertTrue(keepsTiers(tiered.getTargetAssignments(), playerData, 10));
+			assertTrue(tiered.assignTieredRandomTargets(2));
+			assertTrue(keepsTiers(tiered.getTargetAssignments(), playerData, 10));
+		}
+	}
+
+	@Test
+	public void savedSeedReplaysTheSearchedAssignment() throws Exception {
+		AssignmentSearch search = new AssignmentSearch(new TargetAssignmentEngine(3));
+		search.setThreadCount(4);
+		assertTrue(summary.assignSearchedTargets(search) >= 0);
+		AssignmentGraph assigned = summary.getTargetAssignments();
+
+		try (Connection connection = DriverManager.getConnection("jdbc:sqlite:" + folder.newFile("seed.db").getPath())) {
+			assertTrue(summary.saveTargetAssignments(connection, 1));
+			Long seed = PairingHistory.loadAssignmentSeed(connection, 1);
+			assertEquals(summary.getAssignmentSeed(), seed);
+
+			// Replay the search on a single thread from the saved seed
+			search.setThreadCount(1);
+			assertTrue(summary.assignSearchedTargets(search, seed) >= 0);
+			for (int id = 1; id <= 10; ++id) {
+				assertArrayEquals(assigned.getTargetsOf(id), summary.getTargetAssignments().getTargetsOf(id));
+			}
+
+			// Assignments made without a search replace the seed saved for the week
+			summary.assignRandomTargets();
+			assertNull(summary.getAssignmentSeed());
+			assertTrue(summary.saveTargetAssignments(connection, 1));
+			assertNull(PairingHistory.loadAssignmentSeed(connection, 1));
+		}
+	}
+
+	@Test
+	public void emailThreadCountDoesNotChangeTheOutput() throws Exception {
+		// More players than one block of e-mails, over several weeks with some players eliminated
+		Random random = new Random(12);
+		HashMap<Integer, Player> playerData = new HashMap();
+		for (int id = 1; id <= 2500; ++id) {
+			Player p = new Player();
+			p.setId(id);
+			p.setFirstName("Player");
+			p.setLastName(Integer.toString(id));
+			p.setEmail("player" + id + "@example.com");
+			if (random.nextInt(5) == 0) {
+				p.setWeekEliminated(1 + random.nextInt(3));
+			}
+			playerData.put(id, p);
+		}
+		for (int week = 1; week <= 3; ++week) {
+			for (Player p : playerData.values()) {
+				Score score = new Score();
+				for (int k = random.nextInt(3); k > 0; --k) {
+					score.addTargetKilled(1 + random.nextInt(2500));
+				}
+				if (random.nextBoolean()) {
+					score.addAssassinKiller(1 + random.nextInt(2500));
+				}
+				p.addScoreData(week, score);
+			}
+		}
+
+		for (EmailOutputMode mode : EmailOutputMode.values()) {
+			WeeklySummaryAssignment writer = new WeeklySummaryAssignment(playerData, 3);
+			writer.assignRandomTargets();
+			writer.setOutputMode(mode);
+			writer.setEmailDate(ZonedDateTime.of(2017, 1, 1, 9, 0, 0, 0, ZoneOffset.UTC));
+
+			File single = new File(folder.getRoot(), mode + "-1");
+			writer.setEmailThreadCount(1);
+			writer.setOutputFilename(single.getPath());
+			assertTrue(writer.writePlayerEmails(4));
+
+			File parallel = new File(folder.getRoot(), mode + "-4");
+			writer.clearEmailCache();
+			writer.setEmailThreadCount(4);
+			writer.setOutputFilename(parallel.getPath());
+			assertTrue(writer.writePlayerEmails(4));
+
+			if (mode == EmailOutputMode.EML_PER_PLAYER) {
+				String[] names = single.list();
+				assertEquals(names.length, parallel.list().length);
+				assertTrue(names.length > 1000);
+				for (String name : names) {
+					assertArrayEquals(name, Files.readAllBytes(new File(single, name).toPath()), Files.readAllBytes(new File(parallel, name).toPath()));
+				}
+			}
+			else {
+				byte[] expected = Files.readAllBytes(single.toPath());
+				assertTrue(expected.length > 100000);
+				assertArrayEquals(mode.toString(), expected, Files.readAllBytes(parallel.toPath()));
+			}
+		}
+	}
+}
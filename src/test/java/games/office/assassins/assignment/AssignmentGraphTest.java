@@ -0,0 +1,159 @@
+package games.office.assassins.assignment;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks the forward and reverse lookups of an assignment graph, and that saving it to a file or the database and
+ * loading it again keeps every pairing and the order of each assassin's targets. Damaged files must be rejected.
+ */
+public class AssignmentGraphTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Connection connection;
+
+	/** Targets that are deliberately not in ascending order, as they are listed in e-mails */
+	private AssignmentGraph graph;
+
+	@Before
+	public void createGraph() throws Exception {
+		connection = DriverManager.getConnection("jdbc:sqlite:" + folder.newFile("graph.db").getPath());
+		graph = new AssignmentGraph.Builder()
+			.addPairing(30, 20).addPairing(30, 10)
+			.addPairing(10, 40).addPairing(10, 30)
+			.addPairing(20, 30).addPairing(20, 40)
+			.addPairing(40, 20).addPairing(40, 10)
+			.build();
+	}
+
+	@After
+	public void closeDatabase() throws Exception {
+		connection.close();
+	}
+
+	/** Checks that a graph holds exactly the pairings of the test graph, with each assassin's targets in order */
+	private static void assertSameAsTestGraph(AssignmentGraph loaded) {
+		assertNotNull(loaded);
+		assertEquals(4, loaded.getPlayerCount());
+		assertEquals(8, loaded.getPairingCount());
+		assertArrayEquals(new int[] {20, 10}, loaded.getTargetsOf(30));
+		assertArrayEquals(new int[] {40, 30}, loaded.getTargetsOf(10));
+		assertArrayEquals(new int[] {30, 40}, loaded.getTargetsOf(20));
+		assertArrayEquals(new int[] {20, 10}, loaded.getTargetsOf(40));
+		assertArrayEquals(new int[] {30, 40}, loaded.getAssassinsOf(10));
+		assertArrayEquals(new int[] {30, 40}, loaded.getAssassinsOf(20));
+		assertArrayEquals(new int[] {10, 20}, loaded.getAssassinsOf(30));
+		assertArrayEquals(new int[] {10, 20}, loaded.getAssassinsOf(40));
+	}
+
+	@Test
+	public void lookupsFollowBothDirections() {
+		assertSameAsTestGraph(graph);
+		for (int id : new int[] {10, 20, 30, 40}) {
+			assertEquals(2, graph.getTargetCount(id));
+			assertEquals(2, graph.getAssassinCount(id));
+		}
+		assertTrue(graph.hasPairing(30, 10));
+		assertFalse(graph.hasPairing(10, 20));
+
+		// Players outside the graph, and players that are only targets
+		assertNull(graph.getTargetsOf(50));
+		assertEquals(0, graph.getAssassinsOf(50).length);
+		assertEquals(0, graph.getTargetCount(5));
+		assertFalse(graph.hasPairing(50, 10));
+		AssignmentGraph oneWay = new AssignmentGraph.Builder().addPairing(1, 2).build();
+		assertNull(oneWay.getTargetsOf(2));
+		assertArrayEquals(new int[] {1}, oneWay.getAssassinsOf(2));
+	}
+
+	@Test
+	public void fileRoundTripKeepsTheGraph() throws Exception {
+		String filename = new File(folder.getRoot(), "week1.graph").getPath();
+		assertTrue(graph.writeToFile(filename));
+		assertSameAsTestGraph(AssignmentGraph.readFromFile(filename));
+		assertFalse(new File(filename + ".tmp").exists());
+
+		AssignmentGraph empty = new AssignmentGraph.Builder().build();
+		assertTrue(empty.writeToFile(filename));
+		assertEquals(0, AssignmentGraph.readFromFile(filename).getPairingCount());
+		assertNull(AssignmentGraph.readFromFile(new File(folder.getRoot(), "missing.graph").getPath()));
+	}
+
+	@Test
+	public void damagedFilesAreRejected() throws Exception {
+		String filename = new File(folder.getRoot(), "week1.graph").getPath();
+
+		// Truncated
+		assertTrue(graph.writeToFile(filename));
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+			file.setLength(file.length() - 4);
+		}
+		assertNull(AssignmentGraph.readFromFile(filename));
+
+		// Written by another version
+		assertTrue(graph.writeToFile(filename));
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+			file.writeInt(99);
+		}
+		assertNull(AssignmentGraph.readFromFile(filename));
+
+		// Player IDs out of order: the second of the 4 IDs after the 3 header ints
+		assertTrue(graph.writeToFile(filename));
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+			file.seek(4 * 4);
+			file.writeInt(5);
+		}
+		assertNull(AssignmentGraph.readFromFile(filename));
+
+		// A target that is not one of the players: the first target after the IDs and the 5 start positions
+		assertTrue(graph.writeToFile(filename));
+		try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
+			file.seek(4 * (3 + 4 + 5));
+			file.writeInt(99);
+		}
+		assertNull(AssignmentGraph.readFromFile(filename));
+	}
+
+	@Test
+	public void databaseRoundTripKeepsTheTargetOrder() {
+		assertTrue(graph.saveToDatabase(connection, 3));
+		assertSameAsTestGraph(AssignmentGraph.loadFromDatabase(connection, 3));
+		assertEquals(0, AssignmentGraph.loadFromDatabase(connection, 4).getPairingCount());
+	}
+
+	@Test
+	public void tableWithoutOrdinalsIsLoadedAndUpgraded() throws Exception {
+		try (Statement dbStatement = connection.createStatement()) {
+			dbStatement.execute("CREATE TABLE assignments(WeekNumber int, AssassinID int, TargetId int, PRIMARY KEY (WeekNumber, AssassinID, TargetId))");
+			dbStatement.execute("INSERT INTO assignments VALUES (1, 1, 3), (1, 1, 2), (1, 2, 1)");
+		}
+
+		AssignmentGraph old = AssignmentGraph.loadFromDatabase(connection, 1);
+		assertArrayEquals(new int[] {2, 3}, old.getTargetsOf(1));
+		assertArrayEquals(new int[] {1}, old.getTargetsOf(2));
+
+		// Saving another week adds the column and keeps the weeks saved before it
+		assertTrue(graph.saveToDatabase(connection, 2));
+		assertSameAsTestGraph(AssignmentGraph.loadFromDatabase(connection, 2));
+		assertArrayEquals(new int[] {2, 3}, AssignmentGraph.loadFromDatabase(connection, 1).getTargetsOf(1));
+		assertEquals(3 + 8, PairingHistory.loadFromDatabase(connection, 3, false).size());
+	}
+}
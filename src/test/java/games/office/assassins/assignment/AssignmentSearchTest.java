@@ -0,0 +1,71 @@
+package games.office.assassins.assignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+
+/**
+ * Checks that a search gives the same assignment for the same seed however many threads make its candidates.
+ */
+public class AssignmentSearchTest {
+	private static final int PLAYER_COUNT = 300;
+
+	private static AssignmentSearch createSearch(int threadCount) {
+		SameTeamConstraint teams = new SameTeamConstraint();
+		for (int id = 1; id <= PLAYER_COUNT; ++id) {
+			teams.setTeam(id * 7, id % 9);
+		}
+		TargetAssignmentEngine engine = new TargetAssignmentEngine(3);
+		engine.addConstraint(teams);
+
+		AssignmentSearch search = new AssignmentSearch(engine);
+		search.setCandidateCount(16);
+		search.setThreadCount(threadCount);
+		return search;
+	}
+
+	private static int[] playerIds() {
+		int[] playerIds = new int[PLAYER_COUNT];
+		for (int i = 0; i < PLAYER_COUNT; ++i) {
+			playerIds[i] = (i + 1) * 7;
+		}
+		return playerIds;
+	}
+
+	/** Describes every pairing of an assignment in order */
+	private static String describe(TargetAssignment assignment) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < assignment.size(); ++i) {
+			text.append(assignment.getPlayerId(i)).append(':');
+			for (int t = 0; t < assignment.getTargetsPerPlayer(); ++t) {
+				text.append(' ').append(assignment.getTargetId(i, t));
+			}
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	@Test
+	public void threadCountDoesNotChangeTheAssignment() {
+		int[] playerIds = playerIds();
+		for (long seed : new long[] {1, 42, -7}) {
+			AssignmentSearch single = createSearch(1);
+			AssignmentSearch parallel = createSearch(4);
+			TargetAssignment first = single.search(playerIds, seed, id -> id);
+			TargetAssignment second = parallel.search(playerIds, seed, id -> id);
+			assertNotNull(first);
+			assertNotNull(second);
+
+			assertEquals("seed " + seed, describe(first), describe(second));
+			assertEquals(single.getLastCandidateIndex(), parallel.getLastCandidateIndex());
+			assertEquals(single.getLastScore().toString(), parallel.getLastScore().toString());
+		}
+
+		// A different seed gives a different assignment
+		TargetAssignment first = createSearch(4).search(playerIds, 1, id -> id);
+		TargetAssignment other = createSearch(4).search(playerIds, 2, id -> id);
+		assertFalse(describe(first).equals(describe(other)));
+	}
+}
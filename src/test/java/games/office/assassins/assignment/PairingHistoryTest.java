@@ -0,0 +1,62 @@
+package games.office.assassins.assignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that saving a week's assignments replaces the pairings saved for that week before, and leaves other weeks.
+ */
+public class PairingHistoryTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Connection connection;
+
+	@Before
+	public void createDatabase() throws Exception {
+		connection = DriverManager.getConnection("jdbc:sqlite:" + folder.newFile("history.db").getPath());
+	}
+
+	@After
+	public void closeDatabase() throws Exception {
+		connection.close();
+	}
+
+	@Test
+	public void savingAWeekAgainReplacesItsPairings() {
+		assertTrue(PairingHistory.saveAssignments(connection, 1, new int[] {1, 2, 3}, new int[] {2, 3, 1}, 3));
+		assertTrue(PairingHistory.saveAssignments(connection, 2, new int[] {1, 2}, new int[] {4, 4}, 2));
+
+		// Week 1 is reassigned and saved again
+		assertTrue(PairingHistory.saveAssignments(connection, 1, new int[] {1, 3}, new int[] {3, 2}, 2));
+
+		AssignmentGraph week1 = AssignmentGraph.loadFromDatabase(connection, 1);
+		assertEquals(2, week1.getPairingCount());
+		assertTrue(week1.hasPairing(1, 3));
+		assertTrue(week1.hasPairing(3, 2));
+		assertFalse(week1.hasPairing(1, 2));
+		assertFalse(week1.hasPairing(2, 3));
+
+		AssignmentGraph week2 = AssignmentGraph.loadFromDatabase(connection, 2);
+		assertEquals(2, week2.getPairingCount());
+
+		PairingHistory history = PairingHistory.loadFromDatabase(connection, 3, false);
+		assertEquals(4, history.size());
+		assertFalse(history.hasPaired(1, 2));
+		assertFalse(history.hasPaired(2, 3));
+		assertFalse(history.hasPaired(3, 1));
+		assertTrue(history.isAllowed(1, 2));
+		assertFalse(history.isAllowed(1, 3));
+		assertFalse(history.isAllowed(2, 4));
+	}
+}
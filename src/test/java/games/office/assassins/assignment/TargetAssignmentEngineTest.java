@@ -0,0 +1,158 @@
+package games.office.assassins.assignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Checks on seeded rosters that every assignment is k-regular, that players never target themselves, and that the
+ * reported violation count matches the constraints, both when they can all be met and when they cannot.
+ */
+public class TargetAssignmentEngineTest {
+	/** Returns the IDs of a roster of players with gaps between the IDs */
+	private static int[] roster(int playerCount, long seed) {
+		Random random = new Random(seed);
+		HashSet<Integer> used = new HashSet();
+		int[] playerIds = new int[playerCount];
+		for (int i = 0; i < playerCount; ++i) {
+			int id = 1 + random.nextInt(playerCount * 10);
+			while (used.add(id) == false) {
+				id = 1 + random.nextInt(playerCount * 10);
+			}
+			playerIds[i] = id;
+		}
+		return playerIds;
+	}
+
+	/**
+	 * Checks that each player has k distinct targets from the roster, none of them themselves, and is the target of
+	 * exactly k players
+	 */
+	private static void assertKRegular(int[] playerIds, int k, TargetAssignment assignment) {
+		assertEquals(playerIds.length, assignment.size());
+		assertEquals(k, assignment.getTargetsPerPlayer());
+
+		HashSet<Integer> roster = new HashSet();
+		for (int id : playerIds) {
+			roster.add(id);
+		}
+		HashSet<Integer> assigned = new HashSet();
+		HashMap<Integer, Integer> timesTargeted = new HashMap();
+		for (int i = 0; i < assignment.size(); ++i) {
+			int assassinId = assignment.getPlayerId(i);
+			assertTrue(assigned.add(assassinId));
+
+			HashSet<Integer> targets = new HashSet();
+			for (int t = 0; t < k; ++t) {
+				int targetId = assignment.getTargetId(i, t);
+				assertTrue(roster.contains(targetId));
+				assertFalse("Player " + assassinId + " targets themselves", targetId == assassinId);
+				assertTrue("Player " + assassinId + " has target " + targetId + " twice", targets.add(targetId));
+				timesTargeted.merge(targetId, 1, Integer::sum);
+			}
+		}
+		assertEquals(roster, assigned);
+		for (int id : playerIds) {
+			assertEquals("Player " + id + " is targeted the wrong number of times", Integer.valueOf(k), timesTargeted.get(id));
+		}
+	}
+
+	/** Counts the pairings that break a constraint without going through the engine */
+	private static int countViolations(TargetAssignment assignment, AssignmentConstraint... constraints) {
+		int violations = 0;
+		for (int i = 0; i < assignment.size(); ++i) {
+			for (int t = 0; t < assignment.getTargetsPerPlayer(); ++t) {
+				for (AssignmentConstraint constraint : constraints) {
+					if (constraint.isAllowed(assignment.getPlayerId(i), assignment.getTargetId(i, t)) == false) {
+						violations++;
+						break;
+					}
+				}
+			}
+		}
+		return violations;
+	}
+
+	@Test
+	public void unconstrainedAssignmentsAreKRegular() {
+		for (int k = 1; k <= 5; ++k) {
+			int[] playerIds = roster(50 + k, k);
+			TargetAssignment assignment = new TargetAssignmentEngine(k).assign(playerIds, new SplittableRandom(k));
+			assertKRegular(playerIds, k, assignment);
+			assertEquals(0, assignment.getViolationCount());
+		}
+
+		// The smallest roster that can be assigned: every player targets every other player
+		int[] playerIds = roster(4, 9);
+		assertKRegular(playerIds, 3, new TargetAssignmentEngine(3).assign(playerIds, new SplittableRandom(9)));
+		assertNull(new TargetAssignmentEngine(3).assign(roster(3, 9), new SplittableRandom(9)));
+	}
+
+	@Test
+	public void satisfiableConstraintsAreAllMet() {
+		int[] playerIds = roster(500, 15);
+		Random random = new Random(15);
+		SameTeamConstraint teams = new SameTeamConstraint();
+		ForbiddenPairConstraint history = new ForbiddenPairConstraint(true);
+		for (int id : playerIds) {
+			teams.setTeam(id, random.nextInt(10));
+			for (int p = 0; p < 3; ++p) {
+				history.addPair(id, playerIds[random.nextInt(playerIds.length)]);
+			}
+		}
+
+		TargetAssignmentEngine engine = new TargetAssignmentEngine(3);
+		engine.addConstraint(teams);
+		engine.addConstraint(history);
+		TargetAssignment assignment = engine.assign(playerIds, new SplittableRandom(15));
+		assertKRegular(playerIds, 3, assignment);
+		assertEquals(0, assignment.getViolationCount());
+		assertEquals(0, countViolations(assignment, teams, history));
+	}
+
+	@Test
+	public void unsatisfiableConstraintsAreCountedCorrectly() {
+		// 16 of the 20 players are on one team, and each can only be given a target from the 4 others, who can only
+		// be targeted 3 times each. At least 16 * 3 - 4 * 3 = 36 pairings must break the constraint
+		int[] playerIds = roster(20, 24);
+		SameTeamConstraint teams = new SameTeamConstraint();
+		for (int i = 0; i < playerIds.length; ++i) {
+			teams.setTeam(playerIds[i], (i < 16) ? 1 : 2 + i);
+		}
+
+		TargetAssignmentEngine engine = new TargetAssignmentEngine(3);
+		engine.addConstraint(teams);
+		TargetAssignment assignment = engine.assign(playerIds, new SplittableRandom(24));
+		assertKRegular(playerIds, 3, assignment);
+		assertTrue(assignment.getViolationCount() >= 36);
+		assertEquals(countViolations(assignment, teams), assignment.getViolationCount());
+	}
+
+	@Test
+	public void equallySeededAssignmentsAreIdentical() {
+		int[] playerIds = roster(200, 3);
+		SameTeamConstraint teams = new SameTeamConstraint();
+		for (int i = 0; i < playerIds.length; ++i) {
+			teams.setTeam(playerIds[i], i % 7);
+		}
+		TargetAssignmentEngine engine = new TargetAssignmentEngine(4);
+		engine.addConstraint(teams);
+
+		TargetAssignment first = engine.assign(playerIds, new SplittableRandom(77));
+		TargetAssignment second = engine.assign(playerIds, new SplittableRandom(77));
+		for (int i = 0; i < first.size(); ++i) {
+			assertEquals(first.getPlayerId(i), second.getPlayerId(i));
+			for (int t = 0; t < 4; ++t) {
+				assertEquals(first.getTargetId(i, t), second.getTargetId(i, t));
+			}
+		}
+	}
+}
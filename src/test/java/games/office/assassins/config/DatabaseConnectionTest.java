@@ -0,0 +1,116 @@
+package games.office.assassins.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that pooled connections can only be returned to the pool once, so that the single writer is never lent to
+ * two borrowers at the same time.
+ */
+public class DatabaseConnectionTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private DatabaseConnection database;
+
+	@Before
+	public void openDatabase() throws Exception {
+		database = new DatabaseConnection();
+		database.setMaxReaderConnections(2);
+		database.setBorrowTimeoutMillis(100);
+		assertTrue(database.openConnection(folder.newFile("pool.db").getPath()));
+	}
+
+	@After
+	public void closeDatabase() {
+		database.closeConnection();
+	}
+
+	@Test
+	public void closingTheWriterTwiceOnlyReleasesItOnce() throws Exception {
+		PooledConnection first = database.borrowWriter();
+		first.close();
+		first.close();
+
+		PooledConnection second = database.borrowWriter();
+		try {
+			database.borrowWriter();
+			fail("The writer was lent to two borrowers at once");
+		}
+		catch (SQLException e) {
+			// Expected: the writer is still borrowed
+		}
+
+		// Closing the first handle again must not release the second borrower's writer
+		first.close();
+		try {
+			database.borrowWriter();
+			fail("A stale handle released the writer");
+		}
+		catch (SQLException e) {
+			// Expected: the writer is still borrowed
+		}
+		second.close();
+		database.borrowWriter().close();
+	}
+
+	@Test
+	public void closingAReaderTwiceOnlyReturnsItOnce() throws Exception {
+		PooledConnection reader = database.borrowReader();
+		reader.close();
+		reader.close();
+
+		PooledConnection first = database.borrowReader();
+		PooledConnection second = database.borrowReader();
+		assertNotSame(first.getConnection(), second.getConnection());
+		try {
+			database.borrowReader();
+			fail("More readers were lent out than the pool holds");
+		}
+		catch (SQLException e) {
+			// Expected: both readers are borrowed
+		}
+		first.close();
+		second.close();
+	}
+
+	@Test
+	public void connectionsCannotBeUsedAfterTheyAreReturned() throws Exception {
+		PooledConnection writer = database.borrowWriter();
+		writer.prepareStatement("CREATE TABLE kills(AssassinId int, TargetId int, WeekNumber int)").executeUpdate();
+		writer.close();
+		assertTrue(writer.isClosed());
+
+		try {
+			writer.prepareStatement("SELECT COUNT(*) FROM kills");
+			fail("A returned connection prepared a statement");
+		}
+		catch (SQLException e) {
+			// Expected
+		}
+		try {
+			writer.getConnection();
+			fail("A returned connection handed out its JDBC connection");
+		}
+		catch (SQLException e) {
+			// Expected
+		}
+
+		// The statement cache is kept for the next borrower
+		try (PooledConnection next = database.borrowWriter()) {
+			next.prepareStatement("SELECT COUNT(*) FROM kills").executeQuery().close();
+			next.prepareStatement("SELECT COUNT(*) FROM kills").executeQuery().close();
+		}
+		assertEquals(1, database.getStatementCacheHits());
+	}
+}
@@ -0,0 +1,173 @@
+package games.office.assassins.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import games.office.assassins.model.Bonus;
+
+/**
+ * Checks that queued kills and bonuses are written to their tables, that they can be read from another connection
+ * once flushed, that a failed batch is rolled back and written again by the next flush, and that the insert
+ * statements are only prepared once.
+ */
+public class DatabaseWriterTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private String databaseFilename;
+
+	private Connection connection;
+
+	@Before
+	public void createDatabase() throws Exception {
+		databaseFilename = folder.newFile("writer.db").getPath();
+		connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFilename);
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE kills(id int primary key, AssassinID int, TargetId int, WeekNumber int)");
+			statement.execute("CREATE TABLE bonuses(id int primary key, AssassinID int, TargetId int, WeekNumber int, BonusPoints int, BonusName varchar(255), BonusDescription varchar(255))");
+		}
+	}
+
+	@After
+	public void closeDatabase() throws Exception {
+		connection.close();
+	}
+
+	@Test
+	public void bonusWithoutPointsIsWrittenAsNull() throws Exception {
+		Bonus bonus = new Bonus();
+		bonus.setBonusPoints(null);
+		bonus.setBonusName("Witness");
+
+		DatabaseWriter writer = new DatabaseWriter(connection, 10);
+		assertTrue(writer.queueKill(1, 2, 1));
+		assertTrue(writer.queueBonus(1, 1, bonus));
+		assertTrue(writer.flush());
+		assertEquals(2, writer.getCommittedEventCount());
+
+		try (Statement statement = connection.createStatement();
+			 ResultSet results = statement.executeQuery("SELECT COUNT(*), SUM(BonusPoints IS NULL), MIN(TargetId) FROM bonuses")) {
+			assertTrue(results.next());
+			assertEquals(1, results.getInt(1));
+			assertEquals(1, results.getInt(2));
+			assertEquals(0, results.getInt(3));
+		}
+	}
+
+	/** Returns the number of rows in a table, read through the given connection */
+	private static int countRows(Connection dbConnection, String table) throws Exception {
+		try (Statement statement = dbConnection.createStatement();
+			 ResultSet results = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+			assertTrue(results.next());
+			return results.getInt(1);
+		}
+	}
+
+	@Test
+	public void flushedEventsCanBeReadFromAnotherConnection() throws Exception {
+		assertTrue(DatabaseWriter.enableWriteAheadLog(connection, true));
+		DatabaseWriter writer = new DatabaseWriter(connection, 10);
+		Bonus bonus = new Bonus();
+		bonus.setBonusPoints(2);
+
+		try (Connection reader = DriverManager.getConnection("jdbc:sqlite:" + databaseFilename)) {
+			assertTrue(writer.queueKill(1, 2, 1));
+			assertTrue(writer.queueKill(3, 4, 1));
+			assertTrue(writer.queueBonus(1, 1, bonus));
+			assertEquals(0, countRows(reader, "kills"));
+
+			assertTrue(writer.flush());
+			assertEquals(0, writer.getPendingEventCount());
+			assertEquals(2, countRows(reader, "kills"));
+			assertEquals(1, countRows(reader, "bonuses"));
+		}
+	}
+
+	/** Makes inserts into a table fail while the table's name is in the blocked table */
+	private void blockInsertsWhileListed(String table) throws Exception {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS blocked(name varchar(255))");
+			statement.execute("CREATE TRIGGER refuse_" + table + " BEFORE INSERT ON " + table + " WHEN EXISTS " +
+				"(SELECT 1 FROM blocked WHERE name = '" + table + "') BEGIN SELECT RAISE(ABORT, 'blocked'); END");
+		}
+	}
+
+	/** Replaces the blocked table's contents with the given table name, or empties it if null */
+	private void setBlockedTable(String table) throws Exception {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("DELETE FROM blocked");
+			if (table != null) {
+				statement.execute("INSERT INTO blocked VALUES ('" + table + "')");
+			}
+		}
+	}
+
+	@Test
+	public void failedBatchIsRolledBackAndKeptForTheNextFlush() throws Exception {
+		blockInsertsWhileListed("kills");
+		blockInsertsWhileListed("bonuses");
+
+		DatabaseWriter writer = new DatabaseWriter(connection, 10);
+		Bonus bonus = new Bonus();
+		bonus.setBonusPoints(1);
+		assertTrue(writer.queueBonus(1, 1, bonus));
+		assertTrue(writer.queueKill(1, 2, 1));
+
+		// The kills of a batch are written before its bonuses, so the kill is rolled back when the bonus fails
+		setBlockedTable("bonuses");
+		assertFalse(writer.flush());
+		assertEquals(2, writer.getPendingEventCount());
+		assertEquals(0, writer.getCommittedEventCount());
+		assertEquals(0, countRows(connection, "kills"));
+		assertEquals(0, countRows(connection, "bonuses"));
+		assertTrue(connection.getAutoCommit());
+
+		// When the kill fails, the bonus is never written
+		setBlockedTable("kills");
+		assertFalse(writer.flush());
+		assertEquals(2, writer.getPendingEventCount());
+		assertEquals(0, countRows(connection, "kills"));
+		assertEquals(0, countRows(connection, "bonuses"));
+
+		setBlockedTable(null);
+		assertTrue(writer.flush());
+		assertEquals(0, writer.getPendingEventCount());
+		assertEquals(2, writer.getCommittedEventCount());
+		// Each event is written exactly once, with nothing left over from the failed batches
+		assertEquals(1, countRows(connection, "kills"));
+		assertEquals(1, countRows(connection, "bonuses"));
+	}
+
+	@Test
+	public void statementsArePreparedOnceForEveryFlush() throws Exception {
+		DatabaseConnection database = new DatabaseConnection();
+		assertTrue(database.openConnection(databaseFilename));
+		try (PooledConnection pooledWriter = database.borrowWriter()) {
+			DatabaseWriter writer = new DatabaseWriter(pooledWriter, 1);
+			assertTrue(writer.queueKill(1, 2, 1));
+			assertTrue(writer.queueKill(2, 3, 1));
+			assertTrue(writer.queueKill(3, 1, 1));
+			assertEquals(3, writer.getCommittedEventCount());
+		}
+		finally {
+			database.closeConnection();
+		}
+
+		// The kill and bonus inserts are compiled by the first flush and reused by the other two
+		assertEquals(2, database.getStatementCacheMisses());
+		assertEquals(4, database.getStatementCacheHits());
+		assertEquals(3, countRows(connection, "kills"));
+	}
+}
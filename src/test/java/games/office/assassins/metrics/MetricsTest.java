@@ -0,0 +1,45 @@
+package games.office.assassins.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks that disabling metrics removes the stages from JMX and that enabling them again starts from nothing.
+ */
+public class MetricsTest {
+	@After
+	public void disableMetrics() {
+		Metrics.disable();
+	}
+
+	@Test
+	public void disableUnregistersStagesAndDiscardsTheirMeasurements() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("games.office.assassins:type=Stage,name=" + Stage.ASSIGN_TARGETS.getMetricName());
+
+		Metrics.enable();
+		assertTrue(server.isRegistered(name));
+		Metrics.record(Stage.ASSIGN_TARGETS, Metrics.startNanos(), 10, 0);
+		assertEquals(1, Metrics.getStageMetrics(Stage.ASSIGN_TARGETS).getCount());
+
+		Metrics.disable();
+		assertFalse(Metrics.isEnabled());
+		assertFalse(server.isRegistered(name));
+		assertNull(Metrics.getStageMetrics(Stage.ASSIGN_TARGETS));
+
+		Metrics.enable();
+		assertTrue(server.isRegistered(name));
+		assertEquals(0, Metrics.getStageMetrics(Stage.ASSIGN_TARGETS).getCount());
+		assertEquals(0, Metrics.getStageMetrics(Stage.ASSIGN_TARGETS).getRowCount());
+	}
+}
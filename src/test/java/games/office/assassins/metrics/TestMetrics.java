@@ -0,0 +1,12 @@
+package games.office.assassins.metrics;
+
+/**
+ * Lets tests in other packages turn metrics off again, so one test's measurements and JMX beans do not leak into the
+ * next.
+ */
+public class TestMetrics {
+	/** Disables metrics as Metrics.disable() does */
+	public static void disable() {
+		Metrics.disable();
+	}
+}